@@ -0,0 +1,43 @@
+package benchmarks;
+
+import analysis.Analysis;
+import minijava.ast.MJProgram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for the type checker
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisBenchmarks {
+
+    @Param({BenchmarkInputs.GAME_OF_LIFE, BenchmarkInputs.BINARY_TREE})
+    public String input;
+
+    private String source;
+    private MJProgram program;
+
+    @Setup(Level.Trial)
+    public void readInput() throws Exception {
+        source = BenchmarkInputs.read(input);
+    }
+
+    // the analysis stores its results in the AST, so every invocation gets a fresh one
+    @Setup(Level.Invocation)
+    public void parse() throws Exception {
+        program = BenchmarkInputs.parse(source);
+    }
+
+    @Benchmark
+    public Analysis analysis() {
+        Analysis analysis = new Analysis(program);
+        analysis.check();
+        return analysis;
+    }
+}
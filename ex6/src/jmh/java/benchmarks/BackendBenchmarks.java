@@ -0,0 +1,84 @@
+package benchmarks;
+
+import analysis.TypeInformation;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Checks;
+import minillvm.ast.Prog;
+import org.openjdk.jmh.annotations.*;
+import translation.SSATransformation;
+import translation.Translator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for the translation to MiniLLVM and the passes working on MiniLLVM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BackendBenchmarks {
+
+    @Param({BenchmarkInputs.GAME_OF_LIFE, BenchmarkInputs.BINARY_TREE})
+    public String input;
+
+    /** whether the translator builds SSA form directly or uses stack slots */
+    @Param({"true", "false"})
+    public boolean ssa;
+
+    private MJProgram program;
+    private TypeInformation types;
+    private Prog prog;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        program = BenchmarkInputs.parse(BenchmarkInputs.read(input));
+        types = BenchmarkInputs.check(program).getTypeInformation();
+        prog = translate(ssa);
+    }
+
+    private Prog translate(boolean ssa) {
+        Translator translator = new Translator(program, types);
+        translator.setSSA(ssa);
+        return translator.translate();
+    }
+
+    @Benchmark
+    public Prog translator() {
+        return translate(ssa);
+    }
+
+    @Benchmark
+    public Checks checks() {
+        Checks checks = new Checks();
+        checks.checkProgram(prog);
+        return checks;
+    }
+
+    @Benchmark
+    public String prettyPrinter() {
+        return prog.toString();
+    }
+
+    /**
+     * the SSA transformation changes the program in place, so it gets a fresh translation with stack slots
+     * for every invocation
+     */
+    @State(Scope.Thread)
+    public static class FreshProg {
+        Prog prog;
+
+        @Setup(Level.Invocation)
+        public void translate(BackendBenchmarks b) {
+            prog = b.translate(false);
+        }
+    }
+
+    @Benchmark
+    public Prog ssaTransformation(FreshProg fresh) {
+        new SSATransformation().transformProg(fresh.prog);
+        return fresh.prog;
+    }
+}
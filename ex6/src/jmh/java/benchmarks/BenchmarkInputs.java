@@ -0,0 +1,59 @@
+package benchmarks;
+
+import analysis.Analysis;
+import frontend.MJFrontend;
+import minijava.ast.MJProgram;
+import minillvm.ast.Prog;
+import translation.Translator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * loads the fixed benchmark inputs from the testdata folder and runs the phases before the measured one
+ */
+public class BenchmarkInputs {
+
+    /** the default inputs, relative to the testdata folder */
+    public static final String GAME_OF_LIFE = "parser/ok/GameOfLife10.java";
+    public static final String BINARY_TREE = "typechecker/ok/BinaryTree.java";
+
+    public static String read(String input) throws IOException {
+        return new String(Files.readAllBytes(Paths.get("testdata", input)), StandardCharsets.UTF_8);
+    }
+
+    /** parses a program, which is expected to be free of syntax errors */
+    public static MJProgram parse(String source) throws Exception {
+        MJFrontend frontend = new MJFrontend();
+        MJProgram program = frontend.parseString(source);
+        if (!frontend.getSyntaxErrors().isEmpty()) {
+            throw new IllegalStateException("Benchmark input has syntax errors: " + frontend.getSyntaxErrors());
+        }
+        return program;
+    }
+
+    /** parses and checks a program, which is expected to be free of errors */
+    public static MJProgram analyze(String source) throws Exception {
+        MJProgram program = parse(source);
+        check(program);
+        return program;
+    }
+
+    /** checks a program, which is expected to be free of errors */
+    public static Analysis check(MJProgram program) {
+        Analysis analysis = new Analysis(program);
+        analysis.check();
+        if (!analysis.getTypeErrors().isEmpty()) {
+            throw new IllegalStateException("Benchmark input has type errors: " + analysis.getTypeErrors());
+        }
+        return analysis;
+    }
+
+    /** parses, checks and translates a program */
+    public static Prog translate(String source) throws Exception {
+        MJProgram program = parse(source);
+        return new Translator(program, check(program).getTypeInformation()).translate();
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import frontend.AstPrinter;
+import frontend.MJFrontend;
+import frontend.NameTable;
+import frontend.Scanner;
+import java_cup.runtime.ComplexSymbolFactory;
+import java_cup.runtime.Symbol;
+import minijava.ast.MJProgram;
+import minijava.syntax.Lexer;
+import minijava.syntax.MiniJavaParserSym;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for the lexer, the parser and the MiniJava pretty printer.
+ * The generated lexer and parser are compared with the hand-written scanner and recursive descent parser
+ * and with syntax validation, which does not build an AST.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrontendBenchmarks {
+
+    @Param({BenchmarkInputs.GAME_OF_LIFE, BenchmarkInputs.BINARY_TREE})
+    public String input;
+
+    private String source;
+    private MJProgram program;
+
+    @Setup
+    public void setup() throws Exception {
+        source = BenchmarkInputs.read(input);
+        program = BenchmarkInputs.parse(source);
+    }
+
+    @Benchmark
+    public int lexer() throws Exception {
+        Lexer lexer = new Lexer(new ComplexSymbolFactory(), new StringReader(source));
+        int count = 0;
+        while (lexer.next_token().sym != MiniJavaParserSym.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int scanner() {
+        char[] chars = source.toCharArray();
+        return new Scanner(chars, chars.length, new NameTable()).size();
+    }
+
+    @Benchmark
+    public MJProgram parser() throws Exception {
+        return BenchmarkInputs.parse(source);
+    }
+
+    @Benchmark
+    public MJProgram recursiveDescentParser() throws Exception {
+        MJFrontend frontend = new MJFrontend();
+        frontend.setParser(MJFrontend.ParserKind.RECURSIVE_DESCENT);
+        return frontend.parseString(source);
+    }
+
+    @Benchmark
+    public int validator() throws Exception {
+        return new MJFrontend().validateString(source).size();
+    }
+
+    @Benchmark
+    public String astPrinter() {
+        return AstPrinter.print(program);
+    }
+}
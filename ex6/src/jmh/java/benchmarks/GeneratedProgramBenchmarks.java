@@ -0,0 +1,50 @@
+package benchmarks;
+
+import main.MiniJavaCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compiles generated programs of different sizes and shapes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratedProgramBenchmarks {
+
+    /** approximate size of the program in bytes */
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"3"})
+    public int inheritanceDepth;
+
+    @Param({"3"})
+    public int nestingDepth;
+
+    @Param({"0.15"})
+    public double loopDensity;
+
+    private String source;
+
+    @Setup
+    public void generate() {
+        source = new ProgramGenerator(42)
+                .classes(1)
+                .inheritanceDepth(inheritanceDepth)
+                .nestingDepth(nestingDepth)
+                .loopDensity(loopDensity)
+                .generate(size);
+    }
+
+    @Benchmark
+    public String compile() throws Exception {
+        MiniJavaCompiler compiler = new MiniJavaCompiler();
+        compiler.compileString("Generated.java", source);
+        return compiler.getLlvmCode();
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import frontend.CharSequenceReader;
+import frontend.MappedFileReader;
+import java_cup.runtime.ComplexSymbolFactory;
+import minijava.syntax.Lexer;
+import minijava.syntax.MiniJavaParserSym;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the Reader based input of the lexer with the memory mapped and CharSequence inputs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InputBenchmarks {
+
+    /** a file from the testdata folder or the size of a generated program */
+    @Param({BenchmarkInputs.GAME_OF_LIFE, "1000000"})
+    public String input;
+
+    private String source;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        if (input.endsWith(".java")) {
+            source = BenchmarkInputs.read(input);
+        } else {
+            source = new ProgramGenerator(42).classes(1).generate(Long.parseLong(input));
+        }
+        file = File.createTempFile("input", ".java");
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int fileReader() throws Exception {
+        try (Reader r = new FileReader(file)) {
+            return lex(r);
+        }
+    }
+
+    @Benchmark
+    public int mappedFile() throws Exception {
+        try (Reader r = new MappedFileReader(file, StandardCharsets.UTF_8)) {
+            return lex(r);
+        }
+    }
+
+    @Benchmark
+    public int stringReader() throws Exception {
+        return lex(new StringReader(source));
+    }
+
+    @Benchmark
+    public int charSequence() throws Exception {
+        return lex(new CharSequenceReader(source));
+    }
+
+    private static int lex(Reader r) throws Exception {
+        Lexer lexer = new Lexer(new ComplexSymbolFactory(), r);
+        int count = 0;
+        while (lexer.next_token().sym != MiniJavaParserSym.EOF) {
+            count++;
+        }
+        return count;
+    }
+}
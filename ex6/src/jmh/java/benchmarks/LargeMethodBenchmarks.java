@@ -0,0 +1,145 @@
+package benchmarks;
+
+import analysis.TypeInformation;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Dominators;
+import minillvm.ast.BasicBlock;
+import minillvm.ast.Proc;
+import minillvm.ast.Prog;
+import org.openjdk.jmh.annotations.*;
+import translation.SSATransformation;
+import translation.Translator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the ways to get SSA form, and measures the dominator analysis,
+ * on generated programs with one very large method per class
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LargeMethodBenchmarks {
+
+    /**
+     * the shape of the methods:
+     * long methods are straight line code with long chains of blocks,
+     * nested methods have many loops and ifs, so many phi nodes are created and removed,
+     * in chain methods a variable is written once and read after each of many calls, which all add a block,
+     * in indexes methods one expression nests many array accesses, whose bounds checks add blocks
+     */
+    @Param({"long", "nested", "chain", "indexes"})
+    public String shape;
+
+    private MJProgram program;
+    private TypeInformation types;
+    private Prog ssaProg;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String source;
+        if (shape.equals("chain")) {
+            source = chainProgram(20000);
+        } else if (shape.equals("indexes")) {
+            source = indexesProgram(8000);
+        } else {
+            source = generatedProgram();
+        }
+        program = BenchmarkInputs.parse(source);
+        types = BenchmarkInputs.check(program).getTypeInformation();
+        ssaProg = translate(true);
+    }
+
+    private String generatedProgram() {
+        ProgramGenerator generator = new ProgramGenerator(42)
+                .classes(2)
+                .inheritanceDepth(0)
+                .methodsPerClass(1);
+        if (shape.equals("long")) {
+            generator.statementsPerBlock(20000).nestingDepth(0);
+        } else {
+            generator.statementsPerBlock(40).nestingDepth(3).loopDensity(0.3);
+        }
+        return generator.generate();
+    }
+
+    private static String chainProgram(int calls) {
+        StringBuilder source = new StringBuilder();
+        source.append("class Main { public static void main(String[] args) { System.out.println(new C().run()); } }\n");
+        source.append("class C {\n");
+        source.append("    int m() { return 1; }\n");
+        source.append("    int run() {\n");
+        source.append("        int x; int y; C o;\n");
+        source.append("        o = this; x = 3; y = 0;\n");
+        for (int i = 0; i < calls; i++) {
+            source.append("        y = y + x + o.m();\n");
+        }
+        source.append("        return y;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /** x = a[0 + a[1 + ... a[depth - 1 + x] ...]] */
+    private static String indexesProgram(int depth) {
+        StringBuilder index = new StringBuilder("x");
+        for (int i = depth - 1; i >= 0; i--) {
+            index.insert(0, "a[" + i + " + ").append("]");
+        }
+        return "class Main { public static void main(String[] args) {\n"
+                + "    int x; int[] a; a = new int[10]; x = 0;\n"
+                + "    x = " + index + ";\n"
+                + "    System.out.println(x);\n"
+                + "} }\n";
+    }
+
+    private Prog translate(boolean ssa) {
+        Translator translator = new Translator(program, types);
+        translator.setSSA(ssa);
+        return translator.translate();
+    }
+
+    /** the translation with stack slots, which the SSA transformation starts with */
+    @Benchmark
+    public Prog stackSlots() {
+        return translate(false);
+    }
+
+    @Benchmark
+    public Prog directSSA() {
+        return translate(true);
+    }
+
+    /** the SSA transformation changes the program in place, so it gets a fresh translation for every invocation */
+    @State(Scope.Thread)
+    public static class FreshProg {
+        Prog prog;
+
+        @Setup(Level.Invocation)
+        public void translate(LargeMethodBenchmarks b) {
+            prog = b.translate(false);
+        }
+    }
+
+    @Benchmark
+    public Prog ssaTransformation(FreshProg fresh) {
+        new SSATransformation().transformProg(fresh.prog);
+        return fresh.prog;
+    }
+
+    /** the dominator trees and dominance frontiers of all procedures */
+    @Benchmark
+    public int dominators() {
+        int frontierSize = 0;
+        for (Proc proc : ssaProg.getProcedures()) {
+            Dominators dominators = new Dominators(proc);
+            for (BasicBlock block : dominators.getReversePostorder()) {
+                frontierSize += dominators.getDominanceFrontier(block).size();
+            }
+        }
+        return frontierSize;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import analysis.TypeInformation;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Checks;
+import minillvm.ast.Prog;
+import org.openjdk.jmh.annotations.*;
+import translation.SSATransformation;
+import translation.Translator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the SSA transformation and the checks of MiniLLVM programs on a generated program with thousands of methods,
+ * sequentially and with the procedures in parallel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBackendBenchmarks {
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private MJProgram program;
+    private TypeInformation types;
+    private Prog ssaProg;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        program = BenchmarkInputs.parse(new ProgramGenerator(42).statementsPerBlock(3).nestingDepth(2).generate(1000000));
+        types = BenchmarkInputs.check(program).getTypeInformation();
+        ssaProg = translate(true);
+    }
+
+    private Prog translate(boolean ssa) {
+        Translator translator = new Translator(program, types);
+        translator.setSSA(ssa);
+        return translator.translate();
+    }
+
+    @Benchmark
+    public Checks checks() {
+        Checks checks = new Checks();
+        checks.setParallel(parallel);
+        checks.checkProgram(ssaProg);
+        return checks;
+    }
+
+    /** the SSA transformation changes the program in place, so it gets a fresh translation for every invocation */
+    @State(Scope.Thread)
+    public static class FreshProg {
+        Prog prog;
+
+        @Setup(Level.Invocation)
+        public void translate(ParallelBackendBenchmarks b) {
+            prog = b.translate(false);
+        }
+    }
+
+    @Benchmark
+    public Prog ssaTransformation(FreshProg fresh) {
+        SSATransformation transformation = new SSATransformation();
+        transformation.setParallel(parallel);
+        transformation.transformProg(fresh.prog);
+        return fresh.prog;
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import frontend.MJFrontend;
+import minijava.ast.MJProgram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the parser implementations on large generated programs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class ParsingBenchmarks {
+
+    /** approximate size of the program in bytes */
+    @Param({"100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"CUP", "RECURSIVE_DESCENT", "PARALLEL_RECURSIVE_DESCENT"})
+    public MJFrontend.ParserKind parser;
+
+    private String source;
+
+    @Setup
+    public void generate() {
+        source = new ProgramGenerator(42).generate(size);
+    }
+
+    @Benchmark
+    public MJProgram parse() throws Exception {
+        MJFrontend frontend = new MJFrontend();
+        frontend.setParser(parser);
+        return frontend.parseString(source);
+    }
+}
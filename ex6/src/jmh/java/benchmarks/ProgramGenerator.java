@@ -0,0 +1,301 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates random, type correct MiniJava programs for benchmarks.
+ *
+ * The same seed and settings always produce the same program.
+ * Classes are arranged in inheritance chains of the configured depth,
+ * every class overrides the method run of its super class and has its own fields and methods.
+ */
+public class ProgramGenerator {
+    private final long seed;
+    private int classes = 10;
+    private int inheritanceDepth = 3;
+    private int methodsPerClass = 5;
+    private int fieldsPerClass = 3;
+    private int statementsPerBlock = 6;
+    private int nestingDepth = 3;
+    private double loopDensity = 0.15;
+
+    private Random random;
+    private StringBuilder out;
+    private int indent;
+
+    public ProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /** the number of classes in addition to the main class */
+    public ProgramGenerator classes(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    /** the maximum length of inheritance chains, 0 means no inheritance */
+    public ProgramGenerator inheritanceDepth(int inheritanceDepth) {
+        this.inheritanceDepth = inheritanceDepth;
+        return this;
+    }
+
+    /** the number of methods in each class, in addition to the run method */
+    public ProgramGenerator methodsPerClass(int methodsPerClass) {
+        this.methodsPerClass = methodsPerClass;
+        return this;
+    }
+
+    /** the number of int fields in each class */
+    public ProgramGenerator fieldsPerClass(int fieldsPerClass) {
+        this.fieldsPerClass = fieldsPerClass;
+        return this;
+    }
+
+    /** the number of statements in each block */
+    public ProgramGenerator statementsPerBlock(int statementsPerBlock) {
+        this.statementsPerBlock = statementsPerBlock;
+        return this;
+    }
+
+    /** the maximum nesting depth of if and while statements */
+    public ProgramGenerator nestingDepth(int nestingDepth) {
+        this.nestingDepth = nestingDepth;
+        return this;
+    }
+
+    /** the probability that a statement is a while loop (if it may still be nested) */
+    public ProgramGenerator loopDensity(double loopDensity) {
+        this.loopDensity = loopDensity;
+        return this;
+    }
+
+    /** generates a program with the configured number of classes */
+    public String generate() {
+        return generate(0);
+    }
+
+    /**
+     * generates a program with at least the configured number of classes,
+     * more classes are added until the program has at least the given size in characters
+     */
+    public String generate(long minSize) {
+        random = new Random(seed);
+        out = new StringBuilder();
+        indent = 0;
+        int count = 0;
+        while (count < classes || out.length() < minSize) {
+            generateClass(count);
+            count++;
+        }
+        // the main class is generated last, because it has to know the number of classes
+        String classDecls = out.toString();
+        out = new StringBuilder();
+        generateMainClass(count);
+        out.append(classDecls);
+        String result = out.toString();
+        out = null;
+        return result;
+    }
+
+    private void generateMainClass(int classCount) {
+        line("class Main {");
+        indent++;
+        line("public static void main(String[] args) {");
+        indent++;
+        line("int result;");
+        line("result = 0;");
+        for (int i = 0; i < classCount; i++) {
+            line("result = result + new C" + i + "().run(" + random.nextInt(100) + ");");
+        }
+        line("System.out.println(result);");
+        indent--;
+        line("}");
+        indent--;
+        line("}");
+        line("");
+    }
+
+    private int superClass(int c) {
+        int posInChain = c % (inheritanceDepth + 1);
+        return posInChain == 0 ? -1 : c - 1;
+    }
+
+    private void generateClass(int c) {
+        int sup = superClass(c);
+        line("class C" + c + (sup < 0 ? "" : " extends C" + sup) + " {");
+        indent++;
+        for (int f = 0; f < fieldsPerClass; f++) {
+            line("int f" + c + "_" + f + ";");
+        }
+        line("int[] data" + c + ";");
+        line("boolean flag" + c + ";");
+        line("");
+
+        // run calls all methods of the class and overrides run of the super class
+        line("int run(int x) {");
+        indent++;
+        line("int r;");
+        line("data" + c + " = new int[" + (10 + random.nextInt(10)) + "];");
+        line("r = x;");
+        for (int m = 0; m < methodsPerClass; m++) {
+            line("r = r + this.m" + c + "_" + m + "(r, " + random.nextInt(10) + ");");
+        }
+        if (sup >= 0) {
+            // call a method inherited from the super class
+            line("r = r + this.m" + sup + "_0(r, 1);");
+        }
+        line("return r;");
+        indent--;
+        line("}");
+        line("");
+
+        for (int m = 0; m < methodsPerClass; m++) {
+            generateMethod(c, m);
+        }
+        indent--;
+        line("}");
+        line("");
+    }
+
+    private void generateMethod(int c, int m) {
+        line("int m" + c + "_" + m + "(int a, int b) {");
+        indent++;
+        for (int d = 1; d <= nestingDepth; d++) {
+            line("int i" + d + ";");
+        }
+        line("int j;");
+        line("boolean ok;");
+        line("C" + c + " other;");
+        line("j = a;");
+        line("ok = true;");
+        line("other = this;");
+        Scope scope = new Scope(c, m);
+        for (int s = 0; s < statementsPerBlock; s++) {
+            generateStatement(scope, nestingDepth);
+        }
+        line("return " + intExpr(scope, 2) + ";");
+        indent--;
+        line("}");
+        line("");
+    }
+
+    private void generateStatement(Scope scope, int depth) {
+        double r = random.nextDouble();
+        if (depth > 0 && r < loopDensity) {
+            // loops always terminate: every nesting level has its own counter
+            String counter = "i" + depth;
+            line(counter + " = 0;");
+            line("while (" + counter + " < " + (1 + random.nextInt(5)) + " && " + boolExpr(scope, 1) + ") {");
+            generateBlock(scope, depth - 1);
+            indent++;
+            line(counter + " = " + counter + " + 1;");
+            indent--;
+            line("}");
+        } else if (depth > 0 && r < loopDensity + 0.2) {
+            line("if (" + boolExpr(scope, 2) + ") {");
+            generateBlock(scope, depth - 1);
+            line("} else {");
+            generateBlock(scope, depth - 1);
+            line("}");
+        } else if (r < 0.6) {
+            line("j = " + intExpr(scope, 3) + ";");
+        } else if (r < 0.7) {
+            line(field(scope) + " = " + intExpr(scope, 2) + ";");
+        } else if (r < 0.8) {
+            line("data" + scope.c + "[" + (random.nextInt(10)) + "] = " + intExpr(scope, 2) + ";");
+        } else if (r < 0.9) {
+            line("ok = " + boolExpr(scope, 2) + ";");
+        } else {
+            line("System.out.println(" + intExpr(scope, 2) + ");");
+        }
+    }
+
+    private void generateBlock(Scope scope, int depth) {
+        indent++;
+        int count = 1 + random.nextInt(Math.max(1, statementsPerBlock / 2));
+        for (int s = 0; s < count; s++) {
+            generateStatement(scope, depth);
+        }
+        indent--;
+    }
+
+    private String intExpr(Scope scope, int depth) {
+        int choice = random.nextInt(depth > 0 ? 12 : 5);
+        switch (choice) {
+            case 0:
+                return "" + random.nextInt(1000);
+            case 1:
+                return "a";
+            case 2:
+                return "j";
+            case 3:
+                return field(scope);
+            case 4:
+                return "b";
+            case 5:
+                return intExpr(scope, depth - 1) + " + " + intExpr(scope, depth - 1);
+            case 6:
+                return intExpr(scope, depth - 1) + " - " + intExpr(scope, depth - 1);
+            case 7:
+                return "(" + intExpr(scope, depth - 1) + ") * " + intExpr(scope, 0);
+            case 8:
+                // divisor is never zero
+                return "(" + intExpr(scope, depth - 1) + ") / " + (1 + random.nextInt(9));
+            case 9:
+                return "data" + scope.c + "[" + random.nextInt(10) + "] + data" + scope.c + ".length";
+            case 10:
+                if (scope.m > 0) {
+                    // call an earlier method, so that there is no recursion
+                    return "other.m" + scope.c + "_" + random.nextInt(scope.m) + "(" + intExpr(scope, depth - 1) + ", " + intExpr(scope, 0) + ")";
+                }
+                return "-" + intExpr(scope, 0);
+            default:
+                return "(" + intExpr(scope, depth - 1) + ")";
+        }
+    }
+
+    private String boolExpr(Scope scope, int depth) {
+        int choice = random.nextInt(depth > 0 ? 7 : 3);
+        switch (choice) {
+            case 0:
+                return "ok";
+            case 1:
+                return random.nextBoolean() ? "true" : "false";
+            case 2:
+                return "flag" + scope.c;
+            case 3:
+                return intExpr(scope, depth - 1) + " < " + intExpr(scope, depth - 1);
+            case 4:
+                return "(" + intExpr(scope, depth - 1) + " == " + intExpr(scope, depth - 1) + ")";
+            case 5:
+                return "!" + boolExpr(scope, 0);
+            default:
+                return "(" + boolExpr(scope, depth - 1) + " && " + boolExpr(scope, depth - 1) + ")";
+        }
+    }
+
+    private String field(Scope scope) {
+        if (fieldsPerClass == 0) {
+            return "j";
+        }
+        return "f" + scope.c + "_" + random.nextInt(fieldsPerClass);
+    }
+
+    private void line(String s) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(s).append('\n');
+    }
+
+    /** the class and method, for which code is generated */
+    private static class Scope {
+        final int c;
+        final int m;
+
+        Scope(int c, int m) {
+            this.c = c;
+            this.m = m;
+        }
+    }
+}
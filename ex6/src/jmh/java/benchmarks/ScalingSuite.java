@@ -0,0 +1,153 @@
+package benchmarks;
+
+import main.CompilationMetrics;
+import main.CompilationMetrics.Phase;
+import main.MiniJavaCompiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how compile time and peak heap grow with the size of generated programs.
+ *
+ * usage: ScalingSuite [-seed n] [-max size] [-timeout seconds] [size...]
+ *
+ * Sizes are in bytes and may use the suffixes K and M, the default is 1K to 100M in steps of 10.
+ * Larger sizes are skipped once a size takes longer than the timeout or fails.
+ * Comparing the ns/byte column between the rows shows super-linear phases.
+ */
+public class ScalingSuite {
+
+    public static void main(String[] args) throws Exception {
+        long seed = 42;
+        long max = Long.MAX_VALUE;
+        long timeoutNanos = 600_000_000_000L;
+        List<Long> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-max") && i + 1 < args.length) {
+                max = parseSize(args[++i]);
+            } else if (args[i].equals("-timeout") && i + 1 < args.length) {
+                timeoutNanos = Long.parseLong(args[++i]) * 1_000_000_000L;
+            } else {
+                sizes.add(parseSize(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) {
+            for (String s : new String[]{"1K", "10K", "100K", "1M", "10M", "100M"}) {
+                sizes.add(parseSize(s));
+            }
+        }
+
+        System.out.printf("%10s %8s | %10s %10s %10s %10s %10s | %8s | %10s%n",
+                "size", "classes", "parse ms", "analysis", "translate", "print", "total ms", "ns/byte", "peak heap");
+        for (long size : sizes) {
+            if (size > max) {
+                break;
+            }
+            if (!run(seed, size, timeoutNanos)) {
+                break;
+            }
+        }
+    }
+
+    /** compiles one generated program and prints a row, returns false, if larger sizes should be skipped */
+    private static boolean run(long seed, long size, long timeoutNanos) {
+        String source;
+        try {
+            // a class with the default number of methods already has about 5 KB
+            int methods = size < 8 * 1024 ? 1 : 5;
+            source = new ProgramGenerator(seed).classes(1).methodsPerClass(methods).generate(size);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%10s  could not generate input: out of memory%n", formatSize(size));
+            return false;
+        }
+        int classes = countClasses(source);
+
+        System.gc();
+        resetPeakHeap();
+        MiniJavaCompiler compiler = new MiniJavaCompiler();
+        try {
+            compiler.compileString("Generated.java", source);
+            if (!compiler.getSyntaxErrors().isEmpty() || !compiler.getTypeErrors().isEmpty()) {
+                throw new IllegalStateException("Generated program has errors: "
+                        + compiler.getSyntaxErrors() + compiler.getTypeErrors());
+            }
+            compiler.getLlvmCode();
+        } catch (OutOfMemoryError | StackOverflowError e) {
+            System.out.printf("%10s %8d  failed: %s%n", formatSize(source.length()), classes, e);
+            return false;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        long peakHeap = peakHeap();
+
+        CompilationMetrics metrics = compiler.getMetrics();
+        long total = metrics.getTotalWallNanos();
+        System.out.printf("%10s %8d | %10.1f %10.1f %10.1f %10.1f %10.1f | %8.1f | %8d MB%n",
+                formatSize(source.length()), classes,
+                millis(metrics, Phase.PARSE), millis(metrics, Phase.ANALYSIS),
+                millis(metrics, Phase.TRANSLATION), millis(metrics, Phase.PRINT),
+                total / 1e6, (double) total / source.length(), peakHeap / (1024 * 1024));
+        if (total > timeoutNanos) {
+            System.out.println("timeout exceeded, skipping larger sizes");
+            return false;
+        }
+        return true;
+    }
+
+    private static double millis(CompilationMetrics metrics, Phase phase) {
+        CompilationMetrics.PhaseMetrics m = metrics.get(phase);
+        return m == null ? 0 : m.getWallNanos() / 1e6;
+    }
+
+    private static int countClasses(String source) {
+        int count = 0;
+        for (int i = source.indexOf("\nclass "); i >= 0; i = source.indexOf("\nclass ", i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** the sum of the peaks of all heap pools, an upper bound of the actual peak */
+    private static long peakHeap() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    private static long parseSize(String s) {
+        s = s.toUpperCase();
+        if (s.endsWith("K")) {
+            return Long.parseLong(s.substring(0, s.length() - 1)) * 1024;
+        } else if (s.endsWith("M")) {
+            return Long.parseLong(s.substring(0, s.length() - 1)) * 1024 * 1024;
+        }
+        return Long.parseLong(s);
+    }
+
+    private static String formatSize(long size) {
+        if (size >= 1024 * 1024) {
+            return String.format("%.1fM", size / (1024.0 * 1024));
+        } else if (size >= 1024) {
+            return String.format("%.1fK", size / 1024.0);
+        }
+        return size + "B";
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import analysis.Analysis;
+import minijava.ast.MJProgram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * type checks generated classes with many fields and long, nested blocks,
+ * where every method and block enters a new scope of the type context,
+ * with method bodies checked sequentially or in parallel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeContextBenchmarks {
+
+    @Param({"10", "1000", "4000"})
+    public int fieldsPerClass;
+
+    @Param({"50"})
+    public int statementsPerBlock;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private String source;
+    private MJProgram program;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        source = new ProgramGenerator(42)
+                .classes(5)
+                .fieldsPerClass(fieldsPerClass)
+                .methodsPerClass(10)
+                .statementsPerBlock(statementsPerBlock)
+                .nestingDepth(2)
+                .loopDensity(0.2)
+                .generate();
+    }
+
+    // the analysis stores its results in the AST, so every invocation gets a fresh one
+    @Setup(Level.Invocation)
+    public void parse() throws Exception {
+        program = BenchmarkInputs.parse(source);
+    }
+
+    @Benchmark
+    public Analysis analysis() {
+        Analysis analysis = new Analysis(program);
+        analysis.setParallel(parallel);
+        analysis.check();
+        return analysis;
+    }
+}
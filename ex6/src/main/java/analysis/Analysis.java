@@ -3,6 +3,8 @@ package analysis;
 import minijava.ast.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Analysis extends MJElement.DefaultVisitor {
 
@@ -10,19 +12,142 @@ public class Analysis extends MJElement.DefaultVisitor {
     private List<TypeError> typeErrors = new ArrayList<>();
     private ClassTable classTable;
     private LinkedList<TypeContext> ctxt = new LinkedList<>();
+    /** pending checks of statements, the next one is on top */
+    private final Deque<Runnable> work = new ArrayDeque<>();
+    /** the pool for checking method bodies in parallel, null for sequential checking */
+    private ForkJoinPool pool;
+    /** method bodies checked in parallel, in source order */
+    private final List<BodyCheck> bodyChecks = new ArrayList<>();
+    /** the results of an earlier check, which are reused for unchanged method bodies, or null */
+    private final IncrementalAnalysis incremental;
+    /** the signatures used by the method body being checked, only recorded for incremental checking */
+    private Set<IncrementalAnalysis.Signature> usedSignatures;
+    /** the static types of the checked expressions, whose values might have to be converted */
+    private Map<MJExpr, Type> exprTypes;
+    /** the fields and parameters, other variables are local */
+    private final Map<MJVarDecl, TypeInformation.VarKind> varKinds = new HashMap<>();
+
+    /** the check of a method body on another thread and the number of errors reported before it */
+    private static class BodyCheck {
+        final int position;
+        final Analysis analysis;
+        final ForkJoinTask<?> task;
+
+        BodyCheck(int position, Analysis analysis, ForkJoinTask<?> task) {
+            this.position = position;
+            this.analysis = analysis;
+            this.task = task;
+        }
+    }
 
     public void addError(MJElement element, String message) {
         typeErrors.add(new TypeError(element, message));
     }
 
     public Analysis(MJProgram prog) {
+        this(prog, null);
+    }
+
+    Analysis(MJProgram prog, IncrementalAnalysis incremental) {
         this.prog = prog;
+        this.incremental = incremental;
+        this.exprTypes = incremental == null ? new HashMap<>() : incremental.getExprTypes();
+    }
+
+    /** an analysis for checking a single method body, with its own contexts and errors */
+    private Analysis(Analysis parent) {
+        this.prog = parent.prog;
+        this.classTable = parent.classTable;
+        this.incremental = null;
+        this.exprTypes = new HashMap<>();
     }
 
     public void check() {
-        classTable = new ClassTable(this, prog);
+        buildClassTable();
+        if (incremental != null) {
+            incremental.startCheck(prog, classTable);
+        }
+        if (pool != null) {
+            // the tasks only read the class table and the declarations outside of their method
+            classTable.buildMemberIndexes();
+            resolveDeclarationTypes();
+        }
 
         prog.accept(this);
+
+        if (!bodyChecks.isEmpty()) {
+            mergeBodyChecks();
+        }
+        if (incremental != null) {
+            incremental.finishCheck();
+        }
+    }
+
+    /**
+     * checks method bodies in parallel on the common ForkJoin pool.
+     * Each body is checked with its own contexts and errors, and the errors are merged in source order,
+     * so the result is the same as with sequential checking.
+     */
+    public void setParallel(boolean parallel) {
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * sets the class declarations of the types of fields, parameters and return types.
+     * Method bodies refer to these types, so they must not be changed while the bodies are checked.
+     * Unknown types are reported later, when they are checked in order.
+     */
+    private void resolveDeclarationTypes() {
+        for (MJClassDecl c : prog.getClassDecls()) {
+            for (MJVarDecl f : c.getFields()) {
+                resolveType(f.getType());
+            }
+            for (MJMethodDecl m : c.getMethods()) {
+                resolveType(m.getReturnType());
+                for (MJVarDecl p : m.getFormalParameters()) {
+                    resolveType(p.getType());
+                }
+            }
+        }
+    }
+
+    private void resolveType(MJType type) {
+        if (type instanceof MJTypeClass) {
+            MJTypeClass typeClass = (MJTypeClass) type;
+            ClassType t = classTable.lookupClass(typeClass.getName());
+            if (t != null) {
+                typeClass.setClassDeclaration(t.getClassDecl());
+            }
+        }
+    }
+
+    /** waits for the parallel checks and inserts their errors where the sequential check would have reported them */
+    private void mergeBodyChecks() {
+        List<TypeError> merged = new ArrayList<>();
+        int next = 0;
+        for (BodyCheck check : bodyChecks) {
+            check.task.join();
+            merged.addAll(typeErrors.subList(next, check.position));
+            merged.addAll(check.analysis.typeErrors);
+            exprTypes.putAll(check.analysis.exprTypes);
+            next = check.position;
+        }
+        merged.addAll(typeErrors.subList(next, typeErrors.size()));
+        typeErrors = merged;
+        bodyChecks.clear();
+    }
+
+    /**
+     * builds only the class table, without checking the method bodies.
+     * This also works on outlines parsed with lazy method bodies (see frontend.MJFrontend#setLazyMethodBodies).
+     */
+    public ClassTable buildClassTable() {
+        classTable = new ClassTable(this, prog);
+        return classTable;
     }
 
     @Override
@@ -32,7 +157,11 @@ public class Analysis extends MJElement.DefaultVisitor {
         // enter class context
         ctxt.push(cctxt);
         // check children
-        super.visit(mainClass);
+        if (incremental != null) {
+            checkIncrementally(mainClass, () -> super.visit(mainClass));
+        } else {
+            super.visit(mainClass);
+        }
         // exit class context
         ctxt.pop();
     }
@@ -70,6 +199,9 @@ public class Analysis extends MJElement.DefaultVisitor {
         Type cType = classTable.lookupClass(c.getName());
         // enter class context
         ctxt.push(new TypeContextImpl(this, fields, cType));
+        for (MJVarDecl f : c.getFields()) {
+            varKinds.put(f, TypeInformation.VarKind.FIELD);
+        }
 
         for (MJMethodDecl m : c.getMethods()) {
             m.accept(this);
@@ -99,6 +231,53 @@ public class Analysis extends MJElement.DefaultVisitor {
 
     @Override
     public void visit(MJMethodDecl m) {
+        for (MJVarDecl v : m.getFormalParameters()) {
+            varKinds.put(v, TypeInformation.VarKind.PARAMETER);
+        }
+        if (incremental != null) {
+            Type thisType = ctxt.peek().getThisType();
+            checkIncrementally(m, () -> {
+                if (thisType instanceof ClassType) {
+                    usedSignature(IncrementalAnalysis.Signature.ofClass(((ClassType) thisType).getClassDecl().getName()));
+                }
+                checkMethod(m);
+            });
+        } else if (pool != null) {
+            Analysis bodyAnalysis = new Analysis(this);
+            bodyAnalysis.ctxt.push(ctxt.peek());
+            bodyChecks.add(new BodyCheck(typeErrors.size(), bodyAnalysis, pool.submit(() -> bodyAnalysis.checkMethod(m))));
+        } else {
+            checkMethod(m);
+        }
+    }
+
+    /**
+     * reuses the errors of a body from the last check if it is still valid,
+     * otherwise checks it and records the signatures it uses.
+     */
+    private void checkIncrementally(MJElement body, Runnable check) {
+        List<TypeError> cached = incremental.cachedErrors(body);
+        if (cached != null) {
+            typeErrors.addAll(cached);
+            return;
+        }
+        int start = typeErrors.size();
+        usedSignatures = new HashSet<>();
+        Map<MJExpr, Type> allTypes = exprTypes;
+        exprTypes = new HashMap<>();
+        check.run();
+        incremental.store(body, typeErrors.subList(start, typeErrors.size()), usedSignatures, exprTypes);
+        usedSignatures = null;
+        exprTypes = allTypes;
+    }
+
+    private void usedSignature(IncrementalAnalysis.Signature signature) {
+        if (usedSignatures != null) {
+            usedSignatures.add(signature);
+        }
+    }
+
+    private void checkMethod(MJMethodDecl m) {
         // parameter names are unique, build context
         TypeContext mctxt = this.ctxt.peek().copy();
         Set<String> paramNames = new HashSet<>();
@@ -120,52 +299,23 @@ public class Analysis extends MJElement.DefaultVisitor {
 
 
 
+    /**
+     * checks the statements of a block.
+     * Nested statements are checked with an explicit stack of pending steps,
+     * so that deeply nested blocks cannot overflow the call stack.
+     */
     @Override
-    public void visit(MJStmtReturn stmtReturn) {
-        Type actualReturn = checkExpr(ctxt.peek(), stmtReturn.getResult());
-        Type expectedReturn = ctxt.peek().getReturnType();
-        if (!actualReturn.isSubtypeOf(expectedReturn)) {
-            addError(stmtReturn, "Should return value of type " + expectedReturn + ", but found " + actualReturn + ".");
-        }
-    }
-
-    @Override
-    public void visit(MJStmtAssign stmtAssign) {
-        Type lt = checkExpr(ctxt.peek(), stmtAssign.getLeft());
-        Type rt = checkExpr(ctxt.peek(), stmtAssign.getRight());
-        if (!rt.isSubtypeOf(lt)) {
-            addError(stmtAssign.getRight(), "Cannot assign value of type " + rt + " to " + lt + ".");
-        }
-    }
-
-    @Override
-    public void visit(MJStmtExpr stmtExpr) {
-        checkExpr(ctxt.peek(), stmtExpr.getExpr());
-    }
-
-    @Override
-    public void visit(MJStmtWhile stmtWhile) {
-        Type ct = checkExpr(ctxt.peek(), stmtWhile.getCondition());
-        if (!ct.isSubtypeOf(Type.BOOL)) {
-            addError(stmtWhile.getCondition(), "Condition of while-statement must be of type boolean, but this is of type " + ct + ".");
-        }
-        super.visit(stmtWhile);
-    }
-
-    @Override
-    public void visit(MJStmtIf stmtIf) {
-        Type ct = checkExpr(ctxt.peek(), stmtIf.getCondition());
-        if (!ct.isSubtypeOf(Type.BOOL)) {
-            addError(stmtIf.getCondition(), "Condition of if-statement must be of type boolean, but this is of type " + ct + ".");
+    public void visit(MJBlock block) {
+        checkStatement(ctxt.peek(), block);
+        while (!work.isEmpty()) {
+            work.pop().run();
         }
-        super.visit(stmtIf);
     }
 
-    @Override
-    public void visit(MJBlock block) {
-        TypeContext bctxt = this.ctxt.peek().copy();
-        for (MJStatement s : block) {
-            // could also be integrated into the visitor run
+    /** checks the statements of a block, starting with the statement at the given index */
+    private void checkBlock(MJBlock block, TypeContext bctxt, int start) {
+        for (int i = start; i < block.size(); i++) {
+            MJStatement s = block.get(i);
             if (s instanceof MJVarDecl) {
                 MJVarDecl varDecl = (MJVarDecl) s;
                 TypeContextImpl.VarRef ref = bctxt.lookupVar(varDecl.getName());
@@ -174,31 +324,88 @@ public class Analysis extends MJElement.DefaultVisitor {
                 }
                 bctxt.putVar(varDecl.getName(), type(varDecl.getType()), varDecl);
             } else {
-                // enter block context
-                ctxt.push(bctxt);
-                s.accept(this);
-                // exit block context
-                ctxt.pop();
+                // continue with the rest of the block after the statement,
+                // later variables must not be visible in the statement
+                int next = i + 1;
+                work.push(() -> checkBlock(block, bctxt, next));
+                checkStatement(bctxt, s);
+                return;
             }
         }
     }
 
-    @Override
-    public void visit(MJVarDecl varDecl) {
-        throw new RuntimeException(); // var decls already handled by MJBlock and MJMethodDecl
-    }
+    /** checks a statement, nested statements are only scheduled */
+    private void checkStatement(TypeContext sctxt, MJStatement s) {
+        s.match(new MJStatement.MatcherVoid() {
+            @Override
+            public void case_Block(MJBlock block) {
+                TypeContext bctxt = sctxt.copy();
+                work.push(() -> checkBlock(block, bctxt, 0));
+            }
 
-    @Override
-    public void visit(MJStmtPrint stmtPrint) {
-        Type pt = checkExpr(ctxt.peek(), stmtPrint.getPrinted());
-        if (!pt.isSubtypeOf(Type.INT)) {
-            addError(stmtPrint.getPrinted(), "Can only print int values, " + pt + " is not allowed.");
-        }
+            @Override
+            public void case_StmtIf(MJStmtIf stmtIf) {
+                Type ct = checkExpr(sctxt, stmtIf.getCondition());
+                if (!ct.isSubtypeOf(Type.BOOL)) {
+                    addError(stmtIf.getCondition(), "Condition of if-statement must be of type boolean, but this is of type " + ct + ".");
+                }
+                work.push(() -> checkStatement(sctxt, stmtIf.getIfFalse()));
+                work.push(() -> checkStatement(sctxt, stmtIf.getIfTrue()));
+            }
+
+            @Override
+            public void case_StmtWhile(MJStmtWhile stmtWhile) {
+                Type ct = checkExpr(sctxt, stmtWhile.getCondition());
+                if (!ct.isSubtypeOf(Type.BOOL)) {
+                    addError(stmtWhile.getCondition(), "Condition of while-statement must be of type boolean, but this is of type " + ct + ".");
+                }
+                work.push(() -> checkStatement(sctxt, stmtWhile.getLoopBody()));
+            }
+
+            @Override
+            public void case_StmtReturn(MJStmtReturn stmtReturn) {
+                Type actualReturn = checkExpr(sctxt, stmtReturn.getResult());
+                setExprType(stmtReturn.getResult(), actualReturn);
+                Type expectedReturn = sctxt.getReturnType();
+                if (!actualReturn.isSubtypeOf(expectedReturn)) {
+                    addError(stmtReturn, "Should return value of type " + expectedReturn + ", but found " + actualReturn + ".");
+                }
+            }
+
+            @Override
+            public void case_StmtPrint(MJStmtPrint stmtPrint) {
+                Type pt = checkExpr(sctxt, stmtPrint.getPrinted());
+                if (!pt.isSubtypeOf(Type.INT)) {
+                    addError(stmtPrint.getPrinted(), "Can only print int values, " + pt + " is not allowed.");
+                }
+            }
+
+            @Override
+            public void case_StmtExpr(MJStmtExpr stmtExpr) {
+                checkExpr(sctxt, stmtExpr.getExpr());
+            }
+
+            @Override
+            public void case_StmtAssign(MJStmtAssign stmtAssign) {
+                Type lt = checkExpr(sctxt, stmtAssign.getLeft());
+                Type rt = checkExpr(sctxt, stmtAssign.getRight());
+                setExprType(stmtAssign.getLeft(), lt);
+                setExprType(stmtAssign.getRight(), rt);
+                if (!rt.isSubtypeOf(lt)) {
+                    addError(stmtAssign.getRight(), "Cannot assign value of type " + rt + " to " + lt + ".");
+                }
+            }
+
+            @Override
+            public void case_VarDecl(MJVarDecl varDecl) {
+                throw new RuntimeException(); // var decls already handled by checkBlock and MJMethodDecl
+            }
+        });
     }
 
 
     public Type checkExpr(TypeContext ctxt, MJExpr e) {
-        return e.match(new ExprChecker(this, ctxt));
+        return new ExprChecker(this, ctxt).check(e);
     }
 
     public Type type(MJType type) {
@@ -211,12 +418,15 @@ public class Analysis extends MJElement.DefaultVisitor {
 
             @Override
             public Type case_TypeClass(MJTypeClass typeClass) {
-                ClassType t = classTable.lookupClass(typeClass.getName());
+                ClassType t = lookupClass(typeClass.getName());
                 if (t == null) {
                     addError(typeClass, "Type " + typeClass.getName() + " not found.");
                     return Type.ANY;
                 }
-                typeClass.setClassDeclaration(t.getClassDecl());
+                if (typeClass.getClassDeclaration() != t.getClassDecl()) {
+                    // the check avoids writes to shared declarations, when checking in parallel
+                    typeClass.setClassDeclaration(t.getClassDecl());
+                }
                 return t;
             }
 
@@ -233,9 +443,30 @@ public class Analysis extends MJElement.DefaultVisitor {
     }
 
     public MJVarDecl lookupField(Type t, String fieldName) {
+        if (t instanceof ClassType) {
+            usedSignature(IncrementalAnalysis.Signature.field(((ClassType) t).getClassDecl().getName(), fieldName));
+        }
         return classTable.lookupField(t, fieldName);
     }
 
+    public ClassType lookupClass(String name) {
+        usedSignature(IncrementalAnalysis.Signature.ofClass(name));
+        return classTable.lookupClass(name);
+    }
+
+    /** looks up a variable in the given context, fields are looked up in the class of the context */
+    public TypeContext.VarRef lookupVar(TypeContext ctxt, String name) {
+        TypeContext.VarRef ref = ctxt.lookupVar(name);
+        if (usedSignatures != null && ctxt.getThisType() instanceof ClassType && (ref == null || isField(ref.decl))) {
+            // fields and their types come from the class, a missing variable might become a field
+            usedSignature(IncrementalAnalysis.Signature.variable(((ClassType) ctxt.getThisType()).getClassDecl().getName(), name));
+            if (ref != null && ref.decl.getType() instanceof MJTypeClass) {
+                usedSignature(IncrementalAnalysis.Signature.ofClass(((MJTypeClass) ref.decl.getType()).getName()));
+            }
+        }
+        return ref;
+    }
+
     public boolean isField(MJVarDecl decl) {
         return decl != null
                 && decl.getParent() != null
@@ -247,9 +478,21 @@ public class Analysis extends MJElement.DefaultVisitor {
     }
 
     public MJMethodDecl lookupMethod(Type rt, String methodName) {
+        if (rt instanceof ClassType) {
+            usedSignature(IncrementalAnalysis.Signature.method(((ClassType) rt).getClassDecl().getName(), methodName));
+        }
         return classTable.lookupMethod(rt, methodName);
     }
 
+    void setExprType(MJExpr e, Type t) {
+        exprTypes.put(e, t);
+    }
+
+    /** the types and layouts of the checked program, for a program without type errors */
+    public TypeInformation getTypeInformation() {
+        return new TypeInformationImpl(this, prog, exprTypes, varKinds);
+    }
+
     public List<TypeError> getTypeErrors() {
         return new ArrayList<>(typeErrors);
     }
@@ -7,12 +7,36 @@ import java.util.stream.Collectors;
 
 public class ClassTable {
     private Map<String, ClassType> classTypes = new LinkedHashMap<>();
-    /** transitive, reflexive supertypes */
-    private Map<MJClassDecl, List<MJClassDecl>> superTypes = new HashMap<>();
+    private Map<MJClassDecl, ClassInfo> infos = new HashMap<>();
 
 
     private Analysis analysis;
 
+    /**
+     * the supertypes and member indexes of a class.
+     *
+     * Classes with an acyclic hierarchy are numbered in a depth first walk of the inheritance forest,
+     * so the subclasses of a class are exactly the classes with a number in [number, end).
+     * Classes in or below a cycle have no number, but keep their finite list of supertypes.
+     */
+    private static class ClassInfo {
+        final MJClassDecl decl;
+        /** the info of the direct super class, null if there is none or if this class is in a cycle */
+        ClassInfo parent;
+        /** -1 for classes in or below a cycle */
+        int number = -1;
+        int end = -1;
+        /** transitive, reflexive supertypes, only for classes in or below a cycle */
+        LinkedHashSet<MJClassDecl> cyclicSuperTypes;
+        /** the visible fields and methods by name, including inherited ones, built on first use */
+        Map<String, MJVarDecl> fields;
+        Map<String, MJMethodDecl> methods;
+
+        ClassInfo(MJClassDecl decl) {
+            this.decl = decl;
+        }
+    }
+
     ClassTable(Analysis analysis, MJProgram prog) {
         this.analysis = analysis;
         for (MJClassDecl c : prog.getClassDecls()) {
@@ -24,32 +48,85 @@ public class ClassTable {
             if (old != null) {
                 analysis.addError(c, "There already is a class with name " + c.getName() + " defined in " + old.getClassDecl().getSourcePosition() + ".");
             }
+            infos.put(c, new ClassInfo(c));
         }
         findDirectSuperClasses(prog);
         buildSuperTypes(prog);
     }
 
+    /**
+     * finds the classes in or below a cycle and numbers the other classes.
+     * Each class is visited a constant number of times, so this is linear in the number of classes.
+     */
     private void buildSuperTypes(MJProgram prog) {
+        Set<MJClassDecl> acyclic = new HashSet<>();
+        Set<MJClassDecl> cyclic = new HashSet<>();
         for (MJClassDecl c : prog.getClassDecls()) {
-            List<MJClassDecl> superTypes = new ArrayList<>();
+            // walk up until a class with a known result, the end of the hierarchy or a cycle
+            Set<MJClassDecl> path = new LinkedHashSet<>();
             MJClassDecl d = c;
-            while (d != null) {
-                if (superTypes.contains(d)) {
-                    analysis.addError(c, "There is a cycle in the type hierarchy: "
-                        + superTypes.stream().map(MJClassDecl::getName).collect(Collectors.joining(" < "))
-                        + " < " + d);
-                    break;
-                }
-                superTypes.add(d);
+            while (d != null && !acyclic.contains(d) && !cyclic.contains(d) && path.add(d)) {
                 d = d.getDirectSuperClass();
             }
-            this.superTypes.put(c, superTypes);
+            boolean inCycle = d != null && !acyclic.contains(d);
+            (inCycle ? cyclic : acyclic).addAll(path);
+        }
+
+        Map<ClassInfo, List<ClassInfo>> subclasses = new HashMap<>();
+        List<ClassInfo> roots = new ArrayList<>();
+        for (MJClassDecl c : prog.getClassDecls()) {
+            ClassInfo info = infos.get(c);
+            if (cyclic.contains(c)) {
+                info.cyclicSuperTypes = cyclicSuperTypes(c);
+            } else if (c.getDirectSuperClass() == null) {
+                roots.add(info);
+            } else {
+                info.parent = infos.get(c.getDirectSuperClass());
+                subclasses.computeIfAbsent(info.parent, p -> new ArrayList<>()).add(info);
+            }
+        }
+
+        // number the classes in a depth first walk, with an explicit stack for deep hierarchies
+        int next = 0;
+        Deque<ClassInfo> todo = new ArrayDeque<>();
+        for (ClassInfo root : roots) {
+            todo.push(root);
+            while (!todo.isEmpty()) {
+                ClassInfo info = todo.peek();
+                if (info.number < 0) {
+                    info.number = next++;
+                    for (ClassInfo sub : subclasses.getOrDefault(info, Collections.emptyList())) {
+                        todo.push(sub);
+                    }
+                } else {
+                    info.end = next;
+                    todo.pop();
+                }
+            }
+        }
+    }
+
+    /** the supertypes of a class in or below a cycle, up to the first repeated class */
+    private LinkedHashSet<MJClassDecl> cyclicSuperTypes(MJClassDecl c) {
+        LinkedHashSet<MJClassDecl> superTypes = new LinkedHashSet<>();
+        MJClassDecl d = c;
+        while (d != null) {
+            if (!superTypes.add(d)) {
+                analysis.addError(c, "There is a cycle in the type hierarchy: "
+                    + superTypes.stream().map(MJClassDecl::getName).collect(Collectors.joining(" < "))
+                    + " < " + d);
+                break;
+            }
+            d = d.getDirectSuperClass();
         }
+        return superTypes;
     }
 
 
     private void findDirectSuperClasses(MJProgram prog) {
         for (MJClassDecl c : prog.getClassDecls()) {
+            // the class might have been checked before, with another super class
+            c.setDirectSuperClass(null);
             if (c.getExtended() instanceof MJExtendsClass) {
                 String extendedClassName = ((MJExtendsClass) c.getExtended()).getName();
                 if (classTypes.containsKey(extendedClassName)) {
@@ -63,7 +140,12 @@ public class ClassTable {
 
 
     public boolean isSubclass(MJClassDecl c, MJClassDecl d) {
-        return superTypes.get(c).contains(d);
+        ClassInfo ci = infos.get(c);
+        if (ci.cyclicSuperTypes != null) {
+            return ci.cyclicSuperTypes.contains(d);
+        }
+        ClassInfo di = infos.get(d);
+        return di != null && di.number >= 0 && di.number <= ci.number && ci.number < di.end;
     }
 
     public ClassType lookupClass(String name) {
@@ -73,14 +155,7 @@ public class ClassTable {
     public MJVarDecl lookupField(Type t, String fieldName) {
         if (t instanceof ClassType) {
             ClassType ct = (ClassType) t;
-            for (MJClassDecl c : superTypes.get(ct.getClassDecl())) {
-                for (MJVarDecl v : c.getFields()) {
-                    if (v.getName().equals(fieldName)) {
-                        return v;
-                    }
-                }
-            }
-
+            return memberIndex(infos.get(ct.getClassDecl())).fields.get(fieldName);
         }
         return null;
     }
@@ -88,16 +163,69 @@ public class ClassTable {
     public MJMethodDecl lookupMethod(Type t, String methodName) {
         if (t instanceof ClassType) {
             ClassType ct = (ClassType) t;
-            for (MJClassDecl c : superTypes.get(ct.getClassDecl())) {
-                for (MJMethodDecl m : c.getMethods()) {
-                    if (m.getName().equals(methodName)) {
-                        return m;
-                    }
-                }
+            return memberIndex(infos.get(ct.getClassDecl())).methods.get(methodName);
+        }
+        return null;
+    }
+
+    /** builds the member indexes of all classes, so lookups do not change the table any more */
+    void buildMemberIndexes() {
+        for (ClassInfo info : infos.values()) {
+            memberIndex(info);
+        }
+    }
+
+    /**
+     * builds the member indexes of a class and its super classes, if they do not exist yet.
+     * The index of a class is the index of its super class, where its own members replace inherited ones.
+     */
+    private ClassInfo memberIndex(ClassInfo info) {
+        if (info.fields != null) {
+            return info;
+        }
+        if (info.cyclicSuperTypes != null) {
+            List<MJClassDecl> superTypes = new ArrayList<>(info.cyclicSuperTypes);
+            info.fields = Collections.emptyMap();
+            info.methods = Collections.emptyMap();
+            for (int i = superTypes.size() - 1; i >= 0; i--) {
+                addMembers(info, superTypes.get(i));
             }
+            return info;
+        }
+        // the classes without index, from the given class up
+        List<ClassInfo> missing = new ArrayList<>();
+        for (ClassInfo i = info; i != null && i.fields == null; i = i.parent) {
+            missing.add(i);
+        }
+        for (int k = missing.size() - 1; k >= 0; k--) {
+            ClassInfo i = missing.get(k);
+            i.fields = i.parent == null ? Collections.emptyMap() : i.parent.fields;
+            i.methods = i.parent == null ? Collections.emptyMap() : i.parent.methods;
+            addMembers(i, i.decl);
+        }
+        return info;
+    }
 
+    /**
+     * adds the members of c to the indexes, so they replace members with the same name added before.
+     * Indexes are copied before they are changed, so a class without own fields or methods shares them with its super class.
+     */
+    private static void addMembers(ClassInfo info, MJClassDecl c) {
+        if (!c.getFields().isEmpty()) {
+            info.fields = new HashMap<>(info.fields);
+            // backwards, so the first field with a name is found, like when searching the list
+            for (int i = c.getFields().size() - 1; i >= 0; i--) {
+                MJVarDecl v = c.getFields().get(i);
+                info.fields.put(v.getName(), v);
+            }
+        }
+        if (!c.getMethods().isEmpty()) {
+            info.methods = new HashMap<>(info.methods);
+            for (int i = c.getMethods().size() - 1; i >= 0; i--) {
+                MJMethodDecl m = c.getMethods().get(i);
+                info.methods.put(m.getName(), m);
+            }
         }
-        return null;
     }
 
     public ClassType getDirectSuperClassType(MJClassDecl c) {
@@ -109,11 +237,24 @@ public class ClassTable {
     }
 
     public List<MJVarDecl> getFields(MJClassDecl c) {
+        List<MJClassDecl> superClasses = superTypes(c);
         List<MJVarDecl> result = new ArrayList<>();
-        List<MJClassDecl> superClasses = superTypes.get(c);
         for (int i=superClasses.size()-1; i>=0; i--) {
             result.addAll(superClasses.get(i).getFields());
         }
         return result;
     }
+
+    /** transitive, reflexive supertypes, starting with c */
+    List<MJClassDecl> superTypes(MJClassDecl c) {
+        ClassInfo info = infos.get(c);
+        if (info.cyclicSuperTypes != null) {
+            return new ArrayList<>(info.cyclicSuperTypes);
+        }
+        List<MJClassDecl> result = new ArrayList<>();
+        for (ClassInfo i = info; i != null; i = i.parent) {
+            result.add(i.decl);
+        }
+        return result;
+    }
 }
@@ -3,200 +3,259 @@ package analysis;
 import analysis.TypeContext.VarRef;
 import minijava.ast.*;
 
-public class ExprChecker implements MJExpr.Matcher<Type> {
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Calculates the types of expressions.
+ *
+ * Subexpressions are not checked recursively, instead the cases schedule steps on an explicit stack
+ * and the type of each checked expression is pushed on a second stack.
+ * This way long chains of operators like a + b + ... + z cannot overflow the call stack.
+ */
+public class ExprChecker implements MJExpr.MatcherVoid {
     private final Analysis analysis;
     private final TypeContext ctxt;
+    /** pending steps, the next step is on top */
+    private final Deque<Runnable> work = new ArrayDeque<>();
+    /** types of the checked expressions, the type of the last one is on top */
+    private final Deque<Type> types = new ArrayDeque<>();
 
     public ExprChecker(Analysis analysis, TypeContext ctxt) {
         this.analysis = analysis;
         this.ctxt = ctxt;
     }
 
+    /** checks the given expression and returns its type */
     Type check(MJExpr e) {
-        return e.match(this);
+        e.match(this);
+        while (!work.isEmpty()) {
+            work.pop().run();
+        }
+        return types.pop();
+    }
+
+    /** schedules the given steps, so that they run in order before all steps scheduled earlier */
+    private void then(Runnable... steps) {
+        for (int i = steps.length - 1; i >= 0; i--) {
+            work.push(steps[i]);
+        }
+    }
+
+    /** a step, which checks e and pushes its type */
+    private Runnable typeOf(MJExpr e) {
+        return () -> e.match(this);
     }
 
-    void expect(MJExpr e, Type expected) {
-        Type actual = check(e);
+    /** a step, which pushes the given type */
+    private Runnable result(Type t) {
+        return () -> types.push(t);
+    }
+
+    /** a step, which checks that e has the expected type */
+    private Runnable expect(MJExpr e, Type expected) {
+        return () -> then(typeOf(e), () -> expectType(e, types.pop(), expected));
+    }
+
+    private void expectType(MJExpr e, Type actual, Type expected) {
         if (!actual.isSubtypeOf(expected)) {
             analysis.addError(e, "Expected expression of type " + expected + " but found " + actual + ".");
         }
     }
 
     @Override
-    public Type case_ExprUnary(MJExprUnary exprUnary) {
-        Type t = check(exprUnary.getExpr());
-        return exprUnary.getUnaryOperator().match(new MJUnaryOperator.Matcher<Type>() {
+    public void case_ExprUnary(MJExprUnary exprUnary) {
+        MJExpr operand = exprUnary.getExpr();
+        then(typeOf(operand), () -> {
+            Type t = types.pop();
+            types.push(exprUnary.getUnaryOperator().match(new MJUnaryOperator.Matcher<Type>() {
 
-            @Override
-            public Type case_UnaryMinus(MJUnaryMinus unaryMinus) {
-                expect(exprUnary.getExpr(), Type.INT);
-                return Type.INT;
-            }
+                @Override
+                public Type case_UnaryMinus(MJUnaryMinus unaryMinus) {
+                    expectType(operand, t, Type.INT);
+                    return Type.INT;
+                }
 
-            @Override
-            public Type case_Negate(MJNegate negate) {
-                expect(exprUnary.getExpr(), Type.BOOL);
-                return Type.BOOL;
-            }
+                @Override
+                public Type case_Negate(MJNegate negate) {
+                    expectType(operand, t, Type.BOOL);
+                    return Type.BOOL;
+                }
+            }));
         });
     }
 
     @Override
-    public Type case_FieldAccess(MJFieldAccess fieldAccess) {
-        Type rt = check(fieldAccess.getReceiver());
-        MJVarDecl v = analysis.lookupField(rt, fieldAccess.getFieldName());
-        if (v == null) {
-            analysis.addError(fieldAccess, "Type " + rt + " has no field named " + fieldAccess.getFieldName() + ".");
-            return Type.ANY;
-        }
-        fieldAccess.setVariableDeclaration(v);
-        return analysis.type(v.getType());
+    public void case_FieldAccess(MJFieldAccess fieldAccess) {
+        then(typeOf(fieldAccess.getReceiver()), () -> {
+            Type rt = types.pop();
+            MJVarDecl v = analysis.lookupField(rt, fieldAccess.getFieldName());
+            if (v == null) {
+                analysis.addError(fieldAccess, "Type " + rt + " has no field named " + fieldAccess.getFieldName() + ".");
+                types.push(Type.ANY);
+                return;
+            }
+            fieldAccess.setVariableDeclaration(v);
+            types.push(analysis.type(v.getType()));
+        });
     }
 
     @Override
-    public Type case_MethodCall(MJMethodCall methodCall) {
-        Type rt = check(methodCall.getReceiver());
-        MJMethodDecl m = analysis.lookupMethod(rt, methodCall.getMethodName());
-        if (m == null) {
-            analysis.addError(methodCall, "Type " + rt + " has no method " + methodCall.getMethodName() + ".");
-            return Type.ANY;
-        }
-        MJExprList args = methodCall.getArguments();
-        MJVarDeclList params = m.getFormalParameters();
-        if (args.size() < params.size()) {
-            analysis.addError(methodCall, "Not enough arguments.");
-        } else if (args.size() > params.size()) {
-            analysis.addError(methodCall, "Too many arguments.");
-        } else {
-            for (int i = 0; i< params.size(); i++) {
-                expect(args.get(i), analysis.type(params.get(i).getType()));
+    public void case_MethodCall(MJMethodCall methodCall) {
+        then(typeOf(methodCall.getReceiver()), () -> {
+            Type rt = types.pop();
+            analysis.setExprType(methodCall.getReceiver(), rt);
+            MJMethodDecl m = analysis.lookupMethod(rt, methodCall.getMethodName());
+            if (m == null) {
+                analysis.addError(methodCall, "Type " + rt + " has no method " + methodCall.getMethodName() + ".");
+                types.push(Type.ANY);
+                return;
             }
-        }
-        methodCall.setMethodDeclaration(m);
-        return analysis.type(m.getReturnType());
+            Runnable finish = () -> {
+                methodCall.setMethodDeclaration(m);
+                types.push(analysis.type(m.getReturnType()));
+            };
+            MJExprList args = methodCall.getArguments();
+            MJVarDeclList params = m.getFormalParameters();
+            if (args.size() < params.size()) {
+                analysis.addError(methodCall, "Not enough arguments.");
+            } else if (args.size() > params.size()) {
+                analysis.addError(methodCall, "Too many arguments.");
+            } else {
+                work.push(finish);
+                for (int i = params.size() - 1; i >= 0; i--) {
+                    MJExpr arg = args.get(i);
+                    MJVarDecl param = params.get(i);
+                    work.push(() -> then(typeOf(arg), () -> {
+                        Type t = types.pop();
+                        analysis.setExprType(arg, t);
+                        expectType(arg, t, analysis.type(param.getType()));
+                    }));
+                }
+                return;
+            }
+            finish.run();
+        });
     }
 
 
     @Override
-    public Type case_ArrayLength(MJArrayLength arrayLength) {
-        expect(arrayLength.getArrayExpr(), Type.INTARRAY);
-        return Type.INT;
+    public void case_ArrayLength(MJArrayLength arrayLength) {
+        then(expect(arrayLength.getArrayExpr(), Type.INTARRAY), result(Type.INT));
     }
 
     @Override
-    public Type case_ExprThis(MJExprThis exprThis) {
+    public void case_ExprThis(MJExprThis exprThis) {
         Type thisType = ctxt.getThisType();
         if (thisType == Type.INVALID) {
             analysis.addError(exprThis, "Cannot use 'this' inside main method.");
         }
-        return thisType;
+        types.push(thisType);
     }
 
     @Override
-    public Type case_ExprBinary(MJExprBinary exprBinary) {
-        return exprBinary.getOperator().match(new MJOperator.Matcher<Type>() {
+    public void case_ExprBinary(MJExprBinary exprBinary) {
+        MJExpr left = exprBinary.getLeft();
+        MJExpr right = exprBinary.getRight();
+        exprBinary.getOperator().match(new MJOperator.MatcherVoid() {
             @Override
-            public Type case_And(MJAnd and) {
-                expect(exprBinary.getLeft(), Type.BOOL);
-                expect(exprBinary.getRight(), Type.BOOL);
-                return Type.BOOL;
+            public void case_And(MJAnd and) {
+                then(expect(left, Type.BOOL), expect(right, Type.BOOL), result(Type.BOOL));
             }
 
             @Override
-            public Type case_Times(MJTimes times) {
-                return case_intOperation();
+            public void case_Times(MJTimes times) {
+                case_intOperation();
             }
 
             @Override
-            public Type case_Div(MJDiv div) {
-                return case_intOperation();
+            public void case_Div(MJDiv div) {
+                case_intOperation();
             }
 
             @Override
-            public Type case_Plus(MJPlus plus) {
-                return case_intOperation();
+            public void case_Plus(MJPlus plus) {
+                case_intOperation();
             }
 
             @Override
-            public Type case_Minus(MJMinus minus) {
-                return case_intOperation();
+            public void case_Minus(MJMinus minus) {
+                case_intOperation();
             }
 
-            private Type case_intOperation() {
-                expect(exprBinary.getLeft(), Type.INT);
-                expect(exprBinary.getRight(), Type.INT);
-                return Type.INT;
+            private void case_intOperation() {
+                then(expect(left, Type.INT), expect(right, Type.INT), result(Type.INT));
             }
 
             @Override
-            public Type case_Equals(MJEquals equals) {
-                Type l = check(exprBinary.getLeft());
-                Type r = check(exprBinary.getRight());
-                if (!l.isSubtypeOf(r) && !r.isSubtypeOf(l)) {
-                    analysis.addError(exprBinary, "Cannot compare types " + l + " and " + r +".");
-                }
-                return Type.BOOL;
+            public void case_Equals(MJEquals equals) {
+                then(typeOf(left), typeOf(right), () -> {
+                    Type r = types.pop();
+                    Type l = types.pop();
+                    analysis.setExprType(left, l);
+                    analysis.setExprType(right, r);
+                    if (!l.isSubtypeOf(r) && !r.isSubtypeOf(l)) {
+                        analysis.addError(exprBinary, "Cannot compare types " + l + " and " + r +".");
+                    }
+                    types.push(Type.BOOL);
+                });
             }
 
             @Override
-            public Type case_Less(MJLess less) {
-                expect(exprBinary.getLeft(), Type.INT);
-                expect(exprBinary.getRight(), Type.INT);
-                return Type.BOOL;
+            public void case_Less(MJLess less) {
+                then(expect(left, Type.INT), expect(right, Type.INT), result(Type.BOOL));
             }
         });
     }
 
     @Override
-    public Type case_ArrayLookup(MJArrayLookup arrayLookup) {
-        expect(arrayLookup.getArrayExpr(), Type.INTARRAY);
-        expect(arrayLookup.getArrayIndex(), Type.INT);
-        return Type.INT;
+    public void case_ArrayLookup(MJArrayLookup arrayLookup) {
+        then(expect(arrayLookup.getArrayExpr(), Type.INTARRAY), expect(arrayLookup.getArrayIndex(), Type.INT), result(Type.INT));
     }
 
     @Override
-    public Type case_ExprNull(MJExprNull exprNull) {
-        return Type.NULL;
+    public void case_ExprNull(MJExprNull exprNull) {
+        types.push(Type.NULL);
     }
 
     @Override
-    public Type case_Number(MJNumber number) {
-        return Type.INT;
+    public void case_Number(MJNumber number) {
+        types.push(Type.INT);
     }
 
     @Override
-    public Type case_NewIntArray(MJNewIntArray newIntArray) {
-        expect(newIntArray.getArraySize(), Type.INT);
-        return Type.INTARRAY;
+    public void case_NewIntArray(MJNewIntArray newIntArray) {
+        then(expect(newIntArray.getArraySize(), Type.INT), result(Type.INTARRAY));
     }
 
     @Override
-    public Type case_VarUse(MJVarUse varUse) {
-        VarRef ref = ctxt.lookupVar(varUse.getVarName());
+    public void case_VarUse(MJVarUse varUse) {
+        VarRef ref = analysis.lookupVar(ctxt, varUse.getVarName());
         if (ref == null) {
             analysis.addError(varUse, "Variable " + varUse.getVarName() + " is not defined.");
-            return Type.ANY;
+            types.push(Type.ANY);
+            return;
         }
         varUse.setVariableDeclaration(ref.decl);
-        return ref.type;
+        types.push(ref.type);
     }
 
 
 
     @Override
-    public Type case_NewObject(MJNewObject newObject) {
-        ClassType ct = analysis.getClassTable().lookupClass(newObject.getClassName());
+    public void case_NewObject(MJNewObject newObject) {
+        ClassType ct = analysis.lookupClass(newObject.getClassName());
         if (ct == null) {
             analysis.addError(newObject, "No class with name " + newObject.getClassName() + " exists.");
-            return Type.ANY;
+            types.push(Type.ANY);
+            return;
         }
         newObject.setClassDeclaration(ct.getClassDecl());
-        return ct;
+        types.push(ct);
     }
 
     @Override
-    public Type case_BoolConst(MJBoolConst boolConst) {
-        return Type.BOOL;
+    public void case_BoolConst(MJBoolConst boolConst) {
+        types.push(Type.BOOL);
     }
 }
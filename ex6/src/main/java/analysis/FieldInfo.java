@@ -6,4 +6,7 @@ public interface FieldInfo {
 
     /** returns the type of the field */
     Type getType();
+
+    /** returns the index of the field in the objects of its class, index 0 is the pointer to the vtable */
+    int getSlot();
 }
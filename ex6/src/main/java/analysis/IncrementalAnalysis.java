@@ -0,0 +1,263 @@
+package analysis;
+
+import minijava.ast.MJClassDecl;
+import minijava.ast.MJElement;
+import minijava.ast.MJExpr;
+import minijava.ast.MJProgram;
+import minijava.ast.MJVarDecl;
+
+import java.util.*;
+
+/**
+ * Checks a program again after it was edited (for example with {@link frontend.IncrementalParser}),
+ * but only checks the method bodies which changed or which depend on changed signatures.
+ *
+ * While a body is checked, the signatures it uses are recorded: the classes it mentions with their supertypes,
+ * the fields and methods it looks up and the fields it uses as variables.
+ * Before the next check, every recorded signature is looked up again in the new class table
+ * and the bodies which used a signature with a different result are checked again.
+ * Bodies are identified by their declaration, so a method which was parsed again is always checked again.
+ * The checks of classes and signatures are cheap and always done again.
+ * The errors of the other bodies are reused, with the current positions of their elements.
+ */
+public class IncrementalAnalysis {
+    private final Map<MJElement, BodyResult> bodies = new HashMap<>();
+    private final Map<Signature, SignatureInfo> signatures = new HashMap<>();
+    /** the types of the expressions in all bodies */
+    private final Map<MJExpr, Type> exprTypes = new HashMap<>();
+    /** the bodies of the current check */
+    private Set<MJElement> visited = new HashSet<>();
+    private ClassTable classTable;
+    /** the fields visible as variables in a class, by class name, built on first use in each check */
+    private Map<String, Map<String, MJVarDecl>> variables = new HashMap<>();
+    private Analysis analysis;
+    private int checkedBodies;
+
+    /**
+     * the result of checking a method body or the main method.
+     * The errors are stored as their elements and messages, so no exceptions with their stack traces are kept.
+     */
+    private static class BodyResult {
+        final List<MJElement> errorElements = new ArrayList<>();
+        final List<String> errorMessages = new ArrayList<>();
+        final Set<Signature> used;
+        final Map<MJExpr, Type> exprTypes;
+
+        BodyResult(List<TypeError> errors, Set<Signature> used, Map<MJExpr, Type> exprTypes) {
+            for (TypeError e : errors) {
+                errorElements.add(e.getElement());
+                errorMessages.add(e.getMessage());
+            }
+            this.used = used;
+            this.exprTypes = exprTypes;
+        }
+    }
+
+    /** the result of looking up a signature and the bodies which used it */
+    private static class SignatureInfo {
+        final Object result;
+        final Set<MJElement> dependents = new HashSet<>();
+
+        SignatureInfo(Object result) {
+            this.result = result;
+        }
+    }
+
+    /** something a method body can use from the class table */
+    static final class Signature {
+        enum Kind {
+            /** the declaration of the class and its supertypes */
+            CLASS,
+            /** the field found by a field access */
+            FIELD,
+            /** the method found by a method call */
+            METHOD,
+            /** the field found by a variable name inside the class */
+            VARIABLE
+        }
+
+        final Kind kind;
+        final String className;
+        final String name;
+
+        private Signature(Kind kind, String className, String name) {
+            this.kind = kind;
+            this.className = className;
+            this.name = name;
+        }
+
+        static Signature ofClass(String className) {
+            return new Signature(Kind.CLASS, className, "");
+        }
+
+        static Signature field(String className, String name) {
+            return new Signature(Kind.FIELD, className, name);
+        }
+
+        static Signature method(String className, String name) {
+            return new Signature(Kind.METHOD, className, name);
+        }
+
+        static Signature variable(String className, String name) {
+            return new Signature(Kind.VARIABLE, className, name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature s = (Signature) o;
+            return kind == s.kind && className.equals(s.className) && name.equals(s.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind.hashCode() * 31 + className.hashCode()) * 31 + name.hashCode();
+        }
+    }
+
+    /**
+     * checks the program and returns the type errors.
+     * The program can be the one from the last check with some declarations replaced, or a new program.
+     */
+    public List<TypeError> check(MJProgram prog) {
+        analysis = new Analysis(prog, this);
+        analysis.check();
+        return analysis.getTypeErrors();
+    }
+
+    /** the types of the expressions in all bodies, which are kept between checks */
+    Map<MJExpr, Type> getExprTypes() {
+        return exprTypes;
+    }
+
+    /** the analysis of the last check */
+    public Analysis getAnalysis() {
+        return analysis;
+    }
+
+    public List<TypeError> getTypeErrors() {
+        return analysis == null ? Collections.emptyList() : analysis.getTypeErrors();
+    }
+
+    /** the number of bodies, which were checked by the last check, and not reused */
+    public int getCheckedBodies() {
+        return checkedBodies;
+    }
+
+    /** forgets the bodies, which depend on signatures with a different result in the new class table */
+    void startCheck(MJProgram prog, ClassTable classTable) {
+        this.classTable = classTable;
+        variables = new HashMap<>();
+        visited = new HashSet<>();
+        checkedBodies = 0;
+        if (hasDuplicateClassNames(prog)) {
+            // signatures are looked up by class name, which is ambiguous now
+            bodies.clear();
+            signatures.clear();
+            exprTypes.clear();
+            return;
+        }
+        List<Signature> changed = new ArrayList<>();
+        for (Map.Entry<Signature, SignatureInfo> e : signatures.entrySet()) {
+            if (!Objects.equals(e.getValue().result, lookup(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        for (Signature s : changed) {
+            SignatureInfo info = signatures.get(s);
+            if (info != null) {
+                for (MJElement body : new ArrayList<>(info.dependents)) {
+                    forget(body);
+                }
+            }
+        }
+    }
+
+    /** forgets the bodies, which are not part of the program any more */
+    void finishCheck() {
+        for (MJElement body : new ArrayList<>(bodies.keySet())) {
+            if (!visited.contains(body)) {
+                forget(body);
+            }
+        }
+        classTable = null;
+        variables = null;
+    }
+
+    /** the errors of a body from the last check, with current positions, or null if it has to be checked again */
+    List<TypeError> cachedErrors(MJElement body) {
+        visited.add(body);
+        BodyResult result = bodies.get(body);
+        if (result == null) {
+            return null;
+        }
+        List<TypeError> errors = new ArrayList<>(result.errorElements.size());
+        for (int i = 0; i < result.errorElements.size(); i++) {
+            errors.add(new TypeError(result.errorElements.get(i), result.errorMessages.get(i)));
+        }
+        return errors;
+    }
+
+    void store(MJElement body, List<TypeError> errors, Set<Signature> used, Map<MJExpr, Type> types) {
+        checkedBodies++;
+        bodies.put(body, new BodyResult(errors, used, types));
+        exprTypes.putAll(types);
+        for (Signature s : used) {
+            signatures.computeIfAbsent(s, k -> new SignatureInfo(lookup(k))).dependents.add(body);
+        }
+    }
+
+    private void forget(MJElement body) {
+        BodyResult result = bodies.remove(body);
+        if (result == null) {
+            return;
+        }
+        exprTypes.keySet().removeAll(result.exprTypes.keySet());
+        for (Signature s : result.used) {
+            SignatureInfo info = signatures.get(s);
+            info.dependents.remove(body);
+            if (info.dependents.isEmpty()) {
+                signatures.remove(s);
+            }
+        }
+    }
+
+    /** looks up a signature in the current class table, the result is compared by identity of the declarations */
+    private Object lookup(Signature s) {
+        ClassType t = classTable.lookupClass(s.className);
+        if (t == null) {
+            return null;
+        }
+        switch (s.kind) {
+            case CLASS:
+                return classTable.superTypes(t.getClassDecl());
+            case FIELD:
+                return classTable.lookupField(t, s.name);
+            case METHOD:
+                return classTable.lookupMethod(t, s.name);
+            default:
+                return variables.computeIfAbsent(s.className, n -> fieldVariables(t.getClassDecl())).get(s.name);
+        }
+    }
+
+    /** the fields by name, like in the type context of the class, where later fields replace earlier ones */
+    private Map<String, MJVarDecl> fieldVariables(MJClassDecl c) {
+        Map<String, MJVarDecl> result = new HashMap<>();
+        for (MJVarDecl f : classTable.getFields(c)) {
+            result.put(f.getName(), f);
+        }
+        return result;
+    }
+
+    private static boolean hasDuplicateClassNames(MJProgram prog) {
+        Set<String> names = new HashSet<>();
+        for (MJClassDecl c : prog.getClassDecls()) {
+            if (!names.add(c.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -13,7 +13,10 @@ public interface MethodInfo {
     /** returns the return type of the method */
     Type getReturnType();
 
+    /** returns the class, which declares the method */
+    ClassType getDeclaringClass();
 
-
+    /** returns the index of the method in the vtables of the declaring class and its subclasses */
+    int getVtableIndex();
 
 }
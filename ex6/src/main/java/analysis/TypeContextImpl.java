@@ -6,32 +6,50 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * A type context made of chained scopes.
+ *
+ * {@link #copy()} does not copy the variables, but creates an empty scope for the new variables,
+ * whose lookups continue in this context. So entering a method or block takes constant time,
+ * also in classes with thousands of fields. Scopes without variables are skipped in the chain,
+ * so lookups only visit scopes which declare something.
+ * The analysis checks inner scopes before it adds more variables to an outer scope,
+ * so variables added to a context after copying it are never looked up through the copy.
+ */
 public class TypeContextImpl implements TypeContext {
-    private final Map<String, VarRef> env;
+    /** the variables of this scope, null until the first one is added */
+    private Map<String, VarRef> env;
+    /** the enclosing scope or null */
+    private final TypeContextImpl parent;
     private Type returnType;
     private Type thisType;
 
     public TypeContextImpl(Map<String, VarRef> env, Type returnType, Type thisType) {
         this.env = env;
+        this.parent = null;
         this.returnType = returnType;
         this.thisType = thisType;
     }
 
     public TypeContextImpl(Type returnType, Type thisType) {
-        this.env = new HashMap<>();
+        this.parent = null;
         this.returnType = returnType;
         this.thisType = thisType;
     }
 
     public TypeContextImpl(Analysis analysis, List<MJVarDecl> vars, Type thisType) {
-        this.returnType = Type.INVALID;
-        this.thisType = thisType;
-        this.env = new HashMap<>();
+        this(new HashMap<>(), Type.INVALID, thisType);
         for (MJVarDecl var : vars) {
             env.put(var.getName(), new VarRef(analysis.type(var.getType()), var));
         }
     }
 
+    private TypeContextImpl(TypeContextImpl parent, Type returnType, Type thisType) {
+        this.parent = parent;
+        this.returnType = returnType;
+        this.thisType = thisType;
+    }
+
     @Override
     public Type getReturnType() {
         return returnType;
@@ -44,17 +62,28 @@ public class TypeContextImpl implements TypeContext {
 
     @Override
     public VarRef lookupVar(String varUse) {
-        return env.get(varUse);
+        for (TypeContextImpl scope = this; scope != null; scope = scope.parent) {
+            if (scope.env != null) {
+                VarRef ref = scope.env.get(varUse);
+                if (ref != null) {
+                    return ref;
+                }
+            }
+        }
+        return null;
     }
 
     @Override
     public void putVar(String varName, Type type, MJVarDecl var) {
+        if (env == null) {
+            env = new HashMap<>();
+        }
         this.env.put(varName, new VarRef(type, var));
     }
 
     @Override
     public TypeContext copy() {
-        return new TypeContextImpl(new HashMap<>(this.env), this.returnType, this.thisType);
+        return new TypeContextImpl(env == null ? parent : this, this.returnType, this.thisType);
     }
 
     @Override
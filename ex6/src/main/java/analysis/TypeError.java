@@ -5,14 +5,21 @@ import minijava.ast.MJElement;
 
 public class TypeError extends RuntimeException {
     private SourcePosition source;
+    /** the element with the error, null if the error was created with a position or was deserialized */
+    private transient MJElement element;
 
     public TypeError(String message, int line, int column) {
+        this(message, line, column, line, column);
+    }
+
+    public TypeError(String message, int line, int column, int endLine, int endColumn) {
         super(message);
-        this.source = new SourcePosition("", line, column, line, column);
+        this.source = new SourcePosition("", line, column, endLine, endColumn);
     }
 
     public TypeError(MJElement element, String message) {
         super(message);
+        this.element = element;
         while (element != null) {
         this.source = element.getSourcePosition();
             if (this.source != null) {
@@ -45,4 +52,8 @@ public class TypeError extends RuntimeException {
     public SourcePosition getSource() {
         return source;
     }
+
+    public MJElement getElement() {
+        return element;
+    }
 }
\ No newline at end of file
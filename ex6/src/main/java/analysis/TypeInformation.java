@@ -1,11 +1,37 @@
 package analysis;
 
+import minijava.ast.MJExpr;
+import minijava.ast.MJMethodDecl;
+import minijava.ast.MJVarDecl;
+
 import java.util.List;
 
+/**
+ * the results of the analysis of a program without type errors, for the translation.
+ */
 public interface TypeInformation {
 
+    /** the kinds of variables */
+    enum VarKind {
+        FIELD, PARAMETER, LOCAL
+    }
+
+    /** returns the classes of the program */
     List<ClassType> getClasses();
 
+    /**
+     * returns the static type of a checked expression, whose value might have to be converted:
+     * the sides of assignments and comparisons, returned values, receivers and arguments of method calls
+     */
+    Type getType(MJExpr e);
+
+    /** returns whether a variable is a field, a parameter or a local variable */
+    VarKind getVarKind(MJVarDecl v);
+
+    /** returns the information about a field */
+    FieldInfo getField(MJVarDecl field);
 
+    /** returns the information about a method */
+    MethodInfo getMethod(MJMethodDecl method);
 
 }
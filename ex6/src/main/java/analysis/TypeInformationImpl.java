@@ -0,0 +1,210 @@
+package analysis;
+
+import minijava.ast.*;
+
+import java.util.*;
+
+/**
+ * The type information of an analysis.
+ *
+ * Expression types and variable kinds are recorded while checking. The layouts of objects and vtables are built
+ * on first use, for each class from the layout of its super class: fields get the slots after the inherited fields
+ * and a method gets the vtable index of the overridden method or the next free index.
+ */
+class TypeInformationImpl implements TypeInformation {
+    private final Analysis analysis;
+    private final ClassTable classTable;
+    private final MJProgram prog;
+    private final Map<MJExpr, Type> exprTypes;
+    private final Map<MJVarDecl, VarKind> varKinds;
+    private final Map<MJClassDecl, Layout> layouts = new HashMap<>();
+    private final Map<MJVarDecl, FieldInfo> fields = new HashMap<>();
+    private final Map<MJMethodDecl, MethodInfo> methods = new HashMap<>();
+
+    /** the number of fields and the vtable indexes by method name of a class */
+    private static class Layout {
+        final int fieldCount;
+        final Map<String, Integer> vtable;
+
+        Layout(int fieldCount, Map<String, Integer> vtable) {
+            this.fieldCount = fieldCount;
+            this.vtable = vtable;
+        }
+    }
+
+    TypeInformationImpl(Analysis analysis, MJProgram prog, Map<MJExpr, Type> exprTypes, Map<MJVarDecl, VarKind> varKinds) {
+        this.analysis = analysis;
+        this.classTable = analysis.getClassTable();
+        this.prog = prog;
+        this.exprTypes = exprTypes;
+        this.varKinds = varKinds;
+    }
+
+    @Override
+    public List<ClassType> getClasses() {
+        List<ClassType> result = new ArrayList<>();
+        for (MJClassDecl c : prog.getClassDecls()) {
+            result.add(classType(c));
+        }
+        return result;
+    }
+
+    @Override
+    public Type getType(MJExpr e) {
+        Type t = exprTypes.get(e);
+        if (t == null) {
+            throw new IllegalArgumentException("No type recorded for expression " + e);
+        }
+        return t;
+    }
+
+    @Override
+    public VarKind getVarKind(MJVarDecl v) {
+        return varKinds.getOrDefault(v, VarKind.LOCAL);
+    }
+
+    @Override
+    public FieldInfo getField(MJVarDecl field) {
+        FieldInfo info = fields.get(field);
+        if (info == null) {
+            // builds the infos of all fields of the class
+            MJClassDecl c = (MJClassDecl) field.getParent().getParent();
+            int slot = layout(c).fieldCount - c.getFields().size();
+            for (MJVarDecl f : c.getFields()) {
+                fields.put(f, new Field(f, ++slot));
+            }
+            info = fields.get(field);
+        }
+        return info;
+    }
+
+    @Override
+    public MethodInfo getMethod(MJMethodDecl method) {
+        MethodInfo info = methods.get(method);
+        if (info == null) {
+            MJClassDecl c = (MJClassDecl) method.getParent().getParent();
+            ClassType declaringClass = classType(c);
+            Map<String, Integer> vtable = layout(c).vtable;
+            for (MJMethodDecl m : c.getMethods()) {
+                methods.put(m, new Method(m, declaringClass, vtable.get(m.getName())));
+            }
+            info = methods.get(method);
+        }
+        return info;
+    }
+
+    private ClassType classType(MJClassDecl c) {
+        ClassType t = classTable.lookupClass(c.getName());
+        return t != null && t.getClassDecl() == c ? t : new ClassType(classTable, c);
+    }
+
+    /** the layout of a class, the layouts of the super classes are built first */
+    private Layout layout(MJClassDecl c) {
+        Layout layout = layouts.get(c);
+        if (layout != null) {
+            return layout;
+        }
+        // the classes without layout, from the given class up, the hierarchy has no cycles
+        List<MJClassDecl> missing = new ArrayList<>();
+        for (MJClassDecl d = c; d != null && !layouts.containsKey(d); d = d.getDirectSuperClass()) {
+            missing.add(d);
+        }
+        for (int k = missing.size() - 1; k >= 0; k--) {
+            MJClassDecl d = missing.get(k);
+            Layout parent = d.getDirectSuperClass() == null
+                    ? new Layout(0, Collections.emptyMap())
+                    : layouts.get(d.getDirectSuperClass());
+            Map<String, Integer> vtable = parent.vtable;
+            for (MJMethodDecl m : d.getMethods()) {
+                if (!vtable.containsKey(m.getName())) {
+                    if (vtable == parent.vtable) {
+                        vtable = new HashMap<>(parent.vtable);
+                    }
+                    vtable.put(m.getName(), vtable.size());
+                }
+            }
+            layouts.put(d, new Layout(parent.fieldCount + d.getFields().size(), vtable));
+        }
+        return layouts.get(c);
+    }
+
+    private class Field implements FieldInfo {
+        private final MJVarDecl decl;
+        private final int slot;
+
+        Field(MJVarDecl decl, int slot) {
+            this.decl = decl;
+            this.slot = slot;
+        }
+
+        @Override
+        public String getName() {
+            return decl.getName();
+        }
+
+        @Override
+        public Type getType() {
+            return analysis.type(decl.getType());
+        }
+
+        @Override
+        public int getSlot() {
+            return slot;
+        }
+    }
+
+    private class Method implements MethodInfo {
+        private final MJMethodDecl decl;
+        private final ClassType declaringClass;
+        private final int vtableIndex;
+        private List<ParamInfo> parameters;
+
+        Method(MJMethodDecl decl, ClassType declaringClass, int vtableIndex) {
+            this.decl = decl;
+            this.declaringClass = declaringClass;
+            this.vtableIndex = vtableIndex;
+        }
+
+        @Override
+        public String getName() {
+            return decl.getName();
+        }
+
+        @Override
+        public List<ParamInfo> getParameters() {
+            if (parameters == null) {
+                parameters = new ArrayList<>();
+                for (MJVarDecl p : decl.getFormalParameters()) {
+                    Type t = analysis.type(p.getType());
+                    parameters.add(new ParamInfo() {
+                        @Override
+                        public String getName() {
+                            return p.getName();
+                        }
+
+                        @Override
+                        public Type getType() {
+                            return t;
+                        }
+                    });
+                }
+            }
+            return parameters;
+        }
+
+        @Override
+        public Type getReturnType() {
+            return analysis.type(decl.getReturnType());
+        }
+
+        @Override
+        public ClassType getDeclaringClass() {
+            return declaringClass;
+        }
+
+        @Override
+        public int getVtableIndex() {
+            return vtableIndex;
+        }
+    }
+}
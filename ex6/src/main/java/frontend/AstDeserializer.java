@@ -0,0 +1,477 @@
+package frontend;
+
+import minijava.ast.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static frontend.AstSerializer.*;
+
+/**
+ * Reads MiniJava ASTs written by {@link AstSerializer}.
+ *
+ * The records of a tree are in post-order, so each element is created from the elements on top of a stack,
+ * which also works for deeply nested programs. References to declarations, which are read later,
+ * are set as soon as the declaration is read.
+ */
+public class AstDeserializer {
+	private final InputStream in;
+	private final byte[] buffer = new byte[8192];
+	private int next = 0;
+	private int limit = 0;
+	/** the names read so far are interned, so equal names are identical like after parsing */
+	private final NameTable names;
+	private final List<String> strings = new ArrayList<>();
+	/** the declarations by number, null if only referenced so far */
+	private final List<MJElement> declarations = new ArrayList<>();
+	/** the elements referring to declarations, which were not read yet */
+	private final Map<Integer, List<MJElement>> pending = new HashMap<>();
+	private MJElement[] stack = new MJElement[64];
+	private int size = 0;
+	private int previousLine = 0;
+	private int previousColumn = 0;
+
+	/**
+	 * reads the header from the given stream, the stream is buffered by the deserializer.
+	 * Names are interned in the given table, so they are identical to the names of a parser using the same table.
+	 */
+	public AstDeserializer(InputStream in, NameTable names) throws IOException {
+		this.in = in;
+		this.names = names;
+		if (readInt() != MAGIC) {
+			throw new IOException("Not a serialized MiniJava AST.");
+		}
+		int version = varint();
+		if (version != VERSION) {
+			throw new IOException("Unsupported AST version " + version + ".");
+		}
+	}
+
+	/** reads a single tree from a byte array */
+	public static MJElement fromBytes(byte[] bytes, NameTable names) throws IOException {
+		return new AstDeserializer(new ByteArrayInputStream(bytes), names).read();
+	}
+
+	/** reads the next tree, returns null at the end of the stream */
+	public MJElement read() throws IOException {
+		if (next == limit && !fill()) {
+			return null;
+		}
+		int tag = readByte();
+		while (tag != END) {
+			try {
+				push(element(tag));
+			} catch (ClassCastException e) {
+				throw new IOException("Invalid AST, unexpected element type.", e);
+			}
+			tag = readByte();
+		}
+		if (size != 1) {
+			throw new IOException("Invalid tree with " + size + " roots.");
+		}
+		return pop();
+	}
+
+	/** reads the rest of the record with the given tag and creates the element */
+	private MJElement element(int tag) throws IOException {
+		long pos = position(tag);
+		MJElement e;
+		switch (tag & TAG_MASK) {
+			case AND:
+				e = MJ.And();
+				break;
+			case ARRAY_LENGTH:
+				e = MJ.ArrayLength((MJExpr) pop());
+				break;
+			case ARRAY_LOOKUP: {
+				MJExpr index = (MJExpr) pop();
+				e = MJ.ArrayLookup((MJExpr) pop(), index);
+				break;
+			}
+			case BLOCK: {
+				MJBlock list = MJ.Block();
+				int first = popList();
+				for (int i = first; i < size; i++) {
+					list.add((MJStatement) stack[i]);
+				}
+				drop(first);
+				e = list;
+				break;
+			}
+			case BOOL_CONST:
+				e = MJ.BoolConst(varint() != 0);
+				break;
+			case CLASS_DECL: {
+				MJMethodDeclList methods = (MJMethodDeclList) pop();
+				MJVarDeclList fields = (MJVarDeclList) pop();
+				MJClassDecl c = MJ.ClassDecl(string(), (MJExtended) pop(), fields, methods);
+				declaration(c);
+				reference(c);
+				e = c;
+				break;
+			}
+			case CLASS_DECL_LIST: {
+				MJClassDeclList list = MJ.ClassDeclList();
+				int first = popList();
+				for (int i = first; i < size; i++) {
+					list.add((MJClassDecl) stack[i]);
+				}
+				drop(first);
+				e = list;
+				break;
+			}
+			case DIV:
+				e = MJ.Div();
+				break;
+			case EQUALS:
+				e = MJ.Equals();
+				break;
+			case EXPR_BINARY: {
+				MJExpr right = (MJExpr) pop();
+				MJOperator operator = (MJOperator) pop();
+				e = MJ.ExprBinary((MJExpr) pop(), operator, right);
+				break;
+			}
+			case EXPR_LIST: {
+				MJExprList list = MJ.ExprList();
+				int first = popList();
+				for (int i = first; i < size; i++) {
+					list.add((MJExpr) stack[i]);
+				}
+				drop(first);
+				e = list;
+				break;
+			}
+			case EXPR_NULL:
+				e = MJ.ExprNull();
+				break;
+			case EXPR_THIS:
+				e = MJ.ExprThis();
+				break;
+			case EXPR_UNARY: {
+				MJExpr expr = (MJExpr) pop();
+				e = MJ.ExprUnary((MJUnaryOperator) pop(), expr);
+				break;
+			}
+			case EXTENDS_CLASS:
+				e = MJ.ExtendsClass(string());
+				break;
+			case EXTENDS_NOTHING:
+				e = MJ.ExtendsNothing();
+				break;
+			case FIELD_ACCESS: {
+				MJFieldAccess f = MJ.FieldAccess((MJExpr) pop(), string());
+				reference(f);
+				e = f;
+				break;
+			}
+			case LESS:
+				e = MJ.Less();
+				break;
+			case MAIN_CLASS: {
+				MJBlock body = (MJBlock) pop();
+				String name = string();
+				e = MJ.MainClass(name, string(), body);
+				break;
+			}
+			case METHOD_CALL: {
+				MJExprList arguments = (MJExprList) pop();
+				MJMethodCall m = MJ.MethodCall((MJExpr) pop(), string(), arguments);
+				reference(m);
+				e = m;
+				break;
+			}
+			case METHOD_DECL: {
+				MJBlock body = (MJBlock) pop();
+				MJVarDeclList parameters = (MJVarDeclList) pop();
+				e = MJ.MethodDecl((MJType) pop(), string(), parameters, body);
+				declaration(e);
+				break;
+			}
+			case METHOD_DECL_LIST: {
+				MJMethodDeclList list = MJ.MethodDeclList();
+				int first = popList();
+				for (int i = first; i < size; i++) {
+					list.add((MJMethodDecl) stack[i]);
+				}
+				drop(first);
+				e = list;
+				break;
+			}
+			case MINUS:
+				e = MJ.Minus();
+				break;
+			case NEGATE:
+				e = MJ.Negate();
+				break;
+			case NEW_INT_ARRAY:
+				e = MJ.NewIntArray((MJExpr) pop());
+				break;
+			case NEW_OBJECT: {
+				MJNewObject n = MJ.NewObject(string());
+				reference(n);
+				e = n;
+				break;
+			}
+			case NUMBER:
+				e = MJ.Number(zigzag(varint()));
+				break;
+			case PLUS:
+				e = MJ.Plus();
+				break;
+			case PROGRAM: {
+				MJClassDeclList classDecls = (MJClassDeclList) pop();
+				e = MJ.Program((MJMainClass) pop(), classDecls);
+				break;
+			}
+			case STMT_ASSIGN: {
+				MJExpr right = (MJExpr) pop();
+				e = MJ.StmtAssign((MJExpr) pop(), right);
+				break;
+			}
+			case STMT_EXPR:
+				e = MJ.StmtExpr((MJExpr) pop());
+				break;
+			case STMT_IF: {
+				MJStatement ifFalse = (MJStatement) pop();
+				MJStatement ifTrue = (MJStatement) pop();
+				e = MJ.StmtIf((MJExpr) pop(), ifTrue, ifFalse);
+				break;
+			}
+			case STMT_PRINT:
+				e = MJ.StmtPrint((MJExpr) pop());
+				break;
+			case STMT_RETURN:
+				e = MJ.StmtReturn((MJExpr) pop());
+				break;
+			case STMT_WHILE: {
+				MJStatement body = (MJStatement) pop();
+				e = MJ.StmtWhile((MJExpr) pop(), body);
+				break;
+			}
+			case TIMES:
+				e = MJ.Times();
+				break;
+			case TYPE_BOOL:
+				e = MJ.TypeBool();
+				break;
+			case TYPE_CLASS: {
+				MJTypeClass t = MJ.TypeClass(string());
+				reference(t);
+				e = t;
+				break;
+			}
+			case TYPE_INT:
+				e = MJ.TypeInt();
+				break;
+			case TYPE_INT_ARRAY:
+				e = MJ.TypeIntArray();
+				break;
+			case UNARY_MINUS:
+				e = MJ.UnaryMinus();
+				break;
+			case VAR_DECL:
+				e = MJ.VarDecl((MJType) pop(), string());
+				declaration(e);
+				break;
+			case VAR_DECL_LIST: {
+				MJVarDeclList list = MJ.VarDeclList();
+				int first = popList();
+				for (int i = first; i < size; i++) {
+					list.add((MJVarDecl) stack[i]);
+				}
+				drop(first);
+				e = list;
+				break;
+			}
+			case VAR_USE: {
+				MJVarUse v = MJ.VarUse(string());
+				reference(v);
+				e = v;
+				break;
+			}
+			default:
+				throw new IOException("Invalid AST tag " + tag + ".");
+		}
+		e.setPackedPosition(pos);
+		return e;
+	}
+
+	/** sets the attribute of e, which refers to the given declaration */
+	private static void setReference(MJElement e, MJElement declaration) {
+		if (e instanceof MJVarUse) {
+			((MJVarUse) e).setVariableDeclaration((MJVarDecl) declaration);
+		} else if (e instanceof MJFieldAccess) {
+			((MJFieldAccess) e).setVariableDeclaration((MJVarDecl) declaration);
+		} else if (e instanceof MJMethodCall) {
+			((MJMethodCall) e).setMethodDeclaration((MJMethodDecl) declaration);
+		} else if (e instanceof MJNewObject) {
+			((MJNewObject) e).setClassDeclaration((MJClassDecl) declaration);
+		} else if (e instanceof MJTypeClass) {
+			((MJTypeClass) e).setClassDeclaration((MJClassDecl) declaration);
+		} else {
+			((MJClassDecl) e).setDirectSuperClass((MJClassDecl) declaration);
+		}
+	}
+
+	/** reads a position, which is encoded like described in {@link AstSerializer} */
+	private long position(int tag) throws IOException {
+		int line = previousLine;
+		int column;
+		if ((tag & SAME_LINE) != 0) {
+			column = previousColumn + zigzag(varint());
+		} else {
+			line += zigzag(varint());
+			column = varint();
+		}
+		int endLine = line;
+		int endColumn;
+		if ((tag & SINGLE_LINE) != 0) {
+			endColumn = column + zigzag(varint());
+		} else {
+			endLine += varint();
+			endColumn = varint();
+		}
+		previousLine = line;
+		previousColumn = column;
+		return SourcePositions.pack(line, column, endLine, endColumn);
+	}
+
+	private String string() throws IOException {
+		int index = varint();
+		if (index > 0) {
+			if (index > strings.size()) {
+				throw new IOException("Invalid string index " + index + ".");
+			}
+			return strings.get(index - 1);
+		}
+		int length = varint();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) varint();
+		}
+		String s = names.intern(chars, 0, length);
+		strings.add(s);
+		return s;
+	}
+
+	/** registers a declaration and sets the references to it read so far */
+	private void declaration(MJElement declaration) throws IOException {
+		int number = varint();
+		if (number == 0) {
+			declarations.add(declaration);
+			return;
+		}
+		int id = number - 1;
+		if (id >= declarations.size()) {
+			throw new IOException("Invalid declaration number " + number + ".");
+		}
+		declarations.set(id, declaration);
+		List<MJElement> references = pending.remove(id);
+		if (references != null) {
+			for (MJElement r : references) {
+				setReference(r, declaration);
+			}
+		}
+	}
+
+	/** reads the reference of e to a declaration and sets it now, or when the declaration is read */
+	private void reference(MJElement e) throws IOException {
+		int number = varint();
+		if (number == 0) {
+			return;
+		}
+		int id = number - 1;
+		if (id == declarations.size()) {
+			declarations.add(null);
+		} else if (id > declarations.size()) {
+			throw new IOException("Invalid declaration number " + number + ".");
+		}
+		MJElement declaration = declarations.get(id);
+		if (declaration != null) {
+			setReference(e, declaration);
+		} else {
+			pending.computeIfAbsent(id, k -> new ArrayList<>()).add(e);
+		}
+	}
+
+	private void push(MJElement e) {
+		if (size == stack.length) {
+			stack = Arrays.copyOf(stack, 2 * size);
+		}
+		stack[size++] = e;
+	}
+
+	private MJElement pop() throws IOException {
+		if (size == 0) {
+			throw new IOException("Invalid AST, missing element.");
+		}
+		MJElement e = stack[--size];
+		stack[size] = null;
+		return e;
+	}
+
+	/** reads the length of a list and returns the index of its first element on the stack */
+	private int popList() throws IOException {
+		int length = varint();
+		if (length > size) {
+			throw new IOException("Invalid AST, list is longer than the elements read.");
+		}
+		return size - length;
+	}
+
+	/** removes the elements from the given index to the top of the stack */
+	private void drop(int first) {
+		Arrays.fill(stack, first, size, null);
+		size = first;
+	}
+
+	private static int zigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private int varint() throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Invalid varint.");
+	}
+
+	private int readInt() throws IOException {
+		int result = 0;
+		for (int i = 0; i < 4; i++) {
+			result = result << 8 | readByte();
+		}
+		return result;
+	}
+
+	private int readByte() throws IOException {
+		if (next == limit && !fill()) {
+			throw new EOFException();
+		}
+		return buffer[next++] & 0xFF;
+	}
+
+	/** reads more input into the buffer, returns false at the end of the stream */
+	private boolean fill() throws IOException {
+		int n = in.read(buffer, 0, buffer.length);
+		while (n == 0) {
+			n = in.read(buffer, 0, buffer.length);
+		}
+		next = 0;
+		limit = Math.max(n, 0);
+		return n > 0;
+	}
+}
@@ -2,44 +2,86 @@ package frontend;
 
 import minijava.ast.*;
 
-import java.io.PrintWriter;
-
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Prints MiniJava ASTs as source code.
+ *
+ * The visit methods do not print their children directly, but put them on an explicit stack
+ * (together with the surrounding text), so that deeply nested programs cannot overflow the call stack.
+ */
 public class AstPrinter implements MJElement.Visitor {
+    /** layout markers, which can be used as parts */
+    private static final Object NEWLINE = new Object();
+    private static final Object INDENT = new Object();
+    private static final Object DEDENT = new Object();
+
     private StringBuilder out = new StringBuilder();
     private int indent = 0;
+    /** the parts still to print, the next one is on top. A part is an element, a string or a layout marker */
+    private final Deque<Object> parts = new ArrayDeque<>();
+    /** when true, printing stops at the end of the first line */
+    private boolean firstLineOnly;
+    private boolean done;
 
     private void println() {
         out.append("\n");
         for (int i=0; i<indent; i++) {
             out.append("    ");
         }
+        done = firstLineOnly;
     }
 
     private void print(String s) {
         out.append(s);
     }
 
+    /** schedules the given parts, so that they are printed in order before all parts scheduled earlier */
+    private void emit(Object... ps) {
+        for (int i = ps.length - 1; i >= 0; i--) {
+            parts.push(ps[i]);
+        }
+    }
 
-    private void println(String s) {
-        out.append(s);
-        println();
+    private void emit(List<Object> ps) {
+        emit(ps.toArray());
+    }
+
+    private void run(MJElement e) {
+        e.accept(this);
+        while (!parts.isEmpty() && !done) {
+            Object part = parts.pop();
+            if (part instanceof MJElement) {
+                ((MJElement) part).accept(this);
+            } else if (part == NEWLINE) {
+                println();
+            } else if (part == INDENT) {
+                indent++;
+            } else if (part == DEDENT) {
+                indent--;
+            } else {
+                print((String) part);
+            }
+        }
     }
 
 
     @Override
     public void visit(MJClassDeclList classDeclList) {
+        List<Object> ps = new ArrayList<>();
         for (MJClassDecl c : classDeclList) {
-            c.accept(this);
-            println();
+            ps.add(c);
+            ps.add(NEWLINE);
         }
-
+        emit(ps);
     }
 
     @Override
     public void visit(MJNewIntArray newIntArray) {
-        print("(new int[");
-        newIntArray.getArraySize().accept(this);
-        print("])");
+        emit("(new int[", newIntArray.getArraySize(), "])");
     }
 
     @Override
@@ -49,10 +91,7 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJStmtAssign stmtAssign) {
-        stmtAssign.getLeft().accept(this);
-        print(" = ");
-        stmtAssign.getRight().accept(this);
-        println(";");
+        emit(stmtAssign.getLeft(), " = ", stmtAssign.getRight(), ";", NEWLINE);
     }
 
     @Override
@@ -62,10 +101,13 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJVarDeclList varDeclList) {
+        List<Object> ps = new ArrayList<>();
         for (MJVarDecl v : varDeclList) {
-            v.accept(this);
-            println(";");
+            ps.add(v);
+            ps.add(";");
+            ps.add(NEWLINE);
         }
+        emit(ps);
     }
 
     @Override
@@ -77,15 +119,10 @@ public class AstPrinter implements MJElement.Visitor {
     public void visit(MJMainClass mainClass) {
         print("class ");
         print(mainClass.getName());
-        indent++;
-        println(" {");
-        print("public static void main(String[] ");
-        print(mainClass.getArgsName());
-        print(")");
-        mainClass.getMainBody().accept(this);
-        indent--;
-        println();
-        println("}");
+        emit(INDENT, " {", NEWLINE,
+                "public static void main(String[] ", mainClass.getArgsName(), ")",
+                mainClass.getMainBody(),
+                DEDENT, NEWLINE, "}", NEWLINE);
     }
 
     @Override
@@ -95,13 +132,14 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJExprList exprList) {
+        List<Object> ps = new ArrayList<>();
         for (MJExpr expr : exprList) {
             if (expr != exprList.get(0)) {
-                print(", ");
+                ps.add(", ");
             }
-            expr.accept(this);
+            ps.add(expr);
         }
-
+        emit(ps);
     }
 
     @Override
@@ -111,10 +149,7 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJStmtWhile stmtWhile) {
-        print("while (");
-        stmtWhile.getCondition().accept(this);
-        print(") ");
-        stmtWhile.getLoopBody().accept(this);
+        emit("while (", stmtWhile.getCondition(), ") ", stmtWhile.getLoopBody());
     }
 
     @Override
@@ -126,20 +161,12 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJArrayLookup arrayLookup) {
-        arrayLookup.getArrayExpr().accept(this);
-        print("[");
-        arrayLookup.getArrayIndex().accept(this);
-        print("]");
+        emit(arrayLookup.getArrayExpr(), "[", arrayLookup.getArrayIndex(), "]");
     }
 
     @Override
     public void visit(MJMethodCall methodCall) {
-        methodCall.getReceiver().accept(this);
-        print(".");
-        print(methodCall.getMethodName());
-        print("(");
-        methodCall.getArguments().accept(this);
-        print(")");
+        emit(methodCall.getReceiver(), ".", methodCall.getMethodName(), "(", methodCall.getArguments(), ")");
     }
 
     @Override
@@ -166,24 +193,17 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJExprUnary exprUnary) {
-        print("(");
-        exprUnary.getUnaryOperator().accept(this);
-        print(" ");
-        exprUnary.getExpr().accept(this);
-        print(")");
+        emit("(", exprUnary.getUnaryOperator(), " ", exprUnary.getExpr(), ")");
     }
 
     @Override
     public void visit(MJStmtReturn stmtReturn) {
-        print("return ");
-        stmtReturn.getResult().accept(this);
-        println(";");
+        emit("return ", stmtReturn.getResult(), ";", NEWLINE);
     }
 
     @Override
     public void visit(MJProgram program) {
-        program.getMainClass().accept(this);
-        program.getClassDecls().accept(this);
+        emit(program.getMainClass(), program.getClassDecls());
     }
 
     @Override
@@ -203,16 +223,12 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJVarDecl varDecl) {
-        varDecl.getType().accept(this);
-        print(" ");
-        print(varDecl.getName());
+        emit(varDecl.getType(), " ", varDecl.getName());
     }
 
     @Override
     public void visit(MJFieldAccess fieldAccess) {
-        fieldAccess.getReceiver().accept(this);
-        print(".");
-        print(fieldAccess.getFieldName());
+        emit(fieldAccess.getReceiver(), ".", fieldAccess.getFieldName());
     }
 
     @Override
@@ -227,23 +243,22 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJMethodDeclList methodDeclList) {
+        List<Object> ps = new ArrayList<>();
         for (MJMethodDecl m : methodDeclList) {
-            m.accept(this);
-            println();
+            ps.add(m);
+            ps.add(NEWLINE);
         }
+        emit(ps);
     }
 
     @Override
     public void visit(MJArrayLength arrayLength) {
-        arrayLength.getArrayExpr().accept(this);
-        print(".length");
+        emit(arrayLength.getArrayExpr(), ".length");
     }
 
     @Override
     public void visit(MJStmtPrint stmtPrint) {
-        print("System.out.println(");
-        stmtPrint.getPrinted().accept(this);
-        println(");");
+        emit("System.out.println(", stmtPrint.getPrinted(), ");", NEWLINE);
     }
 
     @Override
@@ -258,29 +273,27 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJExprBinary exprBinary) {
-        print("(");
-        exprBinary.getLeft().accept(this);
-        print(" ");
-        exprBinary.getOperator().accept(this);
-        print(" ");
-        exprBinary.getRight().accept(this);
-        print(")");
+        emit("(", exprBinary.getLeft(), " ", exprBinary.getOperator(), " ", exprBinary.getRight(), ")");
     }
 
     @Override
     public void visit(MJBlock block) {
-        indent++;
-        println("{");
+        List<Object> ps = new ArrayList<>();
+        ps.add(INDENT);
+        ps.add("{");
+        ps.add(NEWLINE);
         for (MJStatement s : block) {
-            s.accept(this);
+            ps.add(s);
             if (s instanceof MJVarDecl) {
-                println(";");
+                ps.add(";");
+                ps.add(NEWLINE);
             }
         }
-        indent--;
-        println();
-        println("}");
-
+        ps.add(DEDENT);
+        ps.add(NEWLINE);
+        ps.add("}");
+        ps.add(NEWLINE);
+        emit(ps);
     }
 
     @Override
@@ -295,13 +308,7 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJStmtIf stmtIf) {
-        print("if (");
-        stmtIf.getCondition().accept(this);
-        print(") ");
-        stmtIf.getIfTrue().accept(this);
-        print("else ");
-        stmtIf.getIfFalse().accept(this);
-
+        emit("if (", stmtIf.getCondition(), ") ", stmtIf.getIfTrue(), "else ", stmtIf.getIfFalse());
     }
 
     @Override
@@ -316,47 +323,62 @@ public class AstPrinter implements MJElement.Visitor {
 
     @Override
     public void visit(MJStmtExpr stmtExpr) {
-        stmtExpr.getExpr().accept(this);
-        println(";");
+        emit(stmtExpr.getExpr(), ";", NEWLINE);
     }
 
     @Override
     public void visit(MJMethodDecl methodDecl) {
-        methodDecl.getReturnType().accept(this);
-        print(" ");
-        print(methodDecl.getName());
-        print("(");
+        List<Object> ps = new ArrayList<>();
+        ps.add(methodDecl.getReturnType());
+        ps.add(" ");
+        ps.add(methodDecl.getName());
+        ps.add("(");
         for (MJVarDecl p : methodDecl.getFormalParameters()) {
             if (p != methodDecl.getFormalParameters().get(0)) {
-                print(", ");
+                ps.add(", ");
             }
-            p.accept(this);
+            ps.add(p);
         }
-        print(") ");
-        methodDecl.getMethodBody().accept(this);
+        ps.add(") ");
+        ps.add(methodDecl.getMethodBody());
+        emit(ps);
     }
 
     @Override
     public void visit(MJClassDecl classDecl) {
-        print("class ");
-        print(classDecl.getName());
-        print(" ");
-        classDecl.getExtended().accept(this);
-        indent++;
-        println(" {");
+        List<Object> ps = new ArrayList<>();
+        ps.add("class ");
+        ps.add(classDecl.getName());
+        ps.add(" ");
+        ps.add(classDecl.getExtended());
+        ps.add(INDENT);
+        ps.add(" {");
+        ps.add(NEWLINE);
         for (MJVarDecl v : classDecl.getFields()) {
-            v.accept(this);
-            println(";");
+            ps.add(v);
+            ps.add(";");
+            ps.add(NEWLINE);
         }
-        classDecl.getMethods().accept(this);
-        indent--;
-        println("}");
-
+        ps.add(classDecl.getMethods());
+        ps.add(DEDENT);
+        ps.add("}");
+        ps.add(NEWLINE);
+        emit(ps);
     }
 
     public static String print(MJElement ast) {
         AstPrinter printer = new AstPrinter();
-        ast.accept(printer);
+        printer.run(ast);
         return printer.out.toString();
     }
+
+    /** prints only the first line of an element, without printing the rest of it */
+    public static String printFirstLine(MJElement ast) {
+        AstPrinter printer = new AstPrinter();
+        printer.firstLineOnly = true;
+        printer.run(ast);
+        String str = printer.out.toString();
+        int end = str.indexOf('\n');
+        return end < 0 ? str : str.substring(0, end);
+    }
 }
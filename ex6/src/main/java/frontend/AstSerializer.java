@@ -0,0 +1,607 @@
+package frontend;
+
+import minijava.ast.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes MiniJava ASTs in a compact binary format, which is read by {@link AstDeserializer}.
+ *
+ * The stream starts with a header, followed by any number of trees. Each tree is a sequence of element records
+ * in post-order, so the reader can build every element from its already read children, followed by an END tag.
+ * A record is a tag byte, the source position and the fields of the element:
+ * <ul>
+ * <li>numbers are written as varints (signed values zigzag encoded),</li>
+ * <li>the start of a position is relative to the start of the previous record and the end relative to the start.
+ * Two bits of the tag byte mark positions starting on the line of the previous record and positions on a single line,
+ * so most positions only take two bytes,</li>
+ * <li>strings are indexes into a string table, which is built while writing. A new string is written
+ * as index 0 followed by its characters,</li>
+ * <li>declarations (classes, methods and variables) are numbered in the order they are first mentioned,
+ * so the attributes directSuperClass, variableDeclaration, methodDeclaration and classDeclaration
+ * are written as references to these numbers, even if the declaration comes later in the stream.</li>
+ * </ul>
+ * The tables are shared by all trees of a stream, so references between trees written to the same stream are kept.
+ * References to declarations, which are never written, are read as null.
+ * Elements are walked with an explicit stack, so deeply nested programs cannot overflow the call stack.
+ */
+public class AstSerializer implements MJElement.Visitor, Closeable {
+	static final int MAGIC = 0x4d4a4153; // "MJAS"
+	static final int VERSION = 1;
+
+	/** flags in the tag byte */
+	static final int SAME_LINE = 0x40;
+	static final int SINGLE_LINE = 0x80;
+	static final int TAG_MASK = 0x3F;
+
+	/** tags of the element records */
+	static final int END = 0;
+	static final int AND = 1;
+	static final int ARRAY_LENGTH = 2;
+	static final int ARRAY_LOOKUP = 3;
+	static final int BLOCK = 4;
+	static final int BOOL_CONST = 5;
+	static final int CLASS_DECL = 6;
+	static final int CLASS_DECL_LIST = 7;
+	static final int DIV = 8;
+	static final int EQUALS = 9;
+	static final int EXPR_BINARY = 10;
+	static final int EXPR_LIST = 11;
+	static final int EXPR_NULL = 12;
+	static final int EXPR_THIS = 13;
+	static final int EXPR_UNARY = 14;
+	static final int EXTENDS_CLASS = 15;
+	static final int EXTENDS_NOTHING = 16;
+	static final int FIELD_ACCESS = 17;
+	static final int LESS = 18;
+	static final int MAIN_CLASS = 19;
+	static final int METHOD_CALL = 20;
+	static final int METHOD_DECL = 21;
+	static final int METHOD_DECL_LIST = 22;
+	static final int MINUS = 23;
+	static final int NEGATE = 24;
+	static final int NEW_INT_ARRAY = 25;
+	static final int NEW_OBJECT = 26;
+	static final int NUMBER = 27;
+	static final int PLUS = 28;
+	static final int PROGRAM = 29;
+	static final int STMT_ASSIGN = 30;
+	static final int STMT_EXPR = 31;
+	static final int STMT_IF = 32;
+	static final int STMT_PRINT = 33;
+	static final int STMT_RETURN = 34;
+	static final int STMT_WHILE = 35;
+	static final int TIMES = 36;
+	static final int TYPE_BOOL = 37;
+	static final int TYPE_CLASS = 38;
+	static final int TYPE_INT = 39;
+	static final int TYPE_INT_ARRAY = 40;
+	static final int UNARY_MINUS = 41;
+	static final int VAR_DECL = 42;
+	static final int VAR_DECL_LIST = 43;
+	static final int VAR_USE = 44;
+
+	/** marks that the element below it on the stack is complete and its record is written next */
+	private static final Object EXIT = new Object();
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[8192];
+	private int count = 0;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<MJElement, Integer> declarations = new IdentityHashMap<>();
+	private final Deque<Object> todo = new ArrayDeque<>();
+	/** true, while the children of an element are scheduled, false while its record is written */
+	private boolean entering;
+	private int previousLine = 0;
+	private int previousColumn = 0;
+
+	/** starts a stream with the header, the records are buffered by the serializer until flush or close */
+	public AstSerializer(OutputStream out) {
+		this.out = out;
+		writeInt(MAGIC);
+		varint(VERSION);
+	}
+
+	/** serializes a single tree to a byte array */
+	public static byte[] toBytes(MJElement root) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (AstSerializer serializer = new AstSerializer(bytes)) {
+			serializer.write(root);
+		}
+		return bytes.toByteArray();
+	}
+
+	/** writes the tree below the given element (which can be any element, not only a program) */
+	public void write(MJElement root) throws IOException {
+		try {
+			todo.push(root);
+			while (!todo.isEmpty()) {
+				Object next = todo.pop();
+				MJElement e;
+				if (next == EXIT) {
+					e = (MJElement) todo.pop();
+					entering = false;
+				} else {
+					e = (MJElement) next;
+					todo.push(e);
+					todo.push(EXIT);
+					entering = true;
+				}
+				e.accept(this);
+			}
+			varint(END);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			todo.clear();
+		}
+	}
+
+	/** writes the buffered records to the underlying stream and flushes it */
+	public void flush() throws IOException {
+		writeBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writeBuffer();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * schedules the children of an element, so the first one is written first.
+	 * Returns true, when entering the element, then the record of the element is not written yet.
+	 */
+	private boolean children(MJElement... children) {
+		if (entering) {
+			for (int i = children.length - 1; i >= 0; i--) {
+				todo.push(children[i]);
+			}
+		}
+		return entering;
+	}
+
+	/** schedules the elements of a list or writes the record of the list with its size */
+	private void list(int tag, MJElement list, List<? extends MJElement> elements) {
+		if (entering) {
+			for (int i = elements.size() - 1; i >= 0; i--) {
+				todo.push(elements.get(i));
+			}
+		} else {
+			record(tag, list);
+			varint(elements.size());
+		}
+	}
+
+	/** starts the record of an element with its tag and position */
+	private void record(int tag, MJElement e) {
+		long pos = e.getPackedPosition();
+		int line = SourcePositions.getLine(pos);
+		int column = SourcePositions.getColumn(pos);
+		int lineSpan = SourcePositions.getEndLine(pos) - line;
+		int endColumn = SourcePositions.getEndColumn(pos);
+		writeByte(tag | (line == previousLine ? SAME_LINE : 0) | (lineSpan == 0 ? SINGLE_LINE : 0));
+		if (line == previousLine) {
+			varint(zigzag(column - previousColumn));
+		} else {
+			varint(zigzag(line - previousLine));
+			varint(column);
+		}
+		if (lineSpan == 0) {
+			varint(zigzag(endColumn - column));
+		} else {
+			varint(lineSpan);
+			varint(endColumn);
+		}
+		previousLine = line;
+		previousColumn = column;
+	}
+
+	private void string(String s) {
+		Integer index = strings.get(s);
+		if (index != null) {
+			varint(index);
+			return;
+		}
+		strings.put(s, strings.size() + 1);
+		varint(0);
+		varint(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			varint(s.charAt(i));
+		}
+	}
+
+	/** the number of a declaration, 0 if it was not mentioned before */
+	private void declaration(MJElement declaration) {
+		Integer id = declarations.get(declaration);
+		if (id == null) {
+			declarations.put(declaration, declarations.size());
+			varint(0);
+		} else {
+			varint(id + 1);
+		}
+	}
+
+	/** a reference to a declaration, 0 for null */
+	private void reference(MJElement declaration) {
+		if (declaration == null) {
+			varint(0);
+			return;
+		}
+		Integer id = declarations.get(declaration);
+		if (id == null) {
+			id = declarations.size();
+			declarations.put(declaration, id);
+		}
+		varint(id + 1);
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private void varint(int value) {
+		while ((value & ~0x7F) != 0) {
+			writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		writeByte(value);
+	}
+
+	private void writeInt(int value) {
+		writeByte(value >>> 24);
+		writeByte(value >>> 16);
+		writeByte(value >>> 8);
+		writeByte(value);
+	}
+
+	private void writeByte(int value) {
+		if (count == buffer.length) {
+			try {
+				writeBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		buffer[count++] = (byte) value;
+	}
+
+	private void writeBuffer() throws IOException {
+		out.write(buffer, 0, count);
+		count = 0;
+	}
+
+	@Override
+	public void visit(MJAnd e) {
+		if (!children()) {
+			record(AND, e);
+		}
+	}
+
+	@Override
+	public void visit(MJArrayLength e) {
+		if (!children(e.getArrayExpr())) {
+			record(ARRAY_LENGTH, e);
+		}
+	}
+
+	@Override
+	public void visit(MJArrayLookup e) {
+		if (!children(e.getArrayExpr(), e.getArrayIndex())) {
+			record(ARRAY_LOOKUP, e);
+		}
+	}
+
+	@Override
+	public void visit(MJBlock e) {
+		list(BLOCK, e, e);
+	}
+
+	@Override
+	public void visit(MJBoolConst e) {
+		if (!children()) {
+			record(BOOL_CONST, e);
+			varint(e.getBoolValue() ? 1 : 0);
+		}
+	}
+
+	@Override
+	public void visit(MJClassDecl e) {
+		if (!children(e.getExtended(), e.getFields(), e.getMethods())) {
+			record(CLASS_DECL, e);
+			string(e.getName());
+			declaration(e);
+			reference(e.getDirectSuperClass());
+		}
+	}
+
+	@Override
+	public void visit(MJClassDeclList e) {
+		list(CLASS_DECL_LIST, e, e);
+	}
+
+	@Override
+	public void visit(MJDiv e) {
+		if (!children()) {
+			record(DIV, e);
+		}
+	}
+
+	@Override
+	public void visit(MJEquals e) {
+		if (!children()) {
+			record(EQUALS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJExprBinary e) {
+		if (!children(e.getLeft(), e.getOperator(), e.getRight())) {
+			record(EXPR_BINARY, e);
+		}
+	}
+
+	@Override
+	public void visit(MJExprList e) {
+		list(EXPR_LIST, e, e);
+	}
+
+	@Override
+	public void visit(MJExprNull e) {
+		if (!children()) {
+			record(EXPR_NULL, e);
+		}
+	}
+
+	@Override
+	public void visit(MJExprThis e) {
+		if (!children()) {
+			record(EXPR_THIS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJExprUnary e) {
+		if (!children(e.getUnaryOperator(), e.getExpr())) {
+			record(EXPR_UNARY, e);
+		}
+	}
+
+	@Override
+	public void visit(MJExtendsClass e) {
+		if (!children()) {
+			record(EXTENDS_CLASS, e);
+			string(e.getName());
+		}
+	}
+
+	@Override
+	public void visit(MJExtendsNothing e) {
+		if (!children()) {
+			record(EXTENDS_NOTHING, e);
+		}
+	}
+
+	@Override
+	public void visit(MJFieldAccess e) {
+		if (!children(e.getReceiver())) {
+			record(FIELD_ACCESS, e);
+			string(e.getFieldName());
+			reference(e.getVariableDeclaration());
+		}
+	}
+
+	@Override
+	public void visit(MJLess e) {
+		if (!children()) {
+			record(LESS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJMainClass e) {
+		if (!children(e.getMainBody())) {
+			record(MAIN_CLASS, e);
+			string(e.getName());
+			string(e.getArgsName());
+		}
+	}
+
+	@Override
+	public void visit(MJMethodCall e) {
+		if (!children(e.getReceiver(), e.getArguments())) {
+			record(METHOD_CALL, e);
+			string(e.getMethodName());
+			reference(e.getMethodDeclaration());
+		}
+	}
+
+	@Override
+	public void visit(MJMethodDecl e) {
+		if (!children(e.getReturnType(), e.getFormalParameters(), e.getMethodBody())) {
+			record(METHOD_DECL, e);
+			string(e.getName());
+			declaration(e);
+		}
+	}
+
+	@Override
+	public void visit(MJMethodDeclList e) {
+		list(METHOD_DECL_LIST, e, e);
+	}
+
+	@Override
+	public void visit(MJMinus e) {
+		if (!children()) {
+			record(MINUS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJNegate e) {
+		if (!children()) {
+			record(NEGATE, e);
+		}
+	}
+
+	@Override
+	public void visit(MJNewIntArray e) {
+		if (!children(e.getArraySize())) {
+			record(NEW_INT_ARRAY, e);
+		}
+	}
+
+	@Override
+	public void visit(MJNewObject e) {
+		if (!children()) {
+			record(NEW_OBJECT, e);
+			string(e.getClassName());
+			reference(e.getClassDeclaration());
+		}
+	}
+
+	@Override
+	public void visit(MJNumber e) {
+		if (!children()) {
+			record(NUMBER, e);
+			varint(zigzag(e.getIntValue()));
+		}
+	}
+
+	@Override
+	public void visit(MJPlus e) {
+		if (!children()) {
+			record(PLUS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJProgram e) {
+		if (!children(e.getMainClass(), e.getClassDecls())) {
+			record(PROGRAM, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtAssign e) {
+		if (!children(e.getLeft(), e.getRight())) {
+			record(STMT_ASSIGN, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtExpr e) {
+		if (!children(e.getExpr())) {
+			record(STMT_EXPR, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtIf e) {
+		if (!children(e.getCondition(), e.getIfTrue(), e.getIfFalse())) {
+			record(STMT_IF, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtPrint e) {
+		if (!children(e.getPrinted())) {
+			record(STMT_PRINT, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtReturn e) {
+		if (!children(e.getResult())) {
+			record(STMT_RETURN, e);
+		}
+	}
+
+	@Override
+	public void visit(MJStmtWhile e) {
+		if (!children(e.getCondition(), e.getLoopBody())) {
+			record(STMT_WHILE, e);
+		}
+	}
+
+	@Override
+	public void visit(MJTimes e) {
+		if (!children()) {
+			record(TIMES, e);
+		}
+	}
+
+	@Override
+	public void visit(MJTypeBool e) {
+		if (!children()) {
+			record(TYPE_BOOL, e);
+		}
+	}
+
+	@Override
+	public void visit(MJTypeClass e) {
+		if (!children()) {
+			record(TYPE_CLASS, e);
+			string(e.getName());
+			reference(e.getClassDeclaration());
+		}
+	}
+
+	@Override
+	public void visit(MJTypeInt e) {
+		if (!children()) {
+			record(TYPE_INT, e);
+		}
+	}
+
+	@Override
+	public void visit(MJTypeIntArray e) {
+		if (!children()) {
+			record(TYPE_INT_ARRAY, e);
+		}
+	}
+
+	@Override
+	public void visit(MJUnaryMinus e) {
+		if (!children()) {
+			record(UNARY_MINUS, e);
+		}
+	}
+
+	@Override
+	public void visit(MJVarDecl e) {
+		if (!children(e.getType())) {
+			record(VAR_DECL, e);
+			string(e.getName());
+			declaration(e);
+		}
+	}
+
+	@Override
+	public void visit(MJVarDeclList e) {
+		list(VAR_DECL_LIST, e, e);
+	}
+
+	@Override
+	public void visit(MJVarUse e) {
+		if (!children()) {
+			record(VAR_USE, e);
+			string(e.getVarName());
+			reference(e.getVariableDeclaration());
+		}
+	}
+}
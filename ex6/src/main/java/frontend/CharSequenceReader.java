@@ -0,0 +1,82 @@
+package frontend;
+
+import java.io.Reader;
+
+/**
+ * An unsynchronized Reader over a CharSequence.
+ *
+ * Unlike StringReader it does not lock on every read and it does not need a String,
+ * so in-memory sources (e.g. a StringBuilder) can be passed to the lexer without copying them first.
+ */
+public class CharSequenceReader extends Reader {
+	private CharSequence input;
+	private int pos = 0;
+	private int mark = 0;
+
+	public CharSequenceReader(CharSequence input) {
+		this.input = input;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int remaining = input.length() - pos;
+		if (remaining <= 0) {
+			return -1;
+		}
+		int n = Math.min(len, remaining);
+		if (input instanceof String) {
+			((String) input).getChars(pos, pos + n, cbuf, off);
+		} else if (input instanceof StringBuilder) {
+			((StringBuilder) input).getChars(pos, pos + n, cbuf, off);
+		} else {
+			for (int i = 0; i < n; i++) {
+				cbuf[off + i] = input.charAt(pos + i);
+			}
+		}
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int read() {
+		if (pos >= input.length()) {
+			return -1;
+		}
+		return input.charAt(pos++);
+	}
+
+	@Override
+	public long skip(long n) {
+		long skipped = Math.max(0, Math.min(n, input.length() - pos));
+		pos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean ready() {
+		return true;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) {
+		mark = pos;
+	}
+
+	@Override
+	public void reset() {
+		pos = mark;
+	}
+
+	@Override
+	public void close() {
+		// nothing to release
+	}
+}
@@ -0,0 +1,292 @@
+package frontend;
+
+import minijava.ast.*;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the AST of a MiniJava source up to date while the source is edited, for example in an editor.
+ *
+ * An edit inside a method is handled by parsing only this method again, an edit elsewhere inside a class
+ * (or the main class) by parsing only this class again. The new declaration replaces the old one in the program,
+ * all other declarations are kept and the source positions after the edit are moved.
+ * Edits between classes, edits which change the structure of the enclosing class
+ * and edits of programs with syntax errors parse the whole source again.
+ *
+ * Typing inside a line only moves the positions on this line. Adding or removing a line break moves the positions
+ * of all following declarations, which takes time linear in their size, but is still much faster than parsing them.
+ */
+public class IncrementalParser {
+	private char[] text;
+	private int length;
+	/** offsets, where lines start, lineStarts[0] is the start of line 1 */
+	private int[] lineStarts;
+	private int lineCount;
+
+	/** the frontend used for the last complete parse, which also holds its syntax errors */
+	private MJFrontend frontend;
+	private MJProgram program;
+	/** the declaration parsed by the last edit, or the whole program */
+	private MJElement lastReparsed;
+
+	/** parses the given source */
+	public IncrementalParser(CharSequence source) throws Exception {
+		length = source.length();
+		text = new char[Math.max(16, length)];
+		source.toString().getChars(0, length, text, 0);
+		lineStarts = new int[16];
+		lineStarts[0] = 0;
+		lineCount = 1;
+		addLineStarts(0, length);
+		parseAll();
+	}
+
+	/** the current AST, null if the source could not be parsed */
+	public MJProgram getProgram() {
+		return program;
+	}
+
+	/** the syntax errors of the current source */
+	public List<SyntaxError> getSyntaxErrors() {
+		return frontend.getSyntaxErrors();
+	}
+
+	/**
+	 * the element parsed by the last edit: the changed MJMethodDecl, MJClassDecl or MJMainClass,
+	 * or the MJProgram if the whole source was parsed again
+	 */
+	public MJElement getLastReparsed() {
+		return lastReparsed;
+	}
+
+	public String getText() {
+		return new String(text, 0, length);
+	}
+
+	/**
+	 * replaces removedLength characters at the given offset with the inserted text and updates the AST.
+	 * If possible, the AST is changed in place and the returned program is the same as before.
+	 */
+	public MJProgram applyEdit(int offset, int removedLength, CharSequence insertedText) throws Exception {
+		if (offset < 0 || removedLength < 0 || offset + removedLength > length) {
+			throw new IndexOutOfBoundsException("Edit at " + offset + " removing " + removedLength + " characters, but length is " + length + ".");
+		}
+		// declarations enclosing the edit, the innermost first, with their offsets before the edit
+		MJElement[] enclosing = new MJElement[2];
+		int[] starts = new int[2];
+		int[] ends = new int[2];
+		int count = 0;
+		if (program != null && frontend.getSyntaxErrors().isEmpty()) {
+			count = findEnclosing(offset, offset + removedLength, enclosing, starts, ends);
+		}
+
+		replaceText(offset, removedLength, insertedText);
+		int delta = insertedText.length() - removedLength;
+		for (int i = 0; i < count; i++) {
+			if (reparse(enclosing[i], starts[i], ends[i] + delta)) {
+				return program;
+			}
+			if (!frontend.getSyntaxErrors().isEmpty()) {
+				// the declaration has invalid statements, all errors are reported by parsing everything
+				break;
+			}
+		}
+		parseAll();
+		return program;
+	}
+
+	private void parseAll() throws Exception {
+		frontend = new MJFrontend();
+		frontend.setParser(MJFrontend.ParserKind.RECURSIVE_DESCENT);
+		program = frontend.parseString(CharBuffer.wrap(text, 0, length));
+		lastReparsed = program;
+	}
+
+	/**
+	 * finds the method and class, which contain the edit [from..to) without touching their first or last character.
+	 * Returns the number of declarations found.
+	 */
+	private int findEnclosing(int from, int to, MJElement[] enclosing, int[] starts, int[] ends) {
+		int count = 0;
+		MJMainClass mainClass = program.getMainClass();
+		if (contains(mainClass, from, to)) {
+			enclosing[0] = mainClass;
+		} else {
+			MJClassDecl classDecl = find(program.getClassDecls(), from);
+			if (classDecl == null || !contains(classDecl, from, to)) {
+				return 0;
+			}
+			MJMethodDecl method = find(classDecl.getMethods(), from);
+			if (method != null && contains(method, from, to)) {
+				enclosing[count++] = method;
+			}
+			enclosing[count] = classDecl;
+		}
+		count++;
+		for (int i = 0; i < count; i++) {
+			starts[i] = startOffset(enclosing[i].getPackedPosition());
+			ends[i] = endOffset(enclosing[i].getPackedPosition());
+		}
+		return count;
+	}
+
+	/** the last declaration starting before the given offset, found by binary search */
+	private <T extends MJElement> T find(List<T> declarations, int offset) {
+		int low = 0;
+		int high = declarations.size() - 1;
+		T result = null;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int start = startOffset(declarations.get(mid).getPackedPosition());
+			if (start < 0) {
+				return null;
+			}
+			if (start < offset) {
+				result = declarations.get(mid);
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	private boolean contains(MJElement declaration, int from, int to) {
+		long pos = declaration.getPackedPosition();
+		if (pos == SourcePositions.NONE || SourcePositions.isSaturated(pos)) {
+			return false;
+		}
+		// the first token and the closing brace must stay, so the declaration still starts and ends at the same tokens
+		return startOffset(pos) < from && to < endOffset(pos) - 1;
+	}
+
+	/**
+	 * parses the text [start..end) again as the given kind of declaration and replaces the old declaration.
+	 * Returns false, if the text is not a single valid declaration.
+	 */
+	private boolean reparse(MJElement old, int start, int end) {
+		long oldPos = old.getPackedPosition();
+		Scanner scanner = new Scanner(text, start, end, frontend.getNameTable(),
+				SourcePositions.getLine(oldPos), SourcePositions.getColumn(oldPos));
+		RecursiveDescentParser parser = new RecursiveDescentParser(scanner);
+		MJElement parsed;
+		if (old instanceof MJMethodDecl) {
+			parsed = parser.parseMethodDecl();
+		} else if (old instanceof MJClassDecl) {
+			parsed = parser.parseClassDecl();
+		} else {
+			parsed = parser.parseMainClass();
+		}
+		if (parsed == null) {
+			return false;
+		}
+		parsed.accept(new StatementChecker(frontend));
+		if (!frontend.getSyntaxErrors().isEmpty()) {
+			return false;
+		}
+
+		long newPos = parsed.getPackedPosition();
+		if (SourcePositions.isSaturated(newPos)) {
+			return false;
+		}
+		int oldEndLine = SourcePositions.getEndLine(oldPos);
+		int oldEndColumn = SourcePositions.getEndColumn(oldPos);
+		new PositionShifter(oldEndLine, oldEndColumn - 1,
+				SourcePositions.getEndLine(newPos) - oldEndLine,
+				SourcePositions.getEndColumn(newPos) - oldEndColumn,
+				old).shift(program);
+		old.replaceBy(parsed);
+		lastReparsed = parsed;
+		return true;
+	}
+
+	/** the offset of the start of a position, -1 if it is not exact */
+	private int startOffset(long pos) {
+		if (SourcePositions.isSaturated(pos)) {
+			return -1;
+		}
+		return offset(SourcePositions.getLine(pos), SourcePositions.getColumn(pos));
+	}
+
+	/** the offset after the end of a position */
+	private int endOffset(long pos) {
+		return offset(SourcePositions.getEndLine(pos), SourcePositions.getEndColumn(pos));
+	}
+
+	private int offset(int line, int column) {
+		return lineStarts[line - 1] + column - 1;
+	}
+
+	private void replaceText(int offset, int removedLength, CharSequence insertedText) {
+		int inserted = insertedText.length();
+		int newLength = length - removedLength + inserted;
+		if (newLength > text.length) {
+			text = Arrays.copyOf(text, Math.max(newLength, 2 * text.length));
+		}
+		System.arraycopy(text, offset + removedLength, text, offset + inserted, length - offset - removedLength);
+		insertedText.toString().getChars(0, inserted, text, offset);
+		length = newLength;
+		updateLineStarts(offset, removedLength, inserted);
+	}
+
+	/**
+	 * updates the line starts after replacing removed characters at offset with inserted characters.
+	 *
+	 * Whether a line starts at some offset only depends on the two characters before it, because "\r\n" is one line break.
+	 * So the line starts up to the line containing offset - 1 stay the same, the line starts after the edit
+	 * are moved and only the characters in between have to be checked.
+	 */
+	private void updateLineStarts(int offset, int removed, int inserted) {
+		int first = lineOf(Math.max(0, offset - 1));
+		int oldEnd = offset + removed + 1;
+		int next = first + 1;
+		while (next < lineCount && lineStarts[next] - 1 < oldEnd) {
+			next++;
+		}
+		int[] after = Arrays.copyOfRange(lineStarts, next, lineCount);
+		lineCount = first + 1;
+		addLineStarts(lineStarts[first], Math.min(length, offset + inserted + 1));
+		int delta = inserted - removed;
+		for (int start : after) {
+			addLineStart(start + delta);
+		}
+	}
+
+	/** adds the lines starting after the characters from..to, like the lexer counts lines */
+	private void addLineStarts(int from, int to) {
+		for (int i = from; i < to; i++) {
+			switch (text[i]) {
+				case '\r':
+					if (i + 1 < length && text[i + 1] == '\n') {
+						// the line starts after the '\n'
+						break;
+					}
+					addLineStart(i + 1);
+					break;
+				case '\n':
+				case '\u000B':
+				case '\u000C':
+				case '\u0085':
+				case '\u2028':
+				case '\u2029':
+					addLineStart(i + 1);
+					break;
+			}
+		}
+	}
+
+	private void addLineStart(int start) {
+		if (lineCount == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, 2 * lineCount);
+		}
+		lineStarts[lineCount++] = start;
+	}
+
+	/** the index of the line containing the given offset */
+	private int lineOf(int offset) {
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+		return index >= 0 ? index : -index - 2;
+	}
+}
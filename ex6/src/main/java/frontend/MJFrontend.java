@@ -2,31 +2,108 @@ package frontend;
 
 import java_cup.runtime.ComplexSymbolFactory;
 import java_cup.runtime.Symbol;
+import minijava.ast.MJBlock;
 import minijava.ast.MJElement;
+import minijava.ast.MJMainClass;
+import minijava.ast.MJMethodDecl;
 import minijava.ast.MJProgram;
 import minijava.syntax.Lexer;
 import minijava.syntax.MiniJavaParser;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class MJFrontend {
 
+	/** the available parser implementations */
+	public enum ParserKind {
+		/** the parser generated by CUP with the lexer generated by JFlex */
+		CUP,
+		/**
+		 * the hand-written {@link Scanner} and {@link RecursiveDescentParser}.
+		 * Inputs with syntax errors are parsed again with CUP to report the same errors.
+		 */
+		RECURSIVE_DESCENT,
+		/**
+		 * like {@link #RECURSIVE_DESCENT}, but large inputs are split at top-level classes,
+		 * which are parsed in parallel on the common ForkJoinPool
+		 */
+		PARALLEL_RECURSIVE_DESCENT
+	}
+
 	/**
 	 * a list of syntax errors collected while parsing
 	 */
 	private List<SyntaxError> syntaxErrors = new ArrayList<>();
 
+	/**
+	 * the identifiers of all inputs parsed by this frontend
+	 */
+	private NameTable names = new NameTable();
+
+	private ParserKind parserKind = ParserKind.CUP;
+
+	private boolean lazyMethodBodies = false;
+
+	/**
+	 * the method bodies, which were skipped and are not parsed yet
+	 */
+	private Map<MJElement, SkippedBody> skippedBodies = new LinkedHashMap<>();
+
+	/**
+	 * the inputs, for which the syntax errors of a skipped body were already reported
+	 */
+	private Set<char[]> reportedInputs = new HashSet<>();
+
+	/**
+	 * the invalid statements found in the outline and the lazily parsed bodies of each input. They are removed again,
+	 * when another body of the input has syntax errors, because then the errors of the whole input are reported.
+	 */
+	private Map<char[], List<SyntaxError>> bodyStatementErrors = new HashMap<>();
+
+	/** the source range of a method body, which was not parsed yet */
+	private static class SkippedBody {
+		final char[] input;
+		final int start;
+		final int end;
+		final int line;
+		final int column;
+
+		SkippedBody(char[] input, int start, int end, int line, int column) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.line = line;
+			this.column = column;
+		}
+	}
+
 	/**
 	 * parses a MiniJava program from a Reader
 	 */
 	public MJProgram parse(Reader in) throws Exception {
+		if (parserKind != ParserKind.CUP || lazyMethodBodies) {
+			char[] input = readAll(in);
+			return parseChars(input, input.length);
+		}
+		return parseCup(in);
+	}
+
+	/** parses with the generated parser */
+	private MJProgram parseCup(Reader in) throws Exception {
 		ComplexSymbolFactory sf = new MJSymbolFactory();
-		Lexer lexer = new Lexer(sf, in);
+		Lexer lexer = new Lexer(sf, in, names);
 		MiniJavaParser parser = new MiniJavaParser(lexer, sf);
 
 		parser.onError(syntaxErrors::add);
@@ -40,16 +117,180 @@ public class MJFrontend {
 		return null;
 	}
 
-	/** parses a MiniJava program from a file */
+	/** parses with the hand-written parser, falls back to CUP for inputs with syntax errors */
+	private MJProgram parseChars(char[] input, int length) throws Exception {
+		return parseChars(input, length, lazyMethodBodies);
+	}
+
+	/** like {@link #parseChars(char[], int)}, but method bodies are only skipped if lazy is set */
+	private MJProgram parseChars(char[] input, int length, boolean lazy) throws Exception {
+		if (lazy) {
+			MJProgram program = parseOutline(input, length);
+			if (program != null) {
+				return program;
+			}
+		}
+		RecursiveDescentParser parser = new RecursiveDescentParser(new Scanner(input, length, names));
+		MJProgram program = parserKind == ParserKind.PARALLEL_RECURSIVE_DESCENT
+				? parser.parseProgram(ForkJoinPool.commonPool())
+				: parser.parseProgram();
+		if (program == null) {
+			return parseCup(new CharSequenceReader(CharBuffer.wrap(input, 0, length)));
+		}
+		detectInvalidStatements(program);
+		return program;
+	}
+
+	/**
+	 * parses the program without the bodies of the methods in classes, they are remembered and parsed on demand.
+	 * Returns null, if the outline or the main method is not valid, then the whole input is parsed as usual.
+	 */
+	private MJProgram parseOutline(char[] input, int length) {
+		Scanner scanner = new Scanner(input, length, names, true);
+		RecursiveDescentParser parser = new RecursiveDescentParser(scanner);
+		MJProgram program = parser.parseProgram();
+		if (program == null) {
+			return null;
+		}
+		Map<MJElement, SkippedBody> bodies = new LinkedHashMap<>();
+		parser.getSkippedBodies().forEach((owner, brace) -> bodies.put(owner, new SkippedBody(input,
+				scanner.offset(brace), scanner.offset(brace + 1) + 1, scanner.line(brace), scanner.column(brace))));
+		// the main method is needed to run the program at all, so it is parsed right away
+		MJMainClass mainClass = program.getMainClass();
+		MJBlock mainBody = parseBody(bodies.remove(mainClass));
+		if (mainBody == null) {
+			return null;
+		}
+		mainClass.setMainBody(mainBody);
+		detectInvalidStatements(input, program);
+		skippedBodies.putAll(bodies);
+		return program;
+	}
+
+	/** parses a skipped method body, returns null if it is not valid */
+	private MJBlock parseBody(SkippedBody body) {
+		Scanner scanner = new Scanner(body.input, body.start, body.end, names, body.line, body.column);
+		return new RecursiveDescentParser(scanner).parseBlock();
+	}
+
+	/**
+	 * returns the body of a method declaration.
+	 * If method bodies are parsed lazily (see {@link #setLazyMethodBodies(boolean)}), the body is parsed on the first call.
+	 * If it has syntax errors, the body stays empty and the syntax errors of the whole input are added
+	 * to {@link #getSyntaxErrors()}, instead of the invalid statements found in other bodies.
+	 */
+	public MJBlock getMethodBody(MJMethodDecl method) throws Exception {
+		loadBody(method);
+		return method.getMethodBody();
+	}
+
+	/** parses all method bodies, which were skipped so far, for example before checking the whole program */
+	public void parseMethodBodies() throws Exception {
+		for (MJElement owner : new ArrayList<>(skippedBodies.keySet())) {
+			loadBody(owner);
+		}
+	}
+
+	private void loadBody(MJElement owner) throws Exception {
+		SkippedBody body = skippedBodies.remove(owner);
+		if (body == null) {
+			return;
+		}
+		MJBlock block = parseBody(body);
+		if (block == null) {
+			if (reportedInputs.add(body.input)) {
+				// the same errors as parsing the whole input eagerly, which replace the errors of other bodies
+				List<SyntaxError> statementErrors = bodyStatementErrors.remove(body.input);
+				if (statementErrors != null) {
+					syntaxErrors.removeAll(statementErrors);
+				}
+				parseCup(new CharSequenceReader(CharBuffer.wrap(body.input)));
+			}
+			return;
+		}
+		if (!reportedInputs.contains(body.input)) {
+			detectInvalidStatements(body.input, block);
+		}
+		((MJMethodDecl) owner).setMethodBody(block);
+	}
+
+	/** detects invalid statements in a part of a lazily parsed input and remembers the errors for the input */
+	private void detectInvalidStatements(char[] input, MJElement element) {
+		int errorCount = syntaxErrors.size();
+		element.accept(new StatementChecker(this));
+		if (syntaxErrors.size() > errorCount) {
+			bodyStatementErrors.computeIfAbsent(input, k -> new ArrayList<>())
+					.addAll(syntaxErrors.subList(errorCount, syntaxErrors.size()));
+		}
+	}
+
+	/** parses a MiniJava program from a file, the file is mapped into memory */
 	public MJProgram parseFile(File file) throws Exception {
-		try (FileReader reader = new FileReader(file)) {
+		try (Reader reader = new MappedFileReader(file)) {
 			return parse(reader);
 		}
 	}
 
 	/** parses a MiniJava program from the given input string */
-	public MJProgram parseString(String input) throws Exception {
-		return parse(new StringReader(input));
+	public MJProgram parseString(CharSequence input) throws Exception {
+		if (parserKind != ParserKind.CUP || lazyMethodBodies) {
+			char[] chars = input.toString().toCharArray();
+			return parseChars(chars, chars.length);
+		}
+		return parse(new CharSequenceReader(input));
+	}
+
+	/**
+	 * checks the syntax of a MiniJava program without building the AST.
+	 * The returned errors are the same as after parsing the program, including invalid statements,
+	 * but only inputs with errors are actually parsed to create the error messages.
+	 * Each call returns a new list, the errors are not added to {@link #getSyntaxErrors()}.
+	 */
+	public List<SyntaxError> validate(Reader in) throws Exception {
+		char[] input = readAll(in);
+		return validateChars(input, input.length);
+	}
+
+	/** checks the syntax of a MiniJava file, see {@link #validate(Reader)} */
+	public List<SyntaxError> validateFile(File file) throws Exception {
+		try (Reader reader = new MappedFileReader(file)) {
+			return validate(reader);
+		}
+	}
+
+	/** checks the syntax of a MiniJava program given as a string, see {@link #validate(Reader)} */
+	public List<SyntaxError> validateString(CharSequence input) throws Exception {
+		char[] chars = input.toString().toCharArray();
+		return validateChars(chars, chars.length);
+	}
+
+	private List<SyntaxError> validateChars(char[] input, int length) throws Exception {
+		List<SyntaxError> errors = new ArrayList<>();
+		if (!new SyntaxValidator(new Scanner(input, length, null)).validate()) {
+			// the errors of this input are collected separately from the errors of parsed programs
+			List<SyntaxError> parseErrors = syntaxErrors;
+			syntaxErrors = errors;
+			try {
+				// the errors in method bodies are only found, when the bodies are parsed as well
+				parseChars(input, length, false);
+			} finally {
+				syntaxErrors = parseErrors;
+			}
+		}
+		return errors;
+	}
+
+	private static char[] readAll(Reader in) throws IOException {
+		char[] input = new char[8192];
+		int length = 0;
+		int n;
+		while ((n = in.read(input, length, input.length - length)) >= 0) {
+			length += n;
+			if (length == input.length) {
+				input = Arrays.copyOf(input, 2 * input.length);
+			}
+		}
+		return Arrays.copyOf(input, length);
 	}
 
 	/**
@@ -61,13 +302,42 @@ public class MJFrontend {
 
 
 
+	/** selects the parser used by this frontend, the default is {@link ParserKind#CUP} */
+	public void setParser(ParserKind parserKind) {
+		this.parserKind = parserKind;
+	}
+
+	public ParserKind getParser() {
+		return parserKind;
+	}
+
+	/**
+	 * if enabled, the bodies of methods in classes are skipped while parsing and parsed on demand by
+	 * {@link #getMethodBody(MJMethodDecl)} or {@link #parseMethodBodies()}. Until then they are empty blocks,
+	 * so the outline of a program (classes, fields and method signatures) is available in time linear in
+	 * the number of declarations. Lazy parsing always uses the hand-written parser.
+	 */
+	public void setLazyMethodBodies(boolean lazyMethodBodies) {
+		this.lazyMethodBodies = lazyMethodBodies;
+	}
+
+	public boolean isLazyMethodBodies() {
+		return lazyMethodBodies;
+	}
+
+	/** the table, in which all identifiers are interned */
+	public NameTable getNameTable() {
+		return names;
+	}
+
 	/** get the syntax errors produced while parsing */
 	public List<SyntaxError> getSyntaxErrors() {
 		return syntaxErrors;
 	}
 
 	/**
-	 * a symbol factory, which sets the source position of MJElements created by the parser
+	 * a symbol factory, which sets the source position of MJElements created by the parser.
+	 * Positions are stored packed into a long (see {@link SourcePositions}), so that no objects are allocated for them.
 	 */
 	static class MJSymbolFactory extends ComplexSymbolFactory {
 
@@ -75,7 +345,7 @@ public class MJFrontend {
 		public Symbol newSymbol(String name, int id, Location left, Location right, Object value) {
 			if (value instanceof MJElement) {
 				MJElement e = (MJElement) value;
-				e.setSourcePosition(new SourcePosition(left.getUnit(), left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
+				e.setPackedPosition(SourcePositions.pack(left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
 			}
 			return super.newSymbol(name, id, left, right, value);
 		}
@@ -88,7 +358,7 @@ public class MJFrontend {
 				ComplexSymbol rightS = (ComplexSymbol) r;
 				Location left = leftS.getLeft();
 				Location right = rightS.getRight();
-				e.setSourcePosition(new SourcePosition(left.getUnit(), left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
+				e.setPackedPosition(SourcePositions.pack(left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
 			}
 			return super.newSymbol(name, id, l, r, value);
 		}
@@ -100,7 +370,7 @@ public class MJFrontend {
 				ComplexSymbol leftS = (ComplexSymbol) l;
 				Location left = leftS.getLeft();
 				Location right = leftS.getRight();
-				e.setSourcePosition(new SourcePosition(left.getUnit(), left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
+				e.setPackedPosition(SourcePositions.pack(left.getLine(), left.getColumn(), right.getLine(), right.getColumn()));
 			}
 			return super.newSymbol(name, id, l, value);
 		}
@@ -0,0 +1,132 @@
+package frontend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Reader, which maps a file into memory and decodes it directly into the buffer of the caller.
+ *
+ * There is no intermediate byte or char buffer and no locking as in FileReader.
+ * As long as the input is ASCII, bytes are copied to chars in a simple loop,
+ * other characters are decoded with a CharsetDecoder.
+ * Malformed input is replaced, like FileReader does.
+ */
+public class MappedFileReader extends Reader {
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final CharsetDecoder decoder;
+	private final boolean asciiCompatible;
+	/** decoded char, which did not fit into the buffer of the last read (second half of a surrogate pair) */
+	private int pending = -1;
+
+	/** reads the file with the platform default charset, like FileReader */
+	public MappedFileReader(File file) throws IOException {
+		this(file, Charset.defaultCharset());
+	}
+
+	public MappedFileReader(File file, Charset charset) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " is too large to be mapped.");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+				|| charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int n = 0;
+		if (pending >= 0) {
+			cbuf[off] = (char) pending;
+			pending = -1;
+			n = 1;
+		}
+		int pos = buffer.position();
+		int limit = buffer.limit();
+		while (n < len && pos < limit) {
+			if (asciiCompatible) {
+				// fast path for ASCII
+				byte b = buffer.get(pos);
+				if (b >= 0) {
+					cbuf[off + n] = (char) b;
+					n++;
+					pos++;
+					continue;
+				}
+			}
+			buffer.position(pos);
+			n = decode(cbuf, off, n, len);
+			pos = buffer.position();
+			if (!asciiCompatible) {
+				break;
+			}
+		}
+		buffer.position(pos);
+		return n == 0 ? -1 : n;
+	}
+
+	/** decodes with the CharsetDecoder, until the next ASCII char or until the buffer is full */
+	private int decode(char[] cbuf, int off, int n, int len) throws IOException {
+		CharBuffer out = CharBuffer.wrap(cbuf, off + n, len - n);
+		int limit = buffer.limit();
+		if (asciiCompatible) {
+			// only decode up to the next ASCII char, so that we can use the fast path again
+			int end = buffer.position() + 1;
+			while (end < limit && buffer.get(end) < 0) {
+				end++;
+			}
+			buffer.limit(end);
+		}
+		CoderResult result;
+		try {
+			result = decoder.decode(buffer, out, true);
+		} finally {
+			buffer.limit(limit);
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (result.isOverflow() && out.position() == off + n) {
+			// a surrogate pair does not fit into the remaining space of one char
+			CharBuffer pair = CharBuffer.allocate(2);
+			decoder.decode(buffer, pair, true);
+			pair.flip();
+			cbuf[off + n] = pair.get();
+			if (pair.hasRemaining()) {
+				pending = pair.get();
+			}
+			return n + 1;
+		}
+		return out.position() - off;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the mapping itself is released, when the buffer is garbage collected
+		channel.close();
+	}
+}
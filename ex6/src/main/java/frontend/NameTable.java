@@ -0,0 +1,90 @@
+package frontend;
+
+/**
+ * Interns identifiers for one compilation.
+ *
+ * The lexer looks up identifiers directly in its char buffer, so a String is only created
+ * for the first occurrence of a name. All later occurrences share this instance,
+ * whose hash code is computed when it is added.
+ * Maps keyed by names then mostly compare identical instances.
+ */
+public class NameTable {
+	private String[] names = new String[256];
+	private int[] hashes = new int[256];
+	private int size = 0;
+
+	/** returns the canonical String for the characters buffer[start..start+length) */
+	public String intern(char[] buffer, int start, int length) {
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int mask = names.length - 1;
+		int index = mix(hash) & mask;
+		while (true) {
+			String name = names[index];
+			if (name == null) {
+				break;
+			}
+			if (hashes[index] == hash && matches(name, buffer, start, length)) {
+				return name;
+			}
+			index = (index + 1) & mask;
+		}
+		String name = new String(buffer, start, length);
+		// the same hash as computed above, this caches it in the String
+		name.hashCode();
+		names[index] = name;
+		hashes[index] = hash;
+		size++;
+		if (2 * size > names.length) {
+			grow();
+		}
+		return name;
+	}
+
+	/** returns the canonical instance of the given name */
+	public String intern(String s) {
+		return intern(s.toCharArray(), 0, s.length());
+	}
+
+	/** the number of different names */
+	public int size() {
+		return size;
+	}
+
+	private static boolean matches(String name, char[] buffer, int start, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != buffer[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** spreads the bits of the String hash, which are poor in the lower bits for short names */
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private void grow() {
+		String[] oldNames = names;
+		int[] oldHashes = hashes;
+		names = new String[oldNames.length * 2];
+		hashes = new int[oldNames.length * 2];
+		int mask = names.length - 1;
+		for (int i = 0; i < oldNames.length; i++) {
+			if (oldNames[i] != null) {
+				int index = mix(oldHashes[i]) & mask;
+				while (names[index] != null) {
+					index = (index + 1) & mask;
+				}
+				names[index] = oldNames[i];
+				hashes[index] = oldHashes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package frontend;
+
+import minijava.ast.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Moves the source positions behind an edited declaration, after it was parsed again (see {@link IncrementalParser}).
+ *
+ * Positions at or after the old closing brace of the declaration are moved by the given number of lines,
+ * positions on the line of the old closing brace are also moved by the given number of columns.
+ * Subtrees which end before the edit are skipped, and if no lines were added or removed,
+ * also the subtrees starting on a later line, so typing inside a line does not walk the whole program.
+ * The elements are walked with an explicit stack, so deeply nested programs cannot overflow the call stack.
+ */
+class PositionShifter implements MJElement.Visitor {
+	private final int line;
+	private final int column;
+	private final int lineDelta;
+	private final int columnDelta;
+	/** the declaration, which is replaced after shifting, so it is not walked */
+	private final MJElement skipped;
+	private final Deque<MJElement> todo = new ArrayDeque<>();
+
+	PositionShifter(int line, int column, int lineDelta, int columnDelta, MJElement skipped) {
+		this.line = line;
+		this.column = column;
+		this.lineDelta = lineDelta;
+		this.columnDelta = columnDelta;
+		this.skipped = skipped;
+	}
+
+	void shift(MJElement root) {
+		todo.push(root);
+		while (!todo.isEmpty()) {
+			MJElement e = todo.pop();
+			if (e == skipped) {
+				continue;
+			}
+			long pos = e.getPackedPosition();
+			if (pos != SourcePositions.NONE) {
+				int startLine = SourcePositions.getLine(pos);
+				int startColumn = SourcePositions.getColumn(pos);
+				int endLine = SourcePositions.getEndLine(pos);
+				int endColumn = SourcePositions.getEndColumn(pos);
+				if (SourcePositions.isSaturated(pos)) {
+					// the end is not exact, so only the start is moved and the children are always visited
+					int newStartLine = newLine(startLine, startColumn);
+					e.setPackedPosition(SourcePositions.pack(newStartLine, newColumn(startLine, startColumn),
+							newStartLine + endLine - startLine, endColumn));
+				} else if (!isMoved(endLine, endColumn) || lineDelta == 0 && startLine > line) {
+					// neither this element nor its children change
+					continue;
+				} else {
+					e.setPackedPosition(SourcePositions.pack(
+							newLine(startLine, startColumn), newColumn(startLine, startColumn),
+							newLine(endLine, endColumn), newColumn(endLine, endColumn)));
+				}
+			}
+			e.accept(this);
+		}
+	}
+
+	private boolean isMoved(int l, int c) {
+		return l > line || l == line && c >= column;
+	}
+
+	private int newLine(int l, int c) {
+		return isMoved(l, c) ? l + lineDelta : l;
+	}
+
+	private int newColumn(int l, int c) {
+		return isMoved(l, c) && l == line ? c + columnDelta : c;
+	}
+
+	private void children(MJElement... children) {
+		for (MJElement child : children) {
+			todo.push(child);
+		}
+	}
+
+	/**
+	 * visits the elements of a list, which may be moved.
+	 * The elements are ordered by position, so the first one ending after the edit is found by binary search
+	 * and if no lines were added or removed, the elements starting on a later line are not visited.
+	 */
+	private void children(List<? extends MJElement> list) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			long pos = list.get(mid).getPackedPosition();
+			if (pos != SourcePositions.NONE && !SourcePositions.isSaturated(pos)
+					&& !isMoved(SourcePositions.getEndLine(pos), SourcePositions.getEndColumn(pos))) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < list.size(); i++) {
+			MJElement child = list.get(i);
+			if (lineDelta == 0 && SourcePositions.getLine(child.getPackedPosition()) > line) {
+				break;
+			}
+			todo.push(child);
+		}
+	}
+
+	@Override
+	public void visit(MJAnd e) {
+	}
+
+	@Override
+	public void visit(MJArrayLength e) {
+		children(e.getArrayExpr());
+	}
+
+	@Override
+	public void visit(MJArrayLookup e) {
+		children(e.getArrayExpr(), e.getArrayIndex());
+	}
+
+	@Override
+	public void visit(MJBlock e) {
+		children(e);
+	}
+
+	@Override
+	public void visit(MJBoolConst e) {
+	}
+
+	@Override
+	public void visit(MJClassDecl e) {
+		children(e.getExtended(), e.getFields(), e.getMethods());
+	}
+
+	@Override
+	public void visit(MJClassDeclList e) {
+		children(e);
+	}
+
+	@Override
+	public void visit(MJDiv e) {
+	}
+
+	@Override
+	public void visit(MJEquals e) {
+	}
+
+	@Override
+	public void visit(MJExprBinary e) {
+		children(e.getLeft(), e.getOperator(), e.getRight());
+	}
+
+	@Override
+	public void visit(MJExprList e) {
+		children(e);
+	}
+
+	@Override
+	public void visit(MJExprNull e) {
+	}
+
+	@Override
+	public void visit(MJExprThis e) {
+	}
+
+	@Override
+	public void visit(MJExprUnary e) {
+		children(e.getUnaryOperator(), e.getExpr());
+	}
+
+	@Override
+	public void visit(MJExtendsClass e) {
+	}
+
+	@Override
+	public void visit(MJExtendsNothing e) {
+	}
+
+	@Override
+	public void visit(MJFieldAccess e) {
+		children(e.getReceiver());
+	}
+
+	@Override
+	public void visit(MJLess e) {
+	}
+
+	@Override
+	public void visit(MJMainClass e) {
+		children(e.getMainBody());
+	}
+
+	@Override
+	public void visit(MJMethodCall e) {
+		children(e.getReceiver(), e.getArguments());
+	}
+
+	@Override
+	public void visit(MJMethodDecl e) {
+		children(e.getReturnType(), e.getFormalParameters(), e.getMethodBody());
+	}
+
+	@Override
+	public void visit(MJMethodDeclList e) {
+		children(e);
+	}
+
+	@Override
+	public void visit(MJMinus e) {
+	}
+
+	@Override
+	public void visit(MJNegate e) {
+	}
+
+	@Override
+	public void visit(MJNewIntArray e) {
+		children(e.getArraySize());
+	}
+
+	@Override
+	public void visit(MJNewObject e) {
+	}
+
+	@Override
+	public void visit(MJNumber e) {
+	}
+
+	@Override
+	public void visit(MJPlus e) {
+	}
+
+	@Override
+	public void visit(MJProgram e) {
+		children(e.getMainClass(), e.getClassDecls());
+	}
+
+	@Override
+	public void visit(MJStmtAssign e) {
+		children(e.getLeft(), e.getRight());
+	}
+
+	@Override
+	public void visit(MJStmtExpr e) {
+		children(e.getExpr());
+	}
+
+	@Override
+	public void visit(MJStmtIf e) {
+		children(e.getCondition(), e.getIfTrue(), e.getIfFalse());
+	}
+
+	@Override
+	public void visit(MJStmtPrint e) {
+		children(e.getPrinted());
+	}
+
+	@Override
+	public void visit(MJStmtReturn e) {
+		children(e.getResult());
+	}
+
+	@Override
+	public void visit(MJStmtWhile e) {
+		children(e.getCondition(), e.getLoopBody());
+	}
+
+	@Override
+	public void visit(MJTimes e) {
+	}
+
+	@Override
+	public void visit(MJTypeBool e) {
+	}
+
+	@Override
+	public void visit(MJTypeClass e) {
+	}
+
+	@Override
+	public void visit(MJTypeInt e) {
+	}
+
+	@Override
+	public void visit(MJTypeIntArray e) {
+	}
+
+	@Override
+	public void visit(MJUnaryMinus e) {
+	}
+
+	@Override
+	public void visit(MJVarDecl e) {
+		children(e.getType());
+	}
+
+	@Override
+	public void visit(MJVarDeclList e) {
+		children(e);
+	}
+
+	@Override
+	public void visit(MJVarUse e) {
+	}
+}
@@ -0,0 +1,646 @@
+package frontend;
+
+import minijava.ast.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import static minijava.syntax.MiniJavaParserSym.*;
+
+/**
+ * A hand-written recursive descent parser for MiniJava, an alternative to the generated CUP parser.
+ *
+ * It works on the tokens of a {@link Scanner} and builds the same AST as the CUP grammar (minijava.cup),
+ * including the packed source positions set by the CUP symbol factory.
+ * It does not report syntax errors: parsing stops at the first error and returns null,
+ * the frontend then parses the input with CUP to get the usual error messages.
+ */
+public class RecursiveDescentParser {
+
+	/** minimum number of tokens in a chunk of classes, which are parsed in one task */
+	private static final int CHUNK_TOKENS = 16384;
+
+	/** level of tokens, which are not binary operators */
+	private static final int NO_OPERATOR = 0;
+
+	private final Scanner tokens;
+	private int pos;
+	/**
+	 * true, if the last parsed expression is a bare "new int[e]".
+	 * In the grammar this is an expr and not an expr2, so it cannot be indexed directly.
+	 */
+	private boolean bare;
+	/**
+	 * the main class and method declarations, whose body was skipped by the scanner,
+	 * with the index of the opening brace of the body
+	 */
+	private final Map<MJElement, Integer> skippedBodies = new LinkedHashMap<>();
+
+	public RecursiveDescentParser(Scanner tokens) {
+		this(tokens, 0);
+	}
+
+	private RecursiveDescentParser(Scanner tokens, int start) {
+		this.tokens = tokens;
+		this.pos = start;
+	}
+
+	/** parses a whole program, returns null if the input is not a valid program */
+	public MJProgram parseProgram() {
+		if (tokens.hasFailed()) {
+			return null;
+		}
+		try {
+			return program();
+		} catch (ParseFailure | StackOverflowError e) {
+			// the table driven parser can handle arbitrarily deep nesting
+			return null;
+		}
+	}
+
+	/** parses a single main class, which must span all tokens, returns null if it is not valid */
+	public MJMainClass parseMainClass() {
+		return parseAll(this::mainClass);
+	}
+
+	/** parses a single class declaration, which must span all tokens, returns null if it is not valid */
+	public MJClassDecl parseClassDecl() {
+		return parseAll(this::classDecl);
+	}
+
+	/** parses a single method declaration, which must span all tokens, returns null if it is not valid */
+	public MJMethodDecl parseMethodDecl() {
+		return parseAll(this::methodDecl);
+	}
+
+	/** parses a single block, which must span all tokens, returns null if it is not valid */
+	public MJBlock parseBlock() {
+		return parseAll(this::block);
+	}
+
+	/**
+	 * the main class and method declarations, whose body was skipped, because the scanner skips method bodies.
+	 * Their body is an empty block with the position of the skipped body,
+	 * the values are the indexes of the opening braces, see {@link Scanner#offset(int)}.
+	 */
+	public Map<MJElement, Integer> getSkippedBodies() {
+		return skippedBodies;
+	}
+
+	private <T extends MJElement> T parseAll(Supplier<T> production) {
+		if (tokens.hasFailed()) {
+			return null;
+		}
+		try {
+			T result = production.get();
+			expect(EOF);
+			return result;
+		} catch (ParseFailure | StackOverflowError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * parses a whole program like {@link #parseProgram()}, but the class declarations are parsed in parallel on the given pool.
+	 *
+	 * Top-level classes are found by counting braces in the token stream, then chunks of consecutive classes
+	 * are parsed as separate tasks. As all tokens are scanned before, positions are the same as in a sequential parse.
+	 * Small inputs are parsed sequentially.
+	 */
+	public MJProgram parseProgram(ForkJoinPool pool) {
+		if (tokens.hasFailed()) {
+			return null;
+		}
+		if (tokens.size() < 2 * CHUNK_TOKENS) {
+			return parseProgram();
+		}
+		int[] chunks = chunks();
+		if (chunks.length <= 2) {
+			return parseProgram();
+		}
+		List<ForkJoinTask<List<MJClassDecl>>> tasks = new ArrayList<>();
+		for (int i = 1; i + 1 < chunks.length; i++) {
+			RecursiveDescentParser chunkParser = new RecursiveDescentParser(tokens, chunks[i]);
+			int end = chunks[i + 1];
+			tasks.add(pool.submit(() -> chunkParser.classDecls(end)));
+		}
+		try {
+			MJMainClass mainClass = mainClass();
+			if (pos != chunks[1]) {
+				return null;
+			}
+			MJClassDeclList classDecls = MJ.ClassDeclList();
+			for (ForkJoinTask<List<MJClassDecl>> task : tasks) {
+				List<MJClassDecl> chunk = task.join();
+				if (chunk == null) {
+					return null;
+				}
+				classDecls.addAll(chunk);
+			}
+			pos = chunks[chunks.length - 1];
+			return program(mainClass, chunks[1], classDecls);
+		} catch (ParseFailure | StackOverflowError e) {
+			return null;
+		} finally {
+			for (ForkJoinTask<?> task : tasks) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * splits the tokens into the main class and chunks of top-level classes with at least CHUNK_TOKENS tokens.
+	 * Returns the start of each chunk and the index of the EOF token.
+	 */
+	private int[] chunks() {
+		List<Integer> result = new ArrayList<>();
+		int depth = 0;
+		int last = -CHUNK_TOKENS;
+		int size = tokens.size();
+		for (int i = 0; i < size - 1; i++) {
+			switch (tokens.kind(i)) {
+				case LBRACE:
+					depth++;
+					break;
+				case RBRACE:
+					depth--;
+					break;
+				case CLASS:
+					// the main class and the first class declaration always start a chunk
+					if (depth == 0 && (result.size() <= 1 || i - last >= CHUNK_TOKENS)) {
+						result.add(i);
+						last = i;
+					}
+					break;
+			}
+		}
+		result.add(size - 1);
+		int[] chunks = new int[result.size()];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = result.get(i);
+		}
+		return chunks;
+	}
+
+	/**
+	 * parses the class declarations up to token end, returns null if they do not end exactly there.
+	 * Chunks start at top-level classes, so this only happens for invalid inputs.
+	 */
+	private List<MJClassDecl> classDecls(int end) {
+		try {
+			List<MJClassDecl> result = new ArrayList<>();
+			while (pos < end) {
+				result.add(classDecl());
+			}
+			return pos == end ? result : null;
+		} catch (ParseFailure | StackOverflowError e) {
+			return null;
+		}
+	}
+
+	private MJProgram program() {
+		MJMainClass mainClass = mainClass();
+		int classesStart = pos;
+		MJClassDeclList classDecls = MJ.ClassDeclList();
+		while (kind() == CLASS) {
+			classDecls.add(classDecl());
+		}
+		return program(mainClass, classesStart, classDecls);
+	}
+
+	/** creates the program, when the parser is at the end of the input */
+	private MJProgram program(MJMainClass mainClass, int classesStart, MJClassDeclList classDecls) {
+		if (classDecls.isEmpty()) {
+			// an empty list gets the position of the symbol before it
+			at(classDecls, 0, classesStart - 1);
+		} else {
+			at(classDecls, classesStart);
+		}
+		expect(EOF);
+		// the start production of CUP extends the program to the end of the input
+		return at(MJ.Program(mainClass, classDecls), 0);
+	}
+
+	private MJMainClass mainClass() {
+		int start = pos;
+		expect(CLASS);
+		String name = identifier();
+		expect(LBRACE);
+		expect(PUBLIC);
+		expect(STATIC);
+		expect(VOID);
+		expect(MAIN);
+		expect(LPAREN);
+		expect(STRING);
+		expect(LBRACKET);
+		expect(RBRACKET);
+		String argsName = identifier();
+		expect(RPAREN);
+		int bodyStart = pos;
+		MJBlock body = methodBody();
+		expect(RBRACE);
+		return skipped(at(MJ.MainClass(name, argsName, body), start), bodyStart);
+	}
+
+	private MJClassDecl classDecl() {
+		int start = pos;
+		expect(CLASS);
+		String name = identifier();
+		MJExtended extended;
+		if (kind() == EXTENDS) {
+			pos++;
+			extended = MJ.ExtendsClass(identifier());
+		} else {
+			extended = MJ.ExtendsNothing();
+		}
+		expect(LBRACE);
+		MJVarDeclList fields = MJ.VarDeclList();
+		MJMethodDeclList methods = MJ.MethodDeclList();
+		while (kind() != RBRACE) {
+			int memberStart = pos;
+			MJType type = type();
+			String memberName = identifier();
+			if (kind() == SEMI) {
+				fields.add(at(MJ.VarDecl(type, memberName), memberStart));
+				pos++;
+			} else {
+				methods.add(methodDecl(memberStart, type, memberName));
+			}
+		}
+		pos++;
+		return at(MJ.ClassDecl(name, extended, fields, methods), start);
+	}
+
+	private MJMethodDecl methodDecl() {
+		int start = pos;
+		MJType type = type();
+		String name = identifier();
+		return methodDecl(start, type, name);
+	}
+
+	/** the rest of a method declaration after its name */
+	private MJMethodDecl methodDecl(int start, MJType type, String name) {
+		expect(LPAREN);
+		MJVarDeclList params = paramList();
+		expect(RPAREN);
+		int bodyStart = pos;
+		MJBlock body = methodBody();
+		return skipped(at(MJ.MethodDecl(type, name, params, body), start), bodyStart);
+	}
+
+	/** the body of a method, an empty placeholder if the scanner skipped its contents */
+	private MJBlock methodBody() {
+		if (!tokens.skipsMethodBodies()) {
+			return block();
+		}
+		int start = pos;
+		expect(LBRACE);
+		expect(RBRACE);
+		return at(MJ.Block(), start);
+	}
+
+	private <T extends MJElement> T skipped(T declaration, int bodyStart) {
+		if (tokens.skipsMethodBodies()) {
+			skippedBodies.put(declaration, bodyStart);
+		}
+		return declaration;
+	}
+
+	/** the parameters after the opening parenthesis */
+	private MJVarDeclList paramList() {
+		int start = pos;
+		MJVarDeclList params = MJ.VarDeclList();
+		if (kind() == RPAREN) {
+			return at(params, start - 1);
+		}
+		params.add(varDecl());
+		while (kind() == COMMA) {
+			pos++;
+			params.add(varDecl());
+		}
+		return at(params, start);
+	}
+
+	private MJVarDecl varDecl() {
+		int start = pos;
+		MJType type = type();
+		String name = identifier();
+		return at(MJ.VarDecl(type, name), start);
+	}
+
+	private MJType type() {
+		int start = pos;
+		switch (kind()) {
+			case INT:
+				pos++;
+				if (kind() == LBRACKET) {
+					pos++;
+					expect(RBRACKET);
+					return at(MJ.TypeIntArray(), start);
+				}
+				return at(MJ.TypeInt(), start);
+			case BOOLEAN:
+				pos++;
+				return at(MJ.TypeBool(), start);
+			case ID:
+				return at(MJ.TypeClass(identifier()), start);
+			default:
+				throw ParseFailure.INSTANCE;
+		}
+	}
+
+	private MJBlock block() {
+		int start = pos;
+		expect(LBRACE);
+		MJBlock block = MJ.Block();
+		while (kind() != RBRACE) {
+			block.add(blockStatement());
+		}
+		pos++;
+		return at(block, start);
+	}
+
+	private MJStatement blockStatement() {
+		int k = kind();
+		if (k == INT || k == BOOLEAN || k == ID && tokens.kind(pos + 1) == ID) {
+			int start = pos;
+			MJType type = type();
+			String name = identifier();
+			expect(SEMI);
+			return at(MJ.VarDecl(type, name), start);
+		}
+		return statement();
+	}
+
+	private MJStatement statement() {
+		int start = pos;
+		switch (kind()) {
+			case LBRACE:
+				return block();
+			case IF: {
+				pos++;
+				expect(LPAREN);
+				MJExpr condition = expr();
+				expect(RPAREN);
+				MJStatement ifTrue = statement();
+				expect(ELSE);
+				MJStatement ifFalse = statement();
+				return at(MJ.StmtIf(condition, ifTrue, ifFalse), start);
+			}
+			case WHILE: {
+				pos++;
+				expect(LPAREN);
+				MJExpr condition = expr();
+				expect(RPAREN);
+				MJStatement body = statement();
+				return at(MJ.StmtWhile(condition, body), start);
+			}
+			case RETURN: {
+				pos++;
+				MJExpr result = expr();
+				expect(SEMI);
+				return at(MJ.StmtReturn(result), start);
+			}
+			case SYSTEM: {
+				pos++;
+				expect(DOT);
+				expect(OUT);
+				expect(DOT);
+				expect(PRINTLN);
+				expect(LPAREN);
+				MJExpr printed = expr();
+				expect(RPAREN);
+				expect(SEMI);
+				return at(MJ.StmtPrint(printed), start);
+			}
+			default: {
+				MJExpr left = expr();
+				if (kind() == EQ) {
+					pos++;
+					MJExpr right = expr();
+					expect(SEMI);
+					return at(MJ.StmtAssign(left, right), start);
+				}
+				expect(SEMI);
+				return at(MJ.StmtExpr(left), start);
+			}
+		}
+	}
+
+	/** a complete expression, which must not be followed by an index if it is a bare array creation */
+	private MJExpr expr() {
+		return binary(1);
+	}
+
+	/** parses operators with at least the given level by precedence climbing, all binary operators are left associative */
+	private MJExpr binary(int minLevel) {
+		int start = pos;
+		MJExpr left = unary();
+		boolean leftBare = bare;
+		while (true) {
+			int k = kind();
+			int level = level(k);
+			if (level < minLevel) {
+				break;
+			}
+			pos++;
+			MJExpr right = binary(level + 1);
+			boolean rightBare = bare;
+			left = at(MJ.ExprBinary(left, operator(k), right), start);
+			leftBare = false;
+			if (rightBare) {
+				// CUP reduces the operation before it can shift the bracket, so the index applies to the operation
+				left = postfix(start, left, false);
+			}
+		}
+		bare = leftBare;
+		return left;
+	}
+
+	private MJExpr unary() {
+		int start = pos;
+		int k = kind();
+		if (k == NEG || k == MINUS) {
+			pos++;
+			MJExpr operand = unary();
+			MJUnaryOperator operator = k == NEG ? MJ.Negate() : MJ.UnaryMinus();
+			MJExpr e = at(MJ.ExprUnary(operator, operand), start);
+			// like for binary operators, an index after a bare array creation applies to the whole operation
+			return postfix(start, e, false);
+		}
+		return primary();
+	}
+
+	private MJExpr primary() {
+		int start = pos;
+		switch (kind()) {
+			case TRUE:
+				pos++;
+				return postfix(start, at(MJ.BoolConst(true), start), false);
+			case FALSE:
+				pos++;
+				return postfix(start, at(MJ.BoolConst(false), start), false);
+			case NULL:
+				pos++;
+				return postfix(start, at(MJ.ExprNull(), start), false);
+			case THIS:
+				pos++;
+				return postfix(start, at(MJ.ExprThis(), start), false);
+			case NUMBER:
+				pos++;
+				return postfix(start, at(MJ.Number(tokens.number(start)), start), false);
+			case ID:
+				return postfix(start, at(MJ.VarUse(identifier()), start), false);
+			case NEW:
+				pos++;
+				if (kind() == INT) {
+					pos++;
+					expect(LBRACKET);
+					MJExpr size = expr();
+					expect(RBRACKET);
+					return postfix(start, at(MJ.NewIntArray(size), start), true);
+				}
+				String className = identifier();
+				expect(LPAREN);
+				expect(RPAREN);
+				return postfix(start, at(MJ.NewObject(className), start), false);
+			case LPAREN: {
+				pos++;
+				MJExpr e = expr();
+				expect(RPAREN);
+				// the parenthesis are not part of the AST, but of the position
+				return postfix(start, at(e, start), false);
+			}
+			default:
+				throw ParseFailure.INSTANCE;
+		}
+	}
+
+	/** parses field accesses, method calls, array length and array lookups on e */
+	private MJExpr postfix(int start, MJExpr e, boolean isBare) {
+		while (true) {
+			int k = kind();
+			if (k == DOT) {
+				pos++;
+				if (kind() == LENGTH) {
+					pos++;
+					e = at(MJ.ArrayLength(e), start);
+				} else {
+					String name = identifier();
+					if (kind() == LPAREN) {
+						pos++;
+						MJExprList args = exprList();
+						expect(RPAREN);
+						e = at(MJ.MethodCall(e, name, args), start);
+					} else {
+						e = at(MJ.FieldAccess(e, name), start);
+					}
+				}
+				isBare = false;
+			} else if (k == LBRACKET && !isBare) {
+				pos++;
+				MJExpr index = expr();
+				expect(RBRACKET);
+				e = at(MJ.ArrayLookup(e, index), start);
+			} else {
+				break;
+			}
+		}
+		bare = isBare;
+		return e;
+	}
+
+	/** the arguments after the opening parenthesis */
+	private MJExprList exprList() {
+		int start = pos;
+		MJExprList args = MJ.ExprList();
+		if (kind() == RPAREN) {
+			return at(args, start - 1);
+		}
+		args.add(expr());
+		while (kind() == COMMA) {
+			pos++;
+			args.add(expr());
+		}
+		return at(args, start);
+	}
+
+	/** the level of a binary operator, as in the precedence declarations of the grammar */
+	private static int level(int kind) {
+		switch (kind) {
+			case AND:
+				return 1;
+			case EQUALS:
+				return 2;
+			case LESS:
+				return 3;
+			case PLUS:
+			case MINUS:
+				return 4;
+			case TIMES:
+			case DIV:
+				return 5;
+			default:
+				return NO_OPERATOR;
+		}
+	}
+
+	private static MJOperator operator(int kind) {
+		switch (kind) {
+			case AND:
+				return MJ.And();
+			case EQUALS:
+				return MJ.Equals();
+			case LESS:
+				return MJ.Less();
+			case PLUS:
+				return MJ.Plus();
+			case MINUS:
+				return MJ.Minus();
+			case TIMES:
+				return MJ.Times();
+			default:
+				return MJ.Div();
+		}
+	}
+
+	private int kind() {
+		return tokens.kind(pos);
+	}
+
+	private void expect(int kind) {
+		if (tokens.kind(pos) != kind) {
+			throw ParseFailure.INSTANCE;
+		}
+		pos++;
+	}
+
+	private String identifier() {
+		expect(ID);
+		return tokens.identifier(pos - 1);
+	}
+
+	/** sets the position of e from token start to the last consumed token */
+	private <T extends MJElement> T at(T e, int start) {
+		return at(e, start, pos - 1);
+	}
+
+	private <T extends MJElement> T at(T e, int start, int end) {
+		e.setPackedPosition(tokens.span(start, end));
+		return e;
+	}
+
+	/** thrown at the first syntax error, without a stack trace */
+	private static class ParseFailure extends RuntimeException {
+		static final ParseFailure INSTANCE = new ParseFailure();
+
+		private ParseFailure() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -0,0 +1,497 @@
+package frontend;
+
+import java.util.Arrays;
+
+import static minijava.syntax.MiniJavaParserSym.*;
+
+/**
+ * A hand-written scanner for MiniJava, which recognizes the same tokens as the JFlex lexer (minijava.flex).
+ *
+ * The whole input is scanned at once into parallel arrays, so no Symbol or Location objects are created.
+ * Token kinds are the terminal ids from MiniJavaParserSym.
+ * Lines and columns are counted like in the JFlex lexer (columns in UTF-16 chars, starting at 1).
+ *
+ * Scanning stops at the first invalid token, unclosed comment or number literal out of range.
+ * The JFlex lexer reports those itself, so the frontend uses it for inputs with errors.
+ */
+public class Scanner {
+	private static final String[] KEYWORDS = {
+			"abstract", "continue", "for", "new", "switch",
+			"assert", "default", "if", "package", "synchronized",
+			"boolean", "do", "goto", "private", "this",
+			"break", "double", "implements", "protected", "throw",
+			"byte", "else", "import", "public", "throws",
+			"case", "enum", "instanceof", "return", "transient",
+			"catch", "extends", "int", "short", "try",
+			"char", "final", "interface", "static", "void",
+			"class", "finally", "long", "strictfp", "volatile",
+			"const", "float", "native", "super", "while",
+			"main", "String", "length", "System", "out", "println",
+			"true", "false", "null"
+	};
+	private static final int[] KEYWORD_KINDS = {
+			ABSTRACT, CONTINUE, FOR, NEW, SWITCH,
+			ASSERT, DEFAULT, IF, PACKAGE, SYNCHRONIZED,
+			BOOLEAN, DO, GOTO, PRIVATE, THIS,
+			BREAK, DOUBLE, IMPLEMENTS, PROTECTED, THROW,
+			BYTE, ELSE, IMPORT, PUBLIC, THROWS,
+			CASE, ENUM, INSTANCEOF, RETURN, TRANSIENT,
+			CATCH, EXTENDS, INT, SHORT, TRY,
+			CHAR, FINAL, INTERFACE, STATIC, VOID,
+			CLASS, FINALLY, LONG, STRICTFP, VOLATILE,
+			CONST, FLOAT, NATIVE, SUPER, WHILE,
+			MAIN, STRING, LENGTH, SYSTEM, OUT, PRINTLN,
+			TRUE, FALSE, NULL
+	};
+
+	/** open addressing table of the keywords, indexed by the String hash code */
+	private static final String[] keywordTable = new String[256];
+	private static final int[] keywordKindTable = new int[256];
+
+	static {
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			int index = keywordIndex(KEYWORDS[i].hashCode());
+			while (keywordTable[index] != null) {
+				index = (index + 1) & (keywordTable.length - 1);
+			}
+			keywordTable[index] = KEYWORDS[i];
+			keywordKindTable[index] = KEYWORD_KINDS[i];
+		}
+	}
+
+	private final char[] input;
+	private final int inputStart;
+	private final int inputEnd;
+	private final NameTable names;
+	/** true, if the contents of method bodies are skipped */
+	private final boolean skipMethodBodies;
+
+	private int[] kinds;
+	private int[] lines;
+	private int[] columns;
+	private int[] lengths;
+	/** the value of NUMBER tokens */
+	private int[] numbers;
+	/** the interned name of ID tokens */
+	private String[] identifiers;
+	/** the offset of brace tokens in the input, only when method bodies are skipped */
+	private int[] offsets;
+	private int size = 0;
+	private boolean failed = false;
+	/** the number of open braces */
+	private int braceDepth = 0;
+
+	/** current position of the scanner, line and column start at 0 here */
+	private int line = 0;
+	private int column = 0;
+	private boolean afterCarriageReturn = false;
+
+	/**
+	 * scans input[0..length), identifiers are interned in the given name table.
+	 * Without a name table, no Strings are created for identifiers (for syntax validation).
+	 * The last token is always EOF, unless scanning failed.
+	 */
+	public Scanner(char[] input, int length, NameTable names) {
+		this(input, 0, length, names, 1, 1, false);
+	}
+
+	/**
+	 * scans input[0..length) like {@link #Scanner(char[], int, NameTable)}, but if skipMethodBodies is true,
+	 * the contents of method bodies are skipped by matching braces (and comments), without creating tokens for them.
+	 * Method bodies are the blocks inside of class bodies, so for each of them only the opening and the closing brace
+	 * are returned, see {@link #offset(int)}.
+	 * Invalid tokens in skipped bodies are only detected, when the bodies are scanned.
+	 */
+	public Scanner(char[] input, int length, NameTable names, boolean skipMethodBodies) {
+		this(input, 0, length, names, 1, 1, skipMethodBodies);
+	}
+
+	/**
+	 * scans input[start..end) of a larger source, which starts at the given line and column (both start at 1).
+	 * This is used to scan single declarations again after an edit.
+	 */
+	public Scanner(char[] input, int start, int end, NameTable names, int line, int column) {
+		this(input, start, end, names, line, column, false);
+	}
+
+	private Scanner(char[] input, int start, int end, NameTable names, int line, int column, boolean skipMethodBodies) {
+		this.input = input;
+		this.inputStart = start;
+		this.inputEnd = end;
+		this.names = names;
+		this.skipMethodBodies = skipMethodBodies;
+		this.line = line - 1;
+		this.column = column - 1;
+		// typical sources have a token every 3 to 4 characters, most of them in method bodies
+		int capacity = Math.max(64, (end - start) / (skipMethodBodies ? 32 : 4));
+		kinds = new int[capacity];
+		lines = new int[capacity];
+		columns = new int[capacity];
+		lengths = new int[capacity];
+		numbers = new int[capacity];
+		identifiers = new String[capacity];
+		if (skipMethodBodies) {
+			offsets = new int[capacity];
+		}
+		scan();
+	}
+
+	/** true, if the input contains an invalid token, an unclosed comment or a number literal out of range */
+	public boolean hasFailed() {
+		return failed;
+	}
+
+	/** the number of tokens including the final EOF */
+	public int size() {
+		return size;
+	}
+
+	/** the terminal id (see MiniJavaParserSym) of the i-th token */
+	public int kind(int i) {
+		return kinds[i];
+	}
+
+	public int line(int i) {
+		return lines[i];
+	}
+
+	public int column(int i) {
+		return columns[i];
+	}
+
+	/** the column after the last character of the token, like the right location of the JFlex lexer */
+	public int endColumn(int i) {
+		return columns[i] + lengths[i];
+	}
+
+	public int number(int i) {
+		return numbers[i];
+	}
+
+	public String identifier(int i) {
+		return identifiers[i];
+	}
+
+	/**
+	 * the offset of the i-th token in the input, if it is a brace and method bodies are skipped.
+	 * The contents of a skipped body are between the offsets of its opening brace and the following closing brace.
+	 */
+	public int offset(int i) {
+		return offsets[i];
+	}
+
+	/** true, if the contents of method bodies are skipped */
+	public boolean skipsMethodBodies() {
+		return skipMethodBodies;
+	}
+
+	/** the packed source position (see {@link SourcePositions}) from the start of token first to the end of token last */
+	public long span(int first, int last) {
+		return SourcePositions.pack(lines[first], columns[first], lines[last], columns[last] + lengths[last]);
+	}
+
+	private void scan() {
+		char[] in = input;
+		int n = inputEnd;
+		int p = inputStart;
+		while (p < n) {
+			char c = in[p];
+			switch (c) {
+				case ' ':
+				case '\t':
+					column++;
+					afterCarriageReturn = false;
+					p++;
+					continue;
+				case '\r':
+				case '\n':
+				case '\f':
+					count(p, p + 1);
+					p++;
+					continue;
+				case '/':
+					if (p + 1 < n && in[p + 1] == '/') {
+						int end = p + 2;
+						while (end < n && in[end] != '\r' && in[end] != '\n') {
+							end++;
+						}
+						if (end < n) {
+							end += in[end] == '\r' && end + 1 < n && in[end + 1] == '\n' ? 2 : 1;
+						}
+						count(p, end);
+						p = end;
+						continue;
+					}
+					if (p + 1 < n && in[p + 1] == '*') {
+						int end = commentEnd(p + 2);
+						if (end < 0) {
+							// the lexer reads a comment without end as a division and a times, which is never valid
+							failed = true;
+							return;
+						}
+						count(p, end);
+						p = end;
+						continue;
+					}
+					add(DIV, 1);
+					p++;
+					continue;
+				case '{': {
+					int token = add(LBRACE, 1);
+					braceDepth++;
+					if (skipMethodBodies) {
+						offsets[token] = p;
+						if (braceDepth == 2) {
+							// a method body inside of a class body, continue at its closing brace
+							int end = bodyEnd(p + 1);
+							if (end < 0) {
+								failed = true;
+								return;
+							}
+							count(p + 1, end);
+							p = end;
+							continue;
+						}
+					}
+					p++;
+					continue;
+				}
+				case '}': {
+					int token = add(RBRACE, 1);
+					braceDepth--;
+					if (skipMethodBodies) {
+						offsets[token] = p;
+					}
+					p++;
+					continue;
+				}
+				case '[': add(LBRACKET, 1); p++; continue;
+				case ']': add(RBRACKET, 1); p++; continue;
+				case '(': add(LPAREN, 1); p++; continue;
+				case ')': add(RPAREN, 1); p++; continue;
+				case '.': add(DOT, 1); p++; continue;
+				case ';': add(SEMI, 1); p++; continue;
+				case ',': add(COMMA, 1); p++; continue;
+				case '!': add(NEG, 1); p++; continue;
+				case '+': add(PLUS, 1); p++; continue;
+				case '-': add(MINUS, 1); p++; continue;
+				case '*': add(TIMES, 1); p++; continue;
+				case '<': add(LESS, 1); p++; continue;
+				case '=':
+					if (p + 1 < n && in[p + 1] == '=') {
+						add(EQUALS, 2);
+						p += 2;
+					} else {
+						add(EQ, 1);
+						p++;
+					}
+					continue;
+				case '&':
+					if (p + 1 < n && in[p + 1] == '&') {
+						add(AND, 2);
+						p += 2;
+						continue;
+					}
+					failed = true;
+					return;
+				default:
+					if (c >= '0' && c <= '9') {
+						p = scanNumber(p);
+					} else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+						p = scanIdentifier(p);
+					} else {
+						failed = true;
+					}
+					if (failed) {
+						return;
+					}
+			}
+		}
+		add(EOF, 0);
+	}
+
+	/** returns the position of the brace closing a block, which starts before p, or -1 if the block is not closed */
+	private int bodyEnd(int p) {
+		char[] in = input;
+		int depth = 1;
+		while (p < inputEnd) {
+			switch (in[p]) {
+				case '{':
+					depth++;
+					break;
+				case '}':
+					depth--;
+					if (depth == 0) {
+						return p;
+					}
+					break;
+				case '/':
+					if (p + 1 < inputEnd && in[p + 1] == '/') {
+						while (p < inputEnd && in[p] != '\r' && in[p] != '\n') {
+							p++;
+						}
+						continue;
+					}
+					if (p + 1 < inputEnd && in[p + 1] == '*') {
+						p = commentEnd(p + 2);
+						if (p < 0) {
+							return -1;
+						}
+						continue;
+					}
+					break;
+			}
+			p++;
+		}
+		return -1;
+	}
+
+	/** returns the position after the closing star-slash, or -1 if the comment is not closed */
+	private int commentEnd(int p) {
+		char[] in = input;
+		for (int i = p; i + 1 < inputEnd; i++) {
+			if (in[i] == '*' && in[i + 1] == '/') {
+				return i + 2;
+			}
+		}
+		return -1;
+	}
+
+	private int scanNumber(int start) {
+		char[] in = input;
+		int end = start + 1;
+		// a leading 0 is a number on its own
+		if (in[start] != '0') {
+			while (end < inputEnd && in[end] >= '0' && in[end] <= '9') {
+				end++;
+			}
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = in[i] - '0';
+			if (value > (Integer.MAX_VALUE - digit) / 10) {
+				failed = true;
+				return end;
+			}
+			value = 10 * value + digit;
+		}
+		int token = add(NUMBER, end - start);
+		numbers[token] = value;
+		return end;
+	}
+
+	private int scanIdentifier(int start) {
+		char[] in = input;
+		int hash = in[start];
+		int end = start + 1;
+		while (end < inputEnd) {
+			char c = in[end];
+			if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_') {
+				hash = 31 * hash + c;
+				end++;
+			} else {
+				break;
+			}
+		}
+		int length = end - start;
+		int index = keywordIndex(hash);
+		String keyword;
+		while ((keyword = keywordTable[index]) != null) {
+			if (matches(keyword, in, start, length)) {
+				add(keywordKindTable[index], length);
+				return end;
+			}
+			index = (index + 1) & (keywordTable.length - 1);
+		}
+		int token = add(ID, length);
+		if (names != null) {
+			identifiers[token] = names.intern(in, start, length);
+		}
+		return end;
+	}
+
+	private static boolean matches(String keyword, char[] buffer, int start, int length) {
+		if (keyword.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (keyword.charAt(i) != buffer[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int keywordIndex(int hash) {
+		return (hash ^ (hash >>> 16)) & (keywordTable.length - 1);
+	}
+
+	/** adds a token of the given kind and length at the current position and returns its index */
+	private int add(int kind, int length) {
+		if (size == kinds.length) {
+			grow();
+		}
+		kinds[size] = kind;
+		lines[size] = line + 1;
+		columns[size] = column + 1;
+		lengths[size] = length;
+		column += length;
+		afterCarriageReturn = false;
+		return size++;
+	}
+
+	/** updates line and column for input[from..to) like the JFlex lexer does */
+	private void count(int from, int to) {
+		int i = from;
+		while (i < to) {
+			if (input[i] >= ' ' && input[i] < 0x7F) {
+				// printable ASCII in comments
+				column++;
+				afterCarriageReturn = false;
+				i++;
+				continue;
+			}
+			int c = Character.codePointAt(input, i, to);
+			switch (c) {
+				case '\u000B':
+				case '\u000C':
+				case '\u0085':
+				case '\u2028':
+				case '\u2029':
+					line++;
+					column = 0;
+					afterCarriageReturn = false;
+					break;
+				case '\r':
+					line++;
+					column = 0;
+					afterCarriageReturn = true;
+					break;
+				case '\n':
+					if (!afterCarriageReturn) {
+						line++;
+						column = 0;
+					}
+					afterCarriageReturn = false;
+					break;
+				default:
+					column += Character.charCount(c);
+					afterCarriageReturn = false;
+			}
+			i += Character.charCount(c);
+		}
+	}
+
+	private void grow() {
+		int capacity = 2 * kinds.length;
+		kinds = Arrays.copyOf(kinds, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		columns = Arrays.copyOf(columns, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		numbers = Arrays.copyOf(numbers, capacity);
+		identifiers = Arrays.copyOf(identifiers, capacity);
+		if (offsets != null) {
+			offsets = Arrays.copyOf(offsets, capacity);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package frontend;
+
+import minijava.ast.MJElement;
+
+/**
+ * Source positions of MiniJava AST nodes packed into a single long.
+ *
+ * Layout (from the most significant bit):
+ * 24 bits start line, 14 bits start column, 12 bits end line - start line, 14 bits end column.
+ * Values which do not fit are saturated, which only affects very long lines and very long elements.
+ * Lines start at 1, so 0 is never a valid packed position and means "no position".
+ */
+public class SourcePositions {
+    public static final long NONE = 0;
+
+    private static final int LINE_BITS = 24;
+    private static final int COLUMN_BITS = 14;
+    private static final int LINE_DELTA_BITS = 12;
+
+    private static final int END_COLUMN_SHIFT = 0;
+    private static final int LINE_DELTA_SHIFT = END_COLUMN_SHIFT + COLUMN_BITS;
+    private static final int COLUMN_SHIFT = LINE_DELTA_SHIFT + LINE_DELTA_BITS;
+    private static final int LINE_SHIFT = COLUMN_SHIFT + COLUMN_BITS;
+
+    private SourcePositions() {
+    }
+
+    public static long pack(int line, int column, int endLine, int endColumn) {
+        return field(line, LINE_BITS) << LINE_SHIFT
+                | field(column, COLUMN_BITS) << COLUMN_SHIFT
+                | field(endLine - line, LINE_DELTA_BITS) << LINE_DELTA_SHIFT
+                | field(endColumn, COLUMN_BITS) << END_COLUMN_SHIFT;
+    }
+
+    private static long field(int value, int bits) {
+        long max = (1L << bits) - 1;
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private static int get(long packed, int shift, int bits) {
+        return (int) ((packed >>> shift) & ((1L << bits) - 1));
+    }
+
+    public static int getLine(long packed) {
+        return get(packed, LINE_SHIFT, LINE_BITS);
+    }
+
+    public static int getColumn(long packed) {
+        return get(packed, COLUMN_SHIFT, COLUMN_BITS);
+    }
+
+    public static int getEndLine(long packed) {
+        return getLine(packed) + get(packed, LINE_DELTA_SHIFT, LINE_DELTA_BITS);
+    }
+
+    public static int getEndColumn(long packed) {
+        return get(packed, END_COLUMN_SHIFT, COLUMN_BITS);
+    }
+
+    /** true, if one of the values did not fit and the position is not exact */
+    public static boolean isSaturated(long packed) {
+        return get(packed, LINE_SHIFT, LINE_BITS) == (1 << LINE_BITS) - 1
+                || get(packed, COLUMN_SHIFT, COLUMN_BITS) == (1 << COLUMN_BITS) - 1
+                || get(packed, LINE_DELTA_SHIFT, LINE_DELTA_BITS) == (1 << LINE_DELTA_BITS) - 1
+                || get(packed, END_COLUMN_SHIFT, COLUMN_BITS) == (1 << COLUMN_BITS) - 1;
+    }
+
+    /** expands a packed position, returns null for {@link #NONE} */
+    public static SourcePosition expand(long packed) {
+        if (packed == NONE) {
+            return null;
+        }
+        return new SourcePosition("", getLine(packed), getColumn(packed), getEndLine(packed), getEndColumn(packed));
+    }
+
+    /** implementation of the attribute MJElement.getSourcePosition() */
+    public static SourcePosition expand(MJElement e) {
+        return expand(e.getPackedPosition());
+    }
+
+    /** the line of the element or of its closest parent with a position, 0 if there is none */
+    public static int line(MJElement e) {
+        while (e != null) {
+            if (e.getPackedPosition() != NONE) {
+                return getLine(e.getPackedPosition());
+            }
+            e = e.getParent();
+        }
+        return 0;
+    }
+}
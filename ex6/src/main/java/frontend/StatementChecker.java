@@ -2,6 +2,9 @@ package frontend;
 
 import minijava.ast.*;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public class StatementChecker extends MJElement.DefaultVisitor {
 
 
@@ -11,9 +14,35 @@ public class StatementChecker extends MJElement.DefaultVisitor {
         this.frontend = mjFrontend;
     }
 
+    /**
+     * walks through the statements with an explicit stack, so that deeply nested blocks cannot overflow the call stack.
+     * Expressions cannot contain statements, so they are not visited.
+     */
     @Override
-    public void visit(MJStmtAssign assignment) {
-        super.visit(assignment);
+    public void visit(MJBlock block) {
+        Deque<MJStatement> todo = new ArrayDeque<>();
+        todo.push(block);
+        while (!todo.isEmpty()) {
+            MJStatement s = todo.pop();
+            if (s instanceof MJBlock) {
+                MJBlock b = (MJBlock) s;
+                for (int i = b.size() - 1; i >= 0; i--) {
+                    todo.push(b.get(i));
+                }
+            } else if (s instanceof MJStmtIf) {
+                todo.push(((MJStmtIf) s).getIfFalse());
+                todo.push(((MJStmtIf) s).getIfTrue());
+            } else if (s instanceof MJStmtWhile) {
+                todo.push(((MJStmtWhile) s).getLoopBody());
+            } else if (s instanceof MJStmtAssign) {
+                checkAssignment((MJStmtAssign) s);
+            } else if (s instanceof MJStmtExpr) {
+                checkExprStatement((MJStmtExpr) s);
+            }
+        }
+    }
+
+    private void checkAssignment(MJStmtAssign assignment) {
         MJExpr left = assignment.getLeft();
         if (!(left instanceof MJVarUse
                 || left instanceof MJArrayLookup
@@ -22,9 +51,7 @@ public class StatementChecker extends MJElement.DefaultVisitor {
         }
     }
 
-    @Override
-    public void visit(MJStmtExpr s) {
-        super.visit(s);
+    private void checkExprStatement(MJStmtExpr s) {
         MJExpr e = s.getExpr();
         if (!(e instanceof MJMethodCall
                 || e instanceof MJNewObject)) {
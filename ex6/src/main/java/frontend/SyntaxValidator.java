@@ -0,0 +1,337 @@
+package frontend;
+
+import static minijava.syntax.MiniJavaParserSym.*;
+
+/**
+ * Checks whether the tokens of a {@link Scanner} form a valid MiniJava program without building an AST.
+ *
+ * It recognizes the same language as {@link RecursiveDescentParser} and also does the checks of
+ * {@link StatementChecker}, for which it only keeps track of the kind of the outermost node of each expression.
+ * Like the parser it does not create error messages.
+ */
+public class SyntaxValidator {
+
+	/** kinds of expressions, which matter for the statement checks */
+	private static final int OTHER = 0;
+	private static final int VAR_USE = 1;
+	private static final int ARRAY_LOOKUP = 2;
+	private static final int FIELD_ACCESS = 3;
+	private static final int METHOD_CALL = 4;
+	private static final int NEW_OBJECT = 5;
+
+	private final Scanner tokens;
+	private int pos = 0;
+	/** true, if the last expression is a bare "new int[e]", see {@link RecursiveDescentParser} */
+	private boolean bare;
+
+	public SyntaxValidator(Scanner tokens) {
+		this.tokens = tokens;
+	}
+
+	/** true, if the input is a program without syntax errors */
+	public boolean validate() {
+		if (tokens.hasFailed()) {
+			return false;
+		}
+		try {
+			program();
+			return true;
+		} catch (ValidationFailure | StackOverflowError e) {
+			return false;
+		}
+	}
+
+	private void program() {
+		expect(CLASS);
+		expect(ID);
+		expect(LBRACE);
+		expect(PUBLIC);
+		expect(STATIC);
+		expect(VOID);
+		expect(MAIN);
+		expect(LPAREN);
+		expect(STRING);
+		expect(LBRACKET);
+		expect(RBRACKET);
+		expect(ID);
+		expect(RPAREN);
+		block();
+		expect(RBRACE);
+		while (kind() == CLASS) {
+			classDecl();
+		}
+		expect(EOF);
+	}
+
+	private void classDecl() {
+		expect(CLASS);
+		expect(ID);
+		if (kind() == EXTENDS) {
+			pos++;
+			expect(ID);
+		}
+		expect(LBRACE);
+		while (kind() != RBRACE) {
+			type();
+			expect(ID);
+			if (kind() == SEMI) {
+				pos++;
+			} else {
+				expect(LPAREN);
+				if (kind() != RPAREN) {
+					varDecl();
+					while (kind() == COMMA) {
+						pos++;
+						varDecl();
+					}
+				}
+				expect(RPAREN);
+				block();
+			}
+		}
+		pos++;
+	}
+
+	private void varDecl() {
+		type();
+		expect(ID);
+	}
+
+	private void type() {
+		switch (kind()) {
+			case INT:
+				pos++;
+				if (kind() == LBRACKET) {
+					pos++;
+					expect(RBRACKET);
+				}
+				return;
+			case BOOLEAN:
+			case ID:
+				pos++;
+				return;
+			default:
+				throw ValidationFailure.INSTANCE;
+		}
+	}
+
+	private void block() {
+		expect(LBRACE);
+		while (kind() != RBRACE) {
+			int k = kind();
+			if (k == INT || k == BOOLEAN || k == ID && tokens.kind(pos + 1) == ID) {
+				varDecl();
+				expect(SEMI);
+			} else {
+				statement();
+			}
+		}
+		pos++;
+	}
+
+	private void statement() {
+		switch (kind()) {
+			case LBRACE:
+				block();
+				return;
+			case IF:
+				pos++;
+				expect(LPAREN);
+				expr();
+				expect(RPAREN);
+				statement();
+				expect(ELSE);
+				statement();
+				return;
+			case WHILE:
+				pos++;
+				expect(LPAREN);
+				expr();
+				expect(RPAREN);
+				statement();
+				return;
+			case RETURN:
+				pos++;
+				expr();
+				expect(SEMI);
+				return;
+			case SYSTEM:
+				pos++;
+				expect(DOT);
+				expect(OUT);
+				expect(DOT);
+				expect(PRINTLN);
+				expect(LPAREN);
+				expr();
+				expect(RPAREN);
+				expect(SEMI);
+				return;
+			default:
+				int left = expr();
+				if (kind() == EQ) {
+					pos++;
+					expr();
+					expect(SEMI);
+					// checks from StatementChecker
+					if (left != VAR_USE && left != ARRAY_LOOKUP && left != FIELD_ACCESS) {
+						throw ValidationFailure.INSTANCE;
+					}
+				} else {
+					expect(SEMI);
+					if (left != METHOD_CALL && left != NEW_OBJECT) {
+						throw ValidationFailure.INSTANCE;
+					}
+				}
+		}
+	}
+
+	/** returns the kind of the expression */
+	private int expr() {
+		return binary(1);
+	}
+
+	private int binary(int minLevel) {
+		int result = unary();
+		boolean resultBare = bare;
+		while (true) {
+			int level = level(kind());
+			if (level < minLevel) {
+				break;
+			}
+			pos++;
+			binary(level + 1);
+			boolean rightBare = bare;
+			result = OTHER;
+			resultBare = false;
+			if (rightBare) {
+				result = postfix(OTHER, false);
+			}
+		}
+		bare = resultBare;
+		return result;
+	}
+
+	private int unary() {
+		int k = kind();
+		if (k == NEG || k == MINUS) {
+			pos++;
+			unary();
+			return postfix(OTHER, false);
+		}
+		return primary();
+	}
+
+	private int primary() {
+		switch (kind()) {
+			case TRUE:
+			case FALSE:
+			case NULL:
+			case THIS:
+			case NUMBER:
+				pos++;
+				return postfix(OTHER, false);
+			case ID:
+				pos++;
+				return postfix(VAR_USE, false);
+			case NEW:
+				pos++;
+				if (kind() == INT) {
+					pos++;
+					expect(LBRACKET);
+					expr();
+					expect(RBRACKET);
+					return postfix(OTHER, true);
+				}
+				expect(ID);
+				expect(LPAREN);
+				expect(RPAREN);
+				return postfix(NEW_OBJECT, false);
+			case LPAREN: {
+				pos++;
+				int inner = expr();
+				expect(RPAREN);
+				return postfix(inner, false);
+			}
+			default:
+				throw ValidationFailure.INSTANCE;
+		}
+	}
+
+	private int postfix(int result, boolean isBare) {
+		while (true) {
+			int k = kind();
+			if (k == DOT) {
+				pos++;
+				if (kind() == LENGTH) {
+					pos++;
+					result = OTHER;
+				} else {
+					expect(ID);
+					if (kind() == LPAREN) {
+						pos++;
+						if (kind() != RPAREN) {
+							expr();
+							while (kind() == COMMA) {
+								pos++;
+								expr();
+							}
+						}
+						expect(RPAREN);
+						result = METHOD_CALL;
+					} else {
+						result = FIELD_ACCESS;
+					}
+				}
+				isBare = false;
+			} else if (k == LBRACKET && !isBare) {
+				pos++;
+				expr();
+				expect(RBRACKET);
+				result = ARRAY_LOOKUP;
+			} else {
+				break;
+			}
+		}
+		bare = isBare;
+		return result;
+	}
+
+	private static int level(int kind) {
+		switch (kind) {
+			case AND:
+				return 1;
+			case EQUALS:
+				return 2;
+			case LESS:
+				return 3;
+			case PLUS:
+			case MINUS:
+				return 4;
+			case TIMES:
+			case DIV:
+				return 5;
+			default:
+				return 0;
+		}
+	}
+
+	private int kind() {
+		return tokens.kind(pos);
+	}
+
+	private void expect(int kind) {
+		if (tokens.kind(pos) != kind) {
+			throw ValidationFailure.INSTANCE;
+		}
+		pos++;
+	}
+
+	/** thrown at the first error, without a stack trace */
+	private static class ValidationFailure extends RuntimeException {
+		static final ValidationFailure INSTANCE = new ValidationFailure();
+
+		private ValidationFailure() {
+			super(null, null, false, false);
+		}
+	}
+}
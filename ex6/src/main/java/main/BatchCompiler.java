@@ -0,0 +1,239 @@
+package main;
+
+import analysis.TypeError;
+import frontend.SyntaxError;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles many MiniJava files in parallel.
+ *
+ * Every file is compiled by its own {@link MiniJavaCompiler} instance,
+ * the tasks are distributed over a work-stealing {@link ForkJoinPool}.
+ * If a {@link CompilationCache} is set, unchanged inputs are taken from the cache.
+ */
+public class BatchCompiler {
+
+    private final int parallelism;
+    private CompilationCache cache;
+
+    public BatchCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompiler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /** use the given cache to skip compiling unchanged files (null to disable caching) */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    /** compiles all the given files, the results are in the same order as the input files */
+    public BatchResult compileFiles(List<File> files) throws InterruptedException {
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<CompilationResult>> tasks = new ArrayList<>();
+            for (File file : files) {
+                tasks.add(pool.submit(() -> compileFile(file)));
+            }
+            List<CompilationResult> results = new ArrayList<>();
+            for (ForkJoinTask<CompilationResult> task : tasks) {
+                try {
+                    results.add(task.get());
+                } catch (ExecutionException e) {
+                    // compileFile catches everything, so this should not happen
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            long totalBytes = 0;
+            for (File file : files) {
+                totalBytes += file.length();
+            }
+            return new BatchResult(results, System.nanoTime() - startTime, totalBytes);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** compiles all MiniJava files found in the given files and directories */
+    public BatchResult compileAll(List<File> roots) throws InterruptedException {
+        return compileFiles(collectSources(roots));
+    }
+
+    private CompilationResult compileFile(File file) {
+        try {
+            MiniJavaCompiler compiler = new MiniJavaCompiler();
+            if (cache == null) {
+                compiler.compileFile(file);
+                return CompilationResult.of(file.getPath(), compiler, false);
+            }
+            byte[] source = Files.readAllBytes(file.toPath());
+            String key = CompilationCache.key(compiler.getOptions(), source);
+            CompilationCache.Entry entry = cache.get(key);
+            if (entry != null) {
+                return CompilationResult.cached(file.getPath(), entry);
+            }
+            // decode like the MappedFileReader used by compileFile
+            compiler.compileString(file.getPath(), new String(source, Charset.defaultCharset()));
+            CompilationResult result = CompilationResult.of(file.getPath(), compiler, true);
+            try {
+                cache.put(key, new CompilationCache.Entry(result.getLlvmCode(), null,
+                        result.getSyntaxErrors(), result.getTypeErrors()));
+            } catch (IOException | RuntimeException e) {
+                // the cache is only an optimization, the file was still compiled
+            }
+            return result;
+        } catch (Throwable e) {
+            return CompilationResult.failed(file.getPath(), e);
+        }
+    }
+
+    /**
+     * collects all .java files from the given roots.
+     * Directories are searched recursively and the files of a directory are sorted by name.
+     */
+    public static List<File> collectSources(List<File> roots) {
+        List<File> result = new ArrayList<>();
+        Deque<File> todo = new ArrayDeque<>(roots);
+        while (!todo.isEmpty()) {
+            File f = todo.removeFirst();
+            if (f.isDirectory()) {
+                File[] children = f.listFiles();
+                if (children == null) {
+                    continue;
+                }
+                Arrays.sort(children);
+                // add in reverse, so that the directory is processed in order
+                for (int i = children.length - 1; i >= 0; i--) {
+                    todo.addFirst(children[i]);
+                }
+            } else if (f.getName().endsWith(".java") || roots.contains(f)) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the results of a batch run together with aggregate statistics
+     */
+    public static class BatchResult {
+        private final List<CompilationResult> results;
+        private final long wallTimeNanos;
+        private final long totalBytes;
+
+        BatchResult(List<CompilationResult> results, long wallTimeNanos, long totalBytes) {
+            this.results = Collections.unmodifiableList(results);
+            this.wallTimeNanos = wallTimeNanos;
+            this.totalBytes = totalBytes;
+        }
+
+        public List<CompilationResult> getResults() {
+            return results;
+        }
+
+        public long getWallTimeNanos() {
+            return wallTimeNanos;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public int getFailedCount() {
+            int count = 0;
+            for (CompilationResult r : results) {
+                if (!r.isSuccessful()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public double getFilesPerSecond() {
+            return results.size() / seconds();
+        }
+
+        public double getBytesPerSecond() {
+            return totalBytes / seconds();
+        }
+
+        /** the costs of all phases summed over all files, which were compiled */
+        public CompilationMetrics getPhaseTotals() {
+            CompilationMetrics total = new CompilationMetrics("total");
+            for (CompilationResult r : results) {
+                total.add(r.getMetrics());
+            }
+            return total;
+        }
+
+        private double seconds() {
+            return Math.max(wallTimeNanos, 1) / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Compiled %d files (%d failed, %d bytes) in %.3f s: %.1f files/s, %.1f KB/s",
+                    results.size(), getFailedCount(), totalBytes, seconds(),
+                    getFilesPerSecond(), getBytesPerSecond() / 1024);
+        }
+    }
+
+    /**
+     * usage: BatchCompiler [-j threads] [-cache directory] [-cache-size megabytes] file-or-directory...
+     */
+    public static void main(String[] args) throws Exception {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        File cacheDir = null;
+        long cacheSize = 512;
+        List<File> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                cacheDir = new File(args[++i]);
+            } else if (args[i].equals("-cache-size") && i + 1 < args.length) {
+                cacheSize = Long.parseLong(args[++i]);
+            } else {
+                roots.add(new File(args[i]));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.err.println("usage: BatchCompiler [-j threads] [-cache directory] [-cache-size megabytes] file-or-directory...");
+            System.exit(2);
+        }
+
+        BatchCompiler compiler = new BatchCompiler(parallelism);
+        if (cacheDir != null) {
+            compiler.setCache(new CompilationCache(cacheDir, cacheSize * 1024 * 1024));
+        }
+        BatchResult batch = compiler.compileAll(roots);
+        for (CompilationResult r : batch.getResults()) {
+            if (r.getFailure() != null) {
+                System.out.println(r.getInputName() + ": compiler failure: " + r.getFailure());
+            }
+            for (SyntaxError e : r.getSyntaxErrors()) {
+                System.out.println(r.getInputName() + ": " + e);
+            }
+            for (TypeError e : r.getTypeErrors()) {
+                System.out.println(r.getInputName() + ": " + e);
+            }
+        }
+        System.out.println(batch);
+        System.out.print(batch.getPhaseTotals());
+        System.exit(batch.getFailedCount() == 0 ? 0 : 1);
+    }
+}
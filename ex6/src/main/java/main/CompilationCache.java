@@ -0,0 +1,295 @@
+package main;
+
+import analysis.TypeError;
+import frontend.SourcePosition;
+import frontend.SyntaxError;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent, content addressed cache for compilation results.
+ *
+ * Entries are keyed by a hash of the compiler version, the compiler options and the source text.
+ * An entry stores the emitted code together with the diagnostics, so that a cache hit can skip all phases.
+ *
+ * Several compiler processes can share one cache directory:
+ * entries are written to a temporary file and then atomically moved to their final location,
+ * and eviction is guarded by a file lock.
+ * The least recently used entries are evicted when the cache grows beyond its maximum size.
+ */
+public class CompilationCache {
+    private static final int MAGIC = 0x4d4a4343; // "MJCC"
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    /** estimated size of all entries, only exact directly after an eviction run */
+    private final AtomicLong estimatedSize = new AtomicLong();
+
+    public CompilationCache(File directory, long maxSizeBytes) throws IOException {
+        this.directory = directory.toPath();
+        this.maxSizeBytes = maxSizeBytes;
+        Files.createDirectories(this.directory);
+        long size = 0;
+        for (Path p : listEntries()) {
+            size += sizeOf(p);
+        }
+        estimatedSize.set(size);
+    }
+
+    /** computes the cache key for a source text */
+    public static String key(String options, byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(MiniJavaCompiler.VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(options.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** returns the cached entry for a key or null, if there is no such entry */
+    public Entry get(String key) {
+        Path file = entryPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Entry entry = Entry.read(in);
+            // mark as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // corrupt or concurrently evicted entry, treat as a miss
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /** stores an entry in the cache */
+    public void put(String key, Entry entry) throws IOException {
+        Path file = entryPath(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                entry.write(out);
+            }
+            long size = sizeOf(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (estimatedSize.addAndGet(size) > maxSizeBytes) {
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * removes the least recently used entries until the cache is smaller than its maximum size.
+     * If another cache object in this process is evicting from the same directory, the eviction is left to it.
+     */
+    private synchronized void evict() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.lock();
+            } catch (OverlappingFileLockException e) {
+                return;
+            }
+            try {
+                evictLocked();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /** deletes the oldest entries, the caller holds the lock of the cache directory */
+    private void evictLocked() throws IOException {
+        List<Path> entries = listEntries();
+        Map<Path, Long> lastUsed = new HashMap<>();
+        long total = 0;
+        for (Path p : entries) {
+            lastUsed.put(p, lastModified(p));
+            total += sizeOf(p);
+        }
+        entries.sort(Comparator.comparing(lastUsed::get));
+        // evict a bit more than necessary, so that we do not have to evict on every put
+        long target = maxSizeBytes - maxSizeBytes / 10;
+        for (Path p : entries) {
+            if (total <= target) {
+                break;
+            }
+            long size = sizeOf(p);
+            Files.deleteIfExists(p);
+            total -= size;
+        }
+        estimatedSize.set(total);
+    }
+
+    private List<Path> listEntries() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory)) {
+            for (Path dir : dirs) {
+                if (!Files.isDirectory(dir)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + ENTRY_SUFFIX)) {
+                    for (Path f : files) {
+                        result.add(f);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path entryPath(String key) {
+        // use the first two characters as a sub directory to keep directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    /**
+     * a cached compilation result: the emitted code and the diagnostics
+     */
+    public static class Entry {
+        private final String llvmCode;
+        private final String mipsCode;
+        private final List<SyntaxError> syntaxErrors;
+        private final List<TypeError> typeErrors;
+
+        public Entry(String llvmCode, String mipsCode, List<SyntaxError> syntaxErrors, List<TypeError> typeErrors) {
+            this.llvmCode = llvmCode;
+            this.mipsCode = mipsCode;
+            this.syntaxErrors = Collections.unmodifiableList(new ArrayList<>(syntaxErrors));
+            this.typeErrors = Collections.unmodifiableList(new ArrayList<>(typeErrors));
+        }
+
+        /** the LLVM code or null, if the program had errors */
+        public String getLlvmCode() {
+            return llvmCode;
+        }
+
+        /** the MIPS code or null, if it was not generated */
+        public String getMipsCode() {
+            return mipsCode;
+        }
+
+        public List<SyntaxError> getSyntaxErrors() {
+            return syntaxErrors;
+        }
+
+        public List<TypeError> getTypeErrors() {
+            return typeErrors;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeUTF(MiniJavaCompiler.VERSION);
+            writeString(out, llvmCode);
+            writeString(out, mipsCode);
+            out.writeInt(syntaxErrors.size());
+            for (SyntaxError e : syntaxErrors) {
+                out.writeInt(e.getLine());
+                out.writeInt(e.getColumn());
+                writeString(out, e.getMessage());
+            }
+            out.writeInt(typeErrors.size());
+            for (TypeError e : typeErrors) {
+                // errors on elements without position have no source
+                SourcePosition source = e.getSource();
+                out.writeInt(source == null ? 0 : source.getLine());
+                out.writeInt(source == null ? 0 : source.getColumn());
+                out.writeInt(source == null ? 0 : source.getEndLine());
+                out.writeInt(source == null ? 0 : source.getEndColumn());
+                writeString(out, e.getMessage());
+            }
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(MiniJavaCompiler.VERSION)) {
+                throw new IOException("Invalid cache entry.");
+            }
+            String llvmCode = readString(in);
+            String mipsCode = readString(in);
+            List<SyntaxError> syntaxErrors = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                int line = in.readInt();
+                int column = in.readInt();
+                syntaxErrors.add(new SyntaxError(readString(in), line, column));
+            }
+            List<TypeError> typeErrors = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                int line = in.readInt();
+                int column = in.readInt();
+                int endLine = in.readInt();
+                int endColumn = in.readInt();
+                typeErrors.add(new TypeError(readString(in), line, column, endLine, endColumn));
+            }
+            return new Entry(llvmCode, mipsCode, syntaxErrors, typeErrors);
+        }
+
+        private static void writeString(DataOutputStream out, String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
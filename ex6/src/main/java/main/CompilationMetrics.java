@@ -0,0 +1,166 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Wall time, CPU time and allocated bytes spent in each phase of a compilation.
+ *
+ * CPU time and allocations are measured for the compiling thread with the {@link java.lang.management.ThreadMXBean}.
+ * Allocations are only available in JVMs with com.sun.management.ThreadMXBean, which is used through reflection.
+ * They are -1, if the JVM does not support measuring them.
+ * For every measured phase a {@link CompilationPhaseEvent} is emitted, when Java Flight Recorder is available.
+ */
+public class CompilationMetrics {
+
+    public enum Phase {
+        PARSE, ANALYSIS, TRANSLATION, SSA, PRINT
+    }
+
+    /** a computation, which is measured as one phase */
+    public interface PhaseAction<T> {
+        T run() throws Exception;
+    }
+
+    private static final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported = isCpuTimeSupported();
+    /** com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long), or null if allocations cannot be measured */
+    private static final Method allocatedBytesMethod = findAllocatedBytesMethod();
+    private static final boolean jfrAvailable = CompilationPhaseEvent.isAvailable();
+
+    private final String inputName;
+    private final Map<Phase, PhaseMetrics> phases = new EnumMap<>(Phase.class);
+
+    public CompilationMetrics(String inputName) {
+        this.inputName = inputName;
+    }
+
+    /** runs the action and adds its costs to the given phase */
+    public <T> T measure(Phase phase, PhaseAction<T> action) throws Exception {
+        CompilationPhaseEvent event = jfrAvailable ? CompilationPhaseEvent.begin(inputName, phase) : null;
+        long cpuStart = cpuTime();
+        long allocStart = allocatedBytes();
+        long wallStart = System.nanoTime();
+        try {
+            return action.run();
+        } finally {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuStart < 0 ? -1 : cpuTime() - cpuStart;
+            long alloc = allocStart < 0 ? -1 : allocatedBytes() - allocStart;
+            phases.computeIfAbsent(phase, p -> new PhaseMetrics()).add(wall, cpu, alloc);
+            if (event != null) {
+                event.end(cpu, alloc);
+            }
+        }
+    }
+
+    /** adds all phases of the other metrics to this one */
+    public void add(CompilationMetrics other) {
+        for (Map.Entry<Phase, PhaseMetrics> e : other.phases.entrySet()) {
+            PhaseMetrics m = e.getValue();
+            phases.computeIfAbsent(e.getKey(), p -> new PhaseMetrics()).add(m.wallNanos, m.cpuNanos, m.allocatedBytes);
+        }
+    }
+
+    public String getInputName() {
+        return inputName;
+    }
+
+    /** the metrics of a phase or null, if the phase did not run */
+    public PhaseMetrics get(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public long getTotalWallNanos() {
+        long total = 0;
+        for (PhaseMetrics m : phases.values()) {
+            total += m.wallNanos;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Phase, PhaseMetrics> e : phases.entrySet()) {
+            PhaseMetrics m = e.getValue();
+            sb.append(String.format("%-12s wall %9.3f ms  cpu %9.3f ms  alloc %10d KB%n",
+                    e.getKey(), m.wallNanos / 1e6, m.cpuNanos / 1e6, m.allocatedBytes / 1024));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * the costs of a single phase
+     */
+    public static class PhaseMetrics {
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        private void add(long wall, long cpu, long alloc) {
+            wallNanos += wall;
+            // stay at -1, once one measurement is not supported
+            cpuNanos = cpu < 0 || cpuNanos < 0 ? -1 : cpuNanos + cpu;
+            allocatedBytes = alloc < 0 || allocatedBytes < 0 ? -1 : allocatedBytes + alloc;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private static long cpuTime() {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return -1;
+        }
+        try {
+            return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            if (threadBean.isCurrentThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+                threadBean.setThreadCpuTimeEnabled(true);
+            }
+            return threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private static Method findAllocatedBytesMethod() {
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (!beanClass.isInstance(threadBean)
+                    || !(Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(threadBean)) {
+                return null;
+            }
+            Method enabled = beanClass.getMethod("isThreadAllocatedMemoryEnabled");
+            if (!(Boolean) enabled.invoke(threadBean)) {
+                beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threadBean, true);
+            }
+            return (Boolean) enabled.invoke(threadBean) ? beanClass.getMethod("getThreadAllocatedBytes", long.class) : null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // JVMs without the extended bean, or an unsupported operation or security exception thrown by the bean
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package main;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flight recorder event for one phase of a compilation.
+ *
+ * The event type is created at run time with the JFR event factory, which is only accessed through reflection,
+ * so the compiler can be built and run on JVMs without the jdk.jfr module. There {@link #isAvailable()} is false.
+ */
+class CompilationPhaseEvent {
+    // the fields of the event, in the order of the value descriptors
+    private static final int INPUT_NAME = 0;
+    private static final int PHASE = 1;
+    private static final int CPU_TIME = 2;
+    private static final int ALLOCATED_BYTES = 3;
+
+    /** the jdk.jfr.EventFactory of the event type, or null if JFR is not available */
+    private static Object factory;
+    private static Method newEvent;
+    private static Method beginEvent;
+    private static Method setField;
+    private static Method commitEvent;
+
+    static {
+        try {
+            createEventType();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // older JVMs without the JFR API
+            factory = null;
+        }
+    }
+
+    /** the jdk.jfr.Event */
+    private final Object event;
+
+    private CompilationPhaseEvent(Object event) {
+        this.event = event;
+    }
+
+    static boolean isAvailable() {
+        return factory != null;
+    }
+
+    /** starts the event for a phase, JFR must be available */
+    static CompilationPhaseEvent begin(String inputName, CompilationMetrics.Phase phase) {
+        try {
+            Object event = newEvent.invoke(factory);
+            setField.invoke(event, INPUT_NAME, inputName);
+            setField.invoke(event, PHASE, phase.name());
+            beginEvent.invoke(event);
+            return new CompilationPhaseEvent(event);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void end(long cpuTime, long allocatedBytes) {
+        try {
+            setField.invoke(event, CPU_TIME, cpuTime);
+            setField.invoke(event, ALLOCATED_BYTES, allocatedBytes);
+            commitEvent.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void createEventType() throws ReflectiveOperationException {
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+        Constructor<?> value = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+        List<Object> eventAnnotations = Arrays.asList(
+                annotation.newInstance(jfrAnnotation("Name"), "minijava.CompilationPhase"),
+                annotation.newInstance(jfrAnnotation("Label"), "Compilation Phase"),
+                annotation.newInstance(jfrAnnotation("Category"), new String[]{"MiniJava"}),
+                annotation.newInstance(jfrAnnotation("Description"), "A phase of compiling one MiniJava input"));
+        List<Object> fields = new ArrayList<>();
+        fields.add(value.newInstance(String.class, "inputName",
+                Collections.singletonList(annotation.newInstance(jfrAnnotation("Label"), "Input"))));
+        fields.add(value.newInstance(String.class, "phase",
+                Collections.singletonList(annotation.newInstance(jfrAnnotation("Label"), "Phase"))));
+        fields.add(value.newInstance(long.class, "cpuTime", Arrays.asList(
+                annotation.newInstance(jfrAnnotation("Label"), "CPU Time"),
+                annotation.newInstance(jfrAnnotation("Timespan"), "NANOSECONDS"))));
+        fields.add(value.newInstance(long.class, "allocatedBytes", Arrays.asList(
+                annotation.newInstance(jfrAnnotation("Label"), "Allocated"),
+                annotation.newInstance(jfrAnnotation("DataAmount"), "BYTES"))));
+
+        factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, eventAnnotations, fields);
+        newEvent = eventFactory.getMethod("newEvent");
+        beginEvent = eventClass.getMethod("begin");
+        setField = eventClass.getMethod("set", int.class, Object.class);
+        commitEvent = eventClass.getMethod("commit");
+    }
+
+    private static Class<? extends Annotation> jfrAnnotation(String name) throws ClassNotFoundException {
+        return Class.forName("jdk.jfr." + name).asSubclass(Annotation.class);
+    }
+}
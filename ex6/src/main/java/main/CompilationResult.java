@@ -0,0 +1,110 @@
+package main;
+
+import analysis.TypeError;
+import frontend.SyntaxError;
+import minijava.ast.MJProgram;
+import minillvm.ast.Prog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the immutable outcome of compiling a single MiniJava input
+ */
+public class CompilationResult {
+    private final String inputName;
+    private final MJProgram javaProgram;
+    private final List<SyntaxError> syntaxErrors;
+    private final List<TypeError> typeErrors;
+    private final Prog llvmProg;
+    private final String llvmCode;
+    private final boolean fromCache;
+    private final CompilationMetrics metrics;
+    private final Throwable failure;
+
+    CompilationResult(String inputName, MJProgram javaProgram, List<SyntaxError> syntaxErrors,
+                      List<TypeError> typeErrors, Prog llvmProg, String llvmCode, boolean fromCache,
+                      CompilationMetrics metrics, Throwable failure) {
+        this.inputName = inputName;
+        this.javaProgram = javaProgram;
+        this.syntaxErrors = Collections.unmodifiableList(new ArrayList<>(syntaxErrors));
+        this.typeErrors = Collections.unmodifiableList(new ArrayList<>(typeErrors));
+        this.llvmProg = llvmProg;
+        this.llvmCode = llvmCode;
+        this.fromCache = fromCache;
+        this.metrics = metrics;
+        this.failure = failure;
+    }
+
+    /**
+     * captures the state of a compiler after {@link MiniJavaCompiler#compile} has finished.
+     * If printCode is set, the LLVM code is printed eagerly.
+     */
+    static CompilationResult of(String inputName, MiniJavaCompiler compiler, boolean printCode) throws Exception {
+        String code = printCode ? compiler.getLlvmCode() : null;
+        return new CompilationResult(inputName, compiler.getJavaProgram(), compiler.getSyntaxErrors(),
+                compiler.getTypeErrors(), compiler.getLlvmProg(), code, false, compiler.getMetrics(), null);
+    }
+
+    /** a result restored from the compilation cache, it has no AST and no LLVM program */
+    static CompilationResult cached(String inputName, CompilationCache.Entry entry) {
+        return new CompilationResult(inputName, null, entry.getSyntaxErrors(), entry.getTypeErrors(),
+                null, entry.getLlvmCode(), true, new CompilationMetrics(inputName), null);
+    }
+
+    /** a result for an input, where the compiler itself crashed or the input could not be read */
+    static CompilationResult failed(String inputName, Throwable failure) {
+        return new CompilationResult(inputName, null, Collections.emptyList(), Collections.emptyList(),
+                null, null, false, new CompilationMetrics(inputName), failure);
+    }
+
+    public String getInputName() {
+        return inputName;
+    }
+
+    /** the parsed program or null, if parsing failed or the result was taken from the cache */
+    public MJProgram getJavaProgram() {
+        return javaProgram;
+    }
+
+    public List<SyntaxError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+    public List<TypeError> getTypeErrors() {
+        return typeErrors;
+    }
+
+    /** the translated program or null, if there were errors or the result was taken from the cache */
+    public Prog getLlvmProg() {
+        return llvmProg;
+    }
+
+    /** the emitted LLVM code or null, if there were errors */
+    public String getLlvmCode() {
+        if (llvmCode == null && llvmProg != null) {
+            return llvmProg.toString();
+        }
+        return llvmCode;
+    }
+
+    /** true, if this result was taken from the compilation cache */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    /** the time and memory spent in each phase, empty for cached and failed results */
+    public CompilationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** the exception thrown while compiling, or null */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null && (llvmProg != null || llvmCode != null);
+    }
+}
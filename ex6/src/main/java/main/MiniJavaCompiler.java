@@ -2,54 +2,101 @@ package main;
 
 import analysis.Analysis;
 import analysis.TypeError;
+import frontend.CharSequenceReader;
 import frontend.MJFrontend;
+import frontend.MappedFileReader;
 import frontend.SyntaxError;
 import minijava.ast.MJProgram;
 import minillvm.ast.Prog;
+import translation.SSATransformation;
 import translation.Translator;
 
+import main.CompilationMetrics.Phase;
+
 import java.io.*;
 import java.util.Collections;
 import java.util.List;
 
 public class MiniJavaCompiler {
 
+    /** version of the compiler, must be changed whenever the generated code or the format of cached results changes */
+    public static final String VERSION = "ex6-3";
+
+    /** how local variables are translated */
+    public enum SSAMode {
+        /** the translator builds SSA form directly */
+        DIRECT,
+        /** local variables are stored in stack slots */
+        NONE,
+        /** local variables are stored in stack slots, which the {@link SSATransformation} replaces afterwards */
+        TRANSFORMATION
+    }
 
     private MJProgram javaProgram;
     private Prog llvmProg;
     private Analysis analysis;
     private MJFrontend frontend;
+    private CompilationMetrics metrics;
+    private String llvmCode;
+    private SSAMode ssaMode = SSAMode.DIRECT;
 
     public void compileFile(File file) throws Exception {
-        try (FileReader r = new FileReader(file)) {
+        try (Reader r = new MappedFileReader(file)) {
             compile(file.getPath(), r);
         }
 
     }
 
-    public void compileString(String inputName, String input) throws Exception {
-        compile(inputName, new StringReader(input));
+    public void compileString(String inputName, CharSequence input) throws Exception {
+        compile(inputName, new CharSequenceReader(input));
     }
 
     public void compile(String inputName, Reader input) throws Exception {
+        // forget the results of the previous compilation, later phases are skipped on errors
+        analysis = null;
+        llvmProg = null;
+        llvmCode = null;
+        metrics = new CompilationMetrics(inputName);
         frontend = new MJFrontend();
-        javaProgram = frontend.parse(input);
+        javaProgram = metrics.measure(Phase.PARSE, () -> frontend.parse(input));
         if (!frontend.getSyntaxErrors().isEmpty()) {
             return;
         }
 
         // typecheck
         analysis = new Analysis(javaProgram);
-        analysis.check();
+        metrics.measure(Phase.ANALYSIS, () -> {
+            analysis.check();
+            return null;
+        });
         if (!analysis.getTypeErrors().isEmpty()) {
             return;
         }
 
-        // translate
-        // TODO you can pass analysis results to your translator here:
-        Translator translator = new Translator(javaProgram);
-        llvmProg = translator.translate();
+        // translate, with the types and layouts computed by the analysis
+        Translator translator = new Translator(javaProgram, analysis.getTypeInformation());
+        translator.setSSA(ssaMode == SSAMode.DIRECT);
+        llvmProg = metrics.measure(Phase.TRANSLATION, translator::translate);
+
+        if (ssaMode == SSAMode.TRANSFORMATION) {
+            metrics.measure(Phase.SSA, () -> {
+                new SSATransformation().transformProg(llvmProg);
+                return null;
+            });
+        }
+    }
+
+    public void setSSAMode(SSAMode ssaMode) {
+        this.ssaMode = ssaMode;
+    }
+
+    public SSAMode getSSAMode() {
+        return ssaMode;
+    }
 
+    /** a description of all options, which influence the generated code */
+    public String getOptions() {
+        return "ssa=" + ssaMode.name().toLowerCase();
     }
 
     public MJProgram getJavaProgram() {
@@ -60,6 +107,19 @@ public class MiniJavaCompiler {
         return llvmProg;
     }
 
+    /** prints the LLVM program, the printing is measured as its own phase */
+    public String getLlvmCode() throws Exception {
+        if (llvmCode == null && llvmProg != null) {
+            llvmCode = metrics.measure(Phase.PRINT, llvmProg::toString);
+        }
+        return llvmCode;
+    }
+
+    /** the time and memory spent in each phase of the last compilation */
+    public CompilationMetrics getMetrics() {
+        return metrics;
+    }
+
     public List<SyntaxError> getSyntaxErrors() {
         return frontend.getSyntaxErrors();
     }
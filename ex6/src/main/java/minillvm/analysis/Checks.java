@@ -5,6 +5,8 @@ import minillvm.ast.*;
 import minillvm.printer.PrettyPrinter;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.StreamSupport;
 
 public class Checks {
@@ -12,6 +14,17 @@ public class Checks {
 	private Map<Element, SourcePosition> sourcePositions;
 	private String progString;
 	private Map<BasicBlock, List<BasicBlock>> predecessorMap;
+	/** the pool for checking procedures in parallel, null for sequential checking */
+	private ForkJoinPool pool;
+
+	public Checks() {
+	}
+
+	/** checks for a single procedure, with its own predecessors, the printed program is shared */
+	private Checks(Checks parent) {
+		this.sourcePositions = parent.sourcePositions;
+		this.progString = parent.progString;
+	}
 
 	public void checkProgram(Prog prog) {
 		StringBuilder sb = new StringBuilder();
@@ -20,10 +33,47 @@ public class Checks {
 		sourcePositions = printer.getSourcePositions();
 		progString = sb.toString();
 
-
+		if (pool == null || prog.getProcedures().size() < 2) {
+			for (Proc proc : prog.getProcedures()) {
+				checkProcedure(proc);
+			}
+			return;
+		}
+		List<ForkJoinTask<RuntimeException>> tasks = new ArrayList<>();
 		for (Proc proc : prog.getProcedures()) {
-			checkProcedure(proc);
+			Checks procChecks = new Checks(this);
+			tasks.add(pool.submit(() -> {
+				try {
+					procChecks.checkProcedure(proc);
+					return null;
+				} catch (RuntimeException e) {
+					return e;
+				}
+			}));
 		}
+		// the error of the first procedure in order is thrown, like with sequential checking
+		RuntimeException error = null;
+		for (ForkJoinTask<RuntimeException> task : tasks) {
+			RuntimeException e = task.join();
+			if (error == null) {
+				error = e;
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * checks the procedures in parallel on the common ForkJoin pool.
+	 * The procedures are only read, and when there are errors, the error of the first procedure is thrown.
+	 */
+	public void setParallel(boolean parallel) {
+		this.pool = parallel ? ForkJoinPool.commonPool() : null;
+	}
+
+	public boolean isParallel() {
+		return pool != null;
 	}
 
 	private void checkProcedure(Proc proc) {
@@ -39,7 +89,7 @@ public class Checks {
 	}
 
 	private Map<BasicBlock, List<BasicBlock>> buildPredecessors(BasicBlockList basicBlocks) {
-		Map<BasicBlock, List<BasicBlock>> result = new HashMap<>();
+		Map<BasicBlock, List<BasicBlock>> result = new IdentityHashMap<>();
 
 		for (BasicBlock block : basicBlocks) {
 			result.put(block, new ArrayList<>());
@@ -0,0 +1,133 @@
+package minillvm.analysis;
+
+import minillvm.ast.*;
+
+import java.util.*;
+
+/**
+ * An index from the variables of a procedure to the references using them.
+ *
+ * The index is built once for a procedure and then kept up to date by the pass changing the procedure:
+ * elements added to the procedure are registered with {@link #addUses(Element)},
+ * removed elements with {@link #removeUses(Element)}.
+ * Changes done through the index itself, like {@link #replaceAllUsesWith(Variable, Operand)},
+ * update it automatically, and only take time proportional to the number of changed uses.
+ */
+public class DefUse {
+	/** the references of each variable, in the order they were added */
+	private final Map<Variable, List<VarRef>> uses = new HashMap<>();
+
+	public DefUse(Proc proc) {
+		addUses(proc);
+	}
+
+	/** the definition of a variable, this is the assigning instruction for temporary variables and the procedure for parameters */
+	public Element getDefinition(Variable v) {
+		return v.getParent() instanceof ParameterList ? v.getParent().getParent() : v.getParent();
+	}
+
+	/** the references to the variable */
+	public List<VarRef> getUses(Variable v) {
+		return Collections.unmodifiableList(uses.getOrDefault(v, Collections.emptyList()));
+	}
+
+	public int getUseCount(Variable v) {
+		return uses.getOrDefault(v, Collections.emptyList()).size();
+	}
+
+	public boolean isUsed(Variable v) {
+		return getUseCount(v) > 0;
+	}
+
+	/** the instructions using the variable, an instruction using the variable several times is only included once */
+	public List<Instruction> getUsers(Variable v) {
+		List<Instruction> result = new ArrayList<>();
+		Set<Instruction> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (VarRef use : uses.getOrDefault(v, Collections.emptyList())) {
+			Instruction instr = instruction(use);
+			if (instr != null && seen.add(instr)) {
+				result.add(instr);
+			}
+		}
+		return result;
+	}
+
+	/** registers the variable references in an element, which was added to the procedure */
+	public void addUses(Element e) {
+		e.accept(new Element.DefaultVisitor() {
+			@Override
+			public void visit(VarRef varRef) {
+				add(varRef);
+			}
+		});
+	}
+
+	/** forgets the variable references in an element, which was removed from the procedure */
+	public void removeUses(Element e) {
+		e.accept(new Element.DefaultVisitor() {
+			@Override
+			public void visit(VarRef varRef) {
+				remove(varRef);
+			}
+		});
+	}
+
+	/** removes an instruction from its block and forgets its uses */
+	public void removeInstruction(Instruction instr) {
+		((BasicBlock) instr.getParent()).remove(instr);
+		removeUses(instr);
+	}
+
+	/** replaces a single use by a copy of the replacement */
+	public void replaceUse(VarRef use, Operand replacement) {
+		remove(use);
+		Operand copy = replacement.copy();
+		use.replaceBy(copy);
+		addUses(copy);
+	}
+
+	/** replaces all uses of the variable by copies of the replacement */
+	public void replaceAllUsesWith(Variable v, Operand replacement) {
+		if (replacement instanceof VarRef && ((VarRef) replacement).getVariable() == v) {
+			return;
+		}
+		List<VarRef> old = uses.remove(v);
+		if (old == null) {
+			return;
+		}
+		for (VarRef use : old) {
+			Operand copy = replacement.copy();
+			use.replaceBy(copy);
+			addUses(copy);
+		}
+	}
+
+	private void add(VarRef varRef) {
+		uses.computeIfAbsent(varRef.getVariable(), k -> new ArrayList<>(1)).add(varRef);
+	}
+
+	private void remove(VarRef varRef) {
+		List<VarRef> refs = uses.get(varRef.getVariable());
+		if (refs == null) {
+			return;
+		}
+		// references are compared by identity, usually a variable only has a few uses
+		for (int i = refs.size() - 1; i >= 0; i--) {
+			if (refs.get(i) == varRef) {
+				refs.remove(i);
+				break;
+			}
+		}
+		if (refs.isEmpty()) {
+			uses.remove(varRef.getVariable());
+		}
+	}
+
+	/** the instruction containing the element, or null if it is not part of an instruction */
+	private static Instruction instruction(Element e) {
+		while (e != null && !(e instanceof Instruction)) {
+			e = e.getParent();
+		}
+		return (Instruction) e;
+	}
+}
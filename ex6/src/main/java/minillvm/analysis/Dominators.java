@@ -0,0 +1,338 @@
+package minillvm.analysis;
+
+import minillvm.ast.*;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * The dominator tree and dominance frontiers of a procedure.
+ *
+ * Immediate dominators are computed with the iterative algorithm from "A Simple, Fast Dominance Algorithm"
+ * (Cooper, Harvey and Kennedy) on the blocks in reverse postorder.
+ * The dominator tree is then numbered in preorder and postorder, so that dominance can be checked in constant time.
+ * All traversals use explicit stacks, so procedures with many blocks cannot overflow the stack.
+ *
+ * Only blocks reachable from the entry block have dominators. An unreachable block dominates only itself
+ * and is dominated by no other block.
+ */
+public class Dominators {
+	/** computed dominators by procedure, the values are soft, because they reference their procedure */
+	private static final Map<Proc, SoftReference<Dominators>> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/** the reachable blocks in reverse postorder of the control flow graph */
+	private final BasicBlock[] blocks;
+	/** the position of each reachable block in blocks, basic blocks are lists, so they are compared by identity */
+	private final Map<BasicBlock, Integer> index = new IdentityHashMap<>();
+	/** the predecessors of each reachable block, in the order of the blocks in the procedure */
+	private final int[][] predecessors;
+	/** the immediate dominator of each reachable block, the entry block is its own immediate dominator */
+	private final int[] idom;
+	/** the children of each reachable block in the dominator tree */
+	private final int[][] children;
+	private final int[] preorder;
+	private final int[] postorder;
+	/** the dominance frontiers, computed on first use, they are the same if two threads compute them */
+	private volatile List<List<BasicBlock>> frontiers;
+
+	public Dominators(Proc proc) {
+		BasicBlockList procBlocks = proc.getBasicBlocks();
+		blocks = reversePostorder(procBlocks);
+		for (int i = 0; i < blocks.length; i++) {
+			index.put(blocks[i], i);
+		}
+		predecessors = buildPredecessors(procBlocks);
+		idom = computeImmediateDominators();
+		children = buildChildren();
+		preorder = new int[blocks.length];
+		postorder = new int[blocks.length];
+		numberTree();
+	}
+
+	/**
+	 * the dominators of the procedure, which are computed on first use and then cached.
+	 * Passes changing the control flow of the procedure must call {@link #invalidate(Proc)}.
+	 */
+	public static Dominators of(Proc proc) {
+		SoftReference<Dominators> ref = cache.get(proc);
+		Dominators result = ref == null ? null : ref.get();
+		if (result == null) {
+			result = new Dominators(proc);
+			cache.put(proc, new SoftReference<>(result));
+		}
+		return result;
+	}
+
+	/** removes the cached dominators of the procedure */
+	public static void invalidate(Proc proc) {
+		cache.remove(proc);
+	}
+
+	public boolean isReachable(BasicBlock block) {
+		return index.containsKey(block);
+	}
+
+	/** the reachable blocks, each block comes after its dominators */
+	public List<BasicBlock> getReversePostorder() {
+		return Collections.unmodifiableList(Arrays.asList(blocks));
+	}
+
+	/** the reachable predecessors of a block */
+	public List<BasicBlock> getPredecessors(BasicBlock block) {
+		Integer b = index.get(block);
+		return b == null ? Collections.emptyList() : toBlocks(predecessors[b]);
+	}
+
+	/** the immediate dominator of a block, or null for the entry block and unreachable blocks */
+	public BasicBlock getImmediateDominator(BasicBlock block) {
+		Integer b = index.get(block);
+		return b == null || b == 0 ? null : blocks[idom[b]];
+	}
+
+	/** the blocks immediately dominated by a block */
+	public List<BasicBlock> getChildren(BasicBlock block) {
+		Integer b = index.get(block);
+		return b == null ? Collections.emptyList() : toBlocks(children[b]);
+	}
+
+	/** checks whether every path from the entry block to b goes through a, every block dominates itself */
+	public boolean dominates(BasicBlock a, BasicBlock b) {
+		if (a == b) {
+			return true;
+		}
+		Integer ia = index.get(a);
+		Integer ib = index.get(b);
+		return ia != null && ib != null
+				&& preorder[ia] <= preorder[ib] && postorder[ib] <= postorder[ia];
+	}
+
+	public boolean strictlyDominates(BasicBlock a, BasicBlock b) {
+		return a != b && dominates(a, b);
+	}
+
+	/** the number of the block in a preorder walk of the dominator tree, or -1 for unreachable blocks */
+	public int getPreorderNumber(BasicBlock block) {
+		Integer b = index.get(block);
+		return b == null ? -1 : preorder[b];
+	}
+
+	/** the number of the block in a postorder walk of the dominator tree, or -1 for unreachable blocks */
+	public int getPostorderNumber(BasicBlock block) {
+		Integer b = index.get(block);
+		return b == null ? -1 : postorder[b];
+	}
+
+	/**
+	 * the dominance frontier of a block: the blocks, which have a predecessor dominated by the block,
+	 * but which are not strictly dominated by it. The frontiers of all blocks are computed on first use.
+	 */
+	public List<BasicBlock> getDominanceFrontier(BasicBlock block) {
+		Integer b = index.get(block);
+		if (b == null) {
+			return Collections.emptyList();
+		}
+		List<List<BasicBlock>> result = frontiers;
+		if (result == null) {
+			result = computeFrontiers();
+			frontiers = result;
+		}
+		return result.get(b);
+	}
+
+	/** numbers the blocks reachable from the first block in reverse postorder, with a depth first search */
+	private static BasicBlock[] reversePostorder(BasicBlockList procBlocks) {
+		if (procBlocks.isEmpty()) {
+			return new BasicBlock[0];
+		}
+		List<BasicBlock> post = new ArrayList<>();
+		Set<BasicBlock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		// each entry is a block and the index of its next successor
+		Deque<BasicBlock> stack = new ArrayDeque<>();
+		Deque<Integer> next = new ArrayDeque<>();
+		BasicBlock entry = procBlocks.get(0);
+		visited.add(entry);
+		stack.push(entry);
+		next.push(0);
+		while (!stack.isEmpty()) {
+			BasicBlock block = stack.peek();
+			List<BasicBlock> successors = successors(block);
+			int i = next.pop();
+			if (i < successors.size()) {
+				next.push(i + 1);
+				BasicBlock succ = successors.get(i);
+				if (visited.add(succ)) {
+					stack.push(succ);
+					next.push(0);
+				}
+			} else {
+				stack.pop();
+				post.add(block);
+			}
+		}
+		BasicBlock[] result = new BasicBlock[post.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = post.get(result.length - 1 - i);
+		}
+		return result;
+	}
+
+	private static List<BasicBlock> successors(BasicBlock block) {
+		Optional<TerminatingInstruction> t = block.getTerminatingInstruction();
+		if (t.isPresent() && t.get() instanceof Jump) {
+			return Collections.singletonList(((Jump) t.get()).getLabel());
+		} else if (t.isPresent() && t.get() instanceof Branch) {
+			Branch branch = (Branch) t.get();
+			return Arrays.asList(branch.getIfTrueLabel(), branch.getIfFalseLabel());
+		}
+		return Collections.emptyList();
+	}
+
+	private int[][] buildPredecessors(BasicBlockList procBlocks) {
+		List<List<Integer>> preds = new ArrayList<>(blocks.length);
+		for (int i = 0; i < blocks.length; i++) {
+			preds.add(new ArrayList<>(2));
+		}
+		for (BasicBlock block : procBlocks) {
+			Integer from = index.get(block);
+			if (from == null) {
+				continue;
+			}
+			for (BasicBlock succ : successors(block)) {
+				Integer to = index.get(succ);
+				if (to != null) {
+					preds.get(to).add(from);
+				}
+			}
+		}
+		int[][] result = new int[blocks.length][];
+		for (int i = 0; i < blocks.length; i++) {
+			result[i] = preds.get(i).stream().mapToInt(Integer::intValue).toArray();
+		}
+		return result;
+	}
+
+	/**
+	 * iterates over the blocks in reverse postorder until the dominators do not change.
+	 * Blocks are numbered in reverse postorder, so a dominator always has a smaller number.
+	 */
+	private int[] computeImmediateDominators() {
+		int[] result = new int[blocks.length];
+		Arrays.fill(result, -1);
+		if (blocks.length == 0) {
+			return result;
+		}
+		result[0] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int b = 1; b < blocks.length; b++) {
+				int newIdom = -1;
+				for (int p : predecessors[b]) {
+					if (result[p] < 0) {
+						// not processed yet
+						continue;
+					}
+					newIdom = newIdom < 0 ? p : intersect(result, p, newIdom);
+				}
+				if (result[b] != newIdom) {
+					result[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+		return result;
+	}
+
+	/** the nearest common dominator of two blocks */
+	private static int intersect(int[] idom, int a, int b) {
+		while (a != b) {
+			while (a > b) {
+				a = idom[a];
+			}
+			while (b > a) {
+				b = idom[b];
+			}
+		}
+		return a;
+	}
+
+	private int[][] buildChildren() {
+		int[] count = new int[blocks.length];
+		for (int b = 1; b < blocks.length; b++) {
+			count[idom[b]]++;
+		}
+		int[][] result = new int[blocks.length][];
+		for (int b = 0; b < blocks.length; b++) {
+			result[b] = new int[count[b]];
+			count[b] = 0;
+		}
+		for (int b = 1; b < blocks.length; b++) {
+			int parent = idom[b];
+			result[parent][count[parent]++] = b;
+		}
+		return result;
+	}
+
+	/** numbers the dominator tree in preorder and postorder with a depth first search */
+	private void numberTree() {
+		if (blocks.length == 0) {
+			return;
+		}
+		int pre = 0;
+		int post = 0;
+		int[] stack = new int[blocks.length];
+		int[] next = new int[blocks.length];
+		int top = 0;
+		stack[0] = 0;
+		preorder[0] = pre++;
+		while (top >= 0) {
+			int b = stack[top];
+			if (next[b] < children[b].length) {
+				int child = children[b][next[b]++];
+				preorder[child] = pre++;
+				stack[++top] = child;
+			} else {
+				postorder[b] = post++;
+				top--;
+			}
+		}
+	}
+
+	/**
+	 * walks up the dominator tree from the predecessors of each block to its immediate dominator.
+	 * The walk is empty for a block with a single predecessor, which is its immediate dominator.
+	 */
+	private List<List<BasicBlock>> computeFrontiers() {
+		List<List<BasicBlock>> result = new ArrayList<>(blocks.length);
+		for (int i = 0; i < blocks.length; i++) {
+			result.add(new ArrayList<>());
+		}
+		for (int b = 0; b < blocks.length; b++) {
+			// the entry block is not strictly dominated by any block, so the walk goes up to the root
+			int stop = b == 0 ? -1 : idom[b];
+			for (int p : predecessors[b]) {
+				int runner = p;
+				while (runner != stop) {
+					List<BasicBlock> frontier = result.get(runner);
+					// b is added to all frontiers in this loop, so a duplicate would be the last element
+					if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != blocks[b]) {
+						frontier.add(blocks[b]);
+					}
+					runner = runner == 0 ? -1 : idom[runner];
+				}
+			}
+		}
+		for (int i = 0; i < blocks.length; i++) {
+			result.set(i, Collections.unmodifiableList(result.get(i)));
+		}
+		return result;
+	}
+
+	private List<BasicBlock> toBlocks(int[] indexes) {
+		List<BasicBlock> result = new ArrayList<>(indexes.length);
+		for (int i : indexes) {
+			result.add(blocks[i]);
+		}
+		return result;
+	}
+}
@@ -83,12 +83,20 @@ public class Typechecker {
 
 				@Override
 				public Type case_BinaryOperation(BinaryOperation binOp) {
-					Operator op = binOp.getOperator();
-					if (isComparison(op)) {
-						return Ast.TypeBool();
+					// chains of operations are followed in a loop, so that long chains cannot overflow the stack
+					while (!isComparison(binOp.getOperator())) {
+						// other operators return the same type as the arguments,
+						// an argument, which is not the result of another operation, gives the type directly
+						Operand left = binOp.getLeft();
+						Operand right = binOp.getRight();
+						if (!isOperationResult(left)) {
+							return left.calculateType();
+						} else if (!isOperationResult(right)) {
+							return right.calculateType();
+						}
+						binOp = (BinaryOperation) ((VarRef) left).getVariable().getParent();
 					}
-					// other operators return the same type as the arguments
-					return binOp.getLeft().calculateType();
+					return Ast.TypeBool();
 				}
 
 				@Override
@@ -130,6 +138,12 @@ public class Typechecker {
 		throw new RuntimeException("unhandled case: " + parent.getClass().getSimpleName());
 	}
 
+	private static boolean isOperationResult(Operand o) {
+		return o instanceof VarRef
+				&& ((VarRef) o).getVariable() instanceof TemporaryVar
+				&& ((VarRef) o).getVariable().getParent() instanceof BinaryOperation;
+	}
+
 	private static Type returnTypeOfProcPointer(Type funcPointerType) {
 		if (funcPointerType instanceof TypePointer) {
 			TypePointer funcType = (TypePointer) funcPointerType;
@@ -1,6 +1,9 @@
 package minillvm.printer;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import minillvm.ast.*;
@@ -9,15 +12,16 @@ public class DuplicateNames {
 
 	public static void eliminateDuplicateNames(Prog prog) {
 		Set<String> globalNames = new HashSet<String>();
+		Map<String, Integer> suffixes = new HashMap<>();
 
 		for (TypeStruct s : prog.getStructTypes()) {
-			eliminateDuplicateNames(s, globalNames);
+			eliminateDuplicateNames(s, globalNames, suffixes);
 		}
 		for (Global g : prog.getGlobals()) {
-			eliminateDuplicateNames(g, globalNames);
+			eliminateDuplicateNames(g, globalNames, suffixes);
 		}
 		for (Proc p : prog.getProcedures()) {
-			eliminateDuplicateNames(p, globalNames);
+			eliminateDuplicateNames(p, globalNames, suffixes);
 		}
 		for (Proc proc : prog.getProcedures()) {
 			eliminateDuplicateNames(globalNames, proc);
@@ -26,54 +30,59 @@ public class DuplicateNames {
 
 	public static void eliminateDuplicateNames(Set<String> globalNames, Proc proc) {
 		Set<String> localNames = new HashSet<String>();
+		Map<String, Integer> suffixes = new HashMap<>();
 		for (Variable v : proc.getParameters()) {
-            eliminateDuplicateNames(v, globalNames, localNames);
+            eliminateDuplicateNames(v, globalNames, localNames, suffixes);
         }
 		for (BasicBlock b : proc.getBasicBlocks()) {
-            eliminateDuplicateNames(b, globalNames, localNames);
+            eliminateDuplicateNames(b, globalNames, localNames, suffixes);
 
             for (Instruction instr : b) {
                 if (instr instanceof Assign) {
                     Assign Assign = (Assign) instr;
-                    eliminateDuplicateNames(Assign.getVar(), globalNames, localNames);
+                    eliminateDuplicateNames(Assign.getVar(), globalNames, localNames, suffixes);
                 }
             }
         }
 	}
 
-	private static void eliminateDuplicateNames(BasicBlock e, Set<String> globalNames, Set<String> localNames) {
+	private static void eliminateDuplicateNames(BasicBlock e, Set<String> globalNames, Set<String> localNames, Map<String, Integer> suffixes) {
 		String name = e.getName();
 		if (name == null) {
 			name = "block";
 		}
-		int i = 1;
-		while (globalNames.contains(name) || localNames.contains(name)) {
-			name = e.getName() + i;
-			i++;
-		}
+		name = unusedName(name, e.getName() + "", globalNames, localNames, suffixes);
 		e.setName(name);
 		localNames.add(name);
 	}
 
-	private static void eliminateDuplicateNames(ElementWithName e, Set<String> globalNames, Set<String> localNames) {
-		String name = e.getName();
-		int i = 1;
-		while (globalNames.contains(name) || localNames.contains(name)) {
-			name = e.getName() + i;
-			i++;
-		}
+	private static void eliminateDuplicateNames(ElementWithName e, Set<String> globalNames, Set<String> localNames, Map<String, Integer> suffixes) {
+		String name = unusedName(e.getName(), e.getName(), globalNames, localNames, suffixes);
 		e.setName(name);
 		localNames.add(name);
 	}
 
-	private static void eliminateDuplicateNames(ElementWithName e, Set<String> globalNames) {
-		String name = e.getName();
-		int i = 1;
-		while (globalNames.contains(name)) {
-			name = e.getName() + i;
-			i++;
-		}
+	private static void eliminateDuplicateNames(ElementWithName e, Set<String> globalNames, Map<String, Integer> suffixes) {
+		String name = unusedName(e.getName(), e.getName(), globalNames, Collections.emptySet(), suffixes);
 		e.setName(name);
 		globalNames.add(name);
 	}
+
+	/**
+	 * returns the first unused name of name, base1, base2, ...
+	 * The names only get more, so the next suffix to try is stored for each base,
+	 * which keeps the renaming linear when many variables have the same name.
+	 */
+	private static String unusedName(String name, String base, Set<String> globalNames, Set<String> localNames, Map<String, Integer> suffixes) {
+		if (!globalNames.contains(name) && !localNames.contains(name)) {
+			return name;
+		}
+		int i = suffixes.getOrDefault(base, 1);
+		do {
+			name = base + i;
+			i++;
+		} while (globalNames.contains(name) || localNames.contains(name));
+		suffixes.put(base, i);
+		return name;
+	}
 }
@@ -3,6 +3,7 @@ package minillvm.printer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import frontend.SourcePosition;
 import minillvm.analysis.ExpectedType;
@@ -12,6 +13,9 @@ import minillvm.ast.*;
 public class PrettyPrinter implements
 	Element.MatcherVoid {
 
+	/** names, which can be printed without quotes */
+	private static final Pattern IDENTIFIER = Pattern.compile("[-a-zA-Z$._][-a-zA-Z$._0-9]*");
+
 	private StringBuilder sb;
 	private boolean includeType;
 	private Map<String, String> stringConstantNames = new HashMap<String, String>();
@@ -79,7 +83,7 @@ public class PrettyPrinter implements
 	 */
 	private static String getName(ElementWithName e) {
 		String name = e.getName();
-		if (name.matches("[-a-zA-Z$._][-a-zA-Z$._0-9]*")) {
+		if (IDENTIFIER.matcher(name).matches()) {
 			// matches regexp for identifiers given in http://llvm.org/docs/LangRef.html#identifiers
 			return name;
 		}
@@ -92,7 +96,7 @@ public class PrettyPrinter implements
 		if (name == null) {
 			name = "block";
 		}
-		if (name.matches("[-a-zA-Z$._][-a-zA-Z$._0-9]*")) {
+		if (IDENTIFIER.matcher(name).matches()) {
 			// matches regexp for identifiers given in http://llvm.org/docs/LangRef.html#identifiers
 			return name;
 		}
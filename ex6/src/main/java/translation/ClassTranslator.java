@@ -1,5 +1,6 @@
 package translation;
 
+import analysis.MethodInfo;
 import minijava.ast.*;
 import minillvm.ast.*;
 
@@ -15,8 +16,6 @@ public class ClassTranslator {
     private Map<MJClassDecl, TypeStruct> classStructType = new HashMap<>();
     private Map<MJClassDecl, TypeStruct> classVtableType = new HashMap<>();
     private Map<MJClassDecl, Proc> classConstructorProc = new HashMap<>();
-    private Map<MJVarDecl, Integer> fieldIndex = new HashMap<>();
-    private Map<MJMethodDecl, Integer> methodIndex = new HashMap<>();
     private Map<MJMethodDecl, Proc> methodImpl = new HashMap<>();
     private Map<MJClassDecl, Global> vtableConstants = new HashMap<>();
 
@@ -88,7 +87,7 @@ public class ClassTranslator {
             addMethods(c.getDirectSuperClass(), methodPointers);
         }
         for (MJMethodDecl m : c.getMethods()) {
-            int index = methodIndex.get(m);
+            int index = tr.getTypes().getMethod(m).getVtableIndex();
             Proc proc = methodImpl.get(m);
             Const methodPointer = Ast.ProcedureRef(proc);
             if (index < methodPointers.size()) {
@@ -116,8 +115,8 @@ public class ClassTranslator {
         if (c.getDirectSuperClass() != null) {
             addFields(c.getDirectSuperClass(), fieldTypes);
         }
+        // the fields are added in the order of their slots
         for (MJVarDecl field : c.getFields()) {
-            fieldIndex.put(field, fieldTypes.size());
             // TODO add comment for the name
             fieldTypes.add(Ast.StructField(tr.translateType(field.getType()), c.getName() + "_" + field.getName()));
         }
@@ -176,28 +175,26 @@ public class ClassTranslator {
         StructFieldList fieldTypes = structType.getFields();
 
         // then add all the fields
-        addMethodsToVtable(c, fieldTypes, new HashMap<>());
+        addMethodsToVtable(c, fieldTypes);
 
         return structType;
     }
 
-    private void addMethodsToVtable(MJClassDecl c, StructFieldList fieldTypes, Map<String, Integer> methodPos) {
+    private void addMethodsToVtable(MJClassDecl c, StructFieldList fieldTypes) {
         if (c.getDirectSuperClass() != null) {
-            addMethodsToVtable(c.getDirectSuperClass(), fieldTypes, methodPos);
+            addMethodsToVtable(c.getDirectSuperClass(), fieldTypes);
         }
         for (MJMethodDecl m : c.getMethods()) {
             TypePointer procType = Ast.TypePointer(translateMethodType(c, m));
             StructField structField = Ast.StructField(procType, m.getName());
-            if (methodPos.containsKey(m.getName())) {
-                int index = methodPos.get(m.getName());
+            int index = tr.getTypes().getMethod(m).getVtableIndex();
+            if (index < fieldTypes.size()) {
+                // overrides a method of a super class
                 fieldTypes.set(index, structField);
             } else {
                 // add new method to vtable
-                methodPos.put(m.getName(), fieldTypes.size());
                 fieldTypes.add(structField);
             }
-            // remember the method index
-            methodIndex.put(m, methodPos.get(m.getName()));
         }
     }
 
@@ -220,11 +217,11 @@ public class ClassTranslator {
     }
 
     /** returns a pointer to the vtable, given a pointer to the object */
-    Operand loadProcFromVtable(Operand objAddress, MJClassDecl c, MJMethodDecl m) {
-        Operand vtablePointerAddr = getVtablePointerAddr(objAddress, c);
+    Operand loadProcFromVtable(Operand objAddress, MethodInfo m) {
+        Operand vtablePointerAddr = getVtablePointerAddr(objAddress, m.getDeclaringClass().getClassDecl());
         TemporaryVar vtablePointer = Ast.TemporaryVar("vtable");
         tr.addInstruction(Ast.Load(vtablePointer, vtablePointerAddr));
-        int index = methodIndex.get(m);
+        int index = m.getVtableIndex();
         TemporaryVar procAddressPointer = Ast.TemporaryVar("procAddressPointer");
         tr.addInstruction(Ast.GetElementPtr(procAddressPointer, Ast.VarRef(vtablePointer), Ast.OperandList(Ast.ConstInt(0), Ast.ConstInt(index))));
 
@@ -236,18 +233,12 @@ public class ClassTranslator {
 
     /** returns a pointer to a specific field, given a pointer to the object */
     Operand getFieldAddress(Operand objAddress, MJVarDecl field) {
-        int index = fieldIndex.get(field);
+        int index = tr.getTypes().getField(field).getSlot();
         TemporaryVar addr = Ast.TemporaryVar("addr_" + field.getName());
         tr.addInstruction(Ast.GetElementPtr(addr, objAddress, Ast.OperandList(Ast.ConstInt(0), Ast.ConstInt(index))));
         return Ast.VarRef(addr);
     }
 
-    public Operand loadProcFromVtable(Operand receiver, MJMethodDecl methodDeclaration) {
-        return loadProcFromVtable(receiver, (MJClassDecl) methodDeclaration.getParent().getParent(), methodDeclaration);
-    }
-
-
-
     Proc getProcImpl(MJMethodDecl m) {
         return methodImpl.get(m);
     }
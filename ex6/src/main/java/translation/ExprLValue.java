@@ -1,12 +1,16 @@
 package translation;
 
+import analysis.TypeInformation.VarKind;
 import minijava.ast.*;
 import minillvm.ast.Ast;
 import minillvm.ast.BasicBlock;
 import minillvm.ast.Operand;
 import minillvm.ast.TemporaryVar;
 
-public class ExprLValue implements MJExpr.Matcher<Operand> {
+/**
+ * translates expressions to the address of their value, see {@link ExprRValue}.
+ */
+public class ExprLValue implements MJExpr.MatcherVoid {
     private Translator tr;
 
     public ExprLValue(Translator translator) {
@@ -15,12 +19,15 @@ public class ExprLValue implements MJExpr.Matcher<Operand> {
     }
 
     @Override
-    public Operand case_ArrayLookup(MJArrayLookup e) {
-        Operand arrayAddr = tr.exprRvalue(e.getArrayExpr());
-        tr.addNullcheck(arrayAddr, "Nullpointer exception in line " + tr.sourceLine(e));
-
-        Operand index = tr.exprRvalue(e.getArrayIndex());
+    public void case_ArrayLookup(MJArrayLookup e) {
+        tr.then(tr.rvalue(e.getArrayExpr()), () -> {
+            Operand arrayAddr = tr.popOperand();
+            tr.addNullcheck(arrayAddr, "Nullpointer exception in line " + tr.sourceLine(e));
+            tr.then(tr.rvalue(e.getArrayIndex()), () -> arrayIndexAddress(e, arrayAddr, tr.popOperand()));
+        });
+    }
 
+    private void arrayIndexAddress(MJArrayLookup e, Operand arrayAddr, Operand index) {
         Operand len = tr.getArrayLen(arrayAddr);
         TemporaryVar smallerZero = Ast.TemporaryVar( "smallerZero");
         TemporaryVar lenMinusOne = Ast.TemporaryVar("lenMinusOne");
@@ -39,7 +46,7 @@ public class ExprLValue implements MJExpr.Matcher<Operand> {
         // outOfBoundsV = smallerZero || greaterEqualLen
         tr.addInstruction(Ast.BinaryOperation(outOfBoundsV, Ast.VarRef(smallerZero), Ast.Or(), Ast.VarRef(greaterEqualLen)));
 
-        tr.getCurrentBlock().add(Ast.Branch(Ast.VarRef(outOfBoundsV), outOfBounds, indexInRange));
+        tr.branch(Ast.VarRef(outOfBoundsV), outOfBounds, indexInRange);
 
         tr.addBasicBlock(outOfBounds);
         outOfBounds.add(Ast.HaltWithError("Index out of bounds error in line " + tr.sourceLine(e)));
@@ -52,79 +59,80 @@ public class ExprLValue implements MJExpr.Matcher<Operand> {
                 Ast.ConstInt(1),
                 index.copy()
         )));
-        return Ast.VarRef(indexAddr);
+        tr.pushOperand(Ast.VarRef(indexAddr));
     }
 
     @Override
-    public Operand case_FieldAccess(MJFieldAccess e) {
-        Operand receiverAddr = tr.exprRvalue(e.getReceiver());
-        return tr.getClassTranslator().getFieldAddress(receiverAddr, e.getVariableDeclaration());
+    public void case_FieldAccess(MJFieldAccess e) {
+        tr.then(tr.rvalue(e.getReceiver()), () -> {
+            Operand receiverAddr = tr.popOperand();
+            tr.pushOperand(tr.getClassTranslator().getFieldAddress(receiverAddr, e.getVariableDeclaration()));
+        });
     }
 
     @Override
-    public Operand case_VarUse(MJVarUse e) {
+    public void case_VarUse(MJVarUse e) {
         MJVarDecl varDecl = e.getVariableDeclaration();
-        if (tr.isField(varDecl)) {
+        if (tr.getTypes().getVarKind(varDecl) == VarKind.FIELD) {
             // field
             Operand thisVal = Ast.VarRef(tr.getThisParameter());
-            return tr.getClassTranslator().getFieldAddress(thisVal, varDecl);
+            tr.pushOperand(tr.getClassTranslator().getFieldAddress(thisVal, varDecl));
         } else {
-            // local TemporaryVar
-            return Ast.VarRef(tr.getLocalVarLocation(varDecl));
+            throw new RuntimeException("Local variable " + e.getVarName() + " has no L-value.");
         }
     }
 
 
 
     @Override
-    public Operand case_ExprUnary(MJExprUnary exprUnary) {
+    public void case_ExprUnary(MJExprUnary exprUnary) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
 
 
     @Override
-    public Operand case_ArrayLength(MJArrayLength arrayLength) {
+    public void case_ArrayLength(MJArrayLength arrayLength) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_ExprThis(MJExprThis exprThis) {
+    public void case_ExprThis(MJExprThis exprThis) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_ExprBinary(MJExprBinary exprBinary) {
+    public void case_ExprBinary(MJExprBinary exprBinary) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_ExprNull(MJExprNull exprNull) {
+    public void case_ExprNull(MJExprNull exprNull) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_Number(MJNumber number) {
+    public void case_Number(MJNumber number) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_NewIntArray(MJNewIntArray newIntArray) {
+    public void case_NewIntArray(MJNewIntArray newIntArray) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_MethodCall(MJMethodCall methodCall) {
+    public void case_MethodCall(MJMethodCall methodCall) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_NewObject(MJNewObject newObject) {
+    public void case_NewObject(MJNewObject newObject) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
     @Override
-    public Operand case_BoolConst(MJBoolConst boolConst) {
+    public void case_BoolConst(MJBoolConst boolConst) {
         throw new RuntimeException("Expression  has no L-value.");
     }
 
@@ -1,9 +1,15 @@
 package translation;
 
+import analysis.MethodInfo;
+import analysis.TypeInformation.VarKind;
 import minijava.ast.*;
 import minillvm.ast.*;
 
-public class ExprRValue implements MJExpr.Matcher<Operand> {
+/**
+ * translates expressions to their values.
+ * Subexpressions are scheduled as steps of the {@link Translator}, the value of each expression is pushed on its operand stack.
+ */
+public class ExprRValue implements MJExpr.MatcherVoid {
     private Translator tr;
 
     public ExprRValue(Translator translator) {
@@ -11,9 +17,11 @@ public class ExprRValue implements MJExpr.Matcher<Operand> {
     }
 
     @Override
-    public Operand case_ExprUnary(MJExprUnary e) {
-        Operand expr = tr.exprRvalue(e.getExpr());
+    public void case_ExprUnary(MJExprUnary e) {
+        tr.then(tr.rvalue(e.getExpr()), () -> tr.pushOperand(unaryOperation(e, tr.popOperand())));
+    }
 
+    private Operand unaryOperation(MJExprUnary e, Operand expr) {
         return e.getUnaryOperator().match(new MJUnaryOperator.Matcher<Operand>() {
 
             @Override
@@ -33,78 +41,89 @@ public class ExprRValue implements MJExpr.Matcher<Operand> {
     }
 
     @Override
-    public Operand case_FieldAccess(MJFieldAccess e) {
-        Operand l = tr.exprLvalue(e);
-        TemporaryVar v = Ast.TemporaryVar(e.getFieldName());
-        tr.addInstruction(Ast.Load(v, l));
-        return Ast.VarRef(v);
+    public void case_FieldAccess(MJFieldAccess e) {
+        tr.then(tr.lvalue(e), () -> {
+            Operand l = tr.popOperand();
+            TemporaryVar v = Ast.TemporaryVar(e.getFieldName());
+            tr.addInstruction(Ast.Load(v, l));
+            tr.pushOperand(Ast.VarRef(v));
+        });
     }
 
     @Override
-    public Operand case_ArrayLength(MJArrayLength e) {
-        Operand a = tr.exprRvalue(e.getArrayExpr());
-        tr.addNullcheck(a, "Nullpointer exception when reading array length in line " + tr.sourceLine(e));
-        return tr.getArrayLen(a);
+    public void case_ArrayLength(MJArrayLength e) {
+        tr.then(tr.rvalue(e.getArrayExpr()), () -> {
+            Operand a = tr.popOperand();
+            tr.addNullcheck(a, "Nullpointer exception when reading array length in line " + tr.sourceLine(e));
+            tr.pushOperand(tr.getArrayLen(a));
+        });
     }
 
 
 
     @Override
-    public Operand case_ExprThis(MJExprThis e) {
-        return Ast.VarRef(tr.getThisParameter());
+    public void case_ExprThis(MJExprThis e) {
+        tr.pushOperand(Ast.VarRef(tr.getThisParameter()));
     }
 
     @Override
-    public Operand case_ExprBinary(MJExprBinary e) {
-        Operand left = tr.exprRvalue(e.getLeft());
-        return e.getOperator().match(new MJOperator.Matcher<Operand>() {
+    public void case_ExprBinary(MJExprBinary e) {
+        tr.then(tr.rvalue(e.getLeft()), () -> binaryOperation(e, tr.popOperand()));
+    }
+
+    /** translates a binary operation after the left operand, pushes the result */
+    private void binaryOperation(MJExprBinary e, Operand left) {
+        e.getOperator().match(new MJOperator.MatcherVoid() {
             @Override
-            public Operand case_And(MJAnd and) {
+            public void case_And(MJAnd and) {
                 BasicBlock andRight = tr.newBasicBlock("and_first_true");
                 BasicBlock andEnd = tr.newBasicBlock("and_end");
-                TemporaryVar andResVar = Ast.TemporaryVar("andResVar");
-                tr.getCurrentBlock().add(Ast.Alloca(andResVar, Ast.TypeBool()));
-                tr.getCurrentBlock().add(Ast.Store(Ast.VarRef(andResVar), left));
-                tr.getCurrentBlock().add(Ast.Branch(left.copy(), andRight, andEnd));
+                tr.declareVariable(e, "andResVar", Ast.TypeBool());
+                tr.writeVariable(e, left);
+                tr.branch(left.copy(), andRight, andEnd);
 
                 tr.addBasicBlock(andRight);
                 tr.setCurrentBlock(andRight);
-                Operand right = tr.exprRvalue(e.getRight());
-                tr.getCurrentBlock().add(Ast.Store(Ast.VarRef(andResVar), right));
-                tr.getCurrentBlock().add(Ast.Jump(andEnd));
-
-                tr.addBasicBlock(andEnd);
-                tr.setCurrentBlock(andEnd);
-                TemporaryVar andRes = Ast.TemporaryVar("andRes");
-                andEnd.add(Ast.Load(andRes, Ast.VarRef(andResVar)));
-                return Ast.VarRef(andRes);
+                tr.then(tr.rvalue(e.getRight()), () -> {
+                    Operand right = tr.popOperand();
+                    tr.writeVariable(e, right);
+                    tr.jump(andEnd);
+
+                    tr.addBasicBlock(andEnd);
+                    tr.setCurrentBlock(andEnd);
+                    tr.pushOperand(tr.readVariable(e, "andRes"));
+                });
             }
 
 
-            private Operand normalCase(Operator op) {
-                Operand right = tr.exprRvalue(e.getRight());
-                TemporaryVar result = Ast.TemporaryVar("res" + op.getClass().getSimpleName());
-                tr.addInstruction(Ast.BinaryOperation(result, left, op, right));
-                return Ast.VarRef(result);
+            private void normalCase(Operator op) {
+                tr.then(tr.rvalue(e.getRight()), () -> {
+                    Operand right = tr.popOperand();
+                    TemporaryVar result = Ast.TemporaryVar("res" + op.getClass().getSimpleName());
+                    tr.addInstruction(Ast.BinaryOperation(result, left, op, right));
+                    tr.pushOperand(Ast.VarRef(result));
+                });
             }
 
             @Override
-            public Operand case_Times(MJTimes times) {
-                return normalCase(Ast.Mul());
+            public void case_Times(MJTimes times) {
+                normalCase(Ast.Mul());
             }
 
 
             @Override
-            public Operand case_Div(MJDiv div) {
-                Operand right = tr.exprRvalue(e.getRight());
-                TemporaryVar divResVar = Ast.TemporaryVar("divResVar");
-                tr.addInstruction(Ast.Alloca(divResVar, Ast.TypeInt()));
+            public void case_Div(MJDiv div) {
+                tr.then(tr.rvalue(e.getRight()), () -> division(tr.popOperand()));
+            }
+
+            private void division(Operand right) {
+                tr.declareVariable(e, "divResVar", Ast.TypeInt());
                 TemporaryVar isZero = Ast.TemporaryVar("isZero");
                 tr.addInstruction(Ast.BinaryOperation(isZero, right, Ast.Eq(), Ast.ConstInt(0)));
                 BasicBlock ifZero = tr.newBasicBlock("ifZero");
                 BasicBlock notZero = tr.newBasicBlock("notZero");
 
-                tr.addInstruction(Ast.Branch(Ast.VarRef(isZero), ifZero, notZero));
+                tr.branch(Ast.VarRef(isZero), ifZero, notZero);
 
                 tr.addBasicBlock(ifZero);
                 ifZero.add(Ast.HaltWithError("Division by zero in line " + tr.sourceLine(e)));
@@ -122,77 +141,81 @@ public class ExprRValue implements MJExpr.Matcher<Operand> {
                 tr.addInstruction(Ast.BinaryOperation(isMinInt, left.copy(), Ast.Eq(), Ast.ConstInt(Integer.MIN_VALUE)));
                 TemporaryVar isOverflow = Ast.TemporaryVar("isOverflow");
                 tr.addInstruction(Ast.BinaryOperation(isOverflow, Ast.VarRef(isMinInt), Ast.And(), Ast.VarRef(isMinusOne)));
-                tr.addInstruction(Ast.Store(Ast.VarRef(divResVar), Ast.ConstInt(Integer.MIN_VALUE)));
-                tr.addInstruction(Ast.Branch(Ast.VarRef(isOverflow), div_end, div_noOverflow));
+                tr.writeVariable(e, Ast.ConstInt(Integer.MIN_VALUE));
+                tr.branch(Ast.VarRef(isOverflow), div_end, div_noOverflow);
 
 
                 tr.addBasicBlock(div_noOverflow);
                 tr.setCurrentBlock(div_noOverflow);
                 TemporaryVar divResultA = Ast.TemporaryVar("divResultA");
                 tr.addInstruction(Ast.BinaryOperation(divResultA, left, Ast.Sdiv(), right.copy()));
-                tr.addInstruction(Ast.Store(Ast.VarRef(divResVar), Ast.VarRef(divResultA)));
-                tr.addInstruction(Ast.Jump(div_end));
+                tr.writeVariable(e, Ast.VarRef(divResultA));
+                tr.jump(div_end);
 
 
                 tr.addBasicBlock(div_end);
                 tr.setCurrentBlock(div_end);
-                TemporaryVar divResultB = Ast.TemporaryVar("divResultB");
-                tr.addInstruction(Ast.Load(divResultB, Ast.VarRef(divResVar)));
-                return Ast.VarRef(divResultB);
+                tr.pushOperand(tr.readVariable(e, "divResultB"));
             }
 
             @Override
-            public Operand case_Plus(MJPlus plus) {
-                return normalCase(Ast.Add());
+            public void case_Plus(MJPlus plus) {
+                normalCase(Ast.Add());
             }
 
             @Override
-            public Operand case_Minus(MJMinus minus) {
-                return normalCase(Ast.Sub());
+            public void case_Minus(MJMinus minus) {
+                normalCase(Ast.Sub());
             }
 
             @Override
-            public Operand case_Equals(MJEquals equals) {
+            public void case_Equals(MJEquals equals) {
                 Operator op = Ast.Eq();
-                Operand right = tr.exprRvalue(e.getRight());
-                TemporaryVar result = Ast.TemporaryVar("res" + op.getClass().getSimpleName());
-                right = tr.addCastIfNecessary(right, left.calculateType());
-                tr.addInstruction(Ast.BinaryOperation(result, left, op, right));
-                return Ast.VarRef(result);
+                tr.then(tr.rvalue(e.getRight()), () -> {
+                    Operand right = tr.popOperand();
+                    TemporaryVar result = Ast.TemporaryVar("res" + op.getClass().getSimpleName());
+                    right = tr.addCastIfNecessary(right, tr.getTypes().getType(e.getRight()), tr.getTypes().getType(e.getLeft()));
+                    tr.addInstruction(Ast.BinaryOperation(result, left, op, right));
+                    tr.pushOperand(Ast.VarRef(result));
+                });
             }
 
             @Override
-            public Operand case_Less(MJLess less) {
-                return normalCase(Ast.Slt());
+            public void case_Less(MJLess less) {
+                normalCase(Ast.Slt());
             }
         });
     }
 
     @Override
-    public Operand case_ArrayLookup(MJArrayLookup e) {
-        Operand addr = tr.exprLvalue(e);
-        TemporaryVar result = Ast.TemporaryVar("arrayLookupResult");
-        tr.addInstruction(Ast.Load(result, addr));
-        return Ast.VarRef(result);
+    public void case_ArrayLookup(MJArrayLookup e) {
+        tr.then(tr.lvalue(e), () -> {
+            Operand addr = tr.popOperand();
+            TemporaryVar result = Ast.TemporaryVar("arrayLookupResult");
+            tr.addInstruction(Ast.Load(result, addr));
+            tr.pushOperand(Ast.VarRef(result));
+        });
     }
 
 
     @Override
-    public Operand case_ExprNull(MJExprNull e) {
-        return Ast.Nullpointer();
+    public void case_ExprNull(MJExprNull e) {
+        tr.pushOperand(Ast.Nullpointer());
     }
 
     @Override
-    public Operand case_Number(MJNumber e) {
-        return Ast.ConstInt(e.getIntValue());
+    public void case_Number(MJNumber e) {
+        tr.pushOperand(Ast.ConstInt(e.getIntValue()));
     }
 
     @Override
-    public Operand case_NewIntArray(MJNewIntArray e) {
-        Operand arraySize = tr.exprRvalue(e.getArraySize());
-        TemporaryVar res = Ast.TemporaryVar("newArray");
-        tr.addInstruction(Ast.Call(res, tr.getNewIntArrayFunc(), Ast.OperandList(arraySize)));
-        return Ast.VarRef(res);
+    public void case_NewIntArray(MJNewIntArray e) {
+        tr.then(tr.rvalue(e.getArraySize()), () -> {
+            Operand arraySize = tr.popOperand();
+            TemporaryVar res = Ast.TemporaryVar("newArray");
+            tr.addInstruction(Ast.Call(res, tr.getNewIntArrayFunc(), Ast.OperandList(arraySize)));
+            tr.pushOperand(Ast.VarRef(res));
+        });
     }
 
     private TypePointer voidPointer() {
@@ -200,46 +223,65 @@ public class ExprRValue implements MJExpr.Matcher<Operand> {
     }
 
     @Override
-    public Operand case_VarUse(MJVarUse e) {
-        Operand addr = tr.exprLvalue(e);
-        TemporaryVar res = Ast.TemporaryVar("read_" + e.getVarName());
-        tr.addInstruction(Ast.Load(res, addr));
-        return Ast.VarRef(res);
+    public void case_VarUse(MJVarUse e) {
+        MJVarDecl varDecl = e.getVariableDeclaration();
+        if (tr.getTypes().getVarKind(varDecl) != VarKind.FIELD) {
+            tr.pushOperand(tr.readVariable(varDecl, "read_" + e.getVarName()));
+            return;
+        }
+        tr.then(tr.lvalue(e), () -> {
+            Operand addr = tr.popOperand();
+            TemporaryVar res = Ast.TemporaryVar("read_" + e.getVarName());
+            tr.addInstruction(Ast.Load(res, addr));
+            tr.pushOperand(Ast.VarRef(res));
+        });
     }
 
     @Override
-    public Operand case_MethodCall(MJMethodCall e) {
-        Operand receiver = tr.exprRvalue(e.getReceiver());
-        tr.addNullcheck(receiver, "Nullpointer exception in line " + e.getSourcePosition().getLine() + " when calling " + e.getMethodName());
-
-        MJMethodDecl mDecl = e.getMethodDeclaration();
-        receiver = tr.addCastIfNecessary(receiver, tr.getPointerToClassStruct((MJClassDecl) mDecl.getParent().getParent()));
-
-        OperandList args = Ast.OperandList(receiver);
-        for (int i = 0; i < e.getArguments().size(); i++) {
-            Operand arg = tr.exprRvalue(e.getArguments().get(i));
-            MJVarDeclList formalParameters = mDecl.getFormalParameters();
-            arg = tr.addCastIfNecessary(arg, tr.translateType(formalParameters.get(i).getType()));
-            args.add(arg);
-        }
+    public void case_MethodCall(MJMethodCall e) {
+        tr.then(tr.rvalue(e.getReceiver()), () -> methodCall(e, tr.popOperand()));
+    }
 
-        // lookup in vtable
-        Operand proc = tr.getClassTranslator().loadProcFromVtable(receiver, e.getMethodDeclaration());
-        // do the call
-        TemporaryVar result = Ast.TemporaryVar(e.getMethodName() + "_result");
-        tr.addInstruction(Ast.Call(result, proc, args));
-        return Ast.VarRef(result);
+    /** translates a method call after the receiver, pushes the result */
+    private void methodCall(MJMethodCall e, Operand receiver) {
+        tr.addNullcheck(receiver, "Nullpointer exception in line " + tr.sourceLine(e) + " when calling " + e.getMethodName());
+
+        MethodInfo method = tr.getTypes().getMethod(e.getMethodDeclaration());
+        Operand castedReceiver = tr.addCastIfNecessary(receiver, tr.getTypes().getType(e.getReceiver()), method.getDeclaringClass());
+
+        OperandList args = Ast.OperandList(castedReceiver);
+        int argCount = e.getArguments().size();
+        Runnable[] steps = new Runnable[2 * argCount + 1];
+        for (int i = 0; i < argCount; i++) {
+            MJExpr argExpr = e.getArguments().get(i);
+            analysis.Type paramType = method.getParameters().get(i).getType();
+            steps[2 * i] = tr.rvalue(argExpr);
+            steps[2 * i + 1] = () -> {
+                Operand arg = tr.popOperand();
+                arg = tr.addCastIfNecessary(arg, tr.getTypes().getType(argExpr), paramType);
+                args.add(arg);
+            };
+        }
+        steps[2 * argCount] = () -> {
+            // lookup in vtable
+            Operand proc = tr.getClassTranslator().loadProcFromVtable(castedReceiver, method);
+            // do the call
+            TemporaryVar result = Ast.TemporaryVar(e.getMethodName() + "_result");
+            tr.addInstruction(Ast.Call(result, proc, args));
+            tr.pushOperand(Ast.VarRef(result));
+        };
+        tr.then(steps);
     }
 
     @Override
-    public Operand case_NewObject(MJNewObject e) {
+    public void case_NewObject(MJNewObject e) {
         TemporaryVar res = Ast.TemporaryVar("new_" + e.getClassName());
         tr.addInstruction(Ast.Call(res, tr.getConstructorProcRef(e.getClassDeclaration()), Ast.OperandList()));
-        return Ast.VarRef(res);
+        tr.pushOperand(Ast.VarRef(res));
     }
 
     @Override
-    public Operand case_BoolConst(MJBoolConst e) {
-        return Ast.ConstBool(e.getBoolValue());
+    public void case_BoolConst(MJBoolConst e) {
+        tr.pushOperand(Ast.ConstBool(e.getBoolValue()));
     }
 }
@@ -0,0 +1,277 @@
+package translation;
+
+import minillvm.ast.*;
+
+import java.util.*;
+
+/**
+ * Builds the SSA form of a procedure while it is translated,
+ * following "Simple and Efficient Construction of Static Single Assignment Form" (Braun et al.).
+ *
+ * The translator writes and reads variables in the current block instead of storing them in stack slots.
+ * A read looks for the last write in the block and its predecessors and adds phi nodes where values join.
+ * Phi nodes in blocks, whose predecessors are not all known yet (loop headers), are completed when the block is sealed.
+ * Trivial phi nodes are removed as soon as they are complete, uses of their variables are replaced in {@link #finish()}.
+ * Lookups and the completion of phi nodes use explicit work lists, so long chains of blocks cannot overflow the stack.
+ */
+class SSABuilder {
+    /** the blocks of the procedure with their state, basic blocks are lists, so they are compared by identity */
+    private final Map<BasicBlock, BlockInfo> blocks = new IdentityHashMap<>();
+    /** the name and type of each declared variable */
+    private final Map<Object, VariableInfo> variables = new HashMap<>();
+    /** values of removed phi nodes by their variable */
+    private final Map<Variable, Operand> replacements = new HashMap<>();
+    /** the phi nodes, which use the variable of a phi node */
+    private final Map<Variable, List<PhiNode>> phiUsers = new HashMap<>();
+    /** the phi nodes, which have all their choices */
+    private final Set<PhiNode> completePhis = new HashSet<>();
+    /** choices of phi nodes, which still have to be added, the next one is on top */
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private final Proc proc;
+    private BasicBlock entry;
+
+    private static class BlockInfo {
+        final List<BasicBlock> predecessors = new ArrayList<>();
+        /** the current value of each variable at the end of the block */
+        final Map<Object, Operand> values = new HashMap<>();
+        /** phi nodes added before the block was sealed, which have no choices yet */
+        final Map<Object, PhiNode> incompletePhis = new LinkedHashMap<>();
+        boolean inProcedure;
+        boolean sealed;
+    }
+
+    private static class VariableInfo {
+        final String name;
+        final Type type;
+        /** the value used when the variable is read before it is written */
+        Operand undefined;
+
+        VariableInfo(String name, Type type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    SSABuilder(Proc proc) {
+        this.proc = proc;
+    }
+
+    /** registers a block added to the procedure, the first block is the entry block */
+    void addBlock(BasicBlock block) {
+        if (entry == null) {
+            entry = block;
+        }
+        info(block).inProcedure = true;
+    }
+
+    /** registers a jump, jumps from blocks, which are not part of the procedure, are ignored */
+    void addEdge(BasicBlock from, BasicBlock to) {
+        if (info(from).inProcedure) {
+            info(to).predecessors.add(from);
+        }
+    }
+
+    /** marks that all predecessors of the block are known and completes its phi nodes */
+    void sealBlock(BasicBlock block) {
+        BlockInfo info = info(block);
+        if (info.sealed) {
+            return;
+        }
+        info.sealed = true;
+        for (Map.Entry<Object, PhiNode> e : info.incompletePhis.entrySet()) {
+            addChoices(e.getValue(), e.getKey(), info.predecessors);
+        }
+        info.incompletePhis.clear();
+        addPendingChoices();
+    }
+
+    void declare(Object var, String name, Type type) {
+        variables.put(var, new VariableInfo(name, type));
+    }
+
+    void write(Object var, BasicBlock block, Operand value) {
+        info(block).values.put(var, value);
+    }
+
+    /** the value of the variable at the end of the block, the result can be used directly as an operand */
+    Operand read(Object var, BasicBlock block) {
+        Operand result = lookup(var, block);
+        addPendingChoices();
+        return resolve(result).copy();
+    }
+
+    /** replaces the uses of removed phi nodes in the procedure */
+    void finish() {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        proc.accept(new Element.DefaultVisitor() {
+            @Override
+            public void visit(VarRef varRef) {
+                Operand value = resolve(varRef);
+                if (value != varRef) {
+                    varRef.replaceBy(value.copy());
+                }
+            }
+        });
+    }
+
+    private BlockInfo info(BasicBlock block) {
+        return blocks.computeIfAbsent(block, b -> new BlockInfo());
+    }
+
+    /**
+     * finds the value of a variable, chains of single predecessors are followed in a loop
+     * and the value is remembered in all blocks on the chain.
+     * Choices of new phi nodes are only added to the pending choices.
+     */
+    private Operand lookup(Object var, BasicBlock block) {
+        List<BlockInfo> chain = new ArrayList<>(2);
+        Operand result;
+        while (true) {
+            BlockInfo info = info(block);
+            result = info.values.get(var);
+            if (result != null) {
+                break;
+            }
+            chain.add(info);
+            if (!info.sealed) {
+                PhiNode phi = newPhi(var, block);
+                info.incompletePhis.put(var, phi);
+                result = Ast.VarRef(phi.getVar());
+                break;
+            } else if (info.predecessors.isEmpty()) {
+                // the variable is read before it is written, or the block is unreachable
+                result = undefined(var);
+                break;
+            } else if (info.predecessors.size() == 1) {
+                block = info.predecessors.get(0);
+            } else {
+                PhiNode phi = newPhi(var, block);
+                result = Ast.VarRef(phi.getVar());
+                // the phi node is the value in this block before its choices are looked up, which ends cycles
+                info.values.put(var, result);
+                addChoices(phi, var, info.predecessors);
+                break;
+            }
+        }
+        for (BlockInfo info : chain) {
+            info.values.put(var, result);
+        }
+        return result;
+    }
+
+    private PhiNode newPhi(Object var, BasicBlock block) {
+        VariableInfo v = variables.get(var);
+        PhiNode phi = Ast.PhiNode(Ast.TemporaryVar(v.name), v.type, Ast.PhiNodeChoiceList());
+        block.add(0, phi);
+        return phi;
+    }
+
+    /** schedules the choices of a phi node in order, followed by the check for a trivial phi node */
+    private void addChoices(PhiNode phi, Object var, List<BasicBlock> predecessors) {
+        pending.push(() -> {
+            completePhis.add(phi);
+            tryRemoveTrivialPhi(phi);
+        });
+        for (int i = predecessors.size() - 1; i >= 0; i--) {
+            BasicBlock pred = predecessors.get(i);
+            pending.push(() -> {
+                Operand value = resolve(lookup(var, pred));
+                if (value instanceof VarRef && ((VarRef) value).getVariable().getParent() instanceof PhiNode) {
+                    phiUsers.computeIfAbsent(((VarRef) value).getVariable(), k -> new ArrayList<>()).add(phi);
+                }
+                phi.getChoices().add(Ast.PhiNodeChoice(pred, value.copy()));
+            });
+        }
+    }
+
+    /** adds the pending choices of phi nodes, this can create further phi nodes with pending choices */
+    private void addPendingChoices() {
+        while (!pending.isEmpty()) {
+            pending.pop().run();
+        }
+    }
+
+    /**
+     * removes the phi node, if it only chooses between one value and itself,
+     * and then checks the phi nodes using it again
+     */
+    private void tryRemoveTrivialPhi(PhiNode phi) {
+        Deque<PhiNode> todo = new ArrayDeque<>();
+        todo.push(phi);
+        while (!todo.isEmpty()) {
+            PhiNode p = todo.pop();
+            Variable self = p.getVar();
+            if (replacements.containsKey(self) || !completePhis.contains(p)) {
+                // removed, or it is checked when its last choice is added
+                continue;
+            }
+            Operand same = null;
+            boolean trivial = true;
+            for (PhiNodeChoice choice : p.getChoices()) {
+                Operand value = resolve(choice.getValue());
+                if (value instanceof VarRef && ((VarRef) value).getVariable() == self
+                        || same != null && value.structuralEquals(same)) {
+                    continue;
+                }
+                if (same != null) {
+                    trivial = false;
+                    break;
+                }
+                same = value;
+            }
+            if (!trivial) {
+                continue;
+            }
+            if (same == null) {
+                // the phi node is unreachable or only chooses itself
+                same = undefinedOfType(p.getType());
+            }
+            replacements.put(self, same);
+            ((BasicBlock) p.getParent()).remove(p);
+            for (PhiNode user : phiUsers.getOrDefault(self, Collections.emptyList())) {
+                if (user != p) {
+                    todo.push(user);
+                }
+            }
+        }
+    }
+
+    /** follows the replacements of removed phi nodes, the start of a chain is mapped to its end */
+    private Operand resolve(Operand op) {
+        if (!(op instanceof VarRef) || !replacements.containsKey(((VarRef) op).getVariable())) {
+            return op;
+        }
+        Variable start = ((VarRef) op).getVariable();
+        Operand result = op;
+        while (result instanceof VarRef && replacements.containsKey(((VarRef) result).getVariable())) {
+            result = replacements.get(((VarRef) result).getVariable());
+        }
+        replacements.put(start, result);
+        return result;
+    }
+
+    private Operand undefined(Object var) {
+        VariableInfo v = variables.get(var);
+        if (v.undefined == null) {
+            v.undefined = undefinedOfType(v.type);
+        }
+        return v.undefined;
+    }
+
+    /**
+     * a value of the given type, which is used where a variable has no value.
+     * Pointers are a null pointer cast in the entry block, so that they have the right type.
+     */
+    private Operand undefinedOfType(Type type) {
+        if (type instanceof TypeInt) {
+            return Ast.ConstInt(0);
+        } else if (type instanceof TypeBool) {
+            return Ast.ConstBool(false);
+        }
+        TemporaryVar v = Ast.TemporaryVar("undefined");
+        entry.add(0, Ast.Bitcast(v, type, Ast.Nullpointer()));
+        return Ast.VarRef(v);
+    }
+}
@@ -1,15 +1,33 @@
 package translation;
 
+import minillvm.analysis.DefUse;
 import minillvm.ast.*;
 import minillvm.printer.DuplicateNames;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
+/**
+ * Transforms a program with local variables in stack slots into SSA form.
+ *
+ * The state of the transformation belongs to a single procedure, so every procedure is transformed
+ * by its own instance. Procedures only share globals, types and other procedures, which are referenced,
+ * but not changed, so they can also be transformed in parallel.
+ */
 public class SSATransformation {
-    /** The current value for each variable */
+    /** the pool for transforming procedures in parallel, null for sequential transformation */
+    private ForkJoinPool pool;
+
+    // the state of the transformed procedure
+
+    /** The current value of each promoted alloca variable, and of phi nodes created for other variables */
     private Map<BasicBlock, Map<Variable, Operand>> valueNumbers;
 
+    /** The values of parameters and temporary variables, they have a single definition, so the value is the same in all blocks */
+    private Map<Variable, Operand> definitions;
+
     /** The variables, which store the result of Alloca instructions*/
     private Set<TemporaryVar> allocaVars;
 
@@ -22,21 +40,61 @@ public class SSATransformation {
     /** map pingfrom old block, to newly created block */
     private Map<BasicBlock, BasicBlock> newBlocks;
 
+    /** the new entry block of the procedure */
+    private BasicBlock entryBlock;
+
     /** actions to run, when block is completed */
     private Map<BasicBlock, List<Runnable>> onComplete;
 
+    /** choices of new phi nodes, which still have to be added, the next one is on top */
+    private Deque<Runnable> pendingChoices = new ArrayDeque<>();
+
 
     /** transforms program to SSA form */
     public void transformProg(Prog prog) {
+        if (pool == null || prog.getProcedures().size() < 2) {
+            for (Proc proc : prog.getProcedures()) {
+                new SSATransformation().processProcedure(proc);
+            }
+            return;
+        }
+        List<ForkJoinTask<RuntimeException>> tasks = new ArrayList<>();
         for (Proc proc : prog.getProcedures()) {
-            processProcedure(proc);
+            tasks.add(pool.submit(() -> {
+                try {
+                    new SSATransformation().processProcedure(proc);
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
         }
+        // all tasks are finished before an exception is thrown, the first one in procedure order is thrown
+        RuntimeException error = null;
+        for (ForkJoinTask<RuntimeException> task : tasks) {
+            RuntimeException e = task.join();
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /** transforms the procedures in parallel on the common ForkJoin pool */
+    public void setParallel(boolean parallel) {
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
     }
 
     /** transforms procedure to SSA form, this creates new copies of instructions and basicblocks to do the transformation */
     private void processProcedure(Proc proc) {
         allocaVars = new HashSet<>();
-        ready = new HashSet<>();
+        ready = Collections.newSetFromMap(new IdentityHashMap<>());
 
         predecessors = buildPredecessors(proc.getBasicBlocks());
 
@@ -86,78 +144,81 @@ public class SSATransformation {
         removeUnecessaryPhis(proc);
     }
 
-    /** removes phi nodes, where all choices are equal or only choose between the phi-var itself and one other choice*/
+    /**
+     * removes phi nodes, where all choices are equal or only choose between the phi-var itself and one other choice.
+     * Removing a phi node can make the phi nodes using it trivial, so these are checked again until nothing changes.
+     * The uses of a removed phi node are found and replaced with the def-use index.
+     */
     private void removeUnecessaryPhis(Proc proc) {
-        Collection<PhiNode> toRemove = new HashSet<>();
-        Map<Variable, Operand> varReplacements = new HashMap<>();
-        proc.accept(new Element.DefaultVisitor() {
-            @Override
-            public void visit(PhiNode phiNode) {
-                Operand other = null;
-                Operand self = Ast.VarRef(phiNode.getVar());
-                boolean allEqual = true;
-                for (PhiNodeChoice choice : phiNode.getChoices()) {
-                    if (!choice.getValue().structuralEquals(self)) {
-                        if (other != null
-                                && !choice.getValue().structuralEquals(other)) {
-                            allEqual = false;
-                            break;
-                        }
-                        other = choice.getValue();
-                    }
+        List<PhiNode> phis = new ArrayList<>();
+        for (BasicBlock block : proc.getBasicBlocks()) {
+            phis.addAll(block.getPhiNodes());
+        }
+        if (phis.isEmpty()) {
+            return;
+        }
+        DefUse defUse = new DefUse(proc);
+        Set<PhiNode> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<PhiNode> worklist = new ArrayDeque<>(phis);
+        while (!worklist.isEmpty()) {
+            PhiNode phiNode = worklist.pop();
+            if (removed.contains(phiNode)) {
+                continue;
+            }
+            Variable self = phiNode.getVar();
+            Operand other = null;
+            boolean allEqual = true;
+            for (PhiNodeChoice choice : phiNode.getChoices()) {
+                Operand value = choice.getValue();
+                if (value instanceof VarRef && ((VarRef) value).getVariable() == self
+                        || other != null && value.structuralEquals(other)) {
+                    continue;
                 }
-                if (allEqual) {
-                    toRemove.add(phiNode);
-                    if (other == null) {
-                        other = dummyValue(phiNode.getType());
-                    }
-                    varReplacements.put(phiNode.getVar(), other);
+                if (other != null) {
+                    allEqual = false;
+                    break;
                 }
+                other = value;
             }
-        });
-
-        for (BasicBlock block : proc.getBasicBlocks()) {
-            block.removeAll(toRemove);
-        }
-
-        // replace dummy phi vars
-        proc.accept(new Element.DefaultVisitor() {
-            @Override
-            public void visit(VarRef varRef) {
-                Operand newOp = varReplacements.get(varRef.getVariable());
-                if (newOp != null) {
-                    Operand copy = newOp.copy();
-                    varRef.replaceBy(copy);
-                    if (copy instanceof VarRef) {
-                        VarRef ref = (VarRef) copy;
-                        if (ref.structuralEquals(varRef)) {
-                            System.out.println("replaced " + varRef + " with " + ref);
-                            return;
-                        }
-                        // recursively replace
-                        visit(ref);
-                    }
+            if (!allEqual) {
+                continue;
+            }
+            removed.add(phiNode);
+            if (other == null) {
+                other = dummyValue(phiNode.getType());
+            }
+            defUse.removeInstruction(phiNode);
+            // phi nodes using this one might only have one other choice now
+            for (Instruction user : defUse.getUsers(self)) {
+                if (user instanceof PhiNode) {
+                    worklist.push((PhiNode) user);
                 }
             }
-        });
+            defUse.replaceAllUsesWith(self, other);
+        }
     }
 
     /** creates new (empty) blocks and initializes the state of the algorithm */
     private void initBlocks(Proc proc) {
-        newBlocks = new HashMap<>();
-        valueNumbers = new HashMap<>();
-        onComplete = new HashMap<>();
+        // basic blocks are lists, so they are compared by identity instead of hashing all instructions
+        newBlocks = new IdentityHashMap<>();
+        entryBlock = null;
+        valueNumbers = new IdentityHashMap<>();
+        definitions = new HashMap<>();
+        for (Parameter param : proc.getParameters()) {
+            definitions.put(param, Ast.VarRef(param));
+        }
+        onComplete = new IdentityHashMap<>();
         for (BasicBlock basicBlock : proc.getBasicBlocks()) {
             onComplete.put(basicBlock, new ArrayList<>());
 
             BasicBlock newBlock = Ast.BasicBlock();
             newBlock.setName(basicBlock.getName());
             newBlocks.put(basicBlock, newBlock);
-            HashMap<Variable, Operand> initialValues = new HashMap<>();
-            valueNumbers.put(basicBlock, initialValues);
-            for (Parameter param : proc.getParameters()) {
-                initialValues.put(param, Ast.VarRef(param));
+            if (entryBlock == null) {
+                entryBlock = newBlock;
             }
+            valueNumbers.put(basicBlock, new HashMap<>());
         }
     }
 
@@ -174,12 +235,31 @@ public class SSATransformation {
 
 
     /** gets the current value number of a variable in a block.
-     * Recursively searches in predecessor blocks, if a variable is not found in the current block
+     * Searches in predecessor blocks, if a variable is not found in the current block
      * and adds phi-nodes, if there are multiple predecessors. */
     private Operand getVN(BasicBlock currentBlock, Variable v) {
-        if (valueNumbers.get(currentBlock).containsKey(v)) {
-            return valueNumbers.get(currentBlock).get(v).copy();
-        } else {
+        Operand result = lookupVN(currentBlock, v);
+        addPendingChoices();
+        return result;
+    }
+
+    /**
+     * like getVN, but the choices of new phi nodes for ready predecessors are only added to pendingChoices.
+     * Chains of single predecessors are followed in a loop. The value of a promoted alloca variable is remembered
+     * in the block where the lookup started and in the block of a new phi node, but not in the blocks in between,
+     * so the memory stays proportional to the lookups.
+     * Other variables are only searched in the blocks, if their definition was not processed yet.
+     */
+    private Operand lookupVN(BasicBlock currentBlock, Variable v) {
+        Operand result = definitions.get(v);
+        if (result == null) {
+            result = valueNumbers.get(currentBlock).get(v);
+        }
+        if (result != null) {
+            return result.copy();
+        }
+        BasicBlock startBlock = currentBlock;
+        while (result == null) {
             List<BasicBlock> preds = predecessors.get(currentBlock);
 
             if (preds.isEmpty()) {
@@ -192,7 +272,8 @@ public class SSATransformation {
                 }
                 return dummyValue(t);
             } else if (preds.size() == 1) {
-                return getVN(preds.get(0), v);
+                currentBlock = preds.get(0);
+                result = valueNumbers.get(currentBlock).get(v);
             } else {
                 // multiple predecessors, so insert phi node (might be removed later, if all values are equal)
 
@@ -202,17 +283,37 @@ public class SSATransformation {
                 PhiNode phi = Ast.PhiNode(newVar, transferType(v), choices);
                 newBlock.add(0, phi);
 
-                Operand result = Ast.VarRef(newVar);
-                setVN(currentBlock, v, result);
-
-                for (BasicBlock pred : preds) {
-                    whenBlockReady(pred, () -> {
-                        choices.add(Ast.PhiNodeChoice(newBlocks.get(pred), getVN(pred, v)));
+                result = Ast.VarRef(newVar);
+                // the phi node is only the value in this block, also if v is not a promoted variable
+                valueNumbers.get(currentBlock).put(v, result);
+
+                // the choices are added in order and before the remaining choices of phi nodes created earlier
+                for (int i = preds.size() - 1; i >= 0; i--) {
+                    BasicBlock pred = preds.get(i);
+                    pendingChoices.push(() -> {
+                        if (ready.contains(pred)) {
+                            choices.add(Ast.PhiNodeChoice(newBlocks.get(pred), lookupVN(pred, v)));
+                        } else {
+                            onComplete.get(pred).add(() -> {
+                                choices.add(Ast.PhiNodeChoice(newBlocks.get(pred), getVN(pred, v)));
+                            });
+                        }
                     });
                 }
-                return result;
             }
         }
+        //noinspection SuspiciousMethodCalls
+        if (allocaVars.contains(v)) {
+            setVN(startBlock, v, result);
+        }
+        return result.copy();
+    }
+
+    /** adds the pending choices of phi nodes, this can create further phi nodes with pending choices */
+    private void addPendingChoices() {
+        while (!pendingChoices.isEmpty()) {
+            pendingChoices.pop().run();
+        }
     }
 
     /** execute given runnable code, when a block is ready */
@@ -235,9 +336,14 @@ public class SSATransformation {
         return t;
     }
 
-    /** set the current value number */
+    /** set the current value number, the value of a variable, which is not promoted, is the same in all blocks */
     private void setVN(BasicBlock block, Variable var, Operand value) {
-        valueNumbers.get(block).put(var, value);
+        //noinspection SuspiciousMethodCalls
+        if (allocaVars.contains(var)) {
+            valueNumbers.get(block).put(var, value);
+        } else {
+            definitions.put(var, value);
+        }
     }
 
     /** goes through a basic block and rewrites the instructions into the new block */
@@ -400,7 +506,7 @@ public class SSATransformation {
 
     /** build the predecessor map */
     private Map<BasicBlock, List<BasicBlock>> buildPredecessors(BasicBlockList basicBlocks) {
-        Map<BasicBlock, List<BasicBlock>> result = new HashMap<>();
+        Map<BasicBlock, List<BasicBlock>> result = new IdentityHashMap<>();
 
         for (BasicBlock block : basicBlocks) {
             result.put(block, new ArrayList<>());
@@ -435,12 +541,17 @@ public class SSATransformation {
     }
 
     /** a dummy value, which can be used to handle some corner cases.
-     * The value should never be used at runtime */
+     * The value should never be used at runtime.
+     * Pointers are a null pointer cast in the entry block, so that they have the right type. */
     private Operand dummyValue(Type type) {
         if (type instanceof TypeInt) {
             return Ast.ConstInt(0);
         } else if (type instanceof TypeBool) {
             return Ast.ConstBool(false);
+        } else if (type instanceof TypePointer) {
+            TemporaryVar v = Ast.TemporaryVar("dummy");
+            entryBlock.add(0, Ast.Bitcast(v, type, Ast.Nullpointer()));
+            return Ast.VarRef(v);
         } else {
             return Ast.Nullpointer();
         }
@@ -1,13 +1,16 @@
 package translation;
 
+import analysis.TypeInformation.VarKind;
 import minijava.ast.*;
 import minillvm.ast.Ast;
 import minillvm.ast.BasicBlock;
 import minillvm.ast.Operand;
-import minillvm.ast.TypePointer;
 
 /**
  * Created by peter on 26.05.16.
+ *
+ * Nested statements and expressions are only scheduled as steps of the {@link Translator},
+ * the values of expressions are taken from its operand stack.
  */
 public class StmtTranslator implements MJStatement.MatcherVoid {
 
@@ -19,7 +22,7 @@ public class StmtTranslator implements MJStatement.MatcherVoid {
 
 	@Override
 	public void case_VarDecl(MJVarDecl s) {
-		// no code, space is allocated at beginning of method
+		// no code, variables are declared at beginning of method
 	}
 
 	@Override
@@ -29,52 +32,69 @@ public class StmtTranslator implements MJStatement.MatcherVoid {
 		BasicBlock endloop = tr.newBasicBlock("endloop");
 
 		// goto loop start
-		tr.getCurrentBlock().add(Ast.Jump(whileStart));
+		tr.jump(whileStart);
 
 		tr.addBasicBlock(whileStart);
-		tr.setCurrentBlock(whileStart);
+		tr.setCurrentLoopHeader(whileStart);
 		// evaluate condition
-		Operand condition = tr.exprRvalue(s.getCondition());
-		// branch based on condition
-		tr.getCurrentBlock().add(Ast.Branch(condition, loopBodyStart, endloop));
-
-		// translate loop body
-		tr.addBasicBlock(loopBodyStart);
-		tr.setCurrentBlock(loopBodyStart);
-		tr.translateStmt(s.getLoopBody());
-		// at end of loop body go to loop start
-		tr.getCurrentBlock().add(Ast.Jump(whileStart));
-
-		// continue after loop:
-		tr.addBasicBlock(endloop);
-		tr.setCurrentBlock(endloop);
+		tr.then(tr.rvalue(s.getCondition()), () -> {
+			Operand condition = tr.popOperand();
+			// branch based on condition
+			tr.branch(condition, loopBodyStart, endloop);
+
+			// translate loop body
+			tr.addBasicBlock(loopBodyStart);
+			tr.setCurrentBlock(loopBodyStart);
+		}, tr.stmt(s.getLoopBody()), () -> {
+			// at end of loop body go to loop start
+			tr.jump(whileStart);
+			tr.sealBlock(whileStart);
+
+			// continue after loop:
+			tr.addBasicBlock(endloop);
+			tr.setCurrentBlock(endloop);
+		});
 
 	}
 
 	@Override
 	public void case_StmtExpr(MJStmtExpr s) {
 		// just translate the expression
-		tr.exprRvalue(s.getExpr());
+		tr.then(tr.rvalue(s.getExpr()), tr::popOperand);
 	}
 
 	@Override
 	public void case_StmtAssign(MJStmtAssign s) {
+		if (s.getLeft() instanceof MJVarUse) {
+			MJVarDecl varDecl = ((MJVarUse) s.getLeft()).getVariableDeclaration();
+			if (tr.getTypes().getVarKind(varDecl) != VarKind.FIELD) {
+				// local variables and parameters have no address
+				tr.then(tr.rvalue(s.getRight()), () -> {
+					Operand rValue = tr.popOperand();
+					tr.writeVariable(varDecl, tr.addCastIfNecessary(rValue, tr.getTypes().getType(s.getRight()), tr.getTypes().getType(s.getLeft())));
+				});
+				return;
+			}
+		}
 		// first translate the left hand side
-		Operand lAddr = tr.exprLvalue(s.getLeft());
-
 		// then translate the right hand side
-		Operand rValue = tr.exprRvalue(s.getRight());
+		tr.then(tr.lvalue(s.getLeft()), tr.rvalue(s.getRight()), () -> {
+			Operand rValue = tr.popOperand();
+			Operand lAddr = tr.popOperand();
 
-		Operand rValueCasted = tr.addCastIfNecessary(rValue, ((TypePointer) lAddr.calculateType()).getTo());
+			Operand rValueCasted = tr.addCastIfNecessary(rValue, tr.getTypes().getType(s.getRight()), tr.getTypes().getType(s.getLeft()));
 
-		// finally store the result
-		tr.addInstruction(Ast.Store(lAddr, rValueCasted));
+			// finally store the result
+			tr.addInstruction(Ast.Store(lAddr, rValueCasted));
+		});
 	}
 
 	@Override
 	public void case_StmtPrint(MJStmtPrint s) {
-		Operand e = tr.exprRvalue(s.getPrinted());
-		tr.addInstruction(Ast.Print(e));
+		tr.then(tr.rvalue(s.getPrinted()), () -> {
+			Operand e = tr.popOperand();
+			tr.addInstruction(Ast.Print(e));
+		});
 	}
 
 	@Override
@@ -84,43 +104,49 @@ public class StmtTranslator implements MJStatement.MatcherVoid {
 		BasicBlock endif = tr.newBasicBlock("endif");
 
 		// translate the condition
-		Operand condition = tr.exprRvalue(s.getCondition());
-		// jump based on condition
-		tr.getCurrentBlock().add(Ast.Branch(condition, ifTrue, ifFalse));
-
-		// translate ifTrue
-		tr.addBasicBlock(ifTrue);
-		tr.setCurrentBlock(ifTrue);
-		tr.translateStmt(s.getIfTrue());
-		tr.getCurrentBlock().add(Ast.Jump(endif));
-
-		// translate ifFalse
-		tr.addBasicBlock(ifFalse);
-		tr.setCurrentBlock(ifFalse);
-		tr.translateStmt(s.getIfFalse());
-		tr.getCurrentBlock().add(Ast.Jump(endif));
-
-		// continue at endif
-		tr.addBasicBlock(endif);
-		tr.setCurrentBlock(endif);
+		tr.then(tr.rvalue(s.getCondition()), () -> {
+			Operand condition = tr.popOperand();
+			// jump based on condition
+			tr.branch(condition, ifTrue, ifFalse);
+
+			// translate ifTrue
+			tr.addBasicBlock(ifTrue);
+			tr.setCurrentBlock(ifTrue);
+		}, tr.stmt(s.getIfTrue()), () -> {
+			tr.jump(endif);
+
+			// translate ifFalse
+			tr.addBasicBlock(ifFalse);
+			tr.setCurrentBlock(ifFalse);
+		}, tr.stmt(s.getIfFalse()), () -> {
+			tr.jump(endif);
+
+			// continue at endif
+			tr.addBasicBlock(endif);
+			tr.setCurrentBlock(endif);
+		});
 	}
 
 	@Override
 	public void case_Block(MJBlock block) {
-		for (MJStatement s : block) {
-			tr.translateStmt(s);
+		Runnable[] steps = new Runnable[block.size()];
+		for (int i = 0; i < steps.length; i++) {
+			steps[i] = tr.stmt(block.get(i));
 		}
+		tr.then(steps);
 	}
 
 	@Override
 	public void case_StmtReturn(MJStmtReturn s) {
-		Operand result = tr.exprRvalue(s.getResult());
+		tr.then(tr.rvalue(s.getResult()), () -> {
+			Operand result = tr.popOperand();
 
-		Operand castedResult = tr.addCastIfNecessary(result, tr.getCurrentReturnType());
+			Operand castedResult = tr.addCastIfNecessary(result, tr.getTypes().getType(s.getResult()), tr.getCurrentReturnType());
 
-		tr.getCurrentBlock().add(Ast.ReturnExpr(castedResult));
+			tr.getCurrentBlock().add(Ast.ReturnExpr(castedResult));
 
-		// set to dummy block, so that nothing is overwritten
-		tr.setCurrentBlock(tr.unreachableBlock());
+			// set to dummy block, so that nothing is overwritten
+			tr.setCurrentBlock(tr.unreachableBlock());
+		});
 	}
 }
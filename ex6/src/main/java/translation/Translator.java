@@ -1,9 +1,14 @@
 package translation;
 
+import analysis.ClassType;
+import analysis.TypeInformation;
 import frontend.AstPrinter;
+import frontend.SourcePositions;
 import minijava.ast.*;
 import minillvm.ast.*;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,11 +27,37 @@ public class Translator {
     private Type arrayPointerType;
     private Prog prog = Ast.Prog(Ast.TypeStructList(), Ast.GlobalList(), Ast.ProcList());
     private MJProgram javaProg;
-    private Map<MJVarDecl, TemporaryVar> localVarLocation = new HashMap<>();
+    /** the results of the analysis of the program */
+    private final TypeInformation types;
+    /** the static return type of the method being translated */
+    private analysis.Type currentReturnType;
+    /** whether local variables are translated to SSA values directly, instead of stack slots */
+    private boolean ssa = true;
+    /** the SSA form of the current procedure */
+    private SSABuilder ssaBuilder;
+    /** the stack slots of the variables of the current procedure, when SSA is not used */
+    private Map<Object, TemporaryVar> variableLocations = new HashMap<>();
     private Proc newIntArrayFunc;
+    /** pending translation steps, the next one is on top */
+    private final Deque<Runnable> work = new ArrayDeque<>();
+    /** results of translated expressions, the last one is on top */
+    private final Deque<Operand> operands = new ArrayDeque<>();
 
-    public Translator(MJProgram javaProg) {
+    public Translator(MJProgram javaProg, TypeInformation types) {
         this.javaProg = javaProg;
+        this.types = types;
+    }
+
+    /**
+     * sets whether local variables, parameters and the results of conditional expressions are translated
+     * directly to SSA form (the default), or are stored in stack slots allocated with Alloca.
+     */
+    public void setSSA(boolean ssa) {
+        this.ssa = ssa;
+    }
+
+    public boolean isSSA() {
+        return ssa;
     }
 
     public Prog translate() {
@@ -69,7 +100,7 @@ public class Translator {
         addInstruction(Ast.BinaryOperation(sizeLessThanZero, Ast.VarRef(size), Ast.Slt(), Ast.ConstInt(0)));
         BasicBlock negativeSize = newBasicBlock("negativeSize");
         BasicBlock goodSize = newBasicBlock("goodSize");
-        currentBlock.add(Ast.Branch(Ast.VarRef(sizeLessThanZero), negativeSize, goodSize));
+        branch(Ast.VarRef(sizeLessThanZero), negativeSize, goodSize);
 
         addBasicBlock(negativeSize);
         negativeSize.add(Ast.HaltWithError("Array Size must be positive"));
@@ -97,40 +128,40 @@ public class Translator {
         BasicBlock loopStart = newBasicBlock("loopStart");
         BasicBlock loopBody = newBasicBlock("loopBody");
         BasicBlock loopEnd = newBasicBlock("loopEnd");
-        TemporaryVar iVar = Ast.TemporaryVar("iVar");
-        currentBlock.add(Ast.Alloca(iVar, Ast.TypeInt()));
-        currentBlock.add(Ast.Store(Ast.VarRef(iVar), Ast.ConstInt(0)));
-        currentBlock.add(Ast.Jump(loopStart));
+        Object iVar = new Object();
+        declareVariable(iVar, "iVar", Ast.TypeInt());
+        writeVariable(iVar, Ast.ConstInt(0));
+        jump(loopStart);
 
         // loop condition: while i < size
         addBasicBlock(loopStart);
-        setCurrentBlock(loopStart);
-        TemporaryVar i = Ast.TemporaryVar("i");
+        setCurrentLoopHeader(loopStart);
+        Operand i = readVariable(iVar, "i");
         TemporaryVar nextI = Ast.TemporaryVar("nextI");
-        loopStart.add(Ast.Load(i, Ast.VarRef(iVar)));
         TemporaryVar smallerSize = Ast.TemporaryVar("smallerSize");
-        addInstruction(Ast.BinaryOperation(smallerSize, Ast.VarRef(i), Ast.Slt(), Ast.VarRef(size)));
-        currentBlock.add(Ast.Branch(Ast.VarRef(smallerSize), loopBody, loopEnd));
+        addInstruction(Ast.BinaryOperation(smallerSize, i, Ast.Slt(), Ast.VarRef(size)));
+        branch(Ast.VarRef(smallerSize), loopBody, loopEnd);
 
         // loop body
         addBasicBlock(loopBody);
         setCurrentBlock(loopBody);
         // ar[i] = 0;
         TemporaryVar iAddr = Ast.TemporaryVar("iAddr");
-        addInstruction(Ast.GetElementPtr(iAddr, Ast.VarRef(newArray), Ast.OperandList(Ast.ConstInt(0), Ast.ConstInt(1), Ast.VarRef(i))));
+        addInstruction(Ast.GetElementPtr(iAddr, Ast.VarRef(newArray), Ast.OperandList(Ast.ConstInt(0), Ast.ConstInt(1), i.copy())));
         addInstruction(Ast.Store(Ast.VarRef(iAddr), Ast.ConstInt(0)));
 
         // nextI = i + 1;
-        addInstruction(Ast.BinaryOperation(nextI, Ast.VarRef(i), Ast.Add(), Ast.ConstInt(1)));
+        addInstruction(Ast.BinaryOperation(nextI, i.copy(), Ast.Add(), Ast.ConstInt(1)));
         // store new value in i
-        addInstruction(Ast.Store(Ast.VarRef(iVar), Ast.VarRef(nextI)));
+        writeVariable(iVar, Ast.VarRef(nextI));
 
-        loopBody.add(Ast.Jump(loopStart));
+        jump(loopStart);
+        sealBlock(loopStart);
 
         addBasicBlock(loopEnd);
+        setCurrentBlock(loopEnd);
         loopEnd.add(Ast.ReturnExpr(Ast.VarRef(newArray)));
-
-
+        finishProc();
     }
 
     private void translateMethods() {
@@ -149,36 +180,44 @@ public class Translator {
         addBasicBlock(initBlock);
         setCurrentBlock(initBlock);
 
-        localVarLocation.clear();
+        currentReturnType = types.getMethod(m).getReturnType();
 
 
-        // store copies of the parameters in Allocas, to make uniform read/write access possible
+        // parameters are read and written like local variables
         int i = 1;
         for (MJVarDecl param : m.getFormalParameters()) {
-            TemporaryVar v = Ast.TemporaryVar(param.getName());
-            addInstruction(Ast.Alloca(v, translateType(param.getType())));
-            addInstruction(Ast.Store(Ast.VarRef(v), Ast.VarRef(proc.getParameters().get(i))));
-            localVarLocation.put(param, v);
+            declareVariable(param, param.getName(), translateType(param.getType()));
+            writeVariable(param, Ast.VarRef(proc.getParameters().get(i)));
             i++;
         }
 
-        // allocate space for the local variables
-        allocaLocalVars(m.getMethodBody());
+        declareLocalVars(m.getMethodBody());
 
         translateStmt(m.getMethodBody());
-
-    }
-
-    void allocaLocalVars(MJBlock methodBody) {
-        methodBody.accept(new MJElement.DefaultVisitor() {
-            @Override
-            public void visit(MJVarDecl localVar) {
-                super.visit(localVar);
-                TemporaryVar v = Ast.TemporaryVar(localVar.getName());
-                addInstruction(Ast.Alloca(v, translateType(localVar.getType())));
-                localVarLocation.put(localVar, v);
+        finishProc();
+    }
+
+    void declareLocalVars(MJBlock methodBody) {
+        // walk through the nested statements with an explicit stack, expressions contain no declarations
+        Deque<MJStatement> todo = new ArrayDeque<>();
+        todo.push(methodBody);
+        while (!todo.isEmpty()) {
+            MJStatement s = todo.pop();
+            if (s instanceof MJVarDecl) {
+                MJVarDecl localVar = (MJVarDecl) s;
+                declareVariable(localVar, localVar.getName(), translateType(localVar.getType()));
+            } else if (s instanceof MJBlock) {
+                MJBlock block = (MJBlock) s;
+                for (int i = block.size() - 1; i >= 0; i--) {
+                    todo.push(block.get(i));
+                }
+            } else if (s instanceof MJStmtIf) {
+                todo.push(((MJStmtIf) s).getIfFalse());
+                todo.push(((MJStmtIf) s).getIfTrue());
+            } else if (s instanceof MJStmtWhile) {
+                todo.push(((MJStmtWhile) s).getLoopBody());
             }
-        });
+        }
     }
 
     private void translateMainMethod() {
@@ -190,10 +229,11 @@ public class Translator {
         setCurrentBlock(initBlock);
 
         MJBlock mainBody = javaProg.getMainClass().getMainBody();
-        allocaLocalVars(mainBody);
+        declareLocalVars(mainBody);
         translateStmt(mainBody);
         // add a return statement to the end of the main method
         currentBlock.add(Ast.ReturnExpr(Ast.ConstInt(0)));
+        finishProc();
     }
 
 
@@ -205,34 +245,159 @@ public class Translator {
 
     void addBasicBlock(BasicBlock block) {
         currentProcedure.getBasicBlocks().add(block);
+        if (ssa) {
+            ssaBuilder.addBlock(block);
+        }
     }
 
     public BasicBlock getCurrentBlock() {
         return currentBlock;
     }
 
+    /**
+     * continues the translation in the given block.
+     * All jumps to the block must have been added before, blocks with later jumps use {@link #setCurrentLoopHeader}.
+     */
     public void setCurrentBlock(BasicBlock currentBlock) {
         this.currentBlock = currentBlock;
+        sealBlock(currentBlock);
     }
 
-    public void translateStmt(MJStatement s) {
-        addInstruction(Ast.CommentInstr(sourceLine(s) + " start statement : " + printFirstline(s)));
-        s.match(stmtTranslator);
-        addInstruction(Ast.CommentInstr(sourceLine(s) + " end statement: " + printFirstline(s)));
+    /** continues the translation at the start of a loop, the block has to be sealed after the jump back */
+    public void setCurrentLoopHeader(BasicBlock block) {
+        this.currentBlock = block;
     }
 
-    private String printFirstline(MJStatement s) {
-        String str = AstPrinter.print(s);
-        str = str.replaceAll("\n.*", "");
-        return str;
+    /** marks that all jumps to the block have been added */
+    public void sealBlock(BasicBlock block) {
+        if (ssa) {
+            ssaBuilder.sealBlock(block);
+        }
+    }
+
+    /** ends the current block with a jump to the target */
+    public void jump(BasicBlock target) {
+        currentBlock.add(Ast.Jump(target));
+        if (ssa) {
+            ssaBuilder.addEdge(currentBlock, target);
+        }
+    }
+
+    /** ends the current block with a conditional branch */
+    public void branch(Operand condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+        currentBlock.add(Ast.Branch(condition, ifTrue, ifFalse));
+        if (ssa) {
+            ssaBuilder.addEdge(currentBlock, ifTrue);
+            ssaBuilder.addEdge(currentBlock, ifFalse);
+        }
+    }
+
+    /**
+     * declares a variable of the current procedure, which is identified by the given key,
+     * for example the declaration of a local variable or the expression using the variable.
+     * Without SSA the variable gets a stack slot at the current position.
+     */
+    public void declareVariable(Object var, String name, Type type) {
+        if (ssa) {
+            ssaBuilder.declare(var, name, type);
+        } else {
+            TemporaryVar v = Ast.TemporaryVar(name);
+            addInstruction(Ast.Alloca(v, type));
+            variableLocations.put(var, v);
+        }
+    }
+
+    /** sets the value of a variable at the current position */
+    public void writeVariable(Object var, Operand value) {
+        if (ssa) {
+            ssaBuilder.write(var, currentBlock, value);
+        } else {
+            addInstruction(Ast.Store(Ast.VarRef(variableLocations.get(var)), value));
+        }
+    }
+
+    /** the value of a variable at the current position, without SSA it is loaded into a new variable with the given name */
+    public Operand readVariable(Object var, String name) {
+        if (ssa) {
+            return ssaBuilder.read(var, currentBlock);
+        }
+        TemporaryVar v = Ast.TemporaryVar(name);
+        addInstruction(Ast.Load(v, Ast.VarRef(variableLocations.get(var))));
+        return Ast.VarRef(v);
+    }
+
+    private void finishProc() {
+        if (ssa) {
+            ssaBuilder.finish();
+        }
+    }
+
+    /*
+     * Statements and expressions are not translated recursively.
+     * Instead the translators schedule steps on an explicit stack and expressions push their result
+     * on a stack of operands, so that deeply nested programs cannot overflow the call stack.
+     */
+
+    public void translateStmt(MJStatement s) {
+        run(stmt(s));
     }
 
     public Operand exprLvalue(MJExpr e) {
-        return e.match(exprLValue);
+        run(lvalue(e));
+        return popOperand();
     }
 
     public Operand exprRvalue(MJExpr e) {
-        return e.match(exprRValue);
+        run(rvalue(e));
+        return popOperand();
+    }
+
+    /** runs the given step and all steps scheduled by it */
+    private void run(Runnable step) {
+        int base = work.size();
+        work.push(step);
+        while (work.size() > base) {
+            work.pop().run();
+        }
+    }
+
+    /** schedules the given steps, so that they run in order before all steps scheduled earlier */
+    void then(Runnable... steps) {
+        for (int i = steps.length - 1; i >= 0; i--) {
+            work.push(steps[i]);
+        }
+    }
+
+    /** a step, which translates the statement */
+    Runnable stmt(MJStatement s) {
+        return () -> {
+            String firstLine = printFirstline(s);
+            addInstruction(Ast.CommentInstr(sourceLine(s) + " start statement : " + firstLine));
+            then(() -> s.match(stmtTranslator),
+                    () -> addInstruction(Ast.CommentInstr(sourceLine(s) + " end statement: " + firstLine)));
+        };
+    }
+
+    /** a step, which translates the expression and pushes the address of its value */
+    Runnable lvalue(MJExpr e) {
+        return () -> e.match(exprLValue);
+    }
+
+    /** a step, which translates the expression and pushes its value */
+    Runnable rvalue(MJExpr e) {
+        return () -> e.match(exprRValue);
+    }
+
+    void pushOperand(Operand op) {
+        operands.push(op);
+    }
+
+    Operand popOperand() {
+        return operands.pop();
+    }
+
+    private String printFirstline(MJStatement s) {
+        return AstPrinter.printFirstLine(s);
     }
 
     /**
@@ -256,13 +421,7 @@ public class Translator {
     }
 
     public int sourceLine(MJElement e) {
-        while (e != null) {
-            if (e.getSourcePosition() != null) {
-                return e.getSourcePosition().getLine();
-            }
-            e = e.getParent();
-        }
-        return 0;
+        return SourcePositions.line(e);
     }
 
     public void addNullcheck(Operand arrayAddr, String errorMessage) {
@@ -271,7 +430,7 @@ public class Translator {
 
         BasicBlock whenIsNull = newBasicBlock("whenIsNull");
         BasicBlock notNull = newBasicBlock("notNull");
-        currentBlock.add(Ast.Branch(Ast.VarRef(isNull), whenIsNull, notNull));
+        branch(Ast.VarRef(isNull), whenIsNull, notNull);
 
         addBasicBlock(whenIsNull);
         whenIsNull.add(Ast.HaltWithError(errorMessage));
@@ -330,6 +489,8 @@ public class Translator {
             throw new RuntimeException("Cannot set proc to null");
         }
         this.currentProcedure = currentProc;
+        ssaBuilder = ssa ? new SSABuilder(currentProc) : null;
+        variableLocations.clear();
     }
 
     public void addGlobal(Global global) {
@@ -344,34 +505,47 @@ public class Translator {
         return classTranslator;
     }
 
-    public boolean isField(MJVarDecl varDecl) {
-        // this -> fieldList -> class
-        return varDecl.getParent().getParent() instanceof MJClassDecl;
-    }
-
-    public boolean isParameter(MJVarDecl varDecl) {
-        // this -> paramList -> method
-        return varDecl.getParent().getParent() instanceof MJMethodDecl;
-    }
-
-    public TemporaryVar getLocalVarLocation(MJVarDecl varDecl) {
-        return localVarLocation.get(varDecl);
+    public TypeInformation getTypes() {
+        return types;
     }
 
     public Operand getNewIntArrayFunc() {
         return Ast.ProcedureRef(newIntArrayFunc);
     }
 
-    public Operand addCastIfNecessary(Operand value, Type expectedType) {
-        if (expectedType.equalsType(value.calculateType())) {
+    /**
+     * casts a value of the given static type to the expected static type.
+     * Only class types with different classes and null have different types in MiniLLVM.
+     */
+    public Operand addCastIfNecessary(Operand value, analysis.Type valueType, analysis.Type expectedType) {
+        if (valueType == expectedType
+                || valueType instanceof ClassType && expectedType instanceof ClassType
+                && ((ClassType) valueType).getClassDecl() == ((ClassType) expectedType).getClassDecl()) {
             return value;
         }
         TemporaryVar castValue = Ast.TemporaryVar("castValue");
-        addInstruction(Ast.Bitcast(castValue, expectedType, value));
+        addInstruction(Ast.Bitcast(castValue, translateType(expectedType), value));
         return Ast.VarRef(castValue);
     }
 
-    public Type getCurrentReturnType() {
-        return currentProcedure.getReturnType();
+    /** the MiniLLVM type of values with the given static type */
+    public Type translateType(analysis.Type type) {
+        if (type == analysis.Type.INT) {
+            return Ast.TypeInt();
+        } else if (type == analysis.Type.BOOL) {
+            return Ast.TypeBool();
+        } else if (type == analysis.Type.INTARRAY) {
+            return arrayPointerType;
+        } else if (type == analysis.Type.NULL) {
+            return Ast.TypeNullpointer();
+        } else if (type instanceof ClassType) {
+            return getPointerToClassStruct(((ClassType) type).getClassDecl());
+        }
+        throw new RuntimeException("Type " + type + " has no translation.");
+    }
+
+    /** the static return type of the method being translated */
+    public analysis.Type getCurrentReturnType() {
+        return currentReturnType;
     }
 }
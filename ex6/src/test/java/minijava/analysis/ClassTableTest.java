@@ -0,0 +1,117 @@
+package minijava.analysis;
+
+import analysis.Analysis;
+import analysis.ClassTable;
+import analysis.ClassType;
+import minijava.ast.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the indexed lookups of the ClassTable with walking the supertypes, also for hierarchies with cycles.
+ */
+public class ClassTableTest {
+
+	@Test
+	public void randomHierarchies() {
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			int n = 1 + random.nextInt(12);
+			MJClassDeclList classes = MJ.ClassDeclList();
+			for (int i = 0; i < n; i++) {
+				MJExtended extended = random.nextInt(4) == 0
+						? MJ.ExtendsNothing()
+						: MJ.ExtendsClass("C" + random.nextInt(n + 1));
+				MJVarDeclList fields = MJ.VarDeclList();
+				MJMethodDeclList methods = MJ.MethodDeclList();
+				for (int k = random.nextInt(3); k > 0; k--) {
+					fields.add(MJ.VarDecl(MJ.TypeInt(), "f" + random.nextInt(4)));
+				}
+				for (int k = random.nextInt(3); k > 0; k--) {
+					methods.add(MJ.MethodDecl(MJ.TypeInt(), "m" + random.nextInt(4), MJ.VarDeclList(), MJ.Block()));
+				}
+				classes.add(MJ.ClassDecl("C" + i, extended, fields, methods));
+			}
+			MJProgram program = MJ.Program(MJ.MainClass("Main", "args", MJ.Block()), classes);
+			ClassTable table = new Analysis(program).buildClassTable();
+
+			for (MJClassDecl c : classes) {
+				List<MJClassDecl> superTypes = superTypes(c);
+				ClassType type = new ClassType(table, c);
+				for (MJClassDecl d : classes) {
+					assertEquals(superTypes.contains(d), table.isSubclass(c, d));
+				}
+				for (int k = 0; k < 4; k++) {
+					assertSame(naiveField(superTypes, "f" + k), table.lookupField(type, "f" + k));
+					assertSame(naiveMethod(superTypes, "m" + k), table.lookupMethod(type, "m" + k));
+				}
+				List<MJVarDecl> fields = new ArrayList<>();
+				for (int i = superTypes.size() - 1; i >= 0; i--) {
+					fields.addAll(superTypes.get(i).getFields());
+				}
+				assertEquals(fields, table.getFields(c));
+			}
+		}
+	}
+
+	@Test
+	public void deepHierarchy() {
+		int depth = 100000;
+		MJClassDeclList classes = MJ.ClassDeclList();
+		for (int i = 0; i < depth; i++) {
+			MJExtended extended = i == 0 ? MJ.ExtendsNothing() : MJ.ExtendsClass("C" + (i - 1));
+			MJVarDeclList fields = MJ.VarDeclList();
+			if (i % 1000 == 0) {
+				fields.add(MJ.VarDecl(MJ.TypeInt(), "f" + i));
+			}
+			classes.add(MJ.ClassDecl("C" + i, extended, fields, MJ.MethodDeclList()));
+		}
+		MJProgram program = MJ.Program(MJ.MainClass("Main", "args", MJ.Block()), classes);
+		Analysis analysis = new Analysis(program);
+		ClassTable table = analysis.buildClassTable();
+		assertTrue(analysis.getTypeErrors().isEmpty());
+
+		MJClassDecl last = classes.get(depth - 1);
+		assertTrue(table.isSubclass(last, classes.get(0)));
+		assertFalse(table.isSubclass(classes.get(0), last));
+		ClassType type = table.lookupClass("C" + (depth - 1));
+		assertSame(classes.get(0).getFields().get(0), table.lookupField(type, "f0"));
+		assertSame(classes.get(99000).getFields().get(0), table.lookupField(type, "f99000"));
+		assertNull(table.lookupField(table.lookupClass("C500"), "f1000"));
+	}
+
+	private static List<MJClassDecl> superTypes(MJClassDecl c) {
+		List<MJClassDecl> result = new ArrayList<>();
+		for (MJClassDecl d = c; d != null && !result.contains(d); d = d.getDirectSuperClass()) {
+			result.add(d);
+		}
+		return result;
+	}
+
+	private static MJVarDecl naiveField(List<MJClassDecl> superTypes, String name) {
+		for (MJClassDecl c : superTypes) {
+			for (MJVarDecl v : c.getFields()) {
+				if (v.getName().equals(name)) {
+					return v;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static MJMethodDecl naiveMethod(List<MJClassDecl> superTypes, String name) {
+		for (MJClassDecl c : superTypes) {
+			for (MJMethodDecl m : c.getMethods()) {
+				if (m.getName().equals(name)) {
+					return m;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,184 @@
+package minijava.analysis;
+
+import analysis.Analysis;
+import analysis.IncrementalAnalysis;
+import analysis.TypeError;
+import frontend.IncrementalParser;
+import frontend.MJFrontend;
+import frontend.MJFrontend.ParserKind;
+import minijava.ast.*;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the incremental analysis only checks the changed method bodies and their dependents
+ * and reports the same errors as checking the edited source completely.
+ */
+public class IncrementalAnalysisTest {
+
+	private static final String SOURCE = "class Main {\n"
+			+ "\tpublic static void main(String[] a) {\n"
+			+ "\t\tSystem.out.println(new A().m(1));\n"
+			+ "\t}\n"
+			+ "}\n"
+			+ "class A {\n"
+			+ "\tint x;\n"
+			+ "\tint m(int a) { int y; y = a * (x + 1); return y; }\n"
+			+ "\tint n() { return this.m(2); }\n"
+			+ "\tint k() { return 3; }\n"
+			+ "}\n"
+			+ "class B extends A {\n"
+			+ "\tboolean b;\n"
+			+ "\tint m(int a) {\n"
+			+ "\t\twhile (a < 10) { a = a + 1; }\n"
+			+ "\t\treturn a;\n"
+			+ "\t}\n"
+			+ "\tint p(A o) { return o.n(); }\n"
+			+ "}\n"
+			+ "class C {\n"
+			+ "\tint q(B o) { A a; a = o; return a.k(); }\n"
+			+ "\tint r() { int z; z = 1; return z; }\n"
+			+ "}\n";
+
+	@Test
+	public void editInMethodChecksOnlyTheMethod() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		assertTrue(analysis.check(parser.getProgram()).isEmpty());
+		assertEquals(8, analysis.getCheckedBodies());
+
+		// nobody calls C.r
+		edit(parser, "z = 1;", "z = true;");
+		assertEquals(1, analysis.check(parser.getProgram()).size());
+		assertEquals(1, analysis.getCheckedBodies());
+		assertSameAsFullCheck(parser, analysis);
+
+		edit(parser, "z = true;", "z = 1;");
+		assertTrue(analysis.check(parser.getProgram()).isEmpty());
+		assertEquals(1, analysis.getCheckedBodies());
+
+		// the main method and A.n call A.m
+		edit(parser, "x + 1", "x + true");
+		assertEquals(1, analysis.check(parser.getProgram()).size());
+		assertEquals(3, analysis.getCheckedBodies());
+		assertSameAsFullCheck(parser, analysis);
+	}
+
+	@Test
+	public void callersOfAChangedMethodAreCheckedAgain() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		analysis.check(parser.getProgram());
+
+		// the method k of A is parsed again, so C.q refers to a new declaration
+		edit(parser, "return 3;", "return 4;");
+		analysis.check(parser.getProgram());
+		assertEquals(2, analysis.getCheckedBodies());
+		MJClassDecl c = parser.getProgram().getClassDecls().get(2);
+		MJStmtReturn ret = (MJStmtReturn) c.getMethods().get(0).getMethodBody().get(2);
+		assertSame(parser.getProgram().getClassDecls().get(0).getMethods().get(2),
+				((MJMethodCall) ret.getResult()).getMethodDeclaration());
+		assertSameAsFullCheck(parser, analysis);
+	}
+
+	@Test
+	public void changedHierarchy() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		analysis.check(parser.getProgram());
+
+		// B is parsed again and is not a subclass of A any more, only C.q uses B
+		edit(parser, "extends A ", "");
+		assertFalse(analysis.check(parser.getProgram()).isEmpty());
+		assertEquals(3, analysis.getCheckedBodies());
+		assertSameAsFullCheck(parser, analysis);
+
+		edit(parser, "class B {", "class B extends A {");
+		assertTrue(analysis.check(parser.getProgram()).isEmpty());
+		assertSameAsFullCheck(parser, analysis);
+	}
+
+	@Test
+	public void newFieldResolvesVariable() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		edit(parser, "z = 1;", "z = w;");
+		assertEquals(1, analysis.check(parser.getProgram()).size());
+
+		// adding a field to C parses the whole class again, but the field is also visible in methods checked before
+		edit(parser, "class C {", "class C { int w;");
+		assertTrue(analysis.check(parser.getProgram()).isEmpty());
+		assertSameAsFullCheck(parser, analysis);
+	}
+
+	@Test
+	public void errorsMoveWithTheirElements() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		edit(parser, "z = 1;", "z = true;");
+		analysis.check(parser.getProgram());
+		// A.k and its caller C.q are checked again, the error in C.r is reused on its new line
+		edit(parser, "return 3;", "\n\n\t\treturn 3;");
+		analysis.check(parser.getProgram());
+		assertEquals(2, analysis.getCheckedBodies());
+		assertSameAsFullCheck(parser, analysis);
+	}
+
+	@Test
+	public void randomEdits() throws Exception {
+		String[][] replacements = {
+				{"x", "b"}, {"int x;", "boolean x;"}, {"int x;", "int x; int w;"}, {"extends A", "extends C"},
+				{"extends A", ""}, {"class C {", "class C extends B {"}, {"o.n()", "o.k()"}, {"A a;", "B a;"},
+				{"return y;", "return z;"}, {"int m(int a)", "int m(boolean a)"}, {"int n()", "boolean n()"},
+				{"class B", "class D"}, {"B o", "D o"}, {"a = o;", "o = a;"}, {"int z;", "int w;"},
+				{"boolean b;", "A o;"}, {"return 3;", "return this.q(new B());"}, {"this.m(2)", "this.p(this)"}};
+		Random random = new Random(42);
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		IncrementalAnalysis analysis = new IncrementalAnalysis();
+		analysis.check(parser.getProgram());
+		for (int i = 0; i < 1000; i++) {
+			String[] r = replacements[random.nextInt(replacements.length)];
+			boolean forward = random.nextBoolean();
+			String old = forward ? r[0] : r[1];
+			String text = parser.getText();
+			int offset = old.isEmpty() ? -1 : text.indexOf(old);
+			if (offset < 0) {
+				continue;
+			}
+			parser.applyEdit(offset, old.length(), forward ? r[1] : r[0]);
+			if (parser.getProgram() != null) {
+				analysis.check(parser.getProgram());
+				assertSameAsFullCheck(parser, analysis);
+			}
+		}
+	}
+
+	/** replaces the first occurrence of old in the text */
+	private static void edit(IncrementalParser parser, String old, String replacement) throws Exception {
+		int offset = parser.getText().indexOf(old);
+		assertTrue(old, offset >= 0);
+		parser.applyEdit(offset, old.length(), replacement);
+		assertTrue(parser.getSyntaxErrors().isEmpty());
+	}
+
+	private static void assertSameAsFullCheck(IncrementalParser parser, IncrementalAnalysis analysis) throws Exception {
+		String text = parser.getText();
+		MJFrontend frontend = new MJFrontend();
+		frontend.setParser(ParserKind.RECURSIVE_DESCENT);
+		Analysis expected = new Analysis(frontend.parseString(text));
+		expected.check();
+		assertEquals(text, errors(expected.getTypeErrors()), errors(analysis.getTypeErrors()));
+	}
+
+	private static List<String> errors(List<TypeError> errors) {
+		return errors.stream()
+				// some messages contain a source position without toString method
+				.map(e -> e.toString().replaceAll("@[0-9a-f]+", ""))
+				.collect(Collectors.toList());
+	}
+}
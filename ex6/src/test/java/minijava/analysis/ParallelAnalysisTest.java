@@ -0,0 +1,65 @@
+package minijava.analysis;
+
+import analysis.Analysis;
+import frontend.MJFrontend;
+import minijava.ast.MJProgram;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that checking method bodies in parallel reports the same errors in the same order as the sequential check.
+ */
+public class ParallelAnalysisTest {
+
+	@Test
+	public void sameErrorsForTestFiles() throws Exception {
+		for (String dir : new String[] {"testdata/typechecker/ok", "testdata/typechecker/error"}) {
+			File[] files = new File(dir).listFiles();
+			assertNotNull(files);
+			for (File file : files) {
+				MJProgram sequential = new MJFrontend().parseFile(file);
+				MJProgram parallel = new MJFrontend().parseFile(file);
+				assertEquals(file.getName(), errors(sequential, false), errors(parallel, true));
+			}
+		}
+	}
+
+	@Test
+	public void sameErrorsForManyMethods() throws Exception {
+		StringBuilder source = new StringBuilder("class Main { public static void main(String[] a) { System.out.println(new C0().m0(true)); } }\n");
+		for (int c = 0; c < 200; c++) {
+			source.append("class C").append(c).append(c > 0 ? " extends C" + (c - 1) : "").append(" {\n");
+			source.append("  int f").append(c).append(";\n");
+			source.append("  Unknown u").append(c).append(";\n");
+			for (int m = 0; m < 10; m++) {
+				source.append("  int m").append(m).append("(boolean b) {\n");
+				source.append("    int x;\n");
+				source.append("    x = f").append(c).append(" + ").append(m % 3 == 0 ? "b" : "1").append(";\n");
+				source.append("    if (x) { System.out.println(y); } else { x = this.m").append(m).append("(x); }\n");
+				source.append("    return u").append(c).append(";\n");
+				source.append("  }\n");
+			}
+			source.append("}\n");
+		}
+		MJProgram sequential = new MJFrontend().parseString(source.toString());
+		MJProgram parallel = new MJFrontend().parseString(source.toString());
+		List<String> expected = errors(sequential, false);
+		assertTrue(expected.size() > 2000);
+		assertEquals(expected, errors(parallel, true));
+	}
+
+	private static List<String> errors(MJProgram program, boolean parallel) {
+		Analysis analysis = new Analysis(program);
+		analysis.setParallel(parallel);
+		analysis.check();
+		return analysis.getTypeErrors().stream()
+				// some messages contain a source position without toString method
+				.map(e -> e.toString().replaceAll("@[0-9a-f]+", ""))
+				.collect(Collectors.toList());
+	}
+}
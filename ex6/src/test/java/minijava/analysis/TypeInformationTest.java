@@ -0,0 +1,83 @@
+package minijava.analysis;
+
+import analysis.*;
+import analysis.TypeInformation.VarKind;
+import frontend.MJFrontend;
+import minijava.ast.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the type information, which the analysis passes to the translation.
+ */
+public class TypeInformationTest {
+
+	private static final String SOURCE = "class Main {\n"
+			+ "\tpublic static void main(String[] a) {\n"
+			+ "\t\tSystem.out.println(new B().m(new B()));\n"
+			+ "\t}\n"
+			+ "}\n"
+			+ "class A {\n"
+			+ "\tint x;\n"
+			+ "\tint y;\n"
+			+ "\tint m(A o) { int z; z = x; return z; }\n"
+			+ "\tint n() { return 1; }\n"
+			+ "}\n"
+			+ "class B extends A {\n"
+			+ "\tint w;\n"
+			+ "\tint k() { return 2; }\n"
+			+ "\tint m(A o) { return this.n(); }\n"
+			+ "}\n";
+
+	@Test
+	public void slotsAndVtableIndexes() throws Exception {
+		MJProgram program = new MJFrontend().parseString(SOURCE);
+		TypeInformation types = check(program);
+		MJClassDecl a = program.getClassDecls().get(0);
+		MJClassDecl b = program.getClassDecls().get(1);
+
+		// slot 0 is the vtable
+		assertEquals(1, types.getField(a.getFields().get(0)).getSlot());
+		assertEquals(2, types.getField(a.getFields().get(1)).getSlot());
+		assertEquals(3, types.getField(b.getFields().get(0)).getSlot());
+
+		assertEquals(0, types.getMethod(a.getMethods().get(0)).getVtableIndex());
+		assertEquals(1, types.getMethod(a.getMethods().get(1)).getVtableIndex());
+		assertEquals(2, types.getMethod(b.getMethods().get(0)).getVtableIndex());
+		// overrides A.m
+		assertEquals(0, types.getMethod(b.getMethods().get(1)).getVtableIndex());
+		assertSame(b, types.getMethod(b.getMethods().get(1)).getDeclaringClass().getClassDecl());
+	}
+
+	@Test
+	public void varKindsAndExpressionTypes() throws Exception {
+		MJProgram program = new MJFrontend().parseString(SOURCE);
+		TypeInformation types = check(program);
+		MJClassDecl a = program.getClassDecls().get(0);
+		MJMethodDecl m = a.getMethods().get(0);
+
+		assertEquals(VarKind.FIELD, types.getVarKind(a.getFields().get(0)));
+		assertEquals(VarKind.PARAMETER, types.getVarKind(m.getFormalParameters().get(0)));
+		MJStmtAssign assign = (MJStmtAssign) m.getMethodBody().get(1);
+		MJVarUse z = (MJVarUse) assign.getLeft();
+		assertEquals(VarKind.LOCAL, types.getVarKind(z.getVariableDeclaration()));
+		assertEquals(Type.INT, types.getType(assign.getRight()));
+
+		// the argument of type B is passed as an A
+		MJStmtPrint print = (MJStmtPrint) program.getMainClass().getMainBody().get(0);
+		MJMethodCall call = (MJMethodCall) print.getPrinted();
+		Type argType = types.getType(call.getArguments().get(0));
+		assertTrue(argType instanceof ClassType);
+		assertEquals("B", ((ClassType) argType).getClassDecl().getName());
+		MethodInfo called = types.getMethod(call.getMethodDeclaration());
+		assertEquals("A", ((ClassType) called.getParameters().get(0).getType()).getClassDecl().getName());
+	}
+
+	private static TypeInformation check(MJProgram program) {
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		assertTrue(analysis.getTypeErrors().isEmpty());
+		return analysis.getTypeInformation();
+	}
+}
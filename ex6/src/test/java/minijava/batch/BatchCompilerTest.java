@@ -0,0 +1,53 @@
+package minijava.batch;
+
+import main.BatchCompiler;
+import main.CompilationResult;
+import main.MiniJavaCompiler;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compiles the test data in parallel and compares the results with the sequential compiler.
+ */
+public class BatchCompilerTest {
+
+	@Test
+	public void sameResultsAsSequentialCompiler() throws Exception {
+		List<File> files = BatchCompiler.collectSources(Arrays.asList(
+				new File("testdata/typechecker/ok"),
+				new File("testdata/typechecker/error")));
+		BatchCompiler.BatchResult batch = new BatchCompiler(4).compileFiles(files);
+
+		assertEquals(files.size(), batch.getResults().size());
+		for (int i = 0; i < files.size(); i++) {
+			CompilationResult r = batch.getResults().get(i);
+			assertEquals(files.get(i).getPath(), r.getInputName());
+			assertNull(r.getInputName(), r.getFailure());
+
+			MiniJavaCompiler compiler = new MiniJavaCompiler();
+			compiler.compileFile(files.get(i));
+			assertEquals(r.getInputName(), compiler.getSyntaxErrors().size(), r.getSyntaxErrors().size());
+			assertEquals(r.getInputName(), compiler.getTypeErrors().size(), r.getTypeErrors().size());
+			for (int j = 0; j < r.getTypeErrors().size(); j++) {
+				assertEquals(compiler.getTypeErrors().get(j).getLine(), r.getTypeErrors().get(j).getLine());
+				assertEquals(compiler.getTypeErrors().get(j).getColumn(), r.getTypeErrors().get(j).getColumn());
+			}
+			assertEquals(r.getInputName(), compiler.getLlvmProg() != null, r.isSuccessful());
+		}
+	}
+
+	@Test
+	public void missingFileIsReportedAsFailure() throws Exception {
+		File missing = new File("testdata/does/not/exist.java");
+		BatchCompiler.BatchResult batch = new BatchCompiler(2).compileFiles(Arrays.asList(missing));
+		assertNotNull(batch.getResults().get(0).getFailure());
+		assertEquals(1, batch.getFailedCount());
+	}
+}
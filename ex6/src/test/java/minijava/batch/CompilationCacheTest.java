@@ -0,0 +1,153 @@
+package minijava.batch;
+
+import analysis.TypeError;
+import frontend.SyntaxError;
+import main.BatchCompiler;
+import main.CompilationCache;
+import main.CompilationResult;
+import main.MiniJavaCompiler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the persistent compilation cache.
+ */
+public class CompilationCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void entryRoundtrip() throws Exception {
+		CompilationCache cache = new CompilationCache(folder.newFolder("cache"), 1 << 20);
+		String key = CompilationCache.key("", "class Main {}".getBytes(StandardCharsets.UTF_8));
+		assertNull(cache.get(key));
+
+		cache.put(key, new CompilationCache.Entry("define i32 @main() {}", null,
+				Arrays.asList(new SyntaxError("Unexpected token", 1, 7)),
+				Arrays.asList(new TypeError("Type mismatch", 3, 14, 3, 21))));
+		CompilationCache.Entry entry = cache.get(key);
+		assertNotNull(entry);
+		assertEquals("define i32 @main() {}", entry.getLlvmCode());
+		assertNull(entry.getMipsCode());
+		assertEquals(1, entry.getSyntaxErrors().size());
+		assertEquals("Unexpected token", entry.getSyntaxErrors().get(0).getMessage());
+		assertEquals(7, entry.getSyntaxErrors().get(0).getColumn());
+		assertEquals(1, entry.getTypeErrors().size());
+		assertEquals("Type mismatch", entry.getTypeErrors().get(0).getMessage());
+		assertEquals(3, entry.getTypeErrors().get(0).getLine());
+		assertEquals(14, entry.getTypeErrors().get(0).getColumn());
+		assertEquals(7, entry.getTypeErrors().get(0).getLength());
+		assertEquals(21, entry.getTypeErrors().get(0).getSource().getEndColumn());
+	}
+
+	@Test
+	public void evictionIsSkippedWhileLockedInThisProcess() throws Exception {
+		File cacheDir = folder.newFolder("cache");
+		CompilationCache cache = new CompilationCache(cacheDir, 10);
+		try (FileChannel channel = FileChannel.open(new File(cacheDir, ".lock").toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock = channel.lock();
+			String key = CompilationCache.key("", new byte[0]);
+			cache.put(key, new CompilationCache.Entry("define i32 @main() {}", null,
+					Collections.emptyList(), Collections.emptyList()));
+			assertNotNull(cache.get(key));
+			lock.release();
+		}
+	}
+
+	@Test
+	public void failedPutKeepsResult() throws Exception {
+		File source = folder.newFile("Main.java");
+		byte[] text = "class Main { public static void main(String[] a) { System.out.println(1); } }"
+				.getBytes(StandardCharsets.UTF_8);
+		Files.write(source.toPath(), text);
+		File cacheDir = folder.newFolder("cache");
+		// a file in place of the sub directory of the entry makes storing it fail
+		String key = CompilationCache.key(new MiniJavaCompiler().getOptions(), text);
+		assertTrue(new File(cacheDir, key.substring(0, 2)).createNewFile());
+
+		BatchCompiler compiler = new BatchCompiler(1);
+		compiler.setCache(new CompilationCache(cacheDir, 64 << 20));
+		CompilationResult result = compiler.compileFiles(Collections.singletonList(source)).getResults().get(0);
+		assertNull(result.getFailure());
+		assertTrue(result.isSuccessful());
+		assertNotNull(result.getLlvmCode());
+	}
+
+	@Test
+	public void keyDependsOnOptionsAndSource() {
+		byte[] source = "class Main {}".getBytes(StandardCharsets.UTF_8);
+		assertEquals(CompilationCache.key("", source), CompilationCache.key("", source));
+		assertNotEquals(CompilationCache.key("", source), CompilationCache.key("-O1", source));
+		assertNotEquals(CompilationCache.key("", source),
+				CompilationCache.key("", "class Main { }".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		String code = new String(chars);
+		CompilationCache cache = new CompilationCache(folder.newFolder("cache"), 5000);
+		for (int i = 0; i < 20; i++) {
+			String key = CompilationCache.key("", ("" + i).getBytes(StandardCharsets.UTF_8));
+			cache.put(key, new CompilationCache.Entry(code, null,
+					Collections.<SyntaxError>emptyList(), Collections.<TypeError>emptyList()));
+		}
+		int present = 0;
+		for (int i = 0; i < 20; i++) {
+			if (cache.get(CompilationCache.key("", ("" + i).getBytes(StandardCharsets.UTF_8))) != null) {
+				present++;
+			}
+		}
+		assertTrue("cache was not evicted: " + present, present < 5);
+		// the last entry was just written and must not be evicted
+		assertNotNull(cache.get(CompilationCache.key("", "19".getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	public void secondRunIsServedFromCache() throws Exception {
+		List<File> files = BatchCompiler.collectSources(Arrays.asList(
+				new File("testdata/typechecker/ok"),
+				new File("testdata/typechecker/error")));
+		File cacheDir = folder.newFolder("cache");
+
+		BatchCompiler compiler = new BatchCompiler(4);
+		compiler.setCache(new CompilationCache(cacheDir, 64 << 20));
+		BatchCompiler.BatchResult first = compiler.compileFiles(files);
+
+		compiler.setCache(new CompilationCache(cacheDir, 64 << 20));
+		BatchCompiler.BatchResult second = compiler.compileFiles(files);
+
+		for (int i = 0; i < files.size(); i++) {
+			CompilationResult r1 = first.getResults().get(i);
+			CompilationResult r2 = second.getResults().get(i);
+			assertNull(r1.getInputName(), r1.getFailure());
+			assertFalse(r1.getInputName(), r1.isFromCache());
+			assertTrue(r2.getInputName(), r2.isFromCache());
+			assertEquals(r1.getInputName(), r1.getLlvmCode(), r2.getLlvmCode());
+			assertEquals(r1.isSuccessful(), r2.isSuccessful());
+			assertEquals(r1.getSyntaxErrors().size(), r2.getSyntaxErrors().size());
+			assertEquals(r1.getTypeErrors().size(), r2.getTypeErrors().size());
+			for (int j = 0; j < r1.getTypeErrors().size(); j++) {
+				assertEquals(r1.getTypeErrors().get(j).getMessage(), r2.getTypeErrors().get(j).getMessage());
+				assertEquals(r1.getTypeErrors().get(j).getLine(), r2.getTypeErrors().get(j).getLine());
+				assertEquals(r1.getTypeErrors().get(j).getLength(), r2.getTypeErrors().get(j).getLength());
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package minijava.batch;
+
+import main.CompilationMetrics;
+import main.CompilationMetrics.Phase;
+import main.MiniJavaCompiler;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every phase of a compilation is measured.
+ */
+public class CompilationMetricsTest {
+
+	@Test
+	public void allPhasesAreMeasured() throws Exception {
+		MiniJavaCompiler compiler = new MiniJavaCompiler();
+		compiler.compileFile(new File("testdata/typechecker/ok/BinaryTree.java"));
+		CompilationMetrics metrics = compiler.getMetrics();
+		for (Phase phase : new Phase[]{Phase.PARSE, Phase.ANALYSIS, Phase.TRANSLATION}) {
+			assertNotNull(phase.toString(), metrics.get(phase));
+			assertTrue(metrics.get(phase).getWallNanos() > 0);
+		}
+		assertNull(metrics.get(Phase.PRINT));
+
+		assertNotNull(compiler.getLlvmCode());
+		assertNotNull(metrics.get(Phase.PRINT));
+		assertTrue(metrics.get(Phase.PRINT).getAllocatedBytes() != 0);
+	}
+
+	@Test
+	public void laterPhasesAreSkippedOnErrors() throws Exception {
+		MiniJavaCompiler compiler = new MiniJavaCompiler();
+		compiler.compileString("Test.java", "class Main { public static void main(String[] a) { int x; x = true; } }");
+		assertFalse(compiler.getTypeErrors().isEmpty());
+		assertNotNull(compiler.getMetrics().get(Phase.ANALYSIS));
+		assertNull(compiler.getMetrics().get(Phase.TRANSLATION));
+	}
+
+	@Test
+	public void compilerCanBeReused() throws Exception {
+		MiniJavaCompiler compiler = new MiniJavaCompiler();
+		compiler.compileString("First.java", "class Main { public static void main(String[] a) { System.out.println(1); } }");
+		assertFalse(compiler.getLlvmCode().contains("2222"));
+		compiler.compileString("Second.java", "class Main { public static void main(String[] a) { System.out.println(2222); } }");
+		assertTrue(compiler.getLlvmCode().contains("2222"));
+
+		// a program with errors has no code and no type errors from before
+		compiler.compileString("Third.java", "class Main { public static void main(String[] a) { int x; x = true; } }");
+		assertFalse(compiler.getTypeErrors().isEmpty());
+		compiler.compileString("Fourth.java", "class Main { public static void main(String[] a) { x = ; } }");
+		assertFalse(compiler.getSyntaxErrors().isEmpty());
+		assertTrue(compiler.getTypeErrors().isEmpty());
+		assertNull(compiler.getLlvmProg());
+		assertNull(compiler.getLlvmCode());
+	}
+}
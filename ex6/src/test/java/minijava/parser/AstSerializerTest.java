@@ -0,0 +1,181 @@
+package minijava.parser;
+
+import analysis.Analysis;
+import frontend.AstDeserializer;
+import frontend.AstSerializer;
+import frontend.MJFrontend;
+import frontend.NameTable;
+import minijava.ast.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ASTs written by the AstSerializer are read back with the same structure, positions and attributes.
+ */
+public class AstSerializerTest {
+
+	/** the attributes, which refer to declarations */
+	private static final Set<String> REFERENCES = new HashSet<>(Arrays.asList(
+			"getVariableDeclaration", "getMethodDeclaration", "getClassDeclaration", "getDirectSuperClass"));
+
+	@Test
+	public void roundTripOfAnalyzedPrograms() throws Exception {
+		File[] files = new File("testdata/typechecker/ok").listFiles();
+		assertNotNull(files);
+		for (File file : files) {
+			MJFrontend frontend = new MJFrontend();
+			MJProgram program = frontend.parseFile(file);
+			new Analysis(program).check();
+
+			byte[] bytes = AstSerializer.toBytes(program);
+			MJElement copy = AstDeserializer.fromBytes(bytes, new NameTable());
+			assertRoundTrip(file.getName(), program, copy);
+		}
+	}
+
+	@Test
+	public void referencesBetweenTrees() throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		MJProgram program = frontend.parseString("class Main { public static void main(String[] a) { System.out.println(new B().m()); } }\n"
+				+ "class A { int x; int m() { return x; } }\n"
+				+ "class B extends A { int n() { return this.m(); } }\n");
+		new Analysis(program).check();
+		MJClassDecl a = program.getClassDecls().get(0);
+		MJClassDecl b = program.getClassDecls().get(1);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (AstSerializer serializer = new AstSerializer(bytes)) {
+			// B refers to A, which is written later
+			serializer.write(b);
+			serializer.write(a);
+		}
+		AstDeserializer deserializer = new AstDeserializer(new ByteArrayInputStream(bytes.toByteArray()), new NameTable());
+		MJClassDecl b2 = (MJClassDecl) deserializer.read();
+		MJClassDecl a2 = (MJClassDecl) deserializer.read();
+		assertNull(deserializer.read());
+
+		assertTrue(b.structuralEquals(b2));
+		assertTrue(a.structuralEquals(a2));
+		assertSame(a2, b2.getDirectSuperClass());
+		MJStmtReturn ret = (MJStmtReturn) b2.getMethods().get(0).getMethodBody().get(0);
+		assertSame(a2.getMethods().get(0), ((MJMethodCall) ret.getResult()).getMethodDeclaration());
+		MJStmtReturn ret2 = (MJStmtReturn) a2.getMethods().get(0).getMethodBody().get(0);
+		assertSame(a2.getFields().get(0), ((MJVarUse) ret2.getResult()).getVariableDeclaration());
+	}
+
+	@Test
+	public void referencesOutsideOfTheTreeAreNull() throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		MJProgram program = frontend.parseString("class Main { public static void main(String[] a) { System.out.println(1); } }\n"
+				+ "class A { int x; int m() { return x; } }\n");
+		new Analysis(program).check();
+		MJMethodDecl m = program.getClassDecls().get(0).getMethods().get(0);
+		MJMethodDecl copy = (MJMethodDecl) AstDeserializer.fromBytes(AstSerializer.toBytes(m), new NameTable());
+		assertTrue(m.structuralEquals(copy));
+		MJStmtReturn ret = (MJStmtReturn) copy.getMethodBody().get(0);
+		assertNull(((MJVarUse) ret.getResult()).getVariableDeclaration());
+	}
+
+	@Test
+	public void deeplyNestedExpression() throws Exception {
+		MJExpr e = MJ.Number(0);
+		for (int i = 1; i < 100000; i++) {
+			e = MJ.ExprBinary(MJ.Number(i), MJ.Plus(), e);
+		}
+		MJStmtPrint print = MJ.StmtPrint(e);
+		MJElement copy = AstDeserializer.fromBytes(AstSerializer.toBytes(print), new NameTable());
+		int depth = 0;
+		MJExpr x = ((MJStmtPrint) copy).getPrinted();
+		while (x instanceof MJExprBinary) {
+			assertEquals(99999 - depth, ((MJNumber) ((MJExprBinary) x).getLeft()).getIntValue());
+			x = ((MJExprBinary) x).getRight();
+			depth++;
+		}
+		assertEquals(99999, depth);
+	}
+
+	@Test
+	public void namesAreInterned() throws Exception {
+		MJProgram program = new MJFrontend().parseString("class Main { public static void main(String[] a) { System.out.println(1); } }\n"
+				+ "class A { int x; int m() { return x; } }\n");
+		NameTable names = new NameTable();
+		MJProgram copy = (MJProgram) AstDeserializer.fromBytes(AstSerializer.toBytes(program), names);
+		assertSame(names.intern("x"), copy.getClassDecls().get(0).getFields().get(0).getName());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidInput() throws Exception {
+		AstDeserializer.fromBytes(new byte[] {1, 2, 3, 4, 5}, new NameTable());
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedInput() throws Exception {
+		MJProgram program = new MJFrontend().parseString("class Main { public static void main(String[] a) { System.out.println(1); } }");
+		byte[] bytes = AstSerializer.toBytes(program);
+		AstDeserializer.fromBytes(Arrays.copyOf(bytes, bytes.length - 3), new NameTable());
+	}
+
+	private static void assertRoundTrip(String message, MJElement expected, MJElement actual) throws Exception {
+		assertTrue(message, expected.structuralEquals(actual));
+		List<MJElement> expectedElements = elements(expected);
+		List<MJElement> actualElements = elements(actual);
+		assertEquals(message, expectedElements.size(), actualElements.size());
+		Map<MJElement, Integer> expectedIndex = index(expectedElements);
+		Map<MJElement, Integer> actualIndex = index(actualElements);
+		for (int i = 0; i < expectedElements.size(); i++) {
+			MJElement e = expectedElements.get(i);
+			MJElement a = actualElements.get(i);
+			assertEquals(message, e.getPackedPosition(), a.getPackedPosition());
+			for (Method m : e.getClass().getMethods()) {
+				if (REFERENCES.contains(m.getName())) {
+					Object target = m.invoke(e);
+					Object actualTarget = m.invoke(a);
+					assertEquals(message + " " + m.getName(), expectedIndex.get(target), actualIndex.get(actualTarget));
+				}
+			}
+		}
+	}
+
+	private static Map<MJElement, Integer> index(List<MJElement> elements) {
+		Map<MJElement, Integer> result = new IdentityHashMap<>();
+		for (int i = 0; i < elements.size(); i++) {
+			result.put(elements.get(i), i);
+		}
+		return result;
+	}
+
+	/** all elements of the tree, in a fixed order */
+	private static List<MJElement> elements(MJElement root) throws Exception {
+		List<MJElement> result = new ArrayList<>();
+		collectElements(root, result);
+		return result;
+	}
+
+	private static void collectElements(Object o, List<MJElement> result) throws Exception {
+		if (!(o instanceof MJElement)) {
+			return;
+		}
+		result.add((MJElement) o);
+		if (o instanceof Iterable) {
+			for (Object child : (Iterable<?>) o) {
+				collectElements(child, result);
+			}
+		}
+		Method[] getters = o.getClass().getMethods();
+		Arrays.sort(getters, Comparator.comparing(Method::getName));
+		for (Method m : getters) {
+			if (m.getParameterCount() == 0 && m.getName().startsWith("get") && !m.getName().equals("getParent")
+					&& !REFERENCES.contains(m.getName()) && MJElement.class.isAssignableFrom(m.getReturnType())) {
+				collectElements(m.invoke(o), result);
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package minijava.parser;
+
+import frontend.IncrementalParser;
+import frontend.MJFrontend;
+import frontend.MJFrontend.ParserKind;
+import minijava.ast.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static minijava.parser.ParserTestHelper.SOURCE;
+import static minijava.parser.ParserTestHelper.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the incremental parser gives the same ASTs, positions and errors as parsing the edited source completely.
+ */
+public class IncrementalParserTest {
+
+	@Test
+	public void editInMethodParsesOnlyTheMethod() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		MJProgram program = parser.getProgram();
+		MJClassDecl a = program.getClassDecls().get(0);
+		MJClassDecl b = program.getClassDecls().get(1);
+		MJMethodDecl n = a.getMethods().get(1);
+
+		assertSame(program, edit(parser, "x + 1", "x + 42"));
+		assertTrue(parser.getLastReparsed() instanceof MJMethodDecl);
+		assertSame(a, program.getClassDecls().get(0));
+		assertSame(b, program.getClassDecls().get(1));
+		assertSame(n, a.getMethods().get(1));
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void lineBreaksMovePositions() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		edit(parser, "int y;", "int y;\n\n\t\t");
+		assertTrue(parser.getLastReparsed() instanceof MJMethodDecl);
+		assertSameAsFullParse(parser);
+		edit(parser, "return a;\r\n", "return a;");
+		assertTrue(parser.getLastReparsed() instanceof MJMethodDecl);
+		assertSameAsFullParse(parser);
+		// the following method on the same line moves
+		edit(parser, "this.m(2)", "this.m(2 + 3)");
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void editInFieldParsesTheClass() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		edit(parser, "boolean b;", "boolean b; int[] c;");
+		assertTrue(parser.getLastReparsed() instanceof MJClassDecl);
+		assertSameAsFullParse(parser);
+		edit(parser, "extends A", "extends Main");
+		assertTrue(parser.getLastReparsed() instanceof MJClassDecl);
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void editInMainClass() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		edit(parser, "m(1)", "m(1 + 2)");
+		assertTrue(parser.getLastReparsed() instanceof MJMainClass);
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void editsChangingTheStructure() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		// splitting a method into two methods cannot be done by parsing the method alone
+		edit(parser, "return 3; }", "return 3; } int l() { return 4; }");
+		assertTrue(parser.getLastReparsed() instanceof MJClassDecl);
+		assertSameAsFullParse(parser);
+		// a new class between classes
+		edit(parser, "}\nclass B", "}\nclass C { }\nclass B");
+		assertTrue(parser.getLastReparsed() instanceof MJProgram);
+		assertEquals(3, parser.getProgram().getClassDecls().size());
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void syntaxErrors() throws Exception {
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		edit(parser, "return y;", "return y");
+		assertFalse(parser.getSyntaxErrors().isEmpty());
+		assertSameAsFullParse(parser);
+		edit(parser, "return y", "return y;");
+		assertTrue(parser.getSyntaxErrors().isEmpty());
+		assertSameAsFullParse(parser);
+		edit(parser, "int y;", "int y; 1 + 2;");
+		assertFalse(parser.getSyntaxErrors().isEmpty());
+		assertSameAsFullParse(parser);
+	}
+
+	@Test
+	public void randomEdits() throws Exception {
+		String[] snippets = {" ", "\n", "\r\n", "\r", "\t\n\n", "x", "1", ";", "{", "}", "(", "y = 1;", "int z;",
+				"/* c */", "// c\n", "/* \n */", "class", "+ 2", "/* \u2028 */"};
+		Random random = new Random(42);
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		for (int i = 0; i < 2000; i++) {
+			String text = parser.getText();
+			int offset = random.nextInt(text.length() + 1);
+			if (random.nextBoolean() && offset < text.length()) {
+				// delete some characters and insert them again
+				int removed = 1 + random.nextInt(Math.min(3, text.length() - offset));
+				String old = text.substring(offset, offset + removed);
+				parser.applyEdit(offset, removed, "");
+				assertSameAsFullParse(parser);
+				parser.applyEdit(offset, 0, old);
+			} else {
+				String inserted = snippets[random.nextInt(snippets.length)];
+				parser.applyEdit(offset, 0, inserted);
+				assertSameAsFullParse(parser);
+				if (random.nextInt(4) > 0) {
+					parser.applyEdit(offset, inserted.length(), "");
+				}
+			}
+			assertSameAsFullParse(parser);
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void editOutsideOfText() throws Exception {
+		new IncrementalParser(SOURCE).applyEdit(SOURCE.length(), 1, "");
+	}
+
+	/** replaces the first occurrence of old in the text */
+	private static MJProgram edit(IncrementalParser parser, String old, String replacement) throws Exception {
+		int offset = parser.getText().indexOf(old);
+		assertTrue(old, offset >= 0);
+		return parser.applyEdit(offset, old.length(), replacement);
+	}
+
+	private static void assertSameAsFullParse(IncrementalParser parser) throws Exception {
+		String text = parser.getText();
+		MJFrontend frontend = new MJFrontend();
+		frontend.setParser(ParserKind.RECURSIVE_DESCENT);
+		MJProgram expected = frontend.parseString(text);
+		assertEquals(text, frontend.getSyntaxErrors().toString(), parser.getSyntaxErrors().toString());
+		MJProgram actual = parser.getProgram();
+		if (expected == null) {
+			assertNull(text, actual);
+			return;
+		}
+		assertNotNull(text, actual);
+		assertTrue(text, expected.structuralEquals(actual));
+		assertEquals(text, positions(expected), positions(actual));
+	}
+}
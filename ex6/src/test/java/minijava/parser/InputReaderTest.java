@@ -0,0 +1,99 @@
+package minijava.parser;
+
+import frontend.CharSequenceReader;
+import frontend.MJFrontend;
+import frontend.MappedFileReader;
+import minijava.ast.MJProgram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the memory mapped and CharSequence inputs behave like FileReader and StringReader.
+ */
+public class InputReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void mappedFileGivesSameAst() throws Exception {
+		for (String dir : new String[]{"testdata/parser/ok", "testdata/parser/error"}) {
+			for (File file : new File(dir).listFiles()) {
+				MJFrontend readerFrontend = new MJFrontend();
+				MJProgram expected;
+				try (FileReader r = new FileReader(file)) {
+					expected = readerFrontend.parse(r);
+				}
+				MJFrontend mappedFrontend = new MJFrontend();
+				MJProgram actual = mappedFrontend.parseFile(file);
+				assertEquals(file.getName(), readerFrontend.getSyntaxErrors().toString(), mappedFrontend.getSyntaxErrors().toString());
+				if (expected == null) {
+					assertNull(actual);
+				} else {
+					assertTrue(file.getName(), expected.structuralEquals(actual));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void mappedFileDecodesUtf8() throws Exception {
+		String text = "// äöü € 😀 x\n"
+				+ "class Main { public static void main(String[] a) { System.out.println(1); } } ß";
+		File file = folder.newFile("Utf8.java");
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+		for (int chunk : new int[]{1, 2, 3, 7, 16384}) {
+			assertEquals("chunk size " + chunk, text, readAll(new MappedFileReader(file, StandardCharsets.UTF_8), chunk));
+		}
+	}
+
+	@Test
+	public void mappedFileReplacesMalformedInput() throws Exception {
+		File file = folder.newFile("Malformed.java");
+		Files.write(file.toPath(), new byte[]{'a', (byte) 0xff, 'b'});
+		assertEquals("a�b", readAll(new MappedFileReader(file, StandardCharsets.UTF_8), 10));
+	}
+
+	@Test
+	public void mappedEmptyFile() throws Exception {
+		File file = folder.newFile("Empty.java");
+		assertEquals("", readAll(new MappedFileReader(file, StandardCharsets.UTF_8), 10));
+	}
+
+	@Test
+	public void charSequenceReader() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i).append(' ');
+		}
+		for (int chunk : new int[]{1, 5, 4096}) {
+			assertEquals(sb.toString(), readAll(new CharSequenceReader(sb), chunk));
+		}
+		MJProgram prog = new MJFrontend().parseString(new StringBuilder(
+				"class Main { public static void main(String[] a) { System.out.println(1); } }"));
+		assertNotNull(prog);
+	}
+
+	private static String readAll(Reader reader, int chunk) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[chunk];
+		try (Reader r = reader) {
+			int n;
+			while ((n = r.read(buf, 0, chunk)) >= 0) {
+				assertTrue("read returned 0", n > 0);
+				sb.append(buf, 0, n);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,185 @@
+package minijava.parser;
+
+import analysis.Analysis;
+import analysis.ClassTable;
+import frontend.MJFrontend;
+import frontend.MJFrontend.ParserKind;
+import minijava.ast.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static minijava.parser.ParserTestHelper.SOURCE;
+import static minijava.parser.ParserTestHelper.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that parsing method bodies on demand gives the same ASTs, positions and errors as parsing everything at once.
+ */
+public class LazyMethodBodiesTest {
+
+	@Test
+	public void outlineHasEmptyBodies() throws Exception {
+		MJFrontend frontend = lazyFrontend();
+		MJProgram program = frontend.parseString(SOURCE);
+		assertTrue(frontend.getSyntaxErrors().isEmpty());
+		assertEquals(1, program.getMainClass().getMainBody().size());
+		MJClassDecl a = program.getClassDecls().get(0);
+		assertEquals(3, a.getMethods().size());
+		for (MJMethodDecl m : a.getMethods()) {
+			assertTrue(m.getMethodBody().isEmpty());
+		}
+		// the placeholders have the positions of the skipped bodies
+		MJProgram eager = eagerParse(SOURCE);
+		assertEquals(positionsOfOutline(eager), positionsOfOutline(program));
+	}
+
+	@Test
+	public void bodiesAreParsedOnDemand() throws Exception {
+		MJFrontend frontend = lazyFrontend();
+		MJProgram program = frontend.parseString(SOURCE);
+		MJProgram eager = eagerParse(SOURCE);
+		MJMethodDecl m = program.getClassDecls().get(1).getMethods().get(0);
+		MJMethodDecl expected = eager.getClassDecls().get(1).getMethods().get(0);
+
+		MJBlock body = frontend.getMethodBody(m);
+		assertSame(body, m.getMethodBody());
+		assertSame(body, frontend.getMethodBody(m));
+		assertTrue(expected.structuralEquals(m));
+		assertEquals(positions(expected), positions(m));
+		// other bodies are still not parsed
+		assertTrue(program.getClassDecls().get(0).getMethods().get(0).getMethodBody().isEmpty());
+
+		frontend.parseMethodBodies();
+		assertTrue(frontend.getSyntaxErrors().isEmpty());
+		assertTrue(eager.structuralEquals(program));
+		assertEquals(positions(eager), positions(program));
+	}
+
+	@Test
+	public void classTableOfOutline() throws Exception {
+		MJProgram program = lazyFrontend().parseString(SOURCE);
+		ClassTable classTable = new Analysis(program).buildClassTable();
+		MJMethodDecl m = classTable.lookupMethod(classTable.lookupClass("B"), "n");
+		assertSame(program.getClassDecls().get(0).getMethods().get(1), m);
+		assertTrue(classTable.isSubclass(program.getClassDecls().get(1), program.getClassDecls().get(0)));
+	}
+
+	@Test
+	public void syntaxErrorInBody() throws Exception {
+		String input = SOURCE.replace("return y;", "return y");
+		MJFrontend frontend = lazyFrontend();
+		MJProgram program = frontend.parseString(input);
+		assertNotNull(program);
+		assertTrue(frontend.getSyntaxErrors().isEmpty());
+
+		MJMethodDecl m = program.getClassDecls().get(0).getMethods().get(0);
+		assertTrue(frontend.getMethodBody(m).isEmpty());
+		List<String> expected = eagerErrors(input);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, errors(frontend));
+		// the errors are only reported once
+		frontend.parseMethodBodies();
+		assertEquals(expected, errors(frontend));
+	}
+
+	@Test
+	public void invalidStatementInBody() throws Exception {
+		String input = SOURCE.replace("int y;", "int y; 1 + 2;");
+		MJFrontend frontend = lazyFrontend();
+		MJProgram program = frontend.parseString(input);
+		assertTrue(frontend.getSyntaxErrors().isEmpty());
+		frontend.parseMethodBodies();
+		assertEquals(eagerErrors(input), errors(frontend));
+		assertTrue(eagerParse(input).structuralEquals(program));
+	}
+
+	@Test
+	public void syntaxErrorReplacesInvalidStatements() throws Exception {
+		String input = SOURCE.replace("int y;", "int y; x;").replace("return a;", "return a");
+		List<String> expected = eagerErrors(input);
+		assertEquals(1, expected.size());
+
+		// the body with the invalid statement first
+		MJFrontend frontend = lazyFrontend();
+		frontend.parseString(input);
+		frontend.parseMethodBodies();
+		assertEquals(expected, errors(frontend));
+
+		// the body with the syntax error first
+		frontend = lazyFrontend();
+		MJProgram program = frontend.parseString(input);
+		frontend.getMethodBody(program.getClassDecls().get(1).getMethods().get(0));
+		frontend.parseMethodBodies();
+		assertEquals(expected, errors(frontend));
+	}
+
+	@Test
+	public void invalidOutlineIsParsedEagerly() throws Exception {
+		for (String input : new String[] {
+				SOURCE.replace("int x;", "int x"),
+				SOURCE.replace("System.out.println", "System.out.print"),
+				SOURCE.replace("/* } */", "/* } "),
+				SOURCE.replace("return 3; }", "return 3;")}) {
+			MJFrontend frontend = lazyFrontend();
+			MJProgram program = frontend.parseString(input);
+			assertNull(input, program);
+			assertEquals(input, eagerErrors(input), errors(frontend));
+		}
+	}
+
+	@Test
+	public void validationFindsErrorsInBodies() throws Exception {
+		String input = SOURCE.replace("return 3; }", "return 3 }");
+		List<String> expected = eagerErrors(input);
+		assertEquals(1, expected.size());
+		assertTrue(expected.get(0), expected.get(0).contains("RBRACE"));
+
+		List<String> actual = new ArrayList<>();
+		lazyFrontend().validateString(input).forEach(e -> actual.add(e.toString()));
+		assertEquals(expected, actual);
+	}
+
+	private static MJFrontend lazyFrontend() {
+		MJFrontend frontend = new MJFrontend();
+		frontend.setLazyMethodBodies(true);
+		return frontend;
+	}
+
+	private static MJProgram eagerParse(String input) throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		frontend.setParser(ParserKind.RECURSIVE_DESCENT);
+		return frontend.parseString(input);
+	}
+
+	private static List<String> eagerErrors(String input) throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		frontend.parseString(input);
+		return errors(frontend);
+	}
+
+	private static List<String> errors(MJFrontend frontend) {
+		List<String> result = new ArrayList<>();
+		frontend.getSyntaxErrors().forEach(e -> result.add(e.toString()));
+		return result;
+	}
+
+	/** the positions of the classes, fields and methods with their bodies, but not the statements in the bodies */
+	private static List<Long> positionsOfOutline(MJProgram program) {
+		List<Long> result = new ArrayList<>();
+		result.add(program.getPackedPosition());
+		for (MJClassDecl c : program.getClassDecls()) {
+			result.add(c.getPackedPosition());
+			for (MJVarDecl f : c.getFields()) {
+				result.add(f.getPackedPosition());
+			}
+			for (MJMethodDecl m : c.getMethods()) {
+				result.add(m.getPackedPosition());
+				result.add(m.getFormalParameters().getPackedPosition());
+				result.add(m.getMethodBody().getPackedPosition());
+			}
+		}
+		return result;
+	}
+}
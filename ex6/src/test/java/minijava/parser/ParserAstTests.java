@@ -2,10 +2,10 @@ package minijava.parser;
 
 import frontend.AstPrinter;
 import frontend.MJFrontend;
+import frontend.SourcePosition;
+import frontend.SourcePositions;
 import frontend.SyntaxError;
-import minijava.ast.MJElement;
-import minijava.ast.MJMethodCall;
-import minijava.ast.MJProgram;
+import minijava.ast.*;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -166,4 +166,57 @@ public class ParserAstTests {
 		Assert.assertThat(printed, CoreMatchers.containsString("x = a.s(1, 2, (f + g));"));
 	}
 
+	@Test
+	public void testIdentifiersAreInterned() throws Exception {
+		String input = "class Main{public static void main(String[] a){x = x + 1; y = x;}}";
+		MJFrontend frontend = new MJFrontend();
+		MJProgram ast = frontend.parseString(input);
+		MJStmtAssign s1 = (MJStmtAssign) ast.getMainClass().getMainBody().get(0);
+		MJStmtAssign s2 = (MJStmtAssign) ast.getMainClass().getMainBody().get(1);
+		String x1 = ((MJVarUse) s1.getLeft()).getVarName();
+		String x2 = ((MJVarUse) ((MJExprBinary) s1.getRight()).getLeft()).getVarName();
+		String x3 = ((MJVarUse) s2.getRight()).getVarName();
+		Assert.assertSame(x1, x2);
+		Assert.assertSame(x1, x3);
+		Assert.assertSame(x1, frontend.getNameTable().intern("x"));
+		// Main, main is a keyword, a, x, y
+		Assert.assertEquals(4, frontend.getNameTable().size());
+	}
+
+	@Test
+	public void testNumberLiterals() throws Exception {
+		String input = "class Main{public static void main(String[] a){System.out.println(2147483647 + 0);}}";
+		MJProgram ast = new MJFrontend().parseString(input);
+		String printed = AstPrinter.print(ast);
+		Assert.assertThat(printed, CoreMatchers.containsString("(2147483647 + 0)"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNumberLiteralOverflow() throws Exception {
+		String input = "class Main{public static void main(String[] a){System.out.println(2147483648);}}";
+		new MJFrontend().parseString(input);
+	}
+
+	@Test
+	public void testSourcePositions() throws Exception {
+		String input = "class Main{public static void main(String[] a){\n  x = y\n    + 1;}}";
+		MJProgram ast = new MJFrontend().parseString(input);
+		MJStmtAssign s = (MJStmtAssign) ast.getMainClass().getMainBody().get(0);
+		SourcePosition pos = s.getRight().getSourcePosition();
+		Assert.assertEquals(2, pos.getLine());
+		Assert.assertEquals(7, pos.getColumn());
+		Assert.assertEquals(3, pos.getEndLine());
+		Assert.assertEquals(8, pos.getEndColumn());
+	}
+
+	@Test
+	public void testPackedPositionsSaturate() {
+		long p = SourcePositions.pack(20000000, 100000, 20000000 + 5000, 3);
+		Assert.assertEquals((1 << 24) - 1, SourcePositions.getLine(p));
+		Assert.assertEquals((1 << 14) - 1, SourcePositions.getColumn(p));
+		Assert.assertEquals((1 << 24) - 1 + (1 << 12) - 1, SourcePositions.getEndLine(p));
+		Assert.assertEquals(3, SourcePositions.getEndColumn(p));
+		Assert.assertNull(SourcePositions.expand(SourcePositions.NONE));
+	}
+
 }
@@ -0,0 +1,65 @@
+package minijava.parser;
+
+import minijava.ast.MJElement;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A program and position helpers shared by the tests comparing the hand-written parsers with a full parse.
+ */
+public class ParserTestHelper {
+
+	/**
+	 * a program with several classes and methods, comments containing braces,
+	 * a method following another one on the same line and Windows line breaks
+	 */
+	public static final String SOURCE = "class Main {\n"
+			+ "\tpublic static void main(String[] a) {\n"
+			+ "\t\tSystem.out.println(new A().m(1));\n"
+			+ "\t}\n"
+			+ "}\n"
+			+ "class A {\n"
+			+ "\tint x;\n"
+			+ "\tint m(int a) { int y; y = a * (x + 1); return y; }\n"
+			+ "\tint n() { /* } */ return this.m(2); } int k() { // }\n"
+			+ "\t\treturn 3; }\n"
+			+ "}\n"
+			+ "class B extends A {\n"
+			+ "\tboolean b;\r\n"
+			+ "\tint m(int a) {\r\n"
+			+ "\t\twhile (a < 10) { if (b) { a = a + 1; } else { a = a + 2; } }\r\n"
+			+ "\t\treturn a;\r\n"
+			+ "\t}\r\n"
+			+ "}\n";
+
+	/** the packed positions of all elements in the tree, in a fixed order */
+	public static List<Long> positions(MJElement root) throws Exception {
+		List<Long> result = new ArrayList<>();
+		collectPositions(root, result);
+		return result;
+	}
+
+	private static void collectPositions(Object o, List<Long> result) throws Exception {
+		if (!(o instanceof MJElement)) {
+			return;
+		}
+		result.add(((MJElement) o).getPackedPosition());
+		if (o instanceof Iterable) {
+			for (Object child : (Iterable<?>) o) {
+				collectPositions(child, result);
+			}
+		}
+		Method[] getters = o.getClass().getMethods();
+		Arrays.sort(getters, Comparator.comparing(Method::getName));
+		for (Method m : getters) {
+			if (m.getParameterCount() == 0 && m.getName().startsWith("get") && !m.getName().equals("getParent")
+					&& MJElement.class.isAssignableFrom(m.getReturnType())) {
+				collectPositions(m.invoke(o), result);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package minijava.parser;
+
+import frontend.MJFrontend;
+import frontend.MJFrontend.ParserKind;
+import minijava.ast.MJProgram;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the hand-written parser builds the same ASTs and reports the same errors as the CUP parser.
+ */
+public class RecursiveDescentParserTest {
+
+	@Test
+	public void corpusGivesSameAst() throws Exception {
+		for (String dir : new String[]{"testdata/parser/ok", "testdata/parser/error"}) {
+			for (File file : new File(dir).listFiles()) {
+				MJFrontend cup = new MJFrontend();
+				MJProgram expected = cup.parseFile(file);
+				MJFrontend rd = new MJFrontend();
+				rd.setParser(ParserKind.RECURSIVE_DESCENT);
+				MJProgram actual = rd.parseFile(file);
+				assertSame(file.getName(), expected, actual, cup, rd);
+			}
+		}
+	}
+
+	@Test
+	public void arrayLookupAfterArrayCreation() throws Exception {
+		// new int[e] cannot be indexed directly, so the index applies to the enclosing operation
+		assertSameAsCup("x = a + b * new int[3][0].length;");
+		assertSameAsCup("x = !new int[3][0][1];");
+		assertSameAsCup("x = - - new int[3][0];");
+		assertSameAsCup("x = new int[3].length[0];");
+		assertSameAsCup("x = (new int[3])[0];");
+		assertSameAsCup("x = new int[3][0];");
+		assertSameAsCup("x = a[new int[1][0]];");
+	}
+
+	@Test
+	public void precedence() throws Exception {
+		assertSameAsCup("x = a && b == c < d + e * -f.g(h, i)[j] - k / l;");
+		assertSameAsCup("x = !a.b && (c + d) * e < f == g;");
+		assertSameAsCup("x = a - b - c;");
+	}
+
+	@Test
+	public void positions() throws Exception {
+		assertSameAsCup("\n\t  x = ((y))\r\n  + 1;  /* a comment */ a.m();");
+		assertSameAsCup("int[] x; A y; x = new int[10]; // comment");
+	}
+
+	@Test
+	public void syntaxErrors() throws Exception {
+		assertSameAsCup("x = ;");
+		assertSameAsCup("x = 1 /* unclosed");
+		assertSameAsCup("x = a & b;");
+		assertSameAsCup("if (a) b;");
+		assertSameAsCup("int x = 5;");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void numberLiteralOverflow() throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		frontend.setParser(ParserKind.RECURSIVE_DESCENT);
+		frontend.parseString("class Main{public static void main(String[] a){System.out.println(2147483648);}}");
+	}
+
+	@Test
+	public void parallelParsing() throws Exception {
+		String input = manyClasses(2000, -1);
+		MJFrontend cup = new MJFrontend();
+		MJProgram expected = cup.parseString(input);
+		MJFrontend parallel = new MJFrontend();
+		parallel.setParser(ParserKind.PARALLEL_RECURSIVE_DESCENT);
+		MJProgram actual = parallel.parseString(input);
+		assertEquals(2000, actual.getClassDecls().size());
+		assertSame("parallel", expected, actual, cup, parallel);
+	}
+
+	@Test
+	public void parallelParsingWithSyntaxError() throws Exception {
+		String input = manyClasses(2000, 1234);
+		MJFrontend cup = new MJFrontend();
+		MJProgram expected = cup.parseString(input);
+		MJFrontend parallel = new MJFrontend();
+		parallel.setParser(ParserKind.PARALLEL_RECURSIVE_DESCENT);
+		MJProgram actual = parallel.parseString(input);
+		assertFalse(parallel.getSyntaxErrors().isEmpty());
+		assertSame("parallel", expected, actual, cup, parallel);
+	}
+
+	/** a program with the given number of classes, the class with index error has a syntax error */
+	private static String manyClasses(int count, int error) {
+		StringBuilder input = new StringBuilder("class Main{public static void main(String[] a){System.out.println(new C0().m(1));}}\n");
+		for (int i = 0; i < count; i++) {
+			input.append("class C").append(i).append(i > 0 ? " extends C" + (i - 1) : "").append(" {\n")
+					.append("\tint x; boolean b;\n")
+					.append("\tint m(int a) { int y; y = a * (x + ").append(i).append("); { x = y; } return this.m(y)")
+					.append(i == error ? "" : ";").append(" }\n")
+					.append("}\n");
+		}
+		return input.toString();
+	}
+
+	private void assertSameAsCup(String statements) throws Exception {
+		String input = "class Main{public static void main(String[] a){" + statements + "}}\nclass A { int x; int m(int a) { return a; } }";
+		MJFrontend cup = new MJFrontend();
+		MJProgram expected = cup.parseString(input);
+		MJFrontend rd = new MJFrontend();
+		rd.setParser(ParserKind.RECURSIVE_DESCENT);
+		MJProgram actual = rd.parseString(input);
+		assertSame(statements, expected, actual, cup, rd);
+	}
+
+	private void assertSame(String name, MJProgram expected, MJProgram actual, MJFrontend cup, MJFrontend rd) throws Exception {
+		assertEquals(name, cup.getSyntaxErrors().toString(), rd.getSyntaxErrors().toString());
+		if (expected == null) {
+			assertNull(name, actual);
+			return;
+		}
+		assertNotNull(name, actual);
+		assertTrue(name, expected.structuralEquals(actual));
+		assertEquals(name, ParserTestHelper.positions(expected), ParserTestHelper.positions(actual));
+	}
+}
@@ -0,0 +1,72 @@
+package minijava.parser;
+
+import frontend.MJFrontend;
+import frontend.SyntaxError;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that validating a program reports the same errors as parsing it.
+ */
+public class SyntaxValidatorTest {
+
+	@Test
+	public void corpusGivesSameErrors() throws Exception {
+		for (String dir : new String[]{"testdata/parser/ok", "testdata/parser/error"}) {
+			for (File file : new File(dir).listFiles()) {
+				MJFrontend parser = new MJFrontend();
+				parser.parseFile(file);
+				List<SyntaxError> errors = new MJFrontend().validateFile(file);
+				assertEquals(file.getName(), parser.getSyntaxErrors().toString(), errors.toString());
+			}
+		}
+	}
+
+	@Test
+	public void validProgram() throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		List<SyntaxError> errors = frontend.validateString("class Main{public static void main(String[] a){x = (y).f[0]; new A();}}");
+		assertTrue(errors.isEmpty());
+		// no AST is built, so not even identifiers are created
+		assertEquals(0, frontend.getNameTable().size());
+	}
+
+	@Test
+	public void invalidStatements() throws Exception {
+		assertSameErrors("x + 1;");
+		assertSameErrors("a.length = 5;");
+		assertSameErrors("(a.m()) = 5;");
+		assertSameErrors("(a.m());");
+		assertSameErrors("(new A()).f = a.m(new int[2].length);");
+	}
+
+	@Test
+	public void syntaxErrors() throws Exception {
+		assertSameErrors("x = ;");
+		assertSameErrors("x = new int[2][0];");
+		assertSameErrors("if (a) b;");
+	}
+
+	@Test
+	public void repeatedValidation() throws Exception {
+		MJFrontend frontend = new MJFrontend();
+		String input = "class Main{public static void main(String[] a){x = ;}}";
+		List<SyntaxError> first = frontend.validateString(input);
+		List<SyntaxError> second = frontend.validateString(input);
+		assertEquals(1, first.size());
+		assertEquals(first.toString(), second.toString());
+		assertTrue(frontend.getSyntaxErrors().isEmpty());
+	}
+
+	private void assertSameErrors(String statements) throws Exception {
+		String input = "class Main{public static void main(String[] a){" + statements + "}}";
+		MJFrontend parser = new MJFrontend();
+		parser.parseString(input);
+		List<SyntaxError> errors = new MJFrontend().validateString(input);
+		assertEquals(statements, parser.getSyntaxErrors().toString(), errors.toString());
+	}
+}
@@ -0,0 +1,117 @@
+package minijava.translation;
+
+import frontend.AstPrinter;
+import main.MiniJavaCompiler;
+import main.MiniJavaCompiler.SSAMode;
+import minillvm.analysis.Checks;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles programs with long operator chains and deeply nested statements and expressions
+ * on a thread with a small stack, in all {@link SSAMode}s.
+ */
+public class DeeplyNestedProgramsTest {
+
+	/** stack size of the compiling thread, much smaller than the default */
+	private static final long STACK_SIZE = 256 * 1024;
+
+	@Test
+	public void longOperatorChains() throws Throwable {
+		StringBuilder sum = new StringBuilder("x");
+		StringBuilder and = new StringBuilder("b");
+		for (int i = 0; i < 5000; i++) {
+			sum.append(i % 2 == 0 ? " + " : " - ").append(i);
+			and.append(" && b");
+		}
+		compile("int x; boolean b; x = 1; b = true;",
+				"x = " + sum + ";",
+				"b = " + and + ";",
+				"System.out.println(x);");
+	}
+
+	@Test
+	public void deeplyNestedStatements() throws Throwable {
+		int depth = 1500;
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			body.append(i % 2 == 0 ? "while (x < " + i + ") { x = x + 1; " : "if (x < " + i + ") { int y" + i + "; y" + i + " = x; ");
+		}
+		body.append("System.out.println(x);");
+		for (int i = depth - 1; i >= 0; i--) {
+			body.append(i % 2 == 0 ? "}" : "} else { x = x - 1; }");
+		}
+		compile("int x; x = 0;", body.toString());
+	}
+
+	@Test
+	public void deeplyNestedExpressions() throws Throwable {
+		int depth = 1500;
+		StringBuilder e = new StringBuilder("x");
+		for (int i = 0; i < depth; i++) {
+			e.insert(0, "a[" + i + " + (").append(")]");
+		}
+		compile("int x; int[] a; a = new int[10]; x = 0;",
+				"x = " + e + ";",
+				"System.out.println(-(-(-(-(x)))));");
+	}
+
+	@Test(timeout = 60000)
+	public void longChainOfArrayIndexes() throws Throwable {
+		// each index is checked in its own blocks, while the values of the outer accesses are still used later
+		int depth = 8000;
+		StringBuilder e = new StringBuilder("x");
+		for (int i = 0; i < depth; i++) {
+			e.insert(0, "a[" + i + " + ").append("]");
+		}
+		compile("int x; int[] a; a = new int[10]; x = 0;",
+				"x = " + e + ";",
+				"System.out.println(x);");
+	}
+
+	@Test
+	public void deeplyNestedConditions() throws Throwable {
+		// every level adds blocks for the short circuit evaluation and a phi node for its result
+		int depth = 3000;
+		StringBuilder e = new StringBuilder("b");
+		for (int i = 0; i < depth; i++) {
+			e.insert(0, "!(x < " + i + " && ").append(")");
+		}
+		compile("int x; boolean b; x = 5; b = true;",
+				"b = " + e + ";",
+				"if (b) { System.out.println(x); } else { }");
+	}
+
+	private void compile(String... statements) throws Throwable {
+		String input = "class Main { public static void main(String[] args) {\n"
+				+ String.join("\n", statements)
+				+ "\n}}\n";
+		for (SSAMode mode : SSAMode.values()) {
+			AtomicReference<Throwable> error = new AtomicReference<>();
+			Thread t = new Thread(null, () -> {
+				try {
+					MiniJavaCompiler compiler = new MiniJavaCompiler();
+					compiler.setSSAMode(mode);
+					compiler.compileString("Test.java", input);
+					assertEquals(mode.name(), Collections.emptyList(), compiler.getSyntaxErrors());
+					assertEquals(mode.name(), Collections.emptyList(), compiler.getTypeErrors());
+					assertTrue(mode.name(), AstPrinter.print(compiler.getJavaProgram()).startsWith("class Main {"));
+					new Checks().checkProgram(compiler.getLlvmProg());
+					assertTrue(mode.name(), compiler.getLlvmCode().contains("define i32 @main()"));
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}, "compiler-" + mode.name().toLowerCase(), STACK_SIZE);
+			t.start();
+			t.join();
+			if (error.get() != null) {
+				throw error.get();
+			}
+		}
+	}
+}
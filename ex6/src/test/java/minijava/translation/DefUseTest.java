@@ -0,0 +1,95 @@
+package minijava.translation;
+
+import minillvm.analysis.Checks;
+import minillvm.analysis.DefUse;
+import minillvm.ast.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the def-use index finds the uses of variables and stays up to date when the procedure is changed.
+ */
+public class DefUseTest {
+
+	@Test
+	public void usesAndUsers() {
+		Parameter p = Ast.Parameter(Ast.TypeInt(), "p");
+		TemporaryVar x = Ast.TemporaryVar("x");
+		TemporaryVar y = Ast.TemporaryVar("y");
+		BinaryOperation defX = Ast.BinaryOperation(x, Ast.VarRef(p), Ast.Add(), Ast.VarRef(p));
+		BinaryOperation defY = Ast.BinaryOperation(y, Ast.VarRef(x), Ast.Mul(), Ast.VarRef(p));
+		ReturnExpr ret = Ast.ReturnExpr(Ast.VarRef(y));
+		Proc proc = proc(p, Ast.BasicBlock(defX, defY, ret));
+
+		DefUse defUse = new DefUse(proc);
+		assertEquals(3, defUse.getUseCount(p));
+		assertEquals(Arrays.asList(defX, defY), defUse.getUsers(p));
+		assertEquals(Arrays.asList(defY), defUse.getUsers(x));
+		assertSame(defX, defUse.getDefinition(x));
+		assertSame(proc, defUse.getDefinition(p));
+		assertTrue(defUse.isUsed(y));
+	}
+
+	@Test
+	public void replaceAllUsesWith() {
+		Parameter p = Ast.Parameter(Ast.TypeInt(), "p");
+		TemporaryVar x = Ast.TemporaryVar("x");
+		TemporaryVar y = Ast.TemporaryVar("y");
+		BinaryOperation defX = Ast.BinaryOperation(x, Ast.VarRef(p), Ast.Add(), Ast.ConstInt(0));
+		BinaryOperation defY = Ast.BinaryOperation(y, Ast.VarRef(x), Ast.Mul(), Ast.VarRef(x));
+		Proc proc = proc(p, Ast.BasicBlock(defX, defY, Ast.ReturnExpr(Ast.VarRef(y))));
+
+		DefUse defUse = new DefUse(proc);
+		// x = p + 0 is the same as p
+		defUse.removeInstruction(defX);
+		defUse.replaceAllUsesWith(x, Ast.VarRef(p));
+		assertFalse(defUse.isUsed(x));
+		assertEquals(2, defUse.getUseCount(p));
+		assertEquals(Arrays.asList(defY), defUse.getUsers(p));
+		assertSame(p, ((VarRef) defY.getLeft()).getVariable());
+		assertSame(p, ((VarRef) defY.getRight()).getVariable());
+		new Checks().checkProgram((Prog) proc.getParent().getParent());
+
+		// the new uses are replaced again
+		defUse.replaceAllUsesWith(p, Ast.ConstInt(3));
+		assertFalse(defUse.isUsed(p));
+		assertEquals(Ast.ConstInt(3).toString(), defY.getLeft().toString());
+	}
+
+	@Test
+	public void addedAndRemovedElements() {
+		Parameter p = Ast.Parameter(Ast.TypeInt(), "p");
+		TemporaryVar x = Ast.TemporaryVar("x");
+		BasicBlock block = Ast.BasicBlock(Ast.ReturnExpr(Ast.VarRef(p)));
+		Proc proc = proc(p, block);
+
+		DefUse defUse = new DefUse(proc);
+		BinaryOperation defX = Ast.BinaryOperation(x, Ast.VarRef(p), Ast.Sub(), Ast.VarRef(p));
+		block.add(0, defX);
+		defUse.addUses(defX);
+		assertEquals(3, defUse.getUseCount(p));
+
+		VarRef returned = (VarRef) ((ReturnExpr) block.get(1)).getReturnValue();
+		defUse.replaceUse(returned, Ast.VarRef(x));
+		assertEquals(2, defUse.getUseCount(p));
+		assertEquals(1, defUse.getUseCount(x));
+
+		Print print = Ast.Print(Ast.VarRef(x));
+		block.add(1, print);
+		defUse.addUses(print);
+		assertEquals(2, defUse.getUseCount(x));
+		defUse.removeInstruction(print);
+		assertEquals(1, defUse.getUseCount(x));
+		assertEquals(2, block.size());
+	}
+
+	private static Proc proc(Parameter p, BasicBlock block) {
+		block.setName("entry");
+		Proc proc = Ast.Proc("f", Ast.TypeInt(), Ast.ParameterList(p), Ast.BasicBlockList(block));
+		Ast.Prog(Ast.TypeStructList(), Ast.GlobalList(), Ast.ProcList(proc));
+		return proc;
+	}
+}
@@ -0,0 +1,159 @@
+package minijava.translation;
+
+import analysis.Analysis;
+import frontend.MJFrontend;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Dominators;
+import minillvm.ast.*;
+import org.junit.Test;
+import translation.Translator;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the dominator analysis with the definitions of dominators and dominance frontiers.
+ */
+public class DominatorsTest {
+
+	@Test
+	public void diamondAndLoop() {
+		BasicBlock entry = block("entry");
+		BasicBlock header = block("header");
+		BasicBlock left = block("left");
+		BasicBlock right = block("right");
+		BasicBlock join = block("join");
+		BasicBlock exit = block("exit");
+		BasicBlock dead = block("dead");
+		entry.add(Ast.Jump(header));
+		header.add(Ast.Branch(Ast.ConstBool(true), left, exit));
+		left.add(Ast.Branch(Ast.ConstBool(true), join, right));
+		right.add(Ast.Jump(join));
+		join.add(Ast.Jump(header));
+		exit.add(Ast.ReturnVoid());
+		dead.add(Ast.Jump(join));
+		Proc proc = proc(entry, header, left, right, join, exit, dead);
+
+		Dominators dominators = new Dominators(proc);
+		assertNull(dominators.getImmediateDominator(entry));
+		assertSame(entry, dominators.getImmediateDominator(header));
+		assertSame(left, dominators.getImmediateDominator(join));
+		assertSame(header, dominators.getImmediateDominator(exit));
+		assertTrue(dominators.dominates(header, right));
+		assertFalse(dominators.dominates(right, join));
+		assertEquals(Arrays.asList(join), dominators.getDominanceFrontier(right));
+		assertEquals(Arrays.asList(header), dominators.getDominanceFrontier(join));
+		assertEquals(Arrays.asList(header), dominators.getDominanceFrontier(header));
+
+		assertFalse(dominators.isReachable(dead));
+		assertNull(dominators.getImmediateDominator(dead));
+		assertFalse(dominators.dominates(entry, dead));
+		assertEquals(Arrays.asList(left, right), dominators.getPredecessors(join));
+		assertEquals(6, dominators.getReversePostorder().size());
+		compareWithDefinition(proc);
+	}
+
+	@Test
+	public void translatedPrograms() throws Exception {
+		for (String dir : new String[] {"testdata/translation/stmts", "testdata/translation/arrays"}) {
+			File[] files = new File(dir).listFiles();
+			assertNotNull(files);
+			for (File file : files) {
+				MJProgram program = new MJFrontend().parseFile(file);
+				Analysis analysis = new Analysis(program);
+				analysis.check();
+				Prog prog = new Translator(program, analysis.getTypeInformation()).translate();
+				for (Proc proc : prog.getProcedures()) {
+					compareWithDefinition(proc);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void longChainOfLoops() {
+		// every block is the header of a loop with a single block, followed by the next header
+		int n = 50000;
+		List<BasicBlock> blocks = new ArrayList<>();
+		for (int i = 0; i <= n; i++) {
+			blocks.add(block("b" + i));
+		}
+		for (int i = 0; i < n; i++) {
+			blocks.get(i).add(Ast.Branch(Ast.ConstBool(true), blocks.get(i), blocks.get(i + 1)));
+		}
+		blocks.get(n).add(Ast.ReturnVoid());
+		Proc proc = proc(blocks.toArray(new BasicBlock[0]));
+
+		Dominators dominators = Dominators.of(proc);
+		assertSame(dominators, Dominators.of(proc));
+		assertTrue(dominators.dominates(blocks.get(0), blocks.get(n)));
+		assertFalse(dominators.dominates(blocks.get(n), blocks.get(n - 1)));
+		assertSame(blocks.get(n - 1), dominators.getImmediateDominator(blocks.get(n)));
+		assertEquals(Arrays.asList(blocks.get(7)), dominators.getDominanceFrontier(blocks.get(7)));
+		assertEquals(0, dominators.getPreorderNumber(blocks.get(0)));
+		assertEquals(n, dominators.getPreorderNumber(blocks.get(n)));
+		assertEquals(0, dominators.getPostorderNumber(blocks.get(n)));
+		Dominators.invalidate(proc);
+		assertNotSame(dominators, Dominators.of(proc));
+	}
+
+	/** computes dominators as sets with the data flow equations and compares them with the analysis */
+	private static void compareWithDefinition(Proc proc) {
+		Dominators dominators = new Dominators(proc);
+		List<BasicBlock> reachable = dominators.getReversePostorder();
+		Map<BasicBlock, Set<BasicBlock>> dom = new IdentityHashMap<>();
+		for (BasicBlock b : reachable) {
+			Set<BasicBlock> all = Collections.newSetFromMap(new IdentityHashMap<>());
+			all.addAll(reachable);
+			dom.put(b, all);
+		}
+		dom.get(reachable.get(0)).retainAll(Collections.singleton(reachable.get(0)));
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (BasicBlock b : reachable.subList(1, reachable.size())) {
+				Set<BasicBlock> d = Collections.newSetFromMap(new IdentityHashMap<>());
+				d.addAll(reachable);
+				for (BasicBlock p : dominators.getPredecessors(b)) {
+					d.retainAll(dom.get(p));
+				}
+				d.add(b);
+				if (!d.equals(dom.get(b))) {
+					dom.put(b, d);
+					changed = true;
+				}
+			}
+		}
+		for (BasicBlock a : reachable) {
+			for (BasicBlock b : reachable) {
+				assertEquals(proc.getName() + " " + a.getName() + " " + b.getName(), dom.get(b).contains(a), dominators.dominates(a, b));
+			}
+			// the frontier of a: blocks with a predecessor dominated by a, which are not strictly dominated by a
+			Set<BasicBlock> frontier = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (BasicBlock y : reachable) {
+				for (BasicBlock p : dominators.getPredecessors(y)) {
+					if (dom.get(p).contains(a) && (a == y || !dom.get(y).contains(a))) {
+						frontier.add(y);
+					}
+				}
+			}
+			List<BasicBlock> actual = dominators.getDominanceFrontier(a);
+			assertEquals(frontier.size(), actual.size());
+			assertTrue(frontier.containsAll(actual));
+		}
+	}
+
+	private static BasicBlock block(String name) {
+		BasicBlock block = Ast.BasicBlock();
+		block.setName(name);
+		return block;
+	}
+
+	private static Proc proc(BasicBlock... blocks) {
+		Proc proc = Ast.Proc("f", Ast.TypeVoid(), Ast.ParameterList(), Ast.BasicBlockList(blocks));
+		Ast.Prog(Ast.TypeStructList(), Ast.GlobalList(), Ast.ProcList(proc));
+		return proc;
+	}
+}
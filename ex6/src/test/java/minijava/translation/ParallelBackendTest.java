@@ -0,0 +1,106 @@
+package minijava.translation;
+
+import analysis.Analysis;
+import frontend.MJFrontend;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Checks;
+import minillvm.analysis.LlvmTypeError;
+import minillvm.ast.*;
+import org.junit.Test;
+import translation.SSATransformation;
+import translation.Translator;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the SSA transformation and the checks of MiniLLVM programs give the same results,
+ * when the procedures are processed in parallel.
+ */
+public class ParallelBackendTest {
+
+	@Test
+	public void sameTransformationForTestFiles() throws Exception {
+		for (String dir : new String[] {"testdata/translation/stmts", "testdata/translation/arrays"}) {
+			File[] files = new File(dir).listFiles();
+			assertNotNull(files);
+			for (File file : files) {
+				MJProgram program = new MJFrontend().parseFile(file);
+				assertEquals(file.getName(), transform(program, false), transform(program, true));
+			}
+		}
+	}
+
+	@Test
+	public void sameTransformationForManyMethods() throws Exception {
+		MJProgram program = new MJFrontend().parseString(manyMethods(200));
+		assertEquals(transform(program, false), transform(program, true));
+	}
+
+	@Test
+	public void firstErrorIsReported() throws Exception {
+		MJProgram program = new MJFrontend().parseString(manyMethods(50));
+		Prog prog = translate(program);
+		// blocks without terminating instruction in several procedures
+		for (int i = 10; i < prog.getProcedures().size(); i += 10) {
+			BasicBlock block = prog.getProcedures().get(i).getBasicBlocks().get(0);
+			block.remove(block.size() - 1);
+		}
+		String expected = checkError(prog, false);
+		assertTrue(expected.contains("does not have a terminating instruction"));
+		for (int i = 0; i < 5; i++) {
+			assertEquals(expected, checkError(prog, true));
+		}
+	}
+
+	private static String manyMethods(int classes) {
+		StringBuilder source = new StringBuilder("class Main { public static void main(String[] a) { System.out.println(new C0().m0(3)); } }\n");
+		for (int c = 0; c < classes; c++) {
+			source.append("class C").append(c).append(c > 0 ? " extends C" + (c - 1) : "").append(" {\n");
+			source.append("  int f").append(c).append(";\n");
+			for (int m = 0; m < 5; m++) {
+				source.append("  int m").append(m).append("(int n) {\n");
+				source.append("    int x; int[] a;\n");
+				source.append("    x = f").append(c).append(" + n; a = new int[n];\n");
+				source.append("    while (0 < n) { if (x < " + m + ") { x = x + a[0]; } else { n = n - 1; } }\n");
+				source.append("    return x;\n");
+				source.append("  }\n");
+			}
+			source.append("}\n");
+		}
+		return source.toString();
+	}
+
+	private static Prog translate(MJProgram program) {
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		assertTrue(analysis.getTypeErrors().isEmpty());
+		Translator translator = new Translator(program, analysis.getTypeInformation());
+		translator.setSSA(false);
+		return translator.translate();
+	}
+
+	private static String transform(MJProgram program, boolean parallel) {
+		Prog prog = translate(program);
+		SSATransformation transformation = new SSATransformation();
+		transformation.setParallel(parallel);
+		transformation.transformProg(prog);
+		Checks checks = new Checks();
+		checks.setParallel(parallel);
+		checks.checkProgram(prog);
+		return prog.toString();
+	}
+
+	private static String checkError(Prog prog, boolean parallel) {
+		Checks checks = new Checks();
+		checks.setParallel(parallel);
+		try {
+			checks.checkProgram(prog);
+		} catch (LlvmTypeError e) {
+			return e.toString();
+		}
+		fail("no error");
+		return null;
+	}
+}
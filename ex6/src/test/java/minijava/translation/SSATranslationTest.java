@@ -0,0 +1,113 @@
+package minijava.translation;
+
+import analysis.Analysis;
+import frontend.MJFrontend;
+import main.MiniJavaCompiler;
+import main.MiniJavaCompiler.SSAMode;
+import minijava.ast.MJProgram;
+import minillvm.analysis.Checks;
+import minillvm.ast.*;
+import org.junit.Test;
+import translation.Translator;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the translator builds valid SSA form without stack slots, and that stack slots can still be used
+ * and removed afterwards by the SSA transformation.
+ */
+public class SSATranslationTest {
+
+	@Test
+	public void testFilesWithoutAllocas() throws Exception {
+		for (String dir : new String[] {"testdata/translation/stmts", "testdata/translation/arrays"}) {
+			File[] files = new File(dir).listFiles();
+			assertNotNull(files);
+			for (File file : files) {
+				MJProgram program = new MJFrontend().parseFile(file);
+				Prog ssa = translate(program, true);
+				new Checks().checkProgram(ssa);
+				assertEquals(file.getName(), 0, countInstructions(ssa.getProcedures(), Alloca.class));
+
+				Prog allocas = translate(program, false);
+				new Checks().checkProgram(allocas);
+				assertTrue(file.getName(), countInstructions(allocas.getProcedures(), Alloca.class) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void phiNodesOnlyForChangedVariables() throws Exception {
+		MJProgram program = new MJFrontend().parseString("class Main { public static void main(String[] a) {\n"
+				+ "\tint x; int y; int z;\n"
+				+ "\tx = 0; y = 1; z = 2;\n"
+				+ "\twhile (x < 10) {\n"
+				+ "\t\tif (y < x) { z = z + y; } else { }\n"
+				+ "\t\tx = x + 1;\n"
+				+ "\t}\n"
+				+ "\tSystem.out.println(x + y + z);\n"
+				+ "}}\n");
+		Prog prog = translate(program, true);
+		new Checks().checkProgram(prog);
+		// x and z in the loop header and z after the if statement, y never changes
+		Proc main = prog.getProcedures().stream().filter(p -> p.getName().equals("main")).findFirst().get();
+		assertEquals(3, countInstructions(Collections.singletonList(main), PhiNode.class));
+	}
+
+	@Test
+	public void readBeforeWrite() throws Exception {
+		MJProgram program = new MJFrontend().parseString("class Main { public static void main(String[] a) {\n"
+				+ "\tint[] x; int i;\n"
+				+ "\ti = 0;\n"
+				+ "\twhile (i < 2) { if (0 < i) { System.out.println(x[0]); } else { x = new int[1]; } i = i + 1; }\n"
+				+ "}}\n");
+		Prog prog = translate(program, true);
+		new Checks().checkProgram(prog);
+		assertEquals(0, countInstructions(prog.getProcedures(), Alloca.class));
+	}
+
+	@Test
+	public void transformationRemovesChainsOfTrivialPhis() throws Exception {
+		MiniJavaCompiler compiler = new MiniJavaCompiler();
+		compiler.setSSAMode(SSAMode.TRANSFORMATION);
+		compiler.compileString("Test.java", "class Main { public static void main(String[] a) {\n"
+				+ "\tint x; int i; int j;\n"
+				+ "\tx = 5; i = 0;\n"
+				+ "\twhile (i < 3) { j = 0; while (j < 3) { j = j + 1; } i = i + 1; }\n"
+				+ "\tSystem.out.println(x + i);\n"
+				+ "}}\n");
+		Prog prog = compiler.getLlvmProg();
+		new Checks().checkProgram(prog);
+		Proc main = prog.getProcedures().stream().filter(p -> p.getName().equals("main")).findFirst().get();
+		assertEquals(0, countInstructions(Collections.singletonList(main), Alloca.class));
+		// x only becomes trivial in the outer loop after its phi node in the inner loop was removed
+		assertEquals(2, countInstructions(Collections.singletonList(main), PhiNode.class));
+	}
+
+	private static Prog translate(MJProgram program, boolean ssa) {
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		assertTrue(analysis.getTypeErrors().isEmpty());
+		Translator translator = new Translator(program, analysis.getTypeInformation());
+		translator.setSSA(ssa);
+		return translator.translate();
+	}
+
+	private static int countInstructions(List<Proc> procs, Class<? extends Instruction> kind) {
+		int count = 0;
+		for (Proc proc : procs) {
+			for (BasicBlock block : proc.getBasicBlocks()) {
+				for (Instruction instr : block) {
+					if (kind.isInstance(instr)) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+}